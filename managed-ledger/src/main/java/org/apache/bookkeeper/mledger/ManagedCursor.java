@@ -24,6 +24,7 @@ import com.google.common.collect.Range;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 import org.apache.bookkeeper.common.annotation.InterfaceAudience;
 import org.apache.bookkeeper.common.annotation.InterfaceStability;
@@ -76,6 +77,13 @@ public interface ManagedCursor {
      */
     void updateLastActive();
 
+    /**
+     * Prefix of the internal properties. They are kept by the mark-deletes that don't carry them, including the
+     * ones done on a reset, a skip or an expiry, and are only changed with {@link #putProperty(String, Long)} and
+     * {@link #removeProperty(String)}.
+     */
+    String INTERNAL_PROPERTY_PREFIX = "#pulsar.internal.";
+
     /**
      * Return any properties that were associated with the last stored position.
      */
@@ -91,6 +99,15 @@ public interface ManagedCursor {
      */
     boolean removeProperty(String key);
 
+    /**
+     * Persist the properties associated with the last stored position, along with the current mark-delete position.
+     *
+     * <p/>Unlike a mark-delete, the write is not subject to the mark-delete rate limit.
+     *
+     * @return a future that completes once the properties are durably stored
+     */
+    CompletableFuture<Void> asyncPersistProperties();
+
     /**
      * Read entries from the ManagedLedger, up to the specified number. The returned list can be smaller.
      *
@@ -388,6 +405,23 @@ public interface ManagedCursor {
      */
     void asyncDelete(Iterable<Position> position, DeleteCallback callback, Object ctx);
 
+    /**
+     * Delete the messages of several ranges of entries asynchronously.
+     *
+     * <p/>
+     * Same as {@link #asyncDelete(Iterable, DeleteCallback, Object)}, but each range of entries is deleted as a
+     * whole instead of entry by entry.
+     *
+     * @param ranges
+     *            the closed ranges of the positions of the messages to be deleted, each range spans the entries of a
+     *            single ledger
+     * @param callback
+     *            callback object
+     * @param ctx
+     *            opaque context
+     */
+    void asyncDeleteRanges(List<Range<PositionImpl>> ranges, DeleteCallback callback, Object ctx);
+
     /**
      * Get the read position. This points to the next message to be read from the cursor.
      *
@@ -34,6 +34,7 @@ import org.apache.bookkeeper.common.annotation.InterfaceStability;
 import org.apache.bookkeeper.mledger.impl.NullLedgerOffloader;
 
 import org.apache.bookkeeper.mledger.intercept.ManagedLedgerInterceptor;
+import org.apache.pulsar.common.util.collections.CompressedLongPairRangeSet;
 import org.apache.pulsar.common.util.collections.ConcurrentOpenLongPairRangeSet;
 
 /**
@@ -48,6 +49,8 @@ public class ManagedLedgerConfig {
     private int maxBatchDeletedIndexToPersist = 10000;
     private boolean deletionAtBatchIndexLevelEnabled = true;
     private int maxUnackedRangesToPersistInZk = 1000;
+    private boolean unackedRangesDeltaPersistenceEnabled = false;
+    private int unackedRangesSnapshotInterval = 100;
     private int maxEntriesPerLedger = 50000;
     private int maxSizePerLedgerMb = 100;
     private int minimumRolloverTimeMs = 0;
@@ -71,6 +74,7 @@ public class ManagedLedgerConfig {
     private DigestType digestType = DigestType.CRC32C;
     private byte[] password = "".getBytes(Charsets.UTF_8);
     private boolean unackedRangesOpenCacheSetEnabled = true;
+    private boolean unackedRangesCompressedSetEnabled = false;
     private Class<? extends EnsemblePlacementPolicy>  bookKeeperEnsemblePlacementPolicyClassName;
     private Map<String, Object> bookKeeperEnsemblePlacementPolicyProperties;
     private LedgerOffloader ledgerOffloader = NullLedgerOffloader.INSTANCE;
@@ -281,6 +285,20 @@ public class ManagedLedgerConfig {
         return this;
     }
 
+    /**
+     * should use {@link CompressedLongPairRangeSet} to store unacked ranges. It takes precedence over
+     * {@link #isUnackedRangesOpenCacheSetEnabled()}.
+     * @return
+     */
+    public boolean isUnackedRangesCompressedSetEnabled() {
+        return unackedRangesCompressedSetEnabled;
+    }
+
+    public ManagedLedgerConfig setUnackedRangesCompressedSetEnabled(boolean unackedRangesCompressedSetEnabled) {
+        this.unackedRangesCompressedSetEnabled = unackedRangesCompressedSetEnabled;
+        return this;
+    }
+
     /**
      * @return the metadataEnsemblesize
      */
@@ -488,6 +506,45 @@ public class ManagedLedgerConfig {
         this.maxUnackedRangesToPersistInZk = maxUnackedRangesToPersistInZk;
     }
 
+    /**
+     * @return whether the unacked message ranges are persisted incrementally in the cursor ledger
+     */
+    public boolean isUnackedRangesDeltaPersistenceEnabled() {
+        return unackedRangesDeltaPersistenceEnabled;
+    }
+
+    /**
+     * Persist the unacked message ranges incrementally in the cursor ledger.
+     * <p>
+     * Instead of writing all the ranges on each mark-delete, the cursor periodically writes a snapshot of the ranges,
+     * split over several entries of {@link #getMaxUnackedRangesToPersist()} ranges, followed by entries with only the
+     * ranges added since the snapshot. So the number of ranges that are recovered is not limited by the size of an
+     * entry anymore.
+     *
+     * @param unackedRangesDeltaPersistenceEnabled
+     */
+    public ManagedLedgerConfig setUnackedRangesDeltaPersistenceEnabled(boolean unackedRangesDeltaPersistenceEnabled) {
+        this.unackedRangesDeltaPersistenceEnabled = unackedRangesDeltaPersistenceEnabled;
+        return this;
+    }
+
+    /**
+     * @return max number of incremental updates of the unacked message ranges between two snapshots
+     */
+    public int getUnackedRangesSnapshotInterval() {
+        return unackedRangesSnapshotInterval;
+    }
+
+    /**
+     * @param unackedRangesSnapshotInterval
+     *            max number of incremental updates of the unacked message ranges between two snapshots. A snapshot is
+     *            also taken when the ranges added since the last one don't fit in a single entry anymore
+     */
+    public ManagedLedgerConfig setUnackedRangesSnapshotInterval(int unackedRangesSnapshotInterval) {
+        this.unackedRangesSnapshotInterval = unackedRangesSnapshotInterval;
+        return this;
+    }
+
     /**
      * Get ledger offloader which will be used to offload ledgers to longterm storage.
      *
@@ -57,6 +57,24 @@ public class ManagedLedgerFactoryConfig {
      */
     private boolean copyEntriesInCache = false;
 
+    /**
+     * Directory where the entries evicted from the cache are spilled, in a memory-mapped file per managed ledger.
+     * Catch-up reads look for the entries there before reading them from the bookies. If not set, the entries are
+     * discarded when evicted.
+     */
+    private String cacheSpillDirectory = null;
+
+    /**
+     * Size of the spill file of each managed ledger. Once full, the oldest entries get overwritten.
+     */
+    private long cacheSpillFileSize = 64 * MB;
+
+    /**
+     * Maximum size of all the spill files together. Once reached, the entries evicted from the cache of the managed
+     * ledgers that don't have a spill file yet are discarded.
+     */
+    private long cacheSpillMaxSize = 1024 * MB;
+
     /**
      * Whether trace managed ledger task execution time.
      */
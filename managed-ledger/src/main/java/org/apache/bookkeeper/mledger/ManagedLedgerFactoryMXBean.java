@@ -62,6 +62,21 @@ public interface ManagedLedgerFactoryMXBean {
      */
     double getCacheMissesThroughput();
 
+    /**
+     * Get the number of reads per second served from the spill files of the cache.
+     */
+    double getCacheSpillHitsRate();
+
+    /**
+     * Get the amount of data is retrieved from the spill files of the cache in byte/s.
+     */
+    double getCacheSpillHitsThroughput();
+
+    /**
+     * Get the size in byte of the spill files of the cache.
+     */
+    long getCacheSpillUsedSize();
+
     /**
      * Get the number of cache evictions during the last minute.
      */
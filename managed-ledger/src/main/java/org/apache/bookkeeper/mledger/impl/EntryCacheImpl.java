@@ -38,7 +38,7 @@ import org.apache.bookkeeper.client.api.ReadHandle;
 import org.apache.bookkeeper.mledger.AsyncCallbacks.ReadEntriesCallback;
 import org.apache.bookkeeper.mledger.AsyncCallbacks.ReadEntryCallback;
 import org.apache.bookkeeper.mledger.ManagedLedgerException;
-import org.apache.bookkeeper.mledger.util.RangeCache;
+import org.apache.bookkeeper.mledger.util.SegmentedRangeCache;
 import org.apache.commons.lang3.tuple.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -50,7 +50,7 @@ public class EntryCacheImpl implements EntryCache {
 
     private final EntryCacheManager manager;
     private final ManagedLedgerImpl ml;
-    private final RangeCache<PositionImpl, EntryImpl> entries;
+    private final SegmentedRangeCache<EntryImpl> entries;
     private final boolean copyEntries;
 
     private static final double MB = 1024 * 1024;
@@ -58,7 +58,8 @@ public class EntryCacheImpl implements EntryCache {
     public EntryCacheImpl(EntryCacheManager manager, ManagedLedgerImpl ml, boolean copyEntries) {
         this.manager = manager;
         this.ml = ml;
-        this.entries = new RangeCache<>(EntryImpl::getLength, EntryImpl::getTimestamp);
+        this.entries = new SegmentedRangeCache<>(EntryImpl::getLength, EntryImpl::getTimestamp,
+                SegmentedRangeCache.DEFAULT_ENTRIES_PER_SEGMENT, manager.isSpillEnabled() ? this::spillEntry : null);
         this.copyEntries = copyEntries;
 
         if (log.isDebugEnabled()) {
@@ -111,7 +112,7 @@ public class EntryCacheImpl implements EntryCache {
         PositionImpl position = entry.getPosition();
         EntryImpl cacheEntry = EntryImpl.create(position, cachedData);
         cachedData.release();
-        if (entries.put(position, cacheEntry)) {
+        if (entries.put(position.getLedgerId(), position.getEntryId(), cacheEntry)) {
             manager.entryAdded(entry.getLength());
             return true;
         } else {
@@ -144,6 +145,67 @@ public class EntryCacheImpl implements EntryCache {
         return cachedData;
     }
 
+    private void spillEntry(EntryImpl entry) {
+        EntryCacheSpillFile spillFile = manager.getOrCreateSpillFile(this);
+        if (spillFile != null && spillFile.put(entry) && log.isDebugEnabled()) {
+            log.debug("[{}] Spilled evicted entry {} - size: {}", ml.getName(), entry.getPosition(),
+                    entry.getLength());
+        }
+    }
+
+    /**
+     * Read a range of entries combining the entries found in cache with the ones that were spilled when evicted, and
+     * record the cache hits and the spill hits of the range.
+     *
+     * @return the entries, or null if any of them is missing from both
+     */
+    private List<EntryImpl> readFromSpillFile(long ledgerId, long firstEntry, long lastEntry,
+                                              Collection<EntryImpl> cachedEntries) {
+        EntryCacheSpillFile spillFile = manager.getSpillFile(ml.getName());
+        if (spillFile == null) {
+            return null;
+        }
+
+        final List<EntryImpl> entriesToReturn = Lists.newArrayListWithExpectedSize((int) (lastEntry - firstEntry) + 1);
+        Iterator<EntryImpl> cachedIterator = cachedEntries.iterator();
+        EntryImpl nextCached = cachedIterator.hasNext() ? cachedIterator.next() : null;
+        int spilledCount = 0;
+        long cachedSize = 0;
+        long spilledSize = 0;
+        for (long entryId = firstEntry; entryId <= lastEntry; entryId++) {
+            EntryImpl entry;
+            if (nextCached != null && nextCached.getEntryId() == entryId) {
+                entry = EntryImpl.create(nextCached);
+                nextCached = cachedIterator.hasNext() ? cachedIterator.next() : null;
+                cachedSize += entry.getLength();
+            } else {
+                entry = spillFile.get(ledgerId, entryId);
+                if (entry != null) {
+                    spilledCount++;
+                    spilledSize += entry.getLength();
+                }
+            }
+
+            if (entry == null) {
+                entriesToReturn.forEach(EntryImpl::release);
+                return null;
+            }
+            entriesToReturn.add(entry);
+        }
+
+        int cachedCount = entriesToReturn.size() - spilledCount;
+        if (cachedCount > 0) {
+            manager.mlFactoryMBean.recordCacheHits(cachedCount, cachedSize);
+        }
+        manager.mlFactoryMBean.recordCacheSpillHits(spilledCount, spilledSize);
+        return entriesToReturn;
+    }
+
+    private EntryImpl readFromSpillFile(PositionImpl position) {
+        EntryCacheSpillFile spillFile = manager.getSpillFile(ml.getName());
+        return spillFile != null ? spillFile.get(position.getLedgerId(), position.getEntryId()) : null;
+    }
+
     @Override
     public void invalidateEntries(final PositionImpl lastPosition) {
         final PositionImpl firstPosition = PositionImpl.get(-1, 0);
@@ -156,7 +218,8 @@ public class EntryCacheImpl implements EntryCache {
             return;
         }
 
-        Pair<Integer, Long> removed = entries.removeRange(firstPosition, lastPosition, false);
+        Pair<Integer, Long> removed = entries.removeRange(firstPosition.getLedgerId(), firstPosition.getEntryId(),
+                lastPosition.getLedgerId(), lastPosition.getEntryId(), false);
         int entriesRemoved = removed.getLeft();
         long sizeRemoved = removed.getRight();
         if (log.isDebugEnabled()) {
@@ -169,10 +232,7 @@ public class EntryCacheImpl implements EntryCache {
 
     @Override
     public void invalidateAllEntries(long ledgerId) {
-        final PositionImpl firstPosition = PositionImpl.get(ledgerId, 0);
-        final PositionImpl lastPosition = PositionImpl.get(ledgerId + 1, 0);
-
-        Pair<Integer, Long> removed = entries.removeRange(firstPosition, lastPosition, false);
+        Pair<Integer, Long> removed = entries.removeRange(ledgerId, 0, ledgerId + 1, 0, false);
         int entriesRemoved = removed.getLeft();
         long sizeRemoved = removed.getRight();
         if (log.isDebugEnabled()) {
@@ -203,12 +263,15 @@ public class EntryCacheImpl implements EntryCache {
         if (log.isDebugEnabled()) {
             log.debug("[{}] Reading entry ledger {}: {}", ml.getName(), lh.getId(), position.getEntryId());
         }
-        EntryImpl entry = entries.get(position);
+        EntryImpl entry = entries.get(position.getLedgerId(), position.getEntryId());
         if (entry != null) {
             EntryImpl cachedEntry = EntryImpl.create(entry);
             entry.release();
             manager.mlFactoryMBean.recordCacheHit(cachedEntry.getLength());
             callback.readEntryComplete(cachedEntry, ctx);
+        } else if ((entry = readFromSpillFile(position)) != null) {
+            manager.mlFactoryMBean.recordCacheSpillHit(entry.getLength());
+            callback.readEntryComplete(entry, ctx);
         } else {
             lh.readAsync(position.getEntryId(), position.getEntryId()).whenCompleteAsync(
                     (ledgerEntries, exception) -> {
@@ -264,14 +327,12 @@ public class EntryCacheImpl implements EntryCache {
             final ReadEntriesCallback callback, Object ctx) {
         final long ledgerId = lh.getId();
         final int entriesToRead = (int) (lastEntry - firstEntry) + 1;
-        final PositionImpl firstPosition = PositionImpl.get(lh.getId(), firstEntry);
-        final PositionImpl lastPosition = PositionImpl.get(lh.getId(), lastEntry);
 
         if (log.isDebugEnabled()) {
             log.debug("[{}] Reading entries range ledger {}: {} to {}", ml.getName(), ledgerId, firstEntry, lastEntry);
         }
 
-        Collection<EntryImpl> cachedEntries = entries.getRange(firstPosition, lastPosition);
+        Collection<EntryImpl> cachedEntries = entries.getRange(ledgerId, firstEntry, lastEntry);
 
         if (cachedEntries.size() == entriesToRead) {
             long totalCachedSize = 0;
@@ -293,10 +354,21 @@ public class EntryCacheImpl implements EntryCache {
             callback.readEntriesComplete((List) entriesToReturn, ctx);
 
         } else {
+            final List<EntryImpl> spilledEntries = readFromSpillFile(ledgerId, firstEntry, lastEntry, cachedEntries);
             if (!cachedEntries.isEmpty()) {
                 cachedEntries.forEach(entry -> entry.release());
             }
 
+            if (spilledEntries != null) {
+                if (log.isDebugEnabled()) {
+                    log.debug("[{}] Ledger {} -- Found in cache and spill file entries: {}-{}", ml.getName(),
+                            ledgerId, firstEntry, lastEntry);
+                }
+
+                callback.readEntriesComplete((List) spilledEntries, ctx);
+                return;
+            }
+
             // Read all the entries from bookkeeper
             lh.readAsync(firstEntry, lastEntry).whenCompleteAsync(
                     (ledgerEntries, exception) -> {
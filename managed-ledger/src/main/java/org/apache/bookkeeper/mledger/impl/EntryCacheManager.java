@@ -25,11 +25,14 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.primitives.Longs;
 import io.netty.buffer.ByteBuf;
+import java.io.File;
+import java.io.IOException;
 import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import org.apache.bookkeeper.client.api.LedgerEntry;
 import org.apache.bookkeeper.client.api.ReadHandle;
@@ -37,6 +40,7 @@ import org.apache.bookkeeper.mledger.AsyncCallbacks;
 import org.apache.bookkeeper.mledger.AsyncCallbacks.ReadEntriesCallback;
 import org.apache.bookkeeper.mledger.Entry;
 import org.apache.bookkeeper.mledger.ManagedLedgerException;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -51,6 +55,14 @@ public class EntryCacheManager {
     private final ConcurrentMap<String, EntryCache> caches = Maps.newConcurrentMap();
     private final EntryCacheEvictionPolicy evictionPolicy;
 
+    // Directory of the spill files, null if the entries are not spilled when evicted
+    private final File spillDirectory;
+    private final int spillFileSize;
+    private final int maxSpillFiles;
+    private final ConcurrentMap<String, EntryCacheSpillFile> spillFiles = Maps.newConcurrentMap();
+    // Number of spill files created or being created, bounded by maxSpillFiles
+    private final AtomicInteger numSpillFiles = new AtomicInteger();
+
     private final AtomicBoolean evictionInProgress = new AtomicBoolean(false);
 
     private final ManagedLedgerFactoryImpl mlFactory;
@@ -69,6 +81,23 @@ public class EntryCacheManager {
         this.mlFactory = factory;
         this.mlFactoryMBean = factory.mbean;
 
+        String spillDirectory = factory.getConfig().getCacheSpillDirectory();
+        if (maxSize > 0 && StringUtils.isNotBlank(spillDirectory)) {
+            this.spillDirectory = new File(spillDirectory);
+            this.spillFileSize = (int) Math.min(factory.getConfig().getCacheSpillFileSize(), Integer.MAX_VALUE);
+            this.maxSpillFiles = (int) Math.min(factory.getConfig().getCacheSpillMaxSize() / spillFileSize,
+                    Integer.MAX_VALUE);
+            if (!this.spillDirectory.isDirectory() && !this.spillDirectory.mkdirs()) {
+                log.warn("Failed to create the entry cache spill directory {}", spillDirectory);
+            }
+            log.info("Spilling evicted entries to {} -- Spill file size per managed ledger: {} Mb -- Max spill "
+                    + "files: {}", spillDirectory, spillFileSize / MB, maxSpillFiles);
+        } else {
+            this.spillDirectory = null;
+            this.spillFileSize = 0;
+            this.maxSpillFiles = 0;
+        }
+
         log.info("Initialized managed-ledger entry cache of {} Mb", maxSize / MB);
     }
 
@@ -88,7 +117,14 @@ public class EntryCacheManager {
     }
 
     void removeEntryCache(String name) {
+        // Unregister the cache first, so that a concurrent eviction can't create a new spill file for it
         EntryCache entryCache = caches.remove(name);
+
+        EntryCacheSpillFile spillFile = spillFiles.get(name);
+        if (spillFile != null) {
+            removeSpillFile(name, spillFile);
+        }
+
         if (entryCache == null) {
             return;
         }
@@ -150,6 +186,87 @@ public class EntryCacheManager {
 
     public void clear() {
         caches.values().forEach(EntryCache::clear);
+        spillFiles.values().forEach(EntryCacheSpillFile::clear);
+    }
+
+    boolean isSpillEnabled() {
+        return spillDirectory != null;
+    }
+
+    public long getSpillSize() {
+        return (long) spillFiles.size() * spillFileSize;
+    }
+
+    /**
+     * Get the file where the entries evicted from the cache of a managed ledger are spilled.
+     *
+     * @param name
+     *            the managed ledger name
+     * @return the spill file, or null if it doesn't exist
+     */
+    EntryCacheSpillFile getSpillFile(String name) {
+        return spillDirectory != null ? spillFiles.get(name) : null;
+    }
+
+    /**
+     * Get the file where the entries evicted from an entry cache are spilled, creating it if it doesn't exist yet.
+     *
+     * @param entryCache
+     *            the entry cache, the file is only created while it is registered in this manager
+     * @return the spill file, or null if it couldn't be created, including when the entry cache was removed and when
+     *         the spill files would go over the maximum spill size
+     */
+    EntryCacheSpillFile getOrCreateSpillFile(EntryCache entryCache) {
+        if (spillDirectory == null) {
+            return null;
+        }
+
+        String name = entryCache.getName();
+        EntryCacheSpillFile spillFile = spillFiles.get(name);
+        if (spillFile != null) {
+            return spillFile;
+        }
+
+        spillFile = spillFiles.computeIfAbsent(name, n -> {
+            if (caches.get(name) != entryCache) {
+                // The cache was removed, its spill file would never be deleted
+                return null;
+            }
+            if (numSpillFiles.incrementAndGet() > maxSpillFiles) {
+                numSpillFiles.decrementAndGet();
+                if (log.isDebugEnabled()) {
+                    log.debug("[{}] Not spilling evicted entries, the max spill size is reached", name);
+                }
+                return null;
+            }
+            try {
+                File file = File.createTempFile("entry-cache-", ".spill", spillDirectory);
+                if (log.isDebugEnabled()) {
+                    log.debug("[{}] Created entry cache spill file {}", name, file);
+                }
+                return new EntryCacheSpillFile(file, spillFileSize);
+            } catch (IOException e) {
+                numSpillFiles.decrementAndGet();
+                log.warn("[{}] Failed to create entry cache spill file in {}: {}", name, spillDirectory,
+                        e.getMessage());
+                return null;
+            }
+        });
+
+        if (spillFile != null && caches.get(name) != entryCache) {
+            // The cache was removed while the file was being created
+            removeSpillFile(name, spillFile);
+            return null;
+        }
+        return spillFile;
+    }
+
+    private void removeSpillFile(String name, EntryCacheSpillFile spillFile) {
+        // Only the thread that removes the file from the map closes it and releases its share of the spill size
+        if (spillFiles.remove(name, spillFile)) {
+            spillFile.close();
+            numSpillFiles.decrementAndGet();
+        }
     }
 
     protected class EntryCacheDisabled implements EntryCache {
@@ -0,0 +1,229 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.mledger.impl;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.util.internal.PlatformDependent;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.apache.bookkeeper.util.collections.ConcurrentLongLongPairHashMap;
+import org.apache.bookkeeper.util.collections.ConcurrentLongLongPairHashMap.LongPair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Second tier of the entry cache of a managed ledger, where the entries evicted from the memory cache are spilled.
+ *
+ * <p/>The entries are appended to a fixed size, memory-mapped file used as a ring buffer: once the file is full, the
+ * oldest entries get overwritten. Each record is stored as:
+ * <pre>
+ * [ledgerId: 8 bytes][entryId: 8 bytes][length: 4 bytes][payload: length bytes]
+ * </pre>
+ * The position of every record still in the file is kept in a primitive (ledgerId, entryId) index. A record that
+ * would cross the end of the file is written at the beginning instead, after a padding marker.
+ */
+class EntryCacheSpillFile {
+
+    private static final int HEADER_SIZE = 8 + 8 + 4;
+    private static final long PADDING_MARKER = -1L;
+
+    private final File file;
+    private final int capacity;
+    private final MappedByteBuffer mappedBuffer;
+
+    // (ledgerId, entryId) -> (absolute position of the record, payload length)
+    private final ConcurrentLongLongPairHashMap index = new ConcurrentLongLongPairHashMap();
+
+    // Reads copy the data out of the mapped buffer under the read lock, while appends and close take the write lock,
+    // so that records are never read while being overwritten or after the file is unmapped
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Absolute positions of the oldest record still in the file and of the next record to write. Positions only grow,
+    // the offset in the file is the position modulo the capacity
+    private long tailPosition = 0;
+    private long headPosition = 0;
+    private boolean closed = false;
+
+    EntryCacheSpillFile(File file, int capacity) throws IOException {
+        checkArgument(capacity > HEADER_SIZE);
+        this.file = file;
+        this.capacity = capacity;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(capacity);
+            this.mappedBuffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        } catch (IOException e) {
+            file.delete();
+            throw e;
+        }
+        file.deleteOnExit();
+    }
+
+    /**
+     * Append an entry to the file, possibly overwriting the oldest entries.
+     *
+     * @return whether the entry was stored
+     */
+    boolean put(EntryImpl entry) {
+        int length = entry.getLength();
+        int recordSize = HEADER_SIZE + length;
+        if (recordSize > capacity) {
+            return false;
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (closed || index.containsKey(entry.getLedgerId(), entry.getEntryId())) {
+                return false;
+            }
+
+            int offset = offset(headPosition);
+            if (capacity - offset < recordSize) {
+                // Not enough space before the end of the file, skip to the beginning
+                makeSpace(capacity - offset);
+                if (capacity - offset >= HEADER_SIZE) {
+                    mappedBuffer.putLong(offset, PADDING_MARKER);
+                }
+                headPosition += capacity - offset;
+                offset = 0;
+            }
+
+            makeSpace(recordSize);
+            mappedBuffer.putLong(offset, entry.getLedgerId());
+            mappedBuffer.putLong(offset + 8, entry.getEntryId());
+            mappedBuffer.putInt(offset + 16, length);
+            ByteBuffer dst = mappedBuffer.duplicate();
+            dst.position(offset + HEADER_SIZE);
+            dst.limit(offset + recordSize);
+            ByteBuf data = entry.getDataBuffer();
+            data.getBytes(data.readerIndex(), dst);
+
+            index.put(entry.getLedgerId(), entry.getEntryId(), headPosition, length);
+            headPosition += recordSize;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Read an entry from the file.
+     *
+     * @return the entry, or null if it is not in the file anymore
+     */
+    EntryImpl get(long ledgerId, long entryId) {
+        LongPair location = index.get(ledgerId, entryId);
+        if (location == null) {
+            return null;
+        }
+
+        lock.readLock().lock();
+        try {
+            long position = location.first;
+            int length = (int) location.second;
+            if (closed || position < tailPosition) {
+                // Overwritten since we looked up the index
+                return null;
+            }
+
+            int offset = offset(position) + HEADER_SIZE;
+            ByteBuffer src = mappedBuffer.duplicate();
+            src.position(offset);
+            src.limit(offset + length);
+            ByteBuf data = EntryCacheImpl.ALLOCATOR.directBuffer(length, length);
+            data.writeBytes(src);
+            EntryImpl entry = EntryImpl.create(ledgerId, entryId, data);
+            data.release();
+            return entry;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    long getNumberOfEntries() {
+        return index.size();
+    }
+
+    /**
+     * Drop all the entries from the file.
+     */
+    void clear() {
+        lock.writeLock().lock();
+        try {
+            index.clear();
+            tailPosition = headPosition;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Unmap and delete the file.
+     */
+    void close() {
+        lock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            index.clear();
+            PlatformDependent.freeDirectBuffer(mappedBuffer);
+            if (!file.delete()) {
+                log.warn("Failed to delete entry cache spill file {}", file);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Move the tail forward, dropping the oldest records from the index, until there are at least
+     * {@code size} free bytes after the head.
+     */
+    private void makeSpace(int size) {
+        while (headPosition + size - tailPosition > capacity) {
+            int offset = offset(tailPosition);
+            int remaining = capacity - offset;
+            if (remaining < HEADER_SIZE || mappedBuffer.getLong(offset) == PADDING_MARKER) {
+                tailPosition += remaining;
+                continue;
+            }
+
+            long ledgerId = mappedBuffer.getLong(offset);
+            long entryId = mappedBuffer.getLong(offset + 8);
+            int length = mappedBuffer.getInt(offset + 16);
+            index.remove(ledgerId, entryId, tailPosition, length);
+            tailPosition += HEADER_SIZE + length;
+        }
+    }
+
+    private int offset(long position) {
+        return (int) (position % capacity);
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(EntryCacheSpillFile.class);
+}
@@ -50,6 +50,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
@@ -62,6 +63,7 @@ import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
 
 import org.apache.bookkeeper.client.AsyncCallback.CloseCallback;
 import org.apache.bookkeeper.client.AsyncCallback.DeleteCallback;
@@ -98,6 +100,7 @@ import org.apache.bookkeeper.mledger.proto.MLDataFormats.MessageRange;
 import org.apache.bookkeeper.mledger.proto.MLDataFormats.PositionInfo;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.pulsar.common.util.collections.BitSetRecyclable;
+import org.apache.pulsar.common.util.collections.CompressedLongPairRangeSet;
 import org.apache.pulsar.common.util.collections.ConcurrentOpenLongPairRangeSet;
 import org.apache.pulsar.common.util.collections.LongPairRangeSet;
 import org.apache.pulsar.common.util.collections.LongPairRangeSet.LongPairConsumer;
@@ -171,6 +174,11 @@ public class ManagedCursorImpl implements ManagedCursor {
     };
     private final LongPairRangeSet<PositionImpl> individualDeletedMessages;
 
+    // Ranges added to individualDeletedMessages since the last snapshot written into the cursor ledger, only tracked
+    // when the unacked ranges are persisted incrementally
+    private final LongPairRangeSet<PositionImpl> individualDeletedMessagesDelta;
+    private final UnackedRangesSnapshot unackedRangesSnapshot = new UnackedRangesSnapshot();
+
     // Maintain the deletion status for batch messages
     // (ledgerId, entryId) -> deletion indexes
     private final ConcurrentSkipListMap<PositionImpl, BitSetRecyclable> batchDeletedIndexes;
@@ -195,11 +203,39 @@ public class ManagedCursorImpl implements ManagedCursor {
     private long entriesReadSize;
     private int individualDeletedMessagesSerializedSize;
 
+    /**
+     * Position of the last snapshot of the individually deleted messages in the cursor ledger, when the unacked ranges
+     * are persisted incrementally. Guarded by itself.
+     */
+    private static class UnackedRangesSnapshot {
+        // Cursor ledger where the snapshot was written
+        long ledgerId = -1;
+        long firstEntryId;
+        int entries;
+        // Id of the next entry appended to the cursor ledger
+        long nextEntryId;
+        // Number of entries with the ranges added since the snapshot
+        int deltas;
+        // Set when the individually deleted messages are cleared, since a delta can only add ranges
+        volatile boolean invalidated;
+    }
+
+    private static LongPairRangeSet<PositionImpl> createRangeSet(ManagedLedgerConfig config) {
+        if (config.isUnackedRangesCompressedSetEnabled()) {
+            return new CompressedLongPairRangeSet<>(positionRangeConverter);
+        } else if (config.isUnackedRangesOpenCacheSetEnabled()) {
+            return new ConcurrentOpenLongPairRangeSet<>(4096, positionRangeConverter);
+        } else {
+            return new LongPairRangeSet.DefaultRangeSet<>(positionRangeConverter);
+        }
+    }
+
     class MarkDeleteEntry {
         final PositionImpl newPosition;
         final MarkDeleteCallback callback;
         final Object ctx;
-        final Map<String, Long> properties;
+        // Merged with the internal properties of the previous entry when the mark-delete is persisted
+        Map<String, Long> properties;
 
         // If the callbackGroup is set, it means this mark-delete request was done on behalf of a group of request (just
         // persist the last one in the chain). In this case we need to trigger the callbacks for every request in the
@@ -253,9 +289,9 @@ public class ManagedCursorImpl implements ManagedCursor {
         this.config = config;
         this.ledger = ledger;
         this.name = cursorName;
-        this.individualDeletedMessages = config.isUnackedRangesOpenCacheSetEnabled()
-                ? new ConcurrentOpenLongPairRangeSet<>(4096, positionRangeConverter)
-                : new LongPairRangeSet.DefaultRangeSet<>(positionRangeConverter);
+        this.individualDeletedMessages = createRangeSet(config);
+        this.individualDeletedMessagesDelta = config.isUnackedRangesDeltaPersistenceEnabled()
+                ? createRangeSet(config) : null;
         if (config.isDeletionAtBatchIndexLevelEnabled()) {
             this.batchDeletedIndexes = new ConcurrentSkipListMap<>();
         } else {
@@ -309,16 +345,82 @@ public class ManagedCursorImpl implements ManagedCursor {
         if (lastMarkDeleteEntry != null) {
             LAST_MARK_DELETE_ENTRY_UPDATER.updateAndGet(this, last -> {
                 Map<String, Long> properties = last.properties;
-                if (properties != null && properties.containsKey(key)) {
-                    properties.remove(key);
+                if (properties == null || !properties.containsKey(key)) {
+                    return last;
                 }
-                return last;
+                // Copy the properties, they are also read by the mark-deletes merging the internal properties
+                Map<String, Long> newProperties = Maps.newHashMap(properties);
+                newProperties.remove(key);
+
+                MarkDeleteEntry newLastMarkDeleteEntry = new MarkDeleteEntry(last.newPosition, newProperties,
+                        last.callback, last.ctx);
+                newLastMarkDeleteEntry.callbackGroup = last.callbackGroup;
+
+                return newLastMarkDeleteEntry;
             });
             return true;
         }
         return false;
     }
 
+    @Override
+    public CompletableFuture<Void> asyncPersistProperties() {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        if (isClosed()) {
+            future.completeExceptionally(new ManagedLedgerException
+                    .CursorAlreadyClosedException("Cursor was already closed"));
+            return future;
+        }
+
+        MarkDeleteCallback callback = new MarkDeleteCallback() {
+            @Override
+            public void markDeleteComplete(Object ctx) {
+                future.complete(null);
+            }
+
+            @Override
+            public void markDeleteFailed(ManagedLedgerException exception, Object ctx) {
+                future.completeExceptionally(exception);
+            }
+        };
+
+        // Write the current position rather than going through asyncMarkDelete, which could only update the
+        // position in memory because of the rate limit. The position is read while holding the mark-delete queue:
+        // a mark-delete to a newer position is then either already queued or queued after this one, so the stored
+        // position can't move backwards.
+        synchronized (pendingMarkDeleteOps) {
+            if (RESET_CURSOR_IN_PROGRESS_UPDATER.get(this) == FALSE) {
+                Map<String, Long> properties = Maps.newHashMap(getProperties());
+                internalAsyncMarkDelete(markDeletePosition, properties, callback, null);
+                return future;
+            }
+        }
+        // The reset writes its own position, the properties can be persisted again once it is done
+        future.completeExceptionally(
+                new ManagedLedgerException("Reset cursor in progress - unable to persist the cursor properties"));
+        return future;
+    }
+
+    /**
+     * Add to the properties of a mark-delete the internal properties of the last mark-delete entry it doesn't carry.
+     */
+    private static Map<String, Long> withInternalProperties(Map<String, Long> properties, MarkDeleteEntry last) {
+        if (last == null || last.properties == null) {
+            return properties;
+        }
+        Map<String, Long> merged = null;
+        for (Map.Entry<String, Long> property : last.properties.entrySet()) {
+            String key = property.getKey();
+            if (key.startsWith(INTERNAL_PROPERTY_PREFIX) && (properties == null || !properties.containsKey(key))) {
+                if (merged == null) {
+                    merged = properties == null ? Maps.newHashMap() : Maps.newHashMap(properties);
+                }
+                merged.put(key, property.getValue());
+            }
+        }
+        return merged != null ? merged : properties;
+    }
+
     /**
      * Performs the initial recovery, reading the mark-deleted position from the ledger and then calling initialize to
      * have a new opened ledger.
@@ -430,26 +532,7 @@ public class ManagedCursorImpl implements ManagedCursor {
                     return;
                 }
 
-                Map<String, Long> recoveredProperties = Collections.emptyMap();
-                if (positionInfo.getPropertiesCount() > 0) {
-                    // Recover properties map
-                    recoveredProperties = Maps.newHashMap();
-                    for (int i = 0; i < positionInfo.getPropertiesCount(); i++) {
-                        LongProperty property = positionInfo.getProperties(i);
-                        recoveredProperties.put(property.getName(), property.getValue());
-                    }
-                }
-
-                PositionImpl position = new PositionImpl(positionInfo);
-                if (positionInfo.getIndividualDeletedMessagesCount() > 0) {
-                    recoverIndividualDeletedMessages(positionInfo.getIndividualDeletedMessagesList());
-                }
-                if (config.isDeletionAtBatchIndexLevelEnabled() && batchDeletedIndexes != null
-                    && positionInfo.getBatchedEntryDeletionIndexInfoCount() > 0) {
-                    recoverBatchDeletedIndexes(positionInfo.getBatchedEntryDeletionIndexInfoList());
-                }
-                recoveredCursor(position, recoveredProperties, lh);
-                callback.operationComplete();
+                recoverFromEntry(lh, lastEntryInLedger, positionInfo, info, callback);
             }, null);
         };
         try {
@@ -461,6 +544,120 @@ public class ManagedCursorImpl implements ManagedCursor {
         }
     }
 
+    /**
+     * Recover the cursor from an entry of the cursor ledger, which either has all the individually deleted messages or
+     * is part of the incremental persistence.
+     */
+    private void recoverFromEntry(LedgerHandle lh, long entryId, PositionInfo positionInfo, ManagedCursorInfo info,
+                                  VoidCallback callback) {
+        if (positionInfo.hasSnapshotEntries()) {
+            recoverFromSnapshot(lh, entryId, positionInfo, info, callback);
+            return;
+        }
+        recoverFromPositionInfo(positionInfo, positionInfo.getIndividualDeletedMessagesList(), lh);
+        callback.operationComplete();
+    }
+
+    /**
+     * Recover the individually deleted messages persisted incrementally: read the snapshot the given entry refers to
+     * and add the ranges of the entry if it is a delta.
+     */
+    private void recoverFromSnapshot(LedgerHandle lh, long entryId, PositionInfo positionInfo, ManagedCursorInfo info,
+                                     VoidCallback callback) {
+        long distance = positionInfo.getSnapshotDistance();
+        int snapshotEntries = positionInfo.getSnapshotEntries();
+        if (distance < snapshotEntries - 1) {
+            // The snapshot was not completely written, recover from the entry before it
+            long previousEntryId = entryId - distance - 1;
+            log.warn("[{}] Incomplete unacked ranges snapshot at entry {} of metadata ledger {} for consumer {},"
+                    + " recovering from entry {}", ledger.getName(), entryId, lh.getId(), name, previousEntryId);
+            if (previousEntryId < 0) {
+                initialize(getRollbackPosition(info), Collections.emptyMap(), callback);
+                return;
+            }
+            // The entry before can have been written before the incremental persistence was enabled
+            readPositionInfos(lh, previousEntryId, previousEntryId, info, callback, previousEntries ->
+                    recoverFromEntry(lh, previousEntryId, previousEntries.get(0), info, callback));
+            return;
+        }
+
+        long firstEntryId = entryId - distance;
+        readPositionInfos(lh, firstEntryId, firstEntryId + snapshotEntries - 1, info, callback, snapshot -> {
+            List<MLDataFormats.MessageRange> ranges = Lists.newArrayList();
+            snapshot.forEach(pi -> ranges.addAll(pi.getIndividualDeletedMessagesList()));
+            if (distance >= snapshotEntries) {
+                // Ranges added since the snapshot
+                ranges.addAll(positionInfo.getIndividualDeletedMessagesList());
+            }
+            recoverFromPositionInfo(positionInfo, ranges, lh);
+            callback.operationComplete();
+        });
+    }
+
+    private void readPositionInfos(LedgerHandle lh, long firstEntryId, long lastEntryId, ManagedCursorInfo info,
+                                   VoidCallback callback, Consumer<List<PositionInfo>> consumer) {
+        lh.asyncReadEntries(firstEntryId, lastEntryId, (rc, lh1, seq, ctx) -> {
+            if (isBkErrorNotRecoverable(rc)) {
+                log.error("[{}] Error reading from metadata ledger {} for consumer {}: {}", ledger.getName(),
+                        lh.getId(), name, BKException.getMessage(rc));
+                // Rewind to oldest entry available
+                initialize(getRollbackPosition(info), Collections.emptyMap(), callback);
+                return;
+            } else if (rc != BKException.Code.OK) {
+                log.warn("[{}] Error reading from metadata ledger {} for consumer {}: {}", ledger.getName(),
+                        lh.getId(), name, BKException.getMessage(rc));
+                callback.operationFailed(createManagedLedgerException(rc));
+                return;
+            }
+
+            List<PositionInfo> positionInfos = Lists.newArrayList();
+            try {
+                while (seq.hasMoreElements()) {
+                    LedgerEntry entry = seq.nextElement();
+                    mbean.addReadCursorLedgerSize(entry.getLength());
+                    positionInfos.add(PositionInfo.parseFrom(entry.getEntry()));
+                }
+            } catch (InvalidProtocolBufferException e) {
+                callback.operationFailed(new ManagedLedgerException(e));
+                return;
+            }
+            consumer.accept(positionInfos);
+        }, null);
+    }
+
+    private void recoverFromPositionInfo(PositionInfo positionInfo,
+                                         List<MLDataFormats.MessageRange> individualDeletedMessagesList,
+                                         LedgerHandle lh) {
+        Map<String, Long> recoveredProperties = Collections.emptyMap();
+        if (positionInfo.getPropertiesCount() > 0) {
+            // Recover properties map
+            recoveredProperties = Maps.newHashMap();
+            for (int i = 0; i < positionInfo.getPropertiesCount(); i++) {
+                LongProperty property = positionInfo.getProperties(i);
+                recoveredProperties.put(property.getName(), property.getValue());
+            }
+        }
+
+        PositionImpl position = new PositionImpl(positionInfo);
+        if (!individualDeletedMessagesList.isEmpty()) {
+            recoverIndividualDeletedMessages(individualDeletedMessagesList);
+            if (positionInfo.hasSnapshotEntries()) {
+                // The snapshot can have ranges that were mark-deleted afterwards
+                lock.writeLock().lock();
+                try {
+                    individualDeletedMessages.removeAtMost(position.getLedgerId(), position.getEntryId());
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        }
+        if (config.isDeletionAtBatchIndexLevelEnabled() && batchDeletedIndexes != null
+            && positionInfo.getBatchedEntryDeletionIndexInfoCount() > 0) {
+            recoverBatchDeletedIndexes(positionInfo.getBatchedEntryDeletionIndexInfoList());
+        }
+        recoveredCursor(position, recoveredProperties, lh);
+    }
+
     private void recoverIndividualDeletedMessages(List<MLDataFormats.MessageRange> individualDeletedMessagesList) {
         lock.writeLock().lock();
         try {
@@ -1068,9 +1265,13 @@ public class ManagedCursorImpl implements ManagedCursor {
                                 Range.closedOpen(markDeletePosition, newMarkDeletePosition)));
                     }
                     markDeletePosition = newMarkDeletePosition;
-                    lastMarkDeleteEntry = new MarkDeleteEntry(newMarkDeletePosition, Collections.emptyMap(),
-                            null, null);
+                    LAST_MARK_DELETE_ENTRY_UPDATER.updateAndGet(cursorImpl(), last -> new MarkDeleteEntry(
+                            newMarkDeletePosition, withInternalProperties(Collections.emptyMap(), last), null, null));
                     individualDeletedMessages.clear();
+                    if (individualDeletedMessagesDelta != null) {
+                        individualDeletedMessagesDelta.clear();
+                        unackedRangesSnapshot.invalidated = true;
+                    }
                     if (config.isDeletionAtBatchIndexLevelEnabled() && batchDeletedIndexes != null) {
                         batchDeletedIndexes.values().forEach(BitSetRecyclable::recycle);
                         batchDeletedIndexes.clear();
@@ -1620,6 +1821,10 @@ public class ManagedCursorImpl implements ManagedCursor {
         // markDelete-position and clear out deletedMsgSet
         markDeletePosition = newMarkDeletePosition;
         individualDeletedMessages.removeAtMost(markDeletePosition.getLedgerId(), markDeletePosition.getEntryId());
+        if (individualDeletedMessagesDelta != null) {
+            individualDeletedMessagesDelta.removeAtMost(markDeletePosition.getLedgerId(),
+                    markDeletePosition.getEntryId());
+        }
 
         READ_POSITION_UPDATER.updateAndGet(this, currentReadPosition -> {
             if (currentReadPosition.compareTo(markDeletePosition) <= 0) {
@@ -1726,7 +1931,9 @@ public class ManagedCursorImpl implements ManagedCursor {
         // Apply rate limiting to mark-delete operations
         if (markDeleteLimiter != null && !markDeleteLimiter.tryAcquire()) {
             isDirty = true;
-            lastMarkDeleteEntry = new MarkDeleteEntry(newPosition, properties, null, null);
+            PositionImpl finalNewPosition = newPosition;
+            LAST_MARK_DELETE_ENTRY_UPDATER.updateAndGet(this, last -> new MarkDeleteEntry(finalNewPosition,
+                    withInternalProperties(properties, last), null, null));
             callback.markDeleteComplete(ctx);
             return;
         }
@@ -1780,7 +1987,12 @@ public class ManagedCursorImpl implements ManagedCursor {
         // ledger is postponed to when the counter goes to 0.
         PENDING_MARK_DELETED_SUBMITTED_COUNT_UPDATER.incrementAndGet(this);
 
-        lastMarkDeleteEntry = mdEntry;
+        // Keep the internal properties the mark-delete doesn't carry, e.g. when it is done on a skip or an expiry
+        Map<String, Long> properties = mdEntry.properties;
+        LAST_MARK_DELETE_ENTRY_UPDATER.updateAndGet(this, last -> {
+            mdEntry.properties = withInternalProperties(properties, last);
+            return mdEntry;
+        });
 
         persistPositionToLedger(cursorLedger, mdEntry, new VoidCallback() {
             @Override
@@ -1796,6 +2008,10 @@ public class ManagedCursorImpl implements ManagedCursor {
                 try {
                     individualDeletedMessages.removeAtMost(mdEntry.newPosition.getLedgerId(),
                             mdEntry.newPosition.getEntryId());
+                    if (individualDeletedMessagesDelta != null) {
+                        individualDeletedMessagesDelta.removeAtMost(mdEntry.newPosition.getLedgerId(),
+                                mdEntry.newPosition.getEntryId());
+                    }
                     if (config.isDeletionAtBatchIndexLevelEnabled() && batchDeletedIndexes != null) {
                         Map<PositionImpl, BitSetRecyclable> subMap = batchDeletedIndexes.subMap(PositionImpl.earliest, false, PositionImpl.get(mdEntry.newPosition.getLedgerId(), mdEntry.newPosition.getEntryId()), true);
                         subMap.values().forEach(BitSetRecyclable::recycle);
@@ -1911,6 +2127,17 @@ public class ManagedCursorImpl implements ManagedCursor {
 
     @Override
     public void asyncDelete(Iterable<Position> positions, AsyncCallbacks.DeleteCallback callback, Object ctx) {
+        internalAsyncDelete(positions, Collections.emptyList(), callback, ctx);
+    }
+
+    @Override
+    public void asyncDeleteRanges(List<Range<PositionImpl>> ranges, AsyncCallbacks.DeleteCallback callback,
+                                  Object ctx) {
+        internalAsyncDelete(Collections.emptyList(), ranges, callback, ctx);
+    }
+
+    private void internalAsyncDelete(Iterable<Position> positions, List<Range<PositionImpl>> ranges,
+                                     AsyncCallbacks.DeleteCallback callback, Object ctx) {
         if (isClosed()) {
             callback.deleteFailed(new ManagedLedgerException
                     .CursorAlreadyClosedException("Cursor was already closed"), ctx);
@@ -1923,8 +2150,8 @@ public class ManagedCursorImpl implements ManagedCursor {
 
         try {
             if (log.isDebugEnabled()) {
-                log.debug("[{}] [{}] Deleting individual messages at {}. Current status: {} - md-position: {}",
-                        ledger.getName(), name, positions, individualDeletedMessages, markDeletePosition);
+                log.debug("[{}] [{}] Deleting individual messages at {} {}. Current status: {} - md-position: {}",
+                        ledger.getName(), name, positions, ranges, individualDeletedMessages, markDeletePosition);
             }
 
             for (Position pos : positions) {
@@ -1962,8 +2189,7 @@ public class ManagedCursorImpl implements ManagedCursor {
                     // Add a range (prev, pos] to the set. Adding the previous entry as an open limit to the range will make
                     // the RangeSet recognize the "continuity" between adjacent Positions
                     PositionImpl previousPosition = ledger.getPreviousPosition(position);
-                    individualDeletedMessages.addOpenClosed(previousPosition.getLedgerId(), previousPosition.getEntryId(),
-                        position.getLedgerId(), position.getEntryId());
+                    addIndividualDeletedRange(previousPosition, position);
                     MSG_CONSUMED_COUNTER_UPDATER.incrementAndGet(this);
 
                     if (log.isDebugEnabled()) {
@@ -1977,8 +2203,7 @@ public class ManagedCursorImpl implements ManagedCursor {
                     givenBitSet.recycle();
                     if (bitSet.isEmpty()) {
                         PositionImpl previousPosition = ledger.getPreviousPosition(position);
-                        individualDeletedMessages.addOpenClosed(previousPosition.getLedgerId(), previousPosition.getEntryId(),
-                            position.getLedgerId(), position.getEntryId());
+                        addIndividualDeletedRange(previousPosition, position);
                         MSG_CONSUMED_COUNTER_UPDATER.incrementAndGet(this);
                         BitSetRecyclable bitSetRecyclable = batchDeletedIndexes.remove(position);
                         if (bitSetRecyclable != null) {
@@ -1988,6 +2213,18 @@ public class ManagedCursorImpl implements ManagedCursor {
                 }
             }
 
+            for (Range<PositionImpl> range : ranges) {
+                if (((PositionImpl) ledger.getLastConfirmedEntry()).compareTo(range.upperEndpoint()) < 0) {
+                    if (log.isDebugEnabled()) {
+                        log.debug("[{}] Failed mark delete due to invalid range {} ahead of last-confirmed-entry {}"
+                                + " for cursor [{}]", ledger.getName(), range, ledger.getLastConfirmedEntry(), name);
+                    }
+                    callback.deleteFailed(new ManagedLedgerException("Invalid mark deleted position"), ctx);
+                    return;
+                }
+                deleteIndividualRange(range.lowerEndpoint(), range.upperEndpoint());
+            }
+
             if (individualDeletedMessages.isEmpty()) {
                 // No changes to individually deleted messages, so nothing to do at this point
                 callback.deleteComplete(ctx);
@@ -2375,6 +2612,54 @@ public class ManagedCursorImpl implements ManagedCursor {
         }
     }
 
+    /**
+     * Individually delete the entries from {@code start} to {@code end} of the same ledger. The entries already
+     * deleted are skipped. Must be called while holding the write lock.
+     */
+    private void deleteIndividualRange(PositionImpl start, PositionImpl end) {
+        long ledgerId = start.getLedgerId();
+        long startEntryId = start.getEntryId();
+        if (end.compareTo(markDeletePosition) <= 0) {
+            return;
+        }
+        if (start.compareTo(markDeletePosition) <= 0) {
+            startEntryId = markDeletePosition.getEntryId() + 1;
+        }
+        PositionImpl from = PositionImpl.get(ledgerId, startEntryId);
+
+        if (config.isDeletionAtBatchIndexLevelEnabled() && batchDeletedIndexes != null) {
+            Map<PositionImpl, BitSetRecyclable> deletedIndexes = batchDeletedIndexes.subMap(from, true, end, true);
+            deletedIndexes.values().forEach(BitSetRecyclable::recycle);
+            deletedIndexes.clear();
+        }
+
+        long newlyDeleted = 0;
+        for (long entryId = startEntryId; entryId <= end.getEntryId(); entryId++) {
+            if (!individualDeletedMessages.contains(ledgerId, entryId)) {
+                newlyDeleted++;
+            }
+        }
+        if (newlyDeleted == 0) {
+            return;
+        }
+        // Add the whole range (prev, end] at once, see asyncDelete
+        addIndividualDeletedRange(ledger.getPreviousPosition(from), end);
+        MSG_CONSUMED_COUNTER_UPDATER.addAndGet(this, newlyDeleted);
+    }
+
+    /**
+     * Add the range (previousPosition, position] to the individually deleted messages. Must be called while holding
+     * the write lock.
+     */
+    private void addIndividualDeletedRange(PositionImpl previousPosition, PositionImpl position) {
+        individualDeletedMessages.addOpenClosed(previousPosition.getLedgerId(), previousPosition.getEntryId(),
+                position.getLedgerId(), position.getEntryId());
+        if (individualDeletedMessagesDelta != null) {
+            individualDeletedMessagesDelta.addOpenClosed(previousPosition.getLedgerId(),
+                    previousPosition.getEntryId(), position.getLedgerId(), position.getEntryId());
+        }
+    }
+
     // //////////////////////////////////////////////////
 
     void startCreatingNewMetadataLedger() {
@@ -2523,36 +2808,44 @@ public class ManagedCursorImpl implements ManagedCursor {
     private List<MLDataFormats.MessageRange> buildIndividualDeletedMessageRanges() {
         lock.readLock().lock();
         try {
-            if (individualDeletedMessages.isEmpty()) {
-                return Collections.emptyList();
-            }
-
-            MLDataFormats.NestedPositionInfo.Builder nestedPositionBuilder = MLDataFormats.NestedPositionInfo
-                    .newBuilder();
-            MLDataFormats.MessageRange.Builder messageRangeBuilder = MLDataFormats.MessageRange.newBuilder();
-            AtomicInteger acksSerializedSize = new AtomicInteger(0);
-            List<MessageRange> rangeList = Lists.newArrayList();
-            individualDeletedMessages.forEach((positionRange) -> {
-                PositionImpl p = positionRange.lowerEndpoint();
-                nestedPositionBuilder.setLedgerId(p.getLedgerId());
-                nestedPositionBuilder.setEntryId(p.getEntryId());
-                messageRangeBuilder.setLowerEndpoint(nestedPositionBuilder.build());
-                p = positionRange.upperEndpoint();
-                nestedPositionBuilder.setLedgerId(p.getLedgerId());
-                nestedPositionBuilder.setEntryId(p.getEntryId());
-                messageRangeBuilder.setUpperEndpoint(nestedPositionBuilder.build());
-                MessageRange messageRange = messageRangeBuilder.build();
-                acksSerializedSize.addAndGet(messageRange.getSerializedSize());
-                rangeList.add(messageRange);
-                return rangeList.size() <= config.getMaxUnackedRangesToPersist();
-            });
-            this.individualDeletedMessagesSerializedSize = acksSerializedSize.get();
+            List<MessageRange> rangeList = buildMessageRanges(individualDeletedMessages,
+                    config.getMaxUnackedRangesToPersist() + 1);
+            this.individualDeletedMessagesSerializedSize = rangeList.stream()
+                    .mapToInt(MessageRange::getSerializedSize).sum();
             return rangeList;
         } finally {
             lock.readLock().unlock();
         }
     }
 
+    /**
+     * Serialize up to {@code maxRanges} ranges of a set. Must be called while holding the lock.
+     */
+    private static List<MLDataFormats.MessageRange> buildMessageRanges(LongPairRangeSet<PositionImpl> rangeSet,
+                                                                       int maxRanges) {
+        if (rangeSet.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        MLDataFormats.NestedPositionInfo.Builder nestedPositionBuilder = MLDataFormats.NestedPositionInfo
+                .newBuilder();
+        MLDataFormats.MessageRange.Builder messageRangeBuilder = MLDataFormats.MessageRange.newBuilder();
+        List<MessageRange> rangeList = Lists.newArrayList();
+        rangeSet.forEach((positionRange) -> {
+            PositionImpl p = positionRange.lowerEndpoint();
+            nestedPositionBuilder.setLedgerId(p.getLedgerId());
+            nestedPositionBuilder.setEntryId(p.getEntryId());
+            messageRangeBuilder.setLowerEndpoint(nestedPositionBuilder.build());
+            p = positionRange.upperEndpoint();
+            nestedPositionBuilder.setLedgerId(p.getLedgerId());
+            nestedPositionBuilder.setEntryId(p.getEntryId());
+            messageRangeBuilder.setUpperEndpoint(nestedPositionBuilder.build());
+            rangeList.add(messageRangeBuilder.build());
+            return rangeList.size() < maxRanges;
+        });
+        return rangeList;
+    }
+
     private List<MLDataFormats.BatchedEntryDeletionIndexInfo> buildBatchEntryDeletionIndexInfoList() {
         lock.readLock().lock();
         try {
@@ -2587,68 +2880,162 @@ public class ManagedCursorImpl implements ManagedCursor {
 
     void persistPositionToLedger(final LedgerHandle lh, MarkDeleteEntry mdEntry, final VoidCallback callback) {
         PositionImpl position = mdEntry.newPosition;
+
+        if (log.isDebugEnabled()) {
+            log.debug("[{}] Cursor {} Appending to ledger={} position={}", ledger.getName(), name, lh.getId(),
+                    position);
+        }
+
+        checkNotNull(lh);
+        if (individualDeletedMessagesDelta != null && config.getMaxUnackedRangesToPersist() > 0) {
+            synchronized (unackedRangesSnapshot) {
+                // Append while holding the lock, so that the entry ids match the snapshot state
+                appendPositionInfo(lh, mdEntry, buildIncrementalPositionInfo(lh, mdEntry), callback);
+            }
+            return;
+        }
+
         PositionInfo pi = PositionInfo.newBuilder().setLedgerId(position.getLedgerId())
                 .setEntryId(position.getEntryId())
                 .addAllIndividualDeletedMessages(buildIndividualDeletedMessageRanges())
                 .addAllBatchedEntryDeletionIndexInfo(buildBatchEntryDeletionIndexInfoList())
                 .addAllProperties(buildPropertiesMap(mdEntry.properties)).build();
+        appendPositionInfo(lh, mdEntry, Collections.singletonList(pi), callback);
+    }
 
+    /**
+     * Build the entries to append to the cursor ledger when the unacked ranges are persisted incrementally: either the
+     * ranges added since the last snapshot, or a new snapshot split over as many entries as needed.
+     */
+    private List<PositionInfo> buildIncrementalPositionInfo(LedgerHandle lh, MarkDeleteEntry mdEntry) {
+        UnackedRangesSnapshot snapshot = unackedRangesSnapshot;
+        if (snapshot.ledgerId != lh.getId()) {
+            // A new cursor ledger always starts with a snapshot, since the previous ledger is deleted
+            snapshot.ledgerId = lh.getId();
+            snapshot.nextEntryId = 0;
+            snapshot.invalidated = true;
+        }
 
-        if (log.isDebugEnabled()) {
-            log.debug("[{}] Cursor {} Appending to ledger={} position={}", ledger.getName(), name, lh.getId(),
-                    position);
+        PositionImpl position = mdEntry.newPosition;
+        int maxRanges = config.getMaxUnackedRangesToPersist();
+        PositionInfo.Builder builder = PositionInfo.newBuilder().setLedgerId(position.getLedgerId())
+                .setEntryId(position.getEntryId())
+                .addAllBatchedEntryDeletionIndexInfo(buildBatchEntryDeletionIndexInfoList())
+                .addAllProperties(buildPropertiesMap(mdEntry.properties));
+
+        if (!snapshot.invalidated && snapshot.deltas < config.getUnackedRangesSnapshotInterval()) {
+            List<MessageRange> delta;
+            lock.readLock().lock();
+            try {
+                delta = buildMessageRanges(individualDeletedMessagesDelta, maxRanges + 1);
+            } finally {
+                lock.readLock().unlock();
+            }
+
+            // Take a new snapshot once the delta doesn't fit in one entry
+            if (delta.size() <= maxRanges) {
+                PositionInfo pi = builder.addAllIndividualDeletedMessages(delta)
+                        .setSnapshotDistance(snapshot.nextEntryId - snapshot.firstEntryId)
+                        .setSnapshotEntries(snapshot.entries).build();
+                snapshot.deltas++;
+                snapshot.nextEntryId++;
+                return Collections.singletonList(pi);
+            }
         }
 
-        checkNotNull(lh);
-        byte[] data = pi.toByteArray();
-        lh.asyncAddEntry(data, (rc, lh1, entryId, ctx) -> {
-            if (rc == BKException.Code.OK) {
-                if (log.isDebugEnabled()) {
-                    log.debug("[{}] Updated cursor {} position {} in meta-ledger {}", ledger.getName(), name, position,
-                            lh1.getId());
-                }
+        List<MessageRange> ranges;
+        lock.writeLock().lock();
+        try {
+            ranges = buildMessageRanges(individualDeletedMessages, Integer.MAX_VALUE);
+            individualDeletedMessagesDelta.clear();
+            snapshot.invalidated = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        this.individualDeletedMessagesSerializedSize = ranges.stream().mapToInt(MessageRange::getSerializedSize).sum();
+
+        List<List<MessageRange>> chunks = ranges.isEmpty() ? Collections.singletonList(ranges)
+                : Lists.partition(ranges, maxRanges);
+        List<PositionInfo> entries = new ArrayList<>(chunks.size());
+        for (int i = 0; i < chunks.size(); i++) {
+            // Only the last entry of the snapshot holds the complete cursor state
+            PositionInfo.Builder chunkBuilder = i == chunks.size() - 1 ? builder
+                    : PositionInfo.newBuilder().setLedgerId(position.getLedgerId()).setEntryId(position.getEntryId());
+            entries.add(chunkBuilder.addAllIndividualDeletedMessages(chunks.get(i))
+                    .setSnapshotDistance(i)
+                    .setSnapshotEntries(chunks.size()).build());
+        }
+        snapshot.firstEntryId = snapshot.nextEntryId;
+        snapshot.entries = chunks.size();
+        snapshot.deltas = 0;
+        snapshot.nextEntryId += chunks.size();
+        return entries;
+    }
+
+    private void appendPositionInfo(final LedgerHandle lh, MarkDeleteEntry mdEntry, List<PositionInfo> entries,
+                                    final VoidCallback callback) {
+        PositionImpl position = mdEntry.newPosition;
+        AtomicInteger pendingAdds = new AtomicInteger(entries.size());
+        AtomicBoolean failed = new AtomicBoolean(false);
+        for (PositionInfo pi : entries) {
+            byte[] data = pi.toByteArray();
+            lh.asyncAddEntry(data, (rc, lh1, entryId, ctx) -> {
+                if (rc == BKException.Code.OK) {
+                    mbean.addWriteCursorLedgerSize(data.length);
+                    if (pendingAdds.decrementAndGet() > 0 || failed.get()) {
+                        // Wait for the other entries of the snapshot
+                        return;
+                    }
 
-                if (shouldCloseLedger(lh1)) {
                     if (log.isDebugEnabled()) {
-                        log.debug("[{}] Need to create new metadata ledger for consumer {}", ledger.getName(), name);
+                        log.debug("[{}] Updated cursor {} position {} in meta-ledger {}", ledger.getName(), name,
+                                position, lh1.getId());
                     }
-                    startCreatingNewMetadataLedger();
-                }
 
-                mbean.persistToLedger(true);
-                mbean.addWriteCursorLedgerSize(data.length);
-                callback.operationComplete();
-            } else {
-                log.warn("[{}] Error updating cursor {} position {} in meta-ledger {}: {}", ledger.getName(), name,
-                        position, lh1.getId(), BKException.getMessage(rc));
-                // If we've had a write error, the ledger will be automatically closed, we need to create a new one,
-                // in the meantime the mark-delete will be queued.
-                STATE_UPDATER.compareAndSet(ManagedCursorImpl.this, State.Open, State.NoLedger);
-
-                mbean.persistToLedger(false);
-                // Before giving up, try to persist the position in the metadata store
-                persistPositionMetaStore(-1, position, mdEntry.properties, new MetaStoreCallback<Void>() {
-                    @Override
-                    public void operationComplete(Void result, Stat stat) {
+                    if (shouldCloseLedger(lh1)) {
                         if (log.isDebugEnabled()) {
-                            log.debug(
-                                    "[{}][{}] Updated cursor in meta store after previous failure in ledger at position {}",
-                                    ledger.getName(), name, position);
+                            log.debug("[{}] Need to create new metadata ledger for consumer {}", ledger.getName(),
+                                    name);
                         }
-                        mbean.persistToZookeeper(true);
-                        callback.operationComplete();
+                        startCreatingNewMetadataLedger();
                     }
 
-                    @Override
-                    public void operationFailed(MetaStoreException e) {
-                        log.warn("[{}][{}] Failed to update cursor in meta store after previous failure in ledger: {}",
-                                ledger.getName(), name, e.getMessage());
-                        mbean.persistToZookeeper(false);
-                        callback.operationFailed(createManagedLedgerException(rc));
+                    mbean.persistToLedger(true);
+                    callback.operationComplete();
+                } else {
+                    if (!failed.compareAndSet(false, true)) {
+                        return;
                     }
-                }, true);
-            }
-        }, null);
+                    log.warn("[{}] Error updating cursor {} position {} in meta-ledger {}: {}", ledger.getName(),
+                            name, position, lh1.getId(), BKException.getMessage(rc));
+                    // If we've had a write error, the ledger will be automatically closed, we need to create a new
+                    // one, in the meantime the mark-delete will be queued.
+                    STATE_UPDATER.compareAndSet(ManagedCursorImpl.this, State.Open, State.NoLedger);
+
+                    mbean.persistToLedger(false);
+                    // Before giving up, try to persist the position in the metadata store
+                    persistPositionMetaStore(-1, position, mdEntry.properties, new MetaStoreCallback<Void>() {
+                        @Override
+                        public void operationComplete(Void result, Stat stat) {
+                            if (log.isDebugEnabled()) {
+                                log.debug("[{}][{}] Updated cursor in meta store after previous failure in ledger"
+                                        + " at position {}", ledger.getName(), name, position);
+                            }
+                            mbean.persistToZookeeper(true);
+                            callback.operationComplete();
+                        }
+
+                        @Override
+                        public void operationFailed(MetaStoreException e) {
+                            log.warn("[{}][{}] Failed to update cursor in meta store after previous failure in ledger:"
+                                    + " {}", ledger.getName(), name, e.getMessage());
+                            mbean.persistToZookeeper(false);
+                            callback.operationFailed(createManagedLedgerException(rc));
+                        }
+                    }, true);
+                }
+            }, null);
+        }
     }
 
     boolean shouldCloseLedger(LedgerHandle lh) {
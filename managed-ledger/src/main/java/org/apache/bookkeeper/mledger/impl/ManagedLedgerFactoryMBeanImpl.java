@@ -29,6 +29,7 @@ public class ManagedLedgerFactoryMBeanImpl implements ManagedLedgerFactoryMXBean
 
     final Rate cacheHits = new Rate();
     final Rate cacheMisses = new Rate();
+    final Rate cacheSpillHits = new Rate();
     final Rate cacheEvictions = new Rate();
 
     public ManagedLedgerFactoryMBeanImpl(ManagedLedgerFactoryImpl factory) throws Exception {
@@ -45,6 +46,7 @@ public class ManagedLedgerFactoryMBeanImpl implements ManagedLedgerFactoryMXBean
 
         cacheHits.calculateRate(seconds);
         cacheMisses.calculateRate(seconds);
+        cacheSpillHits.calculateRate(seconds);
         cacheEvictions.calculateRate(seconds);
     }
 
@@ -60,6 +62,14 @@ public class ManagedLedgerFactoryMBeanImpl implements ManagedLedgerFactoryMXBean
         cacheMisses.recordMultipleEvents(count, totalSize);
     }
 
+    public void recordCacheSpillHit(long size) {
+        cacheSpillHits.recordEvent(size);
+    }
+
+    public void recordCacheSpillHits(int count, long totalSize) {
+        cacheSpillHits.recordMultipleEvents(count, totalSize);
+    }
+
     public void recordCacheEviction() {
         cacheEvictions.recordEvent();
     }
@@ -99,6 +109,21 @@ public class ManagedLedgerFactoryMBeanImpl implements ManagedLedgerFactoryMXBean
         return cacheMisses.getValueRate();
     }
 
+    @Override
+    public double getCacheSpillHitsRate() {
+        return cacheSpillHits.getRate();
+    }
+
+    @Override
+    public double getCacheSpillHitsThroughput() {
+        return cacheSpillHits.getValueRate();
+    }
+
+    @Override
+    public long getCacheSpillUsedSize() {
+        return factory.getEntryCacheManager().getSpillSize();
+    }
+
     @Override
     public long getNumberOfCacheEvictions() {
         return cacheEvictions.getCount();
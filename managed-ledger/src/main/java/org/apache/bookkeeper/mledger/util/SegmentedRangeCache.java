@@ -0,0 +1,487 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.mledger.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import io.netty.util.ReferenceCounted;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.apache.bookkeeper.mledger.util.RangeCache.TimestampExtractor;
+import org.apache.bookkeeper.mledger.util.RangeCache.Weighter;
+import org.apache.commons.lang3.tuple.Pair;
+
+/**
+ * Range cache for values identified by a (ledgerId, entryId) pair.
+ *
+ * <p/>Instead of keeping every value in a single sorted map, as {@link RangeCache} does, values are stored in fixed
+ * size segments. Each segment covers a power-of-two aligned range of entry ids of a single ledger and stores the
+ * values in an array indexed by entry id. Only the segments are kept in a sorted map, so that:
+ * <ul>
+ * <li>appends, lookups and range reads do not allocate a node per value and mostly touch a single array</li>
+ * <li>concurrent writers and readers only contend on the slots of the array they access</li>
+ * <li>evicting the oldest entries or a whole ledger detaches whole segments from the map at once</li>
+ * </ul>
+ *
+ * @param <Value>
+ *            Cache value
+ */
+public class SegmentedRangeCache<Value extends ReferenceCounted> {
+
+    public static final int DEFAULT_ENTRIES_PER_SEGMENT = 1024;
+
+    // Segments sorted by ledger id and then by position in the ledger
+    private final ConcurrentNavigableMap<SegmentId, Segment<Value>> segments;
+    private final AtomicLong size; // Total size of values stored in cache
+    private final Weighter<Value> weighter; // Weighter object used to extract the size from values
+    private final TimestampExtractor<Value> timestampExtractor; // Extract the timestamp associated with a value
+    private final EvictionListener<Value> evictionListener; // Notified of the values dropped to free space
+    private final int segmentShift;
+    private final int segmentMask;
+
+    // Last segment that was written, to avoid the segments lookup when appending to the tail of a ledger
+    private volatile Segment<Value> lastSegment;
+
+    /**
+     * Construct a new SegmentedRangeCache with default Weighter.
+     */
+    public SegmentedRangeCache() {
+        this((x) -> 1, (x) -> System.nanoTime());
+    }
+
+    public SegmentedRangeCache(Weighter<Value> weighter, TimestampExtractor<Value> timestampExtractor) {
+        this(weighter, timestampExtractor, DEFAULT_ENTRIES_PER_SEGMENT);
+    }
+
+    /**
+     * Construct a new SegmentedRangeCache.
+     *
+     * @param weighter
+     *            a custom weighter to compute the size of each stored value
+     * @param timestampExtractor
+     *            extract the timestamp used to evict the values by age
+     * @param entriesPerSegment
+     *            number of entries covered by each segment, must be a power of 2
+     */
+    public SegmentedRangeCache(Weighter<Value> weighter, TimestampExtractor<Value> timestampExtractor,
+                               int entriesPerSegment) {
+        this(weighter, timestampExtractor, entriesPerSegment, null);
+    }
+
+    /**
+     * Construct a new SegmentedRangeCache.
+     *
+     * @param weighter
+     *            a custom weighter to compute the size of each stored value
+     * @param timestampExtractor
+     *            extract the timestamp used to evict the values by age
+     * @param entriesPerSegment
+     *            number of entries covered by each segment, must be a power of 2
+     * @param evictionListener
+     *            listener notified of the values evicted by size or by age, can be null
+     */
+    public SegmentedRangeCache(Weighter<Value> weighter, TimestampExtractor<Value> timestampExtractor,
+                               int entriesPerSegment, EvictionListener<Value> evictionListener) {
+        checkArgument(entriesPerSegment > 0 && Integer.bitCount(entriesPerSegment) == 1,
+                "entriesPerSegment must be a power of 2");
+        this.segments = new ConcurrentSkipListMap<>();
+        this.size = new AtomicLong(0);
+        this.weighter = weighter;
+        this.timestampExtractor = timestampExtractor;
+        this.evictionListener = evictionListener;
+        this.segmentShift = Integer.numberOfTrailingZeros(entriesPerSegment);
+        this.segmentMask = entriesPerSegment - 1;
+    }
+
+    /**
+     * Insert.
+     *
+     * @param ledgerId
+     * @param entryId
+     * @param value
+     *            ref counted value with at least 1 ref to pass on the cache
+     * @return whether the entry was inserted in the cache
+     */
+    public boolean put(long ledgerId, long entryId, Value value) {
+        checkArgument(entryId >= 0);
+        Segment<Value> segment = getOrCreateSegment(ledgerId, entryId >> segmentShift);
+        int slot = (int) (entryId & segmentMask);
+        if (!segment.values.compareAndSet(slot, null, value)) {
+            return false;
+        }
+
+        long weight = weighter.getSize(value);
+        segment.count.incrementAndGet();
+        segment.size.addAndGet(weight);
+        segment.maxTimestamp.accumulateAndGet(timestampExtractor.getTimestamp(value), Math::max);
+        size.addAndGet(weight);
+
+        if (segment.removed) {
+            // The segment was evicted while we were inserting. If the eviction didn't already take the value, take it
+            // back, otherwise the eviction has released it and accounted for its size
+            if (segment.values.compareAndSet(slot, value, null)) {
+                segment.count.decrementAndGet();
+                segment.size.addAndGet(-weight);
+                size.addAndGet(-weight);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public Value get(long ledgerId, long entryId) {
+        if (entryId < 0) {
+            return null;
+        }
+        Segment<Value> segment = getSegment(ledgerId, entryId >> segmentShift);
+        if (segment == null) {
+            return null;
+        }
+        return retain(segment.values.get((int) (entryId & segmentMask)));
+    }
+
+    /**
+     *
+     * @param ledgerId
+     *            the ledger of the range
+     * @param firstEntryId
+     *            the first entry in the range
+     * @param lastEntryId
+     *            the last entry in the range (inclusive)
+     * @return a collections of the value found in cache, sorted by entry id
+     */
+    public Collection<Value> getRange(long ledgerId, long firstEntryId, long lastEntryId) {
+        firstEntryId = Math.max(firstEntryId, 0);
+        if (lastEntryId < firstEntryId) {
+            return new ArrayList<>(0);
+        }
+        List<Value> values = new ArrayList<>((int) Math.min(lastEntryId - firstEntryId + 1, segmentMask + 1));
+
+        for (Segment<Value> segment : segments.subMap(new SegmentId(ledgerId, firstEntryId >> segmentShift), true,
+                new SegmentId(ledgerId, lastEntryId >> segmentShift), true).values()) {
+            long segmentFirstEntryId = segment.id.index << segmentShift;
+            int fromSlot = (int) Math.max(firstEntryId - segmentFirstEntryId, 0);
+            int toSlot = (int) Math.min(lastEntryId - segmentFirstEntryId, segmentMask);
+            for (int slot = fromSlot; slot <= toSlot; slot++) {
+                Value value = retain(segment.values.get(slot));
+                if (value != null) {
+                    values.add(value);
+                }
+            }
+        }
+
+        return values;
+    }
+
+    /**
+     * Remove all the values from (firstLedgerId, firstEntryId) up to (lastLedgerId, lastEntryId).
+     *
+     * @param firstLedgerId
+     * @param firstEntryId
+     * @param lastLedgerId
+     * @param lastEntryId
+     * @param lastInclusive
+     * @return an pair of ints, containing the number of removed entries and the total size
+     */
+    public Pair<Integer, Long> removeRange(long firstLedgerId, long firstEntryId, long lastLedgerId, long lastEntryId,
+                                          boolean lastInclusive) {
+        SegmentId firstSegmentId = new SegmentId(firstLedgerId, firstEntryId >> segmentShift);
+        SegmentId lastSegmentId = new SegmentId(lastLedgerId, lastEntryId >> segmentShift);
+        if (firstSegmentId.compareTo(lastSegmentId) > 0) {
+            return Pair.of(0, 0L);
+        }
+
+        RemovedValues<Value> removed = new RemovedValues<>();
+        for (Segment<Value> segment : segments.subMap(firstSegmentId, true, lastSegmentId, true).values()) {
+            int fromSlot = segment.id.equals(firstSegmentId) ? (int) (firstEntryId & segmentMask) : 0;
+            int toSlot = segment.id.equals(lastSegmentId) ? (int) (lastEntryId & segmentMask) : segmentMask;
+            if (segment.id.equals(lastSegmentId) && !lastInclusive) {
+                --toSlot;
+            }
+
+            if (fromSlot == 0 && toSlot == segmentMask) {
+                dropSegment(segment, removed);
+            } else {
+                for (int slot = fromSlot; slot <= toSlot; slot++) {
+                    removeSlot(segment, slot, removed);
+                }
+                dropSegmentIfEmpty(segment, removed);
+            }
+        }
+
+        size.addAndGet(-removed.size);
+        return Pair.of(removed.entries, removed.size);
+    }
+
+    /**
+     *
+     * @param minSize
+     * @return a pair containing the number of entries evicted and their total size
+     */
+    public Pair<Integer, Long> evictLeastAccessedEntries(long minSize) {
+        checkArgument(minSize > 0);
+
+        RemovedValues<Value> removed = new RemovedValues<>(evictionListener);
+        while (removed.size < minSize) {
+            Map.Entry<SegmentId, Segment<Value>> entry = segments.firstEntry();
+            if (entry == null) {
+                break;
+            }
+
+            Segment<Value> segment = entry.getValue();
+            if (segment.size.get() <= minSize - removed.size) {
+                // The whole segment needs to go
+                dropSegment(segment, removed);
+                continue;
+            }
+
+            for (int slot = 0; slot <= segmentMask && removed.size < minSize; slot++) {
+                removeSlot(segment, slot, removed);
+            }
+            dropSegmentIfEmpty(segment, removed);
+        }
+
+        size.addAndGet(-removed.size);
+        return Pair.of(removed.entries, removed.size);
+    }
+
+    /**
+     *
+     * @param maxTimestamp the max timestamp of the entries to be evicted
+     * @return the total size of the evicted entries
+     */
+    public long evictLEntriesBeforeTimestamp(long maxTimestamp) {
+        RemovedValues<Value> removed = new RemovedValues<>(evictionListener);
+
+        while (true) {
+            Map.Entry<SegmentId, Segment<Value>> entry = segments.firstEntry();
+            if (entry == null) {
+                break;
+            }
+
+            Segment<Value> segment = entry.getValue();
+            if (segment.maxTimestamp.get() <= maxTimestamp) {
+                dropSegment(segment, removed);
+                continue;
+            }
+
+            // Only part of the segment is old enough, evict in order up to the first newer entry
+            for (int slot = 0; slot <= segmentMask; slot++) {
+                Value value = segment.values.get(slot);
+                if (value == null) {
+                    continue;
+                }
+                if (timestampExtractor.getTimestamp(value) > maxTimestamp) {
+                    break;
+                }
+                removeSlot(segment, slot, removed);
+            }
+            dropSegmentIfEmpty(segment, removed);
+            break;
+        }
+
+        size.addAndGet(-removed.size);
+        return removed.size;
+    }
+
+    /**
+     * Just for testing. Getting the number of entries requires to go through all the segments.
+     */
+    protected long getNumberOfEntries() {
+        long entries = 0;
+        for (Segment<Value> segment : segments.values()) {
+            entries += segment.count.get();
+        }
+        return entries;
+    }
+
+    /**
+     * Just for testing.
+     */
+    protected int getNumberOfSegments() {
+        return segments.size();
+    }
+
+    public long getSize() {
+        return size.get();
+    }
+
+    /**
+     * Remove all the entries from the cache.
+     *
+     * @return size of removed entries
+     */
+    public synchronized long clear() {
+        RemovedValues<Value> removed = new RemovedValues<>();
+
+        while (true) {
+            Map.Entry<SegmentId, Segment<Value>> entry = segments.firstEntry();
+            if (entry == null) {
+                break;
+            }
+            dropSegment(entry.getValue(), removed);
+        }
+
+        size.addAndGet(-removed.size);
+        return removed.size;
+    }
+
+    private Segment<Value> getSegment(long ledgerId, long index) {
+        Segment<Value> segment = lastSegment;
+        if (segment != null && segment.id.ledgerId == ledgerId && segment.id.index == index && !segment.removed) {
+            return segment;
+        }
+        return segments.get(new SegmentId(ledgerId, index));
+    }
+
+    private Segment<Value> getOrCreateSegment(long ledgerId, long index) {
+        Segment<Value> segment = getSegment(ledgerId, index);
+        if (segment == null) {
+            segment = segments.computeIfAbsent(new SegmentId(ledgerId, index),
+                    id -> new Segment<>(id, segmentMask + 1));
+        }
+        lastSegment = segment;
+        return segment;
+    }
+
+    private void removeSlot(Segment<Value> segment, int slot, RemovedValues<Value> removed) {
+        Value value = segment.values.getAndSet(slot, null);
+        if (value != null) {
+            long weight = weighter.getSize(value);
+            segment.count.decrementAndGet();
+            segment.size.addAndGet(-weight);
+            removed.add(value, weight);
+        }
+    }
+
+    private void dropSegmentIfEmpty(Segment<Value> segment, RemovedValues<Value> removed) {
+        if (segment.count.get() == 0) {
+            dropSegment(segment, removed);
+        }
+    }
+
+    private void dropSegment(Segment<Value> segment, RemovedValues<Value> removed) {
+        // Detach the segment first, so that new values are not added to it anymore, then release what is left in it
+        if (!segments.remove(segment.id, segment)) {
+            return;
+        }
+        segment.removed = true;
+        for (int slot = 0; slot <= segmentMask; slot++) {
+            removeSlot(segment, slot, removed);
+        }
+    }
+
+    private Value retain(Value value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            value.retain();
+            return value;
+        } catch (Throwable t) {
+            // Value was already destroyed between get() and retain()
+            return null;
+        }
+    }
+
+    private static class RemovedValues<Value extends ReferenceCounted> {
+        private final EvictionListener<Value> listener;
+        int entries = 0;
+        long size = 0;
+
+        RemovedValues() {
+            this(null);
+        }
+
+        RemovedValues(EvictionListener<Value> listener) {
+            this.listener = listener;
+        }
+
+        void add(Value value, long weight) {
+            ++entries;
+            size += weight;
+            if (listener != null) {
+                listener.onEvicted(value);
+            }
+            value.release();
+        }
+    }
+
+    /**
+     * Interface of a object that gets notified of the values that are evicted from the cache, before they are
+     * released.
+     *
+     * @param <ValueT>
+     */
+    public interface EvictionListener<ValueT> {
+        void onEvicted(ValueT value);
+    }
+
+    private static final class SegmentId implements Comparable<SegmentId> {
+        private final long ledgerId;
+        // Index of the segment in the ledger, the segment covers the entries starting at index * entriesPerSegment
+        private final long index;
+
+        SegmentId(long ledgerId, long index) {
+            this.ledgerId = ledgerId;
+            this.index = index;
+        }
+
+        @Override
+        public int compareTo(SegmentId other) {
+            int res = Long.compare(ledgerId, other.ledgerId);
+            return res != 0 ? res : Long.compare(index, other.index);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj instanceof SegmentId) {
+                SegmentId other = (SegmentId) obj;
+                return ledgerId == other.ledgerId && index == other.index;
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(ledgerId) * 31 + Long.hashCode(index);
+        }
+    }
+
+    private static final class Segment<Value> {
+        private final SegmentId id;
+        private final AtomicReferenceArray<Value> values;
+        private final AtomicInteger count = new AtomicInteger();
+        private final AtomicLong size = new AtomicLong();
+        private final AtomicLong maxTimestamp = new AtomicLong(Long.MIN_VALUE);
+        private volatile boolean removed = false;
+
+        Segment(SegmentId id, int capacity) {
+            this.id = id;
+            this.values = new AtomicReferenceArray<>(capacity);
+        }
+    }
+}
@@ -0,0 +1,242 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.mledger.impl;
+
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.client.api.ReadHandle;
+import org.apache.bookkeeper.mledger.AsyncCallbacks.ReadEntriesCallback;
+import org.apache.bookkeeper.mledger.Entry;
+import org.apache.bookkeeper.mledger.ManagedLedgerException;
+import org.apache.bookkeeper.mledger.ManagedLedgerFactoryConfig;
+import org.apache.bookkeeper.test.MockedBookKeeperTestCase;
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.Test;
+
+public class EntryCacheSpillFileTest extends MockedBookKeeperTestCase {
+
+    private File spillDirectory;
+
+    @Override
+    protected void setUpTestCase() throws Exception {
+        spillDirectory = Files.createTempDirectory("entry-cache-spill-test").toFile();
+    }
+
+    @Override
+    protected void cleanUpTestCase() throws Exception {
+        FileUtils.deleteDirectory(spillDirectory);
+    }
+
+    @Test
+    public void simple() throws Exception {
+        EntryCacheSpillFile spillFile = new EntryCacheSpillFile(new File(spillDirectory, "simple"), 1024);
+
+        assertTrue(spillFile.put(EntryImpl.create(0, 0, "entry-0".getBytes())));
+        assertTrue(spillFile.put(EntryImpl.create(0, 1, "entry-1".getBytes())));
+        assertTrue(spillFile.put(EntryImpl.create(1, 0, "entry-2".getBytes())));
+        // Already spilled
+        assertFalse(spillFile.put(EntryImpl.create(0, 1, "entry-1".getBytes())));
+        // Larger than the file
+        assertFalse(spillFile.put(EntryImpl.create(1, 1, new byte[1024])));
+        assertEquals(spillFile.getNumberOfEntries(), 3);
+
+        assertEquals(readString(spillFile, 0, 0), "entry-0");
+        assertEquals(readString(spillFile, 0, 1), "entry-1");
+        assertEquals(readString(spillFile, 1, 0), "entry-2");
+        assertNull(spillFile.get(1, 1));
+
+        spillFile.clear();
+        assertEquals(spillFile.getNumberOfEntries(), 0);
+        assertNull(spillFile.get(0, 0));
+
+        assertTrue(spillFile.put(EntryImpl.create(0, 0, "entry-0".getBytes())));
+        assertEquals(readString(spillFile, 0, 0), "entry-0");
+
+        spillFile.close();
+        assertNull(spillFile.get(0, 0));
+        assertFalse(spillFile.put(EntryImpl.create(0, 2, "entry-3".getBytes())));
+        assertFalse(new File(spillDirectory, "simple").exists());
+    }
+
+    @Test
+    public void overwriteOldestEntries() throws Exception {
+        // Room for 3 records of 20 bytes header + 12 bytes payload, plus some padding
+        EntryCacheSpillFile spillFile = new EntryCacheSpillFile(new File(spillDirectory, "overwrite"), 100);
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(spillFile.put(EntryImpl.create(0, i, String.format("entry-%05d", i).getBytes())));
+
+            // The last 3 entries are always available
+            assertEquals(spillFile.getNumberOfEntries(), Math.min(i + 1, 3));
+            for (int j = 0; j <= i; j++) {
+                if (j > i - 3) {
+                    assertEquals(readString(spillFile, 0, j), String.format("entry-%05d", j));
+                } else {
+                    assertNull(spillFile.get(0, j));
+                }
+            }
+        }
+
+        // Variable sizes records, with padding at the end of the file
+        for (int i = 10; i < 20; i++) {
+            byte[] data = new byte[i % 3 == 0 ? 50 : 5];
+            data[0] = (byte) i;
+            assertTrue(spillFile.put(EntryImpl.create(0, i, data)));
+
+            EntryImpl entry = spillFile.get(0, i);
+            assertNotNull(entry);
+            assertEquals(entry.getLength(), data.length);
+            assertEquals(entry.getData()[0], (byte) i);
+            entry.release();
+        }
+
+        spillFile.close();
+    }
+
+    @Test
+    public void readEvictedEntriesFromSpillFile() throws Exception {
+        ManagedLedgerFactoryConfig config = new ManagedLedgerFactoryConfig();
+        config.setCacheSpillDirectory(spillDirectory.getAbsolutePath());
+        config.setCacheSpillFileSize(1024 * 1024);
+        ManagedLedgerFactoryImpl factory = new ManagedLedgerFactoryImpl(metadataStore, bkc, config);
+
+        ManagedLedgerImpl ml = mock(ManagedLedgerImpl.class);
+        when(ml.getName()).thenReturn("spill");
+        when(ml.getExecutor()).thenReturn(executor);
+        when(ml.getMBean()).thenReturn(new ManagedLedgerMBeanImpl(ml));
+
+        ReadHandle lh = EntryCacheTest.getLedgerHandle();
+        when(lh.getId()).thenReturn((long) 0);
+
+        try {
+            EntryCacheManager cacheManager = factory.getEntryCacheManager();
+            EntryCache entryCache = cacheManager.getEntryCache(ml);
+
+            byte[] data = new byte[10];
+            for (int i = 0; i < 10; i++) {
+                entryCache.insert(EntryImpl.create(0, i, data));
+            }
+
+            // Evict half the entries from memory, they are moved to the spill file
+            entryCache.evictEntries(50);
+            assertEquals(entryCache.getSize(), 50);
+            assertEquals(cacheManager.getSpillFile("spill").getNumberOfEntries(), 5);
+
+            // Entries are served from memory and from the spill file
+            CompletableFuture<List<Entry>> future = new CompletableFuture<>();
+            entryCache.asyncReadEntry(lh, 0, 9, false, new ReadEntriesCallback() {
+                public void readEntriesComplete(List<Entry> entries, Object ctx) {
+                    future.complete(entries);
+                }
+
+                public void readEntriesFailed(ManagedLedgerException exception, Object ctx) {
+                    future.completeExceptionally(exception);
+                }
+            }, null);
+            List<Entry> entries = future.get();
+            assertEquals(entries.size(), 10);
+            for (int i = 0; i < 10; i++) {
+                assertEquals(entries.get(i).getEntryId(), i);
+                entries.get(i).release();
+            }
+
+            // Verify no entries were read from bookkeeper
+            verify(lh, never()).readAsync(anyLong(), anyLong());
+
+            // The entries read from the spill file are not counted as cache hits
+            cacheManager.mlFactoryMBean.refreshStats(1, TimeUnit.SECONDS);
+            assertEquals(cacheManager.mlFactoryMBean.getCacheHitsRate(), 5.0);
+            assertEquals(cacheManager.mlFactoryMBean.getCacheSpillHitsRate(), 5.0);
+            assertEquals(cacheManager.mlFactoryMBean.getCacheSpillHitsThroughput(), 50.0);
+            assertEquals(cacheManager.mlFactoryMBean.getCacheSpillUsedSize(), 1024 * 1024);
+
+            cacheManager.removeEntryCache("spill");
+            assertNull(cacheManager.getSpillFile("spill"));
+            assertEquals(spillDirectory.list().length, 0);
+        } finally {
+            factory.shutdown();
+        }
+    }
+
+    @Test
+    public void maxSpillSize() throws Exception {
+        ManagedLedgerFactoryConfig config = new ManagedLedgerFactoryConfig();
+        config.setCacheSpillDirectory(spillDirectory.getAbsolutePath());
+        config.setCacheSpillFileSize(1024 * 1024);
+        config.setCacheSpillMaxSize(2 * 1024 * 1024);
+        ManagedLedgerFactoryImpl factory = new ManagedLedgerFactoryImpl(metadataStore, bkc, config);
+
+        try {
+            EntryCacheManager cacheManager = factory.getEntryCacheManager();
+            EntryCache cache1 = cacheManager.getEntryCache(mockManagedLedger("ml-1"));
+            EntryCache cache2 = cacheManager.getEntryCache(mockManagedLedger("ml-2"));
+            EntryCache cache3 = cacheManager.getEntryCache(mockManagedLedger("ml-3"));
+            assertNotNull(cacheManager.getOrCreateSpillFile(cache1));
+            assertNotNull(cacheManager.getOrCreateSpillFile(cache2));
+            // The spill files of all the managed ledgers together can't go over the max spill size
+            assertNull(cacheManager.getOrCreateSpillFile(cache3));
+            assertEquals(cacheManager.getSpillSize(), 2 * 1024 * 1024);
+            assertEquals(spillDirectory.list().length, 2);
+
+            // Removing a managed ledger cache releases its share of the spill size
+            cacheManager.removeEntryCache("ml-1");
+            assertNotNull(cacheManager.getOrCreateSpillFile(cache3));
+            assertEquals(cacheManager.getSpillSize(), 2 * 1024 * 1024);
+
+            // An eviction running after the cache was removed doesn't create a new spill file
+            cacheManager.removeEntryCache("ml-2");
+            assertNull(cacheManager.getOrCreateSpillFile(cache2));
+            assertNull(cacheManager.getSpillFile("ml-2"));
+            assertEquals(cacheManager.getSpillSize(), 1024 * 1024);
+            assertEquals(spillDirectory.list().length, 1);
+        } finally {
+            factory.shutdown();
+        }
+    }
+
+    private static ManagedLedgerImpl mockManagedLedger(String name) {
+        ManagedLedgerImpl ml = mock(ManagedLedgerImpl.class);
+        when(ml.getName()).thenReturn(name);
+        return ml;
+    }
+
+    private static String readString(EntryCacheSpillFile spillFile, long ledgerId, long entryId) {
+        EntryImpl entry = spillFile.get(ledgerId, entryId);
+        assertNotNull(entry);
+        try {
+            return new String(entry.getData());
+        } finally {
+            entry.release();
+        }
+    }
+}
@@ -32,6 +32,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import org.apache.bookkeeper.mledger.AsyncCallbacks;
 import org.apache.bookkeeper.mledger.AsyncCallbacks.ClearBacklogCallback;
 import org.apache.bookkeeper.mledger.AsyncCallbacks.DeleteCallback;
@@ -76,6 +77,11 @@ public class ManagedCursorContainerTest {
             return false;
         }
 
+        @Override
+        public CompletableFuture<Void> asyncPersistProperties() {
+            return CompletableFuture.completedFuture(null);
+        }
+
         @Override
         public boolean isDurable() {
             return true;
@@ -201,6 +207,10 @@ public class ManagedCursorContainerTest {
         public void asyncDelete(Iterable<Position> position, DeleteCallback callback, Object ctx) {
         }
 
+        @Override
+        public void asyncDeleteRanges(List<Range<PositionImpl>> ranges, DeleteCallback callback, Object ctx) {
+        }
+
         @Override
         public void clearBacklog() throws InterruptedException, ManagedLedgerException {
         }
@@ -66,6 +66,7 @@ import org.apache.bookkeeper.client.BKException;
 import org.apache.bookkeeper.client.BookKeeper;
 import org.apache.bookkeeper.client.BookKeeper.DigestType;
 import org.apache.bookkeeper.client.LedgerEntry;
+import org.apache.bookkeeper.client.LedgerHandle;
 import org.apache.bookkeeper.mledger.AsyncCallbacks;
 import org.apache.bookkeeper.mledger.AsyncCallbacks.AddEntryCallback;
 import org.apache.bookkeeper.mledger.AsyncCallbacks.DeleteCallback;
@@ -91,6 +92,7 @@ import org.apache.pulsar.metadata.impl.FaultInjectionMetadataStore;
 import org.apache.pulsar.metadata.api.MetadataStoreException;
 import org.apache.pulsar.metadata.api.Stat;
 import org.apache.pulsar.common.api.proto.IntRange;
+import org.apache.pulsar.common.util.collections.CompressedLongPairRangeSet;
 import org.awaitility.Awaitility;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
@@ -1361,6 +1363,101 @@ public class ManagedCursorTest extends MockedBookKeeperTestCase {
         }
     }
 
+    @Test(timeOut = 20000)
+    void testDeleteRanges() throws Exception {
+        ManagedLedger ledger = factory.open("my_test_ledger", new ManagedLedgerConfig().setMaxEntriesPerLedger(10));
+        ManagedCursor cursor = ledger.openCursor("c1");
+        Position p0 = cursor.getMarkDeletedPosition();
+
+        List<PositionImpl> positions = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            positions.add((PositionImpl) ledger.addEntry(("entry" + i).getBytes()));
+        }
+
+        cursor.delete(positions.get(4));
+        assertEquals(cursor.getNumberOfEntriesInBacklog(false), 9);
+
+        // The range covers an entry already deleted
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        cursor.asyncDeleteRanges(Collections.singletonList(Range.closed(positions.get(2), positions.get(6))),
+                new DeleteCallback() {
+                    @Override
+                    public void deleteComplete(Object ctx) {
+                        future.complete(null);
+                    }
+
+                    @Override
+                    public void deleteFailed(ManagedLedgerException exception, Object ctx) {
+                        future.completeExceptionally(exception);
+                    }
+                }, null);
+        future.get();
+        assertEquals(cursor.getNumberOfEntriesInBacklog(false), 5);
+        assertEquals(cursor.getMarkDeletedPosition(), p0);
+        assertEquals(((ManagedCursorImpl) cursor).getIndividuallyDeletedMessagesSet().size(), 1);
+
+        // The range starts before the mark-delete position
+        CompletableFuture<Void> future2 = new CompletableFuture<>();
+        cursor.delete(Lists.newArrayList(positions.get(0), positions.get(1)));
+        cursor.asyncDeleteRanges(Collections.singletonList(Range.closed(positions.get(0), positions.get(8))),
+                new DeleteCallback() {
+                    @Override
+                    public void deleteComplete(Object ctx) {
+                        future2.complete(null);
+                    }
+
+                    @Override
+                    public void deleteFailed(ManagedLedgerException exception, Object ctx) {
+                        future2.completeExceptionally(exception);
+                    }
+                }, null);
+        future2.get();
+        assertEquals(cursor.getNumberOfEntriesInBacklog(false), 1);
+        assertEquals(cursor.getMarkDeletedPosition(), positions.get(8));
+    }
+
+    @Test(timeOut = 20000)
+    void testIndividualDeletesWithCompressedRangeSet() throws Exception {
+        ManagedLedgerConfig config = new ManagedLedgerConfig().setUnackedRangesCompressedSetEnabled(true)
+                .setMaxEntriesPerLedger(10);
+        ManagedLedger ledger = factory.open("my_test_ledger", config);
+        ManagedCursorImpl cursor = (ManagedCursorImpl) ledger.openCursor("c1");
+        assertTrue(cursor.getIndividuallyDeletedMessagesSet() instanceof CompressedLongPairRangeSet);
+
+        List<Position> positions = Lists.newArrayList();
+        for (int i = 0; i < 30; i++) {
+            positions.add(ledger.addEntry(("entry-" + i).getBytes(Encoding)));
+        }
+
+        Position p0 = cursor.getMarkDeletedPosition();
+        // Delete every other entry, across the 3 ledgers
+        for (int i = 1; i < 30; i += 2) {
+            cursor.delete(positions.get(i));
+        }
+        assertEquals(cursor.getMarkDeletedPosition(), p0);
+        assertEquals(cursor.getNumberOfEntries(), 15);
+        assertEquals(cursor.getTotalNonContiguousDeletedMessagesRange(), 15);
+        assertTrue(cursor.isMessageDeleted(positions.get(11)));
+        assertFalse(cursor.isMessageDeleted(positions.get(12)));
+
+        cursor.delete(positions.get(0));
+        cursor.delete(positions.get(2));
+        assertEquals(cursor.getMarkDeletedPosition(), positions.get(3));
+        assertEquals(cursor.getTotalNonContiguousDeletedMessagesRange(), 13);
+        ledger.close();
+
+        // Reopen, the individually deleted messages are recovered
+        @Cleanup("shutdown")
+        ManagedLedgerFactory factory2 = new ManagedLedgerFactoryImpl(metadataStore, bkc);
+        ledger = factory2.open("my_test_ledger", config);
+        cursor = (ManagedCursorImpl) ledger.openCursor("c1");
+        assertEquals(cursor.getMarkDeletedPosition(), positions.get(3));
+        assertEquals(cursor.getNumberOfEntries(), 13);
+        assertEquals(cursor.getTotalNonContiguousDeletedMessagesRange(), 13);
+        assertTrue(cursor.isMessageDeleted(positions.get(29)));
+        assertFalse(cursor.isMessageDeleted(positions.get(28)));
+    }
+
     @Test(timeOut = 20000)
     void testFilteringReadEntries() throws Exception {
         ManagedLedger ledger = factory.open("my_test_ledger", new ManagedLedgerConfig().setMaxEntriesPerLedger(3));
@@ -2879,6 +2976,107 @@ public class ManagedCursorTest extends MockedBookKeeperTestCase {
         assertEquals(entries.size(), totalAddEntries / 2);
     }
 
+    /**
+     * Verifies that with the incremental persistence, all the individually deleted ranges are recovered after a crash,
+     * even when there are more than MaxUnackedRangesToPersist.
+     *
+     * @throws Exception
+     */
+    @Test(timeOut = 20000)
+    public void testOutOfOrderDeletePersistenceWithDeltas() throws Exception {
+        final int totalAddEntries = 100;
+        ManagedLedgerConfig managedLedgerConfig = new ManagedLedgerConfig()
+                .setUnackedRangesDeltaPersistenceEnabled(true)
+                .setUnackedRangesSnapshotInterval(5)
+                .setMaxUnackedRangesToPersist(10);
+        managedLedgerConfig.setMaxUnackedRangesToPersistInZk(5);
+        ManagedLedger ledger = factory.open("my_test_ledger", managedLedgerConfig);
+        ManagedCursorImpl c1 = (ManagedCursorImpl) ledger.openCursor("c1");
+
+        List<Position> addedPositions = new ArrayList<>();
+        for (int i = 0; i < totalAddEntries; i++) {
+            addedPositions.add(ledger.addEntry(("dummy-entry-" + i).getBytes(Encoding)));
+        }
+        // Acknowledge alternative message to create totalEntries/2 holes
+        for (int i = 0; i < totalAddEntries; i += 2) {
+            c1.delete(addedPositions.get(i));
+        }
+        assertEquals(c1.getNumberOfEntriesInBacklog(false), totalAddEntries / 2);
+
+        // The last entry of the cursor ledger only has the ranges added since the last snapshot
+        LedgerHandle lh = bkc.openLedgerNoRecovery(c1.getCursorLedger(), DigestType.CRC32C, "".getBytes());
+        PositionInfo positionInfo = PositionInfo.parseFrom(
+                lh.readEntries(lh.getLastAddConfirmed(), lh.getLastAddConfirmed()).nextElement().getEntry());
+        assertTrue(positionInfo.hasSnapshotEntries());
+        assertTrue(positionInfo.getIndividualDeletedMessagesCount() <= 10);
+
+        // Re-Open without closing the cursor
+        @Cleanup("shutdown")
+        ManagedLedgerFactory factory2 = new ManagedLedgerFactoryImpl(metadataStore, bkc);
+        ledger = factory2.open("my_test_ledger", managedLedgerConfig);
+        c1 = (ManagedCursorImpl) ledger.openCursor("c1");
+        assertEquals(c1.getNumberOfEntriesInBacklog(false), totalAddEntries / 2);
+        assertEquals(c1.getTotalNonContiguousDeletedMessagesRange(), totalAddEntries / 2 - 1);
+
+        List<Entry> entries = c1.readEntries(totalAddEntries);
+        assertEquals(entries.size(), totalAddEntries / 2);
+        for (int i = 0; i < entries.size(); i++) {
+            assertEquals(new String(entries.get(i).getDataAndRelease(), Encoding), "dummy-entry-" + (2 * i + 1));
+        }
+
+        // Reset the cursor, the individually deleted messages are cleared
+        c1.resetCursor(addedPositions.get(totalAddEntries / 2));
+        c1.delete(addedPositions.get(totalAddEntries - 2));
+        assertEquals(c1.getTotalNonContiguousDeletedMessagesRange(), 1);
+
+        @Cleanup("shutdown")
+        ManagedLedgerFactory factory3 = new ManagedLedgerFactoryImpl(metadataStore, bkc);
+        ledger = factory3.open("my_test_ledger", managedLedgerConfig);
+        c1 = (ManagedCursorImpl) ledger.openCursor("c1");
+        assertEquals(c1.getTotalNonContiguousDeletedMessagesRange(), 1);
+        assertEquals(c1.getNumberOfEntriesInBacklog(false), totalAddEntries / 2 - 1);
+    }
+
+    /**
+     * Verifies that a cursor ledger whose last entry is an incomplete snapshot is recovered from the entry before it,
+     * even when that entry was written before the incremental persistence was enabled.
+     *
+     * @throws Exception
+     */
+    @Test(timeOut = 20000)
+    public void testIncompleteSnapshotAfterFullPositionInfo() throws Exception {
+        final int totalAddEntries = 10;
+        ManagedLedger ledger = factory.open("my_test_ledger", new ManagedLedgerConfig());
+        ManagedCursorImpl c1 = (ManagedCursorImpl) ledger.openCursor("c1");
+
+        List<Position> addedPositions = new ArrayList<>();
+        for (int i = 0; i < totalAddEntries; i++) {
+            addedPositions.add(ledger.addEntry(("dummy-entry-" + i).getBytes(Encoding)));
+        }
+        for (int i = 0; i < totalAddEntries; i += 2) {
+            c1.delete(addedPositions.get(i));
+        }
+
+        // Append the first entry of a snapshot that was never completed
+        Field field = ManagedCursorImpl.class.getDeclaredField("cursorLedger");
+        field.setAccessible(true);
+        LedgerHandle cursorLedger = (LedgerHandle) field.get(c1);
+        PositionImpl markDeletePosition = (PositionImpl) c1.getMarkDeletedPosition();
+        cursorLedger.addEntry(PositionInfo.newBuilder()
+                .setLedgerId(markDeletePosition.getLedgerId())
+                .setEntryId(markDeletePosition.getEntryId())
+                .setSnapshotDistance(0)
+                .setSnapshotEntries(2).build().toByteArray());
+
+        // Re-Open without closing the cursor
+        @Cleanup("shutdown")
+        ManagedLedgerFactory factory2 = new ManagedLedgerFactoryImpl(metadataStore, bkc);
+        ledger = factory2.open("my_test_ledger", new ManagedLedgerConfig());
+        c1 = (ManagedCursorImpl) ledger.openCursor("c1");
+        assertEquals(c1.getNumberOfEntriesInBacklog(false), totalAddEntries / 2);
+        assertEquals(c1.getTotalNonContiguousDeletedMessagesRange(), totalAddEntries / 2 - 1);
+    }
+
     /**
      * Close Cursor without MaxUnackedRangesToPersistInZK: It should store individually unack range into Zk
      *
@@ -0,0 +1,317 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.mledger.util;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import com.google.common.collect.Lists;
+import io.netty.util.AbstractReferenceCounted;
+import io.netty.util.ReferenceCounted;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.commons.lang3.tuple.Pair;
+import org.testng.annotations.Test;
+
+public class SegmentedRangeCacheTest {
+
+    static class RefString extends AbstractReferenceCounted implements ReferenceCounted {
+        final String s;
+
+        RefString(String s) {
+            super();
+            this.s = s;
+            setRefCnt(1);
+        }
+
+        @Override
+        protected void deallocate() {
+            // no-op
+        }
+
+        @Override
+        public ReferenceCounted touch(Object hint) {
+            return this;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj instanceof RefString) {
+                return this.s.equals(((RefString) obj).s);
+            } else if (obj instanceof String) {
+                return this.s.equals((String) obj);
+            }
+
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return s.hashCode();
+        }
+    }
+
+    @Test
+    public void simple() {
+        SegmentedRangeCache<RefString> cache = new SegmentedRangeCache<>(value -> 1, x -> 0, 4);
+
+        cache.put(1, 0, new RefString("0"));
+        cache.put(1, 1, new RefString("1"));
+
+        assertEquals(cache.getSize(), 2);
+        assertEquals(cache.getNumberOfEntries(), 2);
+
+        RefString s = cache.get(1, 0);
+        assertEquals(s.s, "0");
+        assertEquals(s.refCnt(), 2);
+        s.release();
+
+        assertNull(cache.get(1, 2));
+        assertNull(cache.get(2, 0));
+        assertNull(cache.get(1, -1));
+
+        cache.put(1, 2, new RefString("2"));
+        cache.put(1, 8, new RefString("8"));
+        cache.put(1, 11, new RefString("11"));
+
+        assertEquals(cache.getSize(), 5);
+        assertEquals(cache.getNumberOfEntries(), 5);
+        assertEquals(cache.getNumberOfSegments(), 2);
+
+        cache.removeRange(1, 1, 1, 5, true);
+        assertEquals(cache.getSize(), 3);
+        assertEquals(cache.getNumberOfEntries(), 3);
+
+        cache.removeRange(1, 2, 1, 8, false);
+        assertEquals(cache.getSize(), 3);
+        assertEquals(cache.getNumberOfEntries(), 3);
+
+        cache.removeRange(1, 0, 1, 100, false);
+        assertEquals(cache.getSize(), 0);
+        assertEquals(cache.getNumberOfEntries(), 0);
+        assertEquals(cache.getNumberOfSegments(), 0);
+
+        cache.removeRange(1, 0, 1, 100, false);
+        assertEquals(cache.getSize(), 0);
+        assertEquals(cache.getNumberOfEntries(), 0);
+    }
+
+    @Test
+    public void invalidSegmentSize() {
+        try {
+            new SegmentedRangeCache<RefString>(value -> 1, x -> 0, 3);
+            fail("should throw exception");
+        } catch (IllegalArgumentException e) {
+            // ok
+        }
+    }
+
+    @Test
+    public void doubleInsert() {
+        SegmentedRangeCache<RefString> cache = new SegmentedRangeCache<>();
+
+        RefString s0 = new RefString("zero");
+        assertTrue(cache.put(0, 0, s0));
+        assertEquals(s0.refCnt(), 1);
+
+        cache.put(0, 1, new RefString("one"));
+        assertEquals(cache.getSize(), 2);
+
+        RefString s1 = new RefString("uno");
+        assertFalse(cache.put(0, 1, s1));
+        assertEquals(s1.refCnt(), 1);
+        s1.release();
+
+        // Should not have been overridden in cache
+        assertEquals(cache.getSize(), 2);
+        assertEquals(cache.getNumberOfEntries(), 2);
+        assertEquals(cache.get(0, 1).s, "one");
+    }
+
+    @Test
+    public void getRange() {
+        SegmentedRangeCache<RefString> cache = new SegmentedRangeCache<>(value -> 1, x -> 0, 2);
+
+        cache.put(1, 0, new RefString("0"));
+        cache.put(1, 1, new RefString("1"));
+        cache.put(1, 3, new RefString("3"));
+        cache.put(1, 5, new RefString("5"));
+        cache.put(2, 2, new RefString("other-ledger"));
+
+        assertEquals(cache.getRange(1, 1, 8),
+                Lists.newArrayList(new RefString("1"), new RefString("3"), new RefString("5")));
+
+        cache.put(1, 8, new RefString("8"));
+        assertEquals(cache.getRange(1, 1, 8),
+                Lists.newArrayList(new RefString("1"), new RefString("3"), new RefString("5"), new RefString("8")));
+        assertEquals(cache.getRange(1, 4, 4), Lists.newArrayList());
+        assertEquals(cache.getRange(1, 8, 1), Lists.newArrayList());
+        assertEquals(cache.getRange(2, 0, 100), Lists.newArrayList(new RefString("other-ledger")));
+
+        cache.clear();
+        assertEquals(cache.getSize(), 0);
+        assertEquals(cache.getNumberOfEntries(), 0);
+        assertEquals(cache.getNumberOfSegments(), 0);
+    }
+
+    @Test
+    public void removeRangeAcrossLedgers() {
+        SegmentedRangeCache<RefString> cache = new SegmentedRangeCache<>(value -> 1, x -> 0, 4);
+        List<RefString> values = new ArrayList<>();
+        for (long ledgerId = 1; ledgerId <= 3; ledgerId++) {
+            for (long entryId = 0; entryId < 10; entryId++) {
+                RefString value = new RefString(ledgerId + ":" + entryId);
+                values.add(value);
+                cache.put(ledgerId, entryId, value);
+            }
+        }
+        assertEquals(cache.getSize(), 30);
+
+        // Same range used to invalidate entries up to a position, non inclusive
+        assertEquals(cache.removeRange(-1, 0, 2, 5, false), Pair.of(15, 15L));
+        assertEquals(cache.getSize(), 15);
+        assertNull(cache.get(2, 4));
+        assertEquals(cache.get(2, 5).s, "2:5");
+
+        // Same range used to invalidate all the entries of a ledger
+        assertEquals(cache.removeRange(3, 0, 4, 0, false), Pair.of(10, 10L));
+        assertEquals(cache.getSize(), 5);
+        assertEquals(cache.getNumberOfEntries(), 5);
+
+        cache.clear();
+        // All the values have been released by the cache, except for the refs taken by get() in this test
+        values.forEach(value -> assertTrue(value.refCnt() <= 1));
+        assertEquals(values.stream().filter(value -> value.refCnt() == 1).count(), 1);
+    }
+
+    @Test
+    public void eviction() {
+        SegmentedRangeCache<RefString> cache = new SegmentedRangeCache<>(value -> value.s.length(), x -> 0, 2);
+
+        cache.put(0, 0, new RefString("zero"));
+        cache.put(0, 1, new RefString("one"));
+        cache.put(0, 2, new RefString("two"));
+        cache.put(0, 3, new RefString("three"));
+
+        // This should remove the oldest entries: 0, 1 whose combined size is 7
+        assertEquals(cache.evictLeastAccessedEntries(5), Pair.of(2, (long) 7));
+
+        assertEquals(cache.getNumberOfEntries(), 2);
+        assertEquals(cache.getSize(), 8);
+        assertNull(cache.get(0, 0));
+        assertNull(cache.get(0, 1));
+        assertEquals(cache.get(0, 2).s, "two");
+        assertEquals(cache.get(0, 3).s, "three");
+
+        assertEquals(cache.evictLeastAccessedEntries(100), Pair.of(2, (long) 8));
+        assertEquals(cache.getNumberOfEntries(), 0);
+        assertEquals(cache.getSize(), 0);
+
+        try {
+            cache.evictLeastAccessedEntries(0);
+            fail("should throw exception");
+        } catch (IllegalArgumentException e) {
+            // ok
+        }
+    }
+
+    @Test
+    public void evictions() {
+        SegmentedRangeCache<RefString> cache = new SegmentedRangeCache<>(value -> 1, x -> 0, 16);
+
+        for (int i = 0; i < 100; i++) {
+            cache.put(0, i, new RefString(Integer.toString(i)));
+        }
+
+        assertEquals(cache.getSize(), 100);
+        Pair<Integer, Long> res = cache.evictLeastAccessedEntries(1);
+        assertEquals((int) res.getLeft(), 1);
+        assertEquals((long) res.getRight(), 1);
+        assertEquals(cache.getSize(), 99);
+
+        res = cache.evictLeastAccessedEntries(40);
+        assertEquals((int) res.getLeft(), 40);
+        assertEquals((long) res.getRight(), 40);
+        assertEquals(cache.getSize(), 59);
+        assertNull(cache.get(0, 40));
+        assertEquals(cache.get(0, 41).s, "41");
+
+        res = cache.evictLeastAccessedEntries(100);
+        assertEquals((int) res.getLeft(), 59);
+        assertEquals((long) res.getRight(), 59);
+        assertEquals(cache.getSize(), 0);
+        assertEquals(cache.getNumberOfSegments(), 0);
+    }
+
+    @Test
+    public void customTimeExtraction() {
+        SegmentedRangeCache<RefString> cache =
+                new SegmentedRangeCache<>(value -> value.s.length(), x -> x.s.length(), 2);
+
+        cache.put(0, 1, new RefString("1"));
+        cache.put(0, 2, new RefString("22"));
+        cache.put(0, 3, new RefString("333"));
+        cache.put(0, 4, new RefString("4444"));
+
+        assertEquals(cache.getSize(), 10);
+        assertEquals(cache.getNumberOfEntries(), 4);
+
+        long evictedSize = cache.evictLEntriesBeforeTimestamp(3);
+        assertEquals(evictedSize, 6);
+
+        assertEquals(cache.getSize(), 4);
+        assertEquals(cache.getNumberOfEntries(), 1);
+    }
+
+    @Test
+    public void concurrentInsertAndEviction() throws Exception {
+        SegmentedRangeCache<RefString> cache = new SegmentedRangeCache<>(value -> 1, x -> 0, 8);
+        List<RefString> inserted = new ArrayList<>();
+        AtomicBoolean done = new AtomicBoolean();
+        CountDownLatch evictorDone = new CountDownLatch(1);
+
+        Thread evictor = new Thread(() -> {
+            while (!done.get()) {
+                cache.evictLeastAccessedEntries(10);
+            }
+            evictorDone.countDown();
+        });
+        evictor.start();
+
+        for (int i = 0; i < 100_000; i++) {
+            RefString value = new RefString(Integer.toString(i));
+            if (cache.put(0, i, value)) {
+                inserted.add(value);
+            } else {
+                value.release();
+            }
+        }
+        done.set(true);
+        evictorDone.await();
+        cache.clear();
+
+        assertEquals(cache.getSize(), 0);
+        inserted.forEach(value -> assertEquals(value.refCnt(), 0));
+    }
+}
@@ -0,0 +1,168 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.mledger.impl;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.bookkeeper.client.PulsarMockBookKeeper;
+import org.apache.bookkeeper.client.api.ReadHandle;
+import org.apache.bookkeeper.common.util.OrderedScheduler;
+import org.apache.bookkeeper.mledger.AsyncCallbacks.ReadEntriesCallback;
+import org.apache.bookkeeper.mledger.Entry;
+import org.apache.bookkeeper.mledger.ManagedLedgerException;
+import org.apache.bookkeeper.mledger.ManagedLedgerFactoryConfig;
+import org.apache.pulsar.metadata.api.MetadataStore;
+import org.apache.pulsar.metadata.api.MetadataStoreConfig;
+import org.apache.pulsar.metadata.api.MetadataStoreFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmark {@link EntryCacheImpl#insert(EntryImpl)} and cache-hit reads through
+ * {@link EntryCacheImpl#asyncReadEntry(ReadHandle, long, long, boolean, ReadEntriesCallback, Object)}.
+ *
+ * <p/>Bookies are replaced by {@link PulsarMockBookKeeper}, the read benchmark only touches ranges that are fully
+ * cached so that it measures the cache itself.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class EntryCacheBenchmark {
+
+    private static final long LEDGER_ID = 1;
+
+    @Param({"100000"})
+    private int cachedEntries;
+
+    @Param({"100"})
+    private int readBatchSize;
+
+    @Param({"1024"})
+    private int entrySize;
+
+    private OrderedScheduler executor;
+    private MetadataStore metadataStore;
+    private PulsarMockBookKeeper bookKeeper;
+    private ManagedLedgerFactoryImpl factory;
+    private EntryCache entryCache;
+    private ReadHandle readHandle;
+    private byte[] data;
+    private final AtomicLong nextEntryId = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        executor = OrderedScheduler.newSchedulerBuilder().numThreads(2).name("microbench").build();
+        metadataStore = MetadataStoreFactory.create("memory://local", MetadataStoreConfig.builder().build());
+        bookKeeper = new PulsarMockBookKeeper(executor);
+
+        ManagedLedgerFactoryConfig config = new ManagedLedgerFactoryConfig();
+        // Leave enough room to never trigger the eviction while reading
+        config.setMaxCacheSize(4L * cachedEntries * entrySize);
+        factory = new ManagedLedgerFactoryImpl(metadataStore, bookKeeper, config);
+
+        ManagedLedgerImpl ml = mock(ManagedLedgerImpl.class);
+        when(ml.getName()).thenReturn("microbench");
+        when(ml.getExecutor()).thenReturn(executor);
+        when(ml.getMBean()).thenReturn(new ManagedLedgerMBeanImpl(ml));
+        entryCache = factory.getEntryCacheManager().getEntryCache(ml);
+
+        readHandle = mock(ReadHandle.class);
+        when(readHandle.getId()).thenReturn(LEDGER_ID);
+
+        data = new byte[entrySize];
+        for (int i = 0; i < cachedEntries; i++) {
+            insertNext();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() throws Exception {
+        entryCache.clear();
+        factory.shutdown();
+        bookKeeper.close();
+        metadataStore.close();
+        executor.shutdownNow();
+    }
+
+    private boolean insertNext() {
+        EntryImpl entry = EntryImpl.create(LEDGER_ID, nextEntryId.getAndIncrement(), data);
+        try {
+            return entryCache.insert(entry);
+        } finally {
+            entry.release();
+        }
+    }
+
+    /**
+     * Insert at the tail, trimming the head of the cache in the same way the broker does once all the cursors have
+     * moved past the entries.
+     */
+    @Benchmark
+    @Threads(1)
+    public boolean insert() {
+        boolean inserted = insertNext();
+        long entryId = nextEntryId.get();
+        if (entryId > cachedEntries) {
+            entryCache.invalidateEntries(PositionImpl.get(LEDGER_ID, entryId - cachedEntries));
+        }
+        return inserted;
+    }
+
+    /**
+     * Read a batch of entries just behind the tail, as tailing subscriptions do.
+     */
+    @Benchmark
+    @Threads(4)
+    public void getRange(Blackhole bh) {
+        long lastEntry = nextEntryId.get() - 1;
+        long firstEntry = lastEntry - readBatchSize + 1;
+        entryCache.asyncReadEntry(readHandle, firstEntry, lastEntry, false, new ReadEntriesCallback() {
+            @Override
+            public void readEntriesComplete(List<Entry> entries, Object ctx) {
+                bh.consume(entries.size());
+                entries.forEach(Entry::release);
+            }
+
+            @Override
+            public void readEntriesFailed(ManagedLedgerException exception, Object ctx) {
+                bh.consume(exception);
+            }
+        }, null);
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.mledger.util;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.mledger.impl.EntryImpl;
+import org.apache.bookkeeper.mledger.impl.PositionImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmark the {@link RangeCache} operations used by the managed-ledger entry cache: tailing inserts followed by
+ * eviction and range reads close to the tail.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class RangeCacheBenchmark {
+
+    private static final long LEDGER_ID = 1;
+
+    @Param({"10000", "100000"})
+    private int cachedEntries;
+
+    @Param({"100"})
+    private int readBatchSize;
+
+    @Param({"1024"})
+    private int entrySize;
+
+    private RangeCache<PositionImpl, EntryImpl> cache;
+    private ByteBuf payload;
+    private long nextEntryId;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        cache = new RangeCache<>(EntryImpl::getLength, EntryImpl::getTimestamp);
+        payload = Unpooled.directBuffer(entrySize).writerIndex(entrySize);
+        for (nextEntryId = 0; nextEntryId < cachedEntries; nextEntryId++) {
+            cache.put(PositionImpl.get(LEDGER_ID, nextEntryId), EntryImpl.create(LEDGER_ID, nextEntryId, payload));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        cache.clear();
+        payload.release();
+    }
+
+    /**
+     * Simulates a topic where the producer appends at the tail and the cache keeps a bounded size by evicting the
+     * oldest entries.
+     */
+    @Benchmark
+    @Threads(1)
+    public boolean insertAndEvict() {
+        long entryId = nextEntryId++;
+        boolean inserted = cache.put(PositionImpl.get(LEDGER_ID, entryId),
+                EntryImpl.create(LEDGER_ID, entryId, payload));
+        if (cache.getSize() > (long) cachedEntries * entrySize) {
+            cache.evictLeastAccessedEntries(entrySize);
+        }
+        return inserted;
+    }
+
+    /**
+     * Simulates tailing subscriptions reading a batch of entries just before the last inserted one.
+     */
+    @Benchmark
+    @Threads(4)
+    public void getRange(Blackhole bh) {
+        long last = nextEntryId - 1;
+        long first = Math.max(0, last - readBatchSize + 1);
+        Collection<EntryImpl> entries = cache.getRange(PositionImpl.get(LEDGER_ID, first),
+                PositionImpl.get(LEDGER_ID, last));
+        for (EntryImpl entry : entries) {
+            bh.consume(entry.getLength());
+            entry.release();
+        }
+    }
+}
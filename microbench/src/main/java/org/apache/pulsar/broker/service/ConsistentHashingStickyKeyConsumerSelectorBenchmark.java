@@ -0,0 +1,84 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.service;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.apache.pulsar.common.util.Murmur3_32Hash;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark {@link ConsistentHashingStickyKeyConsumerSelector}, which is invoked for every entry dispatched on a
+ * Key_Shared subscription.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class ConsistentHashingStickyKeyConsumerSelectorBenchmark {
+
+    private static final int KEYS = 1 << 16;
+
+    @Param({"10", "100"})
+    private int consumers;
+
+    @Param({"100"})
+    private int numberOfPoints;
+
+    private ConsistentHashingStickyKeyConsumerSelector selector;
+    private int[] keyHashes;
+
+    @Setup
+    public void setup() throws Exception {
+        selector = new ConsistentHashingStickyKeyConsumerSelector(numberOfPoints);
+        for (int i = 0; i < consumers; i++) {
+            Consumer consumer = mock(Consumer.class);
+            when(consumer.consumerName()).thenReturn("consumer-" + i);
+            selector.addConsumer(consumer);
+        }
+
+        keyHashes = new int[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            keyHashes[i] = Murmur3_32Hash.getInstance().makeHash(("key-" + i).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Consumer select() {
+        return selector.select(keyHashes[ThreadLocalRandom.current().nextInt(KEYS)]);
+    }
+}
@@ -0,0 +1,140 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.client.impl;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.apache.pulsar.client.api.MessageId;
+import org.apache.pulsar.client.api.Schema;
+import org.apache.pulsar.client.impl.ProducerImpl.OpSendMsg;
+import org.apache.pulsar.client.impl.conf.ProducerConfigurationData;
+import org.apache.pulsar.common.api.proto.MessageMetadata;
+import org.apache.pulsar.common.protocol.Commands;
+import org.apache.pulsar.common.protocol.Commands.ChecksumType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark building a batch with {@link BatchMessageContainerImpl}: adding the messages and serializing them into
+ * the send command. The producer is mocked, so no connection is involved.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class BatchMessageContainerBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int messagesPerBatch;
+
+    @Param({"128", "1024"})
+    private int messageSize;
+
+    private BatchMessageContainerImpl container;
+    private ByteBuffer payload;
+    private MessageMetadata metadata;
+    private long sequenceId;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() throws Exception {
+        ProducerConfigurationData conf = new ProducerConfigurationData();
+        conf.setBatchingMaxMessages(messagesPerBatch);
+        conf.setBatchingMaxBytes(messagesPerBatch * messageSize);
+
+        ProducerImpl<byte[]> producer = mock(ProducerImpl.class);
+        when(producer.getTopic()).thenReturn("persistent://public/default/microbench");
+        when(producer.getProducerName()).thenReturn("microbench-producer");
+        when(producer.getConfiguration()).thenReturn(conf);
+        when(producer.encryptMessage(any(), any())).thenAnswer(invocation -> invocation.getArgument(1));
+        when(producer.sendMessage(anyLong(), anyLong(), anyLong(), anyInt(), any(), any()))
+                .thenAnswer(invocation -> Commands.newSend(invocation.getArgument(0), invocation.getArgument(1),
+                        invocation.getArgument(2), invocation.getArgument(3), ChecksumType.Crc32c,
+                        invocation.getArgument(4), invocation.getArgument(5)));
+
+        container = new BatchMessageContainerImpl();
+        container.setProducer(producer);
+
+        payload = ByteBuffer.allocate(messageSize);
+        metadata = new MessageMetadata()
+                .setProducerName("microbench-producer")
+                .setPublishTime(System.currentTimeMillis());
+    }
+
+    @Benchmark
+    public int addAndCreateOpSendMsg() throws Exception {
+        for (int i = 0; i < messagesPerBatch; i++) {
+            metadata.setSequenceId(sequenceId++);
+            MessageImpl<byte[]> msg = MessageImpl.create(metadata, payload.duplicate(), Schema.BYTES);
+            container.add(msg, NoOpSendCallback.INSTANCE);
+        }
+
+        OpSendMsg op = container.createOpSendMsg();
+        int size = op.cmd.readableBytes();
+        op.cmd.release();
+        op.recycle();
+        container.clear();
+        return size;
+    }
+
+    private static class NoOpSendCallback implements SendCallback {
+        static final NoOpSendCallback INSTANCE = new NoOpSendCallback();
+
+        @Override
+        public void sendComplete(Exception e) {
+        }
+
+        @Override
+        public void addCallback(MessageImpl<?> msg, SendCallback scb) {
+        }
+
+        @Override
+        public SendCallback getNextSendCallback() {
+            return null;
+        }
+
+        @Override
+        public MessageImpl<?> getNextMessage() {
+            return null;
+        }
+
+        @Override
+        public CompletableFuture<MessageId> getFuture() {
+            return null;
+        }
+    }
+}
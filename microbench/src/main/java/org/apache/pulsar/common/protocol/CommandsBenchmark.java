@@ -0,0 +1,85 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.common.protocol;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.util.concurrent.TimeUnit;
+import org.apache.pulsar.common.api.proto.MessageMetadata;
+import org.apache.pulsar.common.protocol.Commands.ChecksumType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark {@link Commands#serializeMetadataAndPayload(ChecksumType, MessageMetadata, ByteBuf)}, used on the broker
+ * for every message published through the replicator and for compaction, and on the client for non-batched sends.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class CommandsBenchmark {
+
+    @Param({"128", "1024", "65536"})
+    private int payloadSize;
+
+    @Param({"Crc32c", "None"})
+    private ChecksumType checksumType;
+
+    private MessageMetadata metadata;
+    private ByteBuf payload;
+
+    @Setup
+    public void setup() {
+        metadata = new MessageMetadata()
+                .setProducerName("microbench-producer")
+                .setSequenceId(1)
+                .setPublishTime(System.currentTimeMillis())
+                .setPartitionKey("key-1");
+        metadata.addProperty().setKey("property").setValue("value");
+        payload = Unpooled.directBuffer(payloadSize).writerIndex(payloadSize);
+    }
+
+    @TearDown
+    public void teardown() {
+        payload.release();
+    }
+
+    @Benchmark
+    public int serializeMetadataAndPayload() {
+        // The payload is consumed by the serialization
+        payload.readerIndex(0);
+        ByteBuf serialized = Commands.serializeMetadataAndPayload(checksumType, metadata, payload);
+        int size = serialized.readableBytes();
+        serialized.release();
+        return size;
+    }
+}
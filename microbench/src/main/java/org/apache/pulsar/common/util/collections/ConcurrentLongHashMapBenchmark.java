@@ -0,0 +1,83 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.common.util.collections;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark {@link ConcurrentLongHashMap}, used by the broker and the client to look up producers, consumers and
+ * pending requests by id.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(4)
+public class ConcurrentLongHashMapBenchmark {
+
+    private static final Object VALUE = new Object();
+
+    @Param({"1000", "1000000"})
+    private int keys;
+
+    @Param({"16"})
+    private int concurrencyLevel;
+
+    private ConcurrentLongHashMap<Object> map;
+
+    @Setup
+    public void setup() {
+        map = new ConcurrentLongHashMap<>(keys, concurrencyLevel);
+        for (long key = 0; key < keys; key++) {
+            map.put(key, VALUE);
+        }
+    }
+
+    @Benchmark
+    public Object get() {
+        return map.get(ThreadLocalRandom.current().nextInt(keys));
+    }
+
+    /**
+     * Mixed workload of lookups and replacements, similar to request ids being added and completed.
+     */
+    @Benchmark
+    public Object getAndUpdate() {
+        long key = ThreadLocalRandom.current().nextInt(keys);
+        if (map.remove(key) != null) {
+            return map.put(key, VALUE);
+        }
+        return map.get(key);
+    }
+}
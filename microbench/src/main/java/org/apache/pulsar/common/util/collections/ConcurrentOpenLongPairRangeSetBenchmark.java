@@ -0,0 +1,101 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.common.util.collections;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.apache.pulsar.common.util.collections.LongPairRangeSet.LongPair;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmark {@link ConcurrentOpenLongPairRangeSet} with the ack pattern of a shared subscription: individual acks
+ * spread randomly over a window of unacknowledged entries.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class ConcurrentOpenLongPairRangeSetBenchmark {
+
+    private static final LongPairRangeSet.LongPairConsumer<LongPair> CONSUMER = LongPair::new;
+
+    @Param({"10000", "1000000"})
+    private int unackedWindow;
+
+    @Param({"10"})
+    private int ledgers;
+
+    private ConcurrentOpenLongPairRangeSet<LongPair> set;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        set = new ConcurrentOpenLongPairRangeSet<>(4096, CONSUMER);
+        // Pre-populate with one ack every other entry, the worst case for the number of ranges
+        long entriesPerLedger = unackedWindow / ledgers;
+        for (long ledgerId = 0; ledgerId < ledgers; ledgerId++) {
+            for (long entryId = 0; entryId < entriesPerLedger; entryId += 2) {
+                set.addOpenClosed(ledgerId, entryId - 1, ledgerId, entryId);
+            }
+        }
+    }
+
+    @Benchmark
+    public void randomAck() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long ledgerId = random.nextInt(ledgers);
+        long entryId = random.nextInt(unackedWindow / ledgers);
+        set.addOpenClosed(ledgerId, entryId - 1, ledgerId, entryId);
+    }
+
+    @Benchmark
+    public boolean contains() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return set.contains(random.nextInt(ledgers), random.nextInt(unackedWindow / ledgers));
+    }
+
+    @Benchmark
+    public int size() {
+        return set.size();
+    }
+
+    /**
+     * Walk all the ranges, as done when persisting the individually deleted messages of a cursor.
+     */
+    @Benchmark
+    public void forEachRange(Blackhole bh) {
+        set.forEach(range -> {
+            bh.consume(range);
+            return true;
+        });
+    }
+}
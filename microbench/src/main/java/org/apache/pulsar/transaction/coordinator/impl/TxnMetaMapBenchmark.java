@@ -0,0 +1,116 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.transaction.coordinator.impl;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.mledger.Position;
+import org.apache.commons.lang3.tuple.MutablePair;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.pulsar.transaction.coordinator.TxnMeta;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark {@link TxnMetaMap}, which keeps the open transactions of a transaction coordinator, against the skip list
+ * it replaces.
+ *
+ * <p>Each lifecycle opens a transaction, looks it up, ends the transaction opened {@code openTransactions} before it
+ * and reads the low water mark, so that the number of open transactions stays constant.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(4)
+public class TxnMetaMapBenchmark {
+
+    private static final Pair<TxnMeta, List<Position>> TXN = MutablePair.of(null, Collections.emptyList());
+
+    @Param({"10000", "1000000"})
+    private int openTransactions;
+
+    private TxnMetaMap txnMetaMap;
+    private ConcurrentSkipListMap<Long, Pair<TxnMeta, List<Position>>> skipListMap;
+
+    private long txnMetaMapSequenceId;
+    private long skipListSequenceId;
+
+    @Setup
+    public void setup() {
+        txnMetaMap = new TxnMetaMap(openTransactions, 16);
+        skipListMap = new ConcurrentSkipListMap<>();
+        for (long sequenceId = 0; sequenceId < openTransactions; sequenceId++) {
+            txnMetaMap.put(sequenceId, TXN);
+            skipListMap.put(sequenceId, TXN);
+        }
+        txnMetaMapSequenceId = openTransactions;
+        skipListSequenceId = openTransactions;
+    }
+
+    @Benchmark
+    public long txnMetaMapLifecycle() {
+        long sequenceId;
+        // the transactions are opened one at a time, as in the coordinator
+        synchronized (this) {
+            sequenceId = txnMetaMapSequenceId++;
+            txnMetaMap.put(sequenceId, TXN);
+        }
+        txnMetaMap.get(sequenceId);
+        txnMetaMap.remove(sequenceId - openTransactions);
+        return txnMetaMap.getLowWaterMark();
+    }
+
+    @Benchmark
+    public long skipListLifecycle() {
+        long sequenceId;
+        synchronized (this) {
+            sequenceId = skipListSequenceId++;
+            skipListMap.put(sequenceId, TXN);
+        }
+        skipListMap.get(sequenceId);
+        skipListMap.remove(sequenceId - openTransactions);
+        return skipListMap.firstKey() - 1;
+    }
+
+    @Benchmark
+    public Object txnMetaMapGet() {
+        return txnMetaMap.get(ThreadLocalRandom.current().nextInt(openTransactions));
+    }
+
+    @Benchmark
+    public Object skipListGet() {
+        return skipListMap.get((long) ThreadLocalRandom.current().nextInt(openTransactions));
+    }
+}
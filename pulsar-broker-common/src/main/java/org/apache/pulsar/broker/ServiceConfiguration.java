@@ -33,6 +33,7 @@ import lombok.Getter;
 import lombok.Setter;
 import org.apache.bookkeeper.client.api.DigestType;
 import org.apache.pulsar.broker.authorization.PulsarAuthorizationProvider;
+import org.apache.pulsar.client.api.IoTransport;
 import org.apache.pulsar.common.configuration.Category;
 import org.apache.pulsar.common.configuration.FieldContext;
 import org.apache.pulsar.common.configuration.PulsarConfiguration;
@@ -185,6 +186,21 @@ public class ServiceConfiguration implements PulsarConfiguration {
     )
     private int numIOThreads = 2 * Runtime.getRuntime().availableProcessors();
 
+    @FieldContext(
+        category = CATEGORY_SERVER,
+        doc = "Enable the consolidation of the flushes of client connections. When enabled, the flushes requested"
+            + " while reading from a connection are deferred to the end of the read, and the other flushes are"
+            + " grouped in a single task of the IO thread, so that a flush carries many small commands"
+    )
+    private boolean connectionFlushConsolidationEnabled = false;
+
+    @FieldContext(
+        category = CATEGORY_SERVER,
+        doc = "Maximum number of consolidated flushes after which a connection is flushed right away,"
+            + " when connectionFlushConsolidationEnabled is set"
+    )
+    private int connectionFlushConsolidationMaxFlushes = 256;
+
     @FieldContext(
         category = CATEGORY_SERVER,
         doc = "Number of threads to use for orderedExecutor."
@@ -230,6 +246,15 @@ public class ServiceConfiguration implements PulsarConfiguration {
     )
     private boolean enableBusyWait = false;
 
+    @FieldContext(
+            category = CATEGORY_SERVER,
+            doc = "The network transport of the IO threads: AUTO, NIO, EPOLL or IO_URING. AUTO uses epoll when it "
+                    + "is available and NIO otherwise. IO_URING requires the netty io_uring incubator library in "
+                    + "the classpath and a Linux kernel 5.9 or later, and falls back to AUTO when they are missing. "
+                    + "With IO_URING, the bookkeeper client and the internal pulsar client keep using AUTO."
+    )
+    private IoTransport ioTransport = IoTransport.AUTO;
+
     @FieldContext(category = CATEGORY_SERVER, doc = "Max concurrent web requests")
     private int maxConcurrentHttpRequests = 1024;
 
@@ -243,6 +268,15 @@ public class ServiceConfiguration implements PulsarConfiguration {
             + " affecting the accuracy of the delivery time compared to the scheduled time. Default is 1 second.")
     private long delayedDeliveryTickTimeMillis = 1000;
 
+    @FieldContext(category = CATEGORY_SERVER, doc = "The minimum number of delayed messages indexed in a bucket "
+            + "before it is sealed and persisted, when using the BucketDelayedDeliveryTrackerFactory.")
+    private long delayedDeliveryMinIndexCountPerBucket = 50000;
+
+    @FieldContext(category = CATEGORY_SERVER, doc = "The maximum number of delayed messages in each segment of a "
+            + "bucket snapshot. A segment is the unit that is loaded in memory when its messages are close to "
+            + "their delivery time, when using the BucketDelayedDeliveryTrackerFactory.")
+    private int delayedDeliveryMaxIndexesPerBucketSnapshotSegment = 5000;
+
     @FieldContext(category = CATEGORY_SERVER, doc = "Whether to enable the acknowledge of batch local index")
     private boolean acknowledgmentAtBatchIndexLevelEnabled = false;
 
@@ -292,6 +326,24 @@ public class ServiceConfiguration implements PulsarConfiguration {
             doc = "ZooKeeper cache expiry time in seconds"
         )
     private int zooKeeperCacheExpirySeconds = 300;
+    @FieldContext(
+            category = CATEGORY_SERVER,
+            doc = "Whether the concurrent writes to the metadata store are grouped into batches"
+                    + " sent as a single ZooKeeper multi request. A write is sent right away when no batch is"
+                    + " in flight, and the writes issued meanwhile are sent together once it completes"
+        )
+    private boolean metadataStoreBatchingEnabled = false;
+    @FieldContext(
+            category = CATEGORY_SERVER,
+            minValue = 1,
+            doc = "Max number of operations in a batch of writes to the metadata store"
+        )
+    private int metadataStoreBatchingMaxOperations = 1000;
+    @FieldContext(
+            category = CATEGORY_SERVER,
+            doc = "Max size in KB of the paths and values of a batch of writes to the metadata store"
+        )
+    private int metadataStoreBatchingMaxSizeKb = 128;
     @FieldContext(
         category = CATEGORY_SERVER,
         dynamic = true,
@@ -471,6 +523,15 @@ public class ServiceConfiguration implements PulsarConfiguration {
     )
     private boolean subscriptionKeySharedEnable = true;
 
+    @FieldContext(
+        category = CATEGORY_POLICIES,
+        dynamic = true,
+        doc = "Allow consumers to declare a message filter on their subscription (default is disabled). The filter is"
+                + " set by the first consumer declaring it and persisted with the topic, the messages that do not"
+                + " match it are acknowledged for the whole subscription"
+    )
+    private boolean subscriptionMessageFilterEnabled = false;
+
     @FieldContext(category = CATEGORY_POLICIES,
             doc = "On KeyShared subscriptions, with default AUTO_SPLIT mode, use splitting ranges or " +
             "consistent hashing to reassign keys to new consumers")
@@ -579,6 +640,13 @@ public class ServiceConfiguration implements PulsarConfiguration {
             + " reaches to `maxUnackedMessagesPerConsumer/2`. Using a value of 0, it is disabling "
             + " unackedMessage-limit check and consumer can receive messages without any restriction")
     private int maxUnackedMessagesPerConsumer = 50000;
+
+    @FieldContext(
+        category = CATEGORY_POLICIES,
+        doc = "Max number of entries covered by a single range of an individual ack. The acks with a larger range are"
+            + " rejected. Using a value of 0 disables the check")
+    private int maxEntriesPerAckRange = 100000;
+
     @FieldContext(
         category = CATEGORY_POLICIES,
         doc = "Max number of unacknowledged messages allowed per shared subscription. \n\n"
@@ -766,6 +834,15 @@ public class ServiceConfiguration implements PulsarConfiguration {
     )
     private int dispatcherMinReadBatchSize = 1;
 
+    @FieldContext(
+        category = CATEGORY_SERVER,
+        doc = "Whether to write the entries dispatched to a consumer as a single composite buffer. The command "
+            + "headers of all the messages are serialized into one buffer and the cached entry buffers are "
+            + "attached without copying, so each batch goes through the channel pipeline only once. "
+            + "It only applies to connections without TLS and when no broker interceptor is configured."
+    )
+    private boolean dispatcherZeroCopyEnabled = false;
+
     @FieldContext(
         dynamic = true,
         category = CATEGORY_SERVER,
@@ -1454,6 +1531,21 @@ public class ServiceConfiguration implements PulsarConfiguration {
     @FieldContext(category = CATEGORY_STORAGE_ML,
             doc = "All entries that have stayed in cache for more than the configured time, will be evicted")
     private long managedLedgerCacheEvictionTimeThresholdMillis = 1000;
+    @FieldContext(category = CATEGORY_STORAGE_ML,
+            doc = "Directory where the entries evicted from the managed ledger cache are spilled, in a memory-mapped"
+                    + " file per managed ledger, so that catch-up reads can be served locally instead of reading from"
+                    + " the bookies. The directory should be on a local disk dedicated to this broker."
+                    + " If not set (default), the evicted entries are discarded")
+    private String managedLedgerCacheSpillDirectory = null;
+    @FieldContext(category = CATEGORY_STORAGE_ML,
+            doc = "Size of the spill file of each managed ledger, when managedLedgerCacheSpillDirectory is set."
+                    + " Once full, the oldest entries get overwritten")
+    private int managedLedgerCacheSpillFileSizeMB = 64;
+    @FieldContext(category = CATEGORY_STORAGE_ML,
+            doc = "Maximum size of all the spill files of the broker, when managedLedgerCacheSpillDirectory is set."
+                    + " Once reached, the entries evicted from the cache of the managed ledgers that don't have a"
+                    + " spill file yet are discarded")
+    private int managedLedgerCacheSpillMaxSizeMB = 1024;
     @FieldContext(category = CATEGORY_STORAGE_ML,
             doc = "Configure the threshold (in number of entries) from where a cursor should be considered 'backlogged'"
                     + " and thus should be set as inactive.")
@@ -1561,11 +1653,31 @@ public class ServiceConfiguration implements PulsarConfiguration {
             + "If number of unack message range is higher than this limit then broker will persist"
             + " unacked ranges into bookkeeper to avoid additional data overhead into zookeeper.")
     private int managedLedgerMaxUnackedRangesToPersistInZooKeeper = 1000;
+    @FieldContext(
+        category = CATEGORY_STORAGE_ML,
+        doc = "Persist the unacked message ranges incrementally into the cursor ledger.\n\n"
+            + "The broker periodically writes a snapshot of all the ranges, split over several entries of"
+            + " managedLedgerMaxUnackedRangesToPersist ranges, and on each mark-delete only the ranges added since"
+            + " the snapshot. It reduces the size of the cursor ledger writes and allows to recover more than"
+            + " managedLedgerMaxUnackedRangesToPersist ranges")
+    private boolean managedLedgerUnackedRangesDeltaPersistenceEnabled = false;
+    @FieldContext(
+        category = CATEGORY_STORAGE_ML,
+        doc = "Max number of incremental updates of the unacked message ranges between two snapshots, when"
+            + " managedLedgerUnackedRangesDeltaPersistenceEnabled is set")
+    private int managedLedgerUnackedRangesSnapshotInterval = 100;
     @FieldContext(
             category = CATEGORY_STORAGE_OFFLOADING,
             doc = "Use Open Range-Set to cache unacked messages (it is memory efficient but it can take more cpu)"
         )
     private boolean managedLedgerUnackedRangesOpenCacheSetEnabled = true;
+    @FieldContext(
+            category = CATEGORY_STORAGE_ML,
+            doc = "Use a compressed Range-Set, storing the unacked ranges of each ledger either as primitive runs or as"
+                + " a bitmap, whichever is smaller. It bounds the memory used by the cursors with many random"
+                + " acknowledgments. It takes precedence over managedLedgerUnackedRangesOpenCacheSetEnabled"
+        )
+    private boolean managedLedgerUnackedRangesCompressedSetEnabled = false;
     @FieldContext(
         dynamic = true,
         category = CATEGORY_STORAGE_ML,
@@ -1927,6 +2039,22 @@ public class ServiceConfiguration implements PulsarConfiguration {
     )
     private long brokerServiceCompactionPhaseOneLoopTimeInSeconds = 30;
 
+    @FieldContext(
+            category = CATEGORY_SERVER,
+            doc = "Maximum number of keys the compaction phase one keeps in memory. When a topic holds more "
+                    + "distinct keys, they are hash-partitioned across several phase one passes and the ids of "
+                    + "the latest message of each key are spilled to local disk.\n"
+                    + "Using a value of 0, keeps every key in memory in a single pass."
+    )
+    private long brokerServiceCompactionPhaseOneMaxKeysInMemory = 0;
+
+    @FieldContext(
+            category = CATEGORY_SERVER,
+            doc = "Number of entries the compaction phase one reads ahead and decodes concurrently. "
+                    + "This is also the number of threads of the compaction executor."
+    )
+    private int brokerServiceCompactionPhaseOneParallelism = 1;
+
     @FieldContext(
         category = CATEGORY_SCHEMA,
         doc = "Enforce schema validation on following cases:\n\n"
@@ -2139,6 +2267,62 @@ public class ServiceConfiguration implements PulsarConfiguration {
     )
     private int transactionBufferSnapshotMinTimeInMillis = 5000;
 
+    @FieldContext(
+            category = CATEGORY_TRANSACTION,
+            doc = "Number of aborted transactions of a topic sealed together in a segment of the transaction buffer"
+                    + " index. Sealed segments are persisted once, instead of with every transaction buffer snapshot"
+    )
+    private int transactionBufferAbortedTxnSegmentSize = 10000;
+
+    @FieldContext(
+            category = CATEGORY_TRANSACTION,
+            doc = "Whether the transaction coordinators group the concurrent writes of their transaction log into"
+                    + " batched entries"
+    )
+    private boolean transactionLogBatchedWriteEnabled = false;
+
+    @FieldContext(
+            category = CATEGORY_TRANSACTION,
+            doc = "Max number of records in a batched entry of the transaction log"
+    )
+    private int transactionLogBatchedWriteMaxRecords = 512;
+
+    @FieldContext(
+            category = CATEGORY_TRANSACTION,
+            doc = "Max size in bytes of a batched entry of the transaction log"
+    )
+    private int transactionLogBatchedWriteMaxSize = 1024 * 1024 * 4;
+
+    @FieldContext(
+            category = CATEGORY_TRANSACTION,
+            doc = "Max time in milliseconds a record of the transaction log waits for its batch to be written"
+    )
+    private int transactionLogBatchedWriteMaxDelayInMillis = 1;
+
+    @FieldContext(
+            category = CATEGORY_TRANSACTION,
+            doc = "Whether the pending ack stores group the concurrent writes of their log into batched entries"
+    )
+    private boolean transactionPendingAckBatchedWriteEnabled = false;
+
+    @FieldContext(
+            category = CATEGORY_TRANSACTION,
+            doc = "Max number of records in a batched entry of the pending ack log"
+    )
+    private int transactionPendingAckBatchedWriteMaxRecords = 512;
+
+    @FieldContext(
+            category = CATEGORY_TRANSACTION,
+            doc = "Max size in bytes of a batched entry of the pending ack log"
+    )
+    private int transactionPendingAckBatchedWriteMaxSize = 1024 * 1024 * 4;
+
+    @FieldContext(
+            category = CATEGORY_TRANSACTION,
+            doc = "Max time in milliseconds a record of the pending ack log waits for its batch to be written"
+    )
+    private int transactionPendingAckBatchedWriteMaxDelayInMillis = 1;
+
     /**** --- KeyStore TLS config variables --- ****/
     @FieldContext(
             category = CATEGORY_KEYSTORE_TLS,
@@ -20,6 +20,7 @@ package org.apache.pulsar.broker.resources;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
@@ -86,6 +87,14 @@ public class BaseResources<T> {
         return cache.get(path);
     }
 
+    public CompletableFuture<List<Optional<T>>> getAllAsync(List<String> paths) {
+        return cache.getAll(paths);
+    }
+
+    public CompletableFuture<Map<String, T>> getChildrenWithDataAsync(String path) {
+        return cache.getChildrenWithData(path);
+    }
+
     public void set(String path, Function<T, T> modifyFunction) throws MetadataStoreException {
         try {
             setAsync(path, modifyFunction).get(operationTimeoutSec, TimeUnit.SECONDS);
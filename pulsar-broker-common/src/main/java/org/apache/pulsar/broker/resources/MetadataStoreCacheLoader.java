@@ -28,7 +28,6 @@ import java.util.concurrent.TimeUnit;
 
 import org.apache.bookkeeper.common.util.OrderedScheduler;
 import org.apache.commons.collections4.CollectionUtils;
-import org.apache.pulsar.common.util.FutureUtil;
 import org.apache.pulsar.metadata.api.NotificationType;
 import org.apache.pulsar.policies.data.loadbalancer.LoadManagerReport;
 import org.slf4j.Logger;
@@ -111,24 +110,16 @@ public class MetadataStoreCacheLoader implements Closeable {
             return future;
         }
 
-        List<CompletableFuture<Optional<LoadManagerReport>>> loadReportFutureList = new ArrayList<>();
+        List<String> loadReportPaths = new ArrayList<>(brokerNodes.size());
         for (String broker : brokerNodes) {
-            loadReportFutureList.add(loadReportResources.getAsync(LOADBALANCE_BROKERS_ROOT + '/' + broker));
+            loadReportPaths.add(LOADBALANCE_BROKERS_ROOT + '/' + broker);
         }
 
-        FutureUtil.waitForAll(loadReportFutureList).thenRun(() -> {
+        // Read all the load reports with a single batched request
+        loadReportResources.getAllAsync(loadReportPaths).thenAccept(loadReports -> {
             List<LoadManagerReport> newAvailableBrokers = new ArrayList<>(brokerNodes.size());
-
-            for (CompletableFuture<Optional<LoadManagerReport>> loadReportFuture : loadReportFutureList) {
-                try {
-                    Optional<LoadManagerReport> loadReport = loadReportFuture.get();
-                    if (loadReport.isPresent()) {
-                        newAvailableBrokers.add(loadReport.get());
-                    }
-                } catch (Exception e) {
-                    future.completeExceptionally(e);
-                    return;
-                }
+            for (Optional<LoadManagerReport> loadReport : loadReports) {
+                loadReport.ifPresent(newAvailableBrokers::add);
             }
 
             availableBrokers = newAvailableBrokers;
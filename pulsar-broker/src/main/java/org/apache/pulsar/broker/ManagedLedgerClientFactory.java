@@ -65,6 +65,9 @@ public class ManagedLedgerClientFactory implements ManagedLedgerStorage {
         managedLedgerFactoryConfig.setCacheEvictionTimeThresholdMillis(
                 conf.getManagedLedgerCacheEvictionTimeThresholdMillis());
         managedLedgerFactoryConfig.setCopyEntriesInCache(conf.isManagedLedgerCacheCopyEntries());
+        managedLedgerFactoryConfig.setCacheSpillDirectory(conf.getManagedLedgerCacheSpillDirectory());
+        managedLedgerFactoryConfig.setCacheSpillFileSize(conf.getManagedLedgerCacheSpillFileSizeMB() * 1024L * 1024L);
+        managedLedgerFactoryConfig.setCacheSpillMaxSize(conf.getManagedLedgerCacheSpillMaxSizeMB() * 1024L * 1024L);
         managedLedgerFactoryConfig.setPrometheusStatsLatencyRolloverSeconds(
                 conf.getManagedLedgerPrometheusStatsLatencyRolloverSeconds());
         managedLedgerFactoryConfig.setTraceTaskExecution(conf.isManagedLedgerTraceTaskExecution());
@@ -128,6 +128,7 @@ import org.apache.pulsar.broker.web.plugin.servlet.AdditionalServlets;
 import org.apache.pulsar.client.admin.PulsarAdmin;
 import org.apache.pulsar.client.admin.PulsarAdminBuilder;
 import org.apache.pulsar.client.api.AuthenticationFactory;
+import org.apache.pulsar.client.api.IoTransport;
 import org.apache.pulsar.client.api.PulsarClient;
 import org.apache.pulsar.client.api.PulsarClientException;
 import org.apache.pulsar.client.api.transaction.TransactionBufferClient;
@@ -243,6 +244,9 @@ public class PulsarService implements AutoCloseable {
 
     private final ShutdownService shutdownService;
     protected final EventLoopGroup ioEventLoopGroup;
+    // the event loop group of the connections of the broker service, which may use a transport not supported by
+    // the bookkeeper client and the internal pulsar client
+    protected final EventLoopGroup brokerServiceEventLoopGroup;
 
     private MetricsGenerator metricsGenerator;
 
@@ -325,8 +329,16 @@ public class PulsarService implements AutoCloseable {
             this.transactionReplayExecutor = null;
         }
 
-        this.ioEventLoopGroup = EventLoopUtil.newEventLoopGroup(config.getNumIOThreads(), config.isEnableBusyWait(),
-                new DefaultThreadFactory("pulsar-io"));
+        if (config.getIoTransport() == IoTransport.IO_URING) {
+            this.ioEventLoopGroup = EventLoopUtil.newEventLoopGroup(config.getNumIOThreads(),
+                    config.isEnableBusyWait(), new DefaultThreadFactory("pulsar-io"));
+            this.brokerServiceEventLoopGroup = EventLoopUtil.newEventLoopGroup(config.getNumIOThreads(),
+                    config.isEnableBusyWait(), IoTransport.IO_URING, new DefaultThreadFactory("pulsar-broker-io"));
+        } else {
+            this.ioEventLoopGroup = EventLoopUtil.newEventLoopGroup(config.getNumIOThreads(),
+                    config.isEnableBusyWait(), config.getIoTransport(), new DefaultThreadFactory("pulsar-io"));
+            this.brokerServiceEventLoopGroup = ioEventLoopGroup;
+        }
     }
 
     public MetadataStoreExtended createConfigurationMetadataStore() throws MetadataStoreException {
@@ -334,6 +346,9 @@ public class PulsarService implements AutoCloseable {
                 MetadataStoreConfig.builder()
                         .sessionTimeoutMillis((int) config.getZooKeeperSessionTimeoutMillis())
                         .allowReadOnlyOperations(false)
+                        .batchingEnabled(config.isMetadataStoreBatchingEnabled())
+                        .batchingMaxOperations(config.getMetadataStoreBatchingMaxOperations())
+                        .batchingMaxSizeKb(config.getMetadataStoreBatchingMaxSizeKb())
                         .build());
     }
 
@@ -506,6 +521,9 @@ public class PulsarService implements AutoCloseable {
             }
 
             ioEventLoopGroup.shutdownGracefully();
+            if (brokerServiceEventLoopGroup != ioEventLoopGroup) {
+                brokerServiceEventLoopGroup.shutdownGracefully();
+            }
 
             // add timeout handling for closing executors
             asyncCloseFutures.add(executorServicesShutdown.handle());
@@ -914,6 +932,9 @@ public class PulsarService implements AutoCloseable {
                 MetadataStoreConfig.builder()
                         .sessionTimeoutMillis((int) config.getZooKeeperSessionTimeoutMillis())
                         .allowReadOnlyOperations(false)
+                        .batchingEnabled(config.isMetadataStoreBatchingEnabled())
+                        .batchingMaxOperations(config.getMetadataStoreBatchingMaxOperations())
+                        .batchingMaxSizeKb(config.getMetadataStoreBatchingMaxSizeKb())
                         .build());
     }
 
@@ -1316,7 +1337,9 @@ public class PulsarService implements AutoCloseable {
 
     protected synchronized ScheduledExecutorService getCompactorExecutor() {
         if (this.compactorExecutor == null) {
-            compactorExecutor = Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory("compaction"));
+            compactorExecutor = Executors.newScheduledThreadPool(
+                    Math.max(1, config.getBrokerServiceCompactionPhaseOneParallelism()),
+                    new DefaultThreadFactory("compaction"));
         }
         return this.compactorExecutor;
     }
@@ -1684,6 +1707,6 @@ public class PulsarService implements AutoCloseable {
 
     @VisibleForTesting
     protected BrokerService newBrokerService(PulsarService pulsar) throws Exception {
-        return new BrokerService(pulsar, ioEventLoopGroup);
+        return new BrokerService(pulsar, brokerServiceEventLoopGroup);
     }
 }
@@ -23,14 +23,17 @@ import static org.apache.pulsar.transaction.coordinator.proto.TxnStatus.COMMITTI
 import com.google.common.annotations.VisibleForTesting;
 import io.netty.util.HashedWheelTimer;
 import io.netty.util.Timer;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import org.apache.bookkeeper.mledger.ManagedLedgerException;
+import org.apache.pulsar.broker.admin.ZkAdminPaths;
 import org.apache.pulsar.broker.namespace.NamespaceBundleOwnershipListener;
 import org.apache.pulsar.broker.transaction.buffer.exceptions.UnsupportedTxnActionException;
 import org.apache.pulsar.broker.transaction.recover.TransactionRecoverTrackerImpl;
@@ -46,7 +49,11 @@ import org.apache.pulsar.common.api.proto.TxnAction;
 import org.apache.pulsar.common.naming.NamespaceBundle;
 import org.apache.pulsar.common.naming.NamespaceName;
 import org.apache.pulsar.common.naming.TopicName;
+import org.apache.pulsar.common.partition.PartitionedTopicMetadata;
 import org.apache.pulsar.common.util.FutureUtil;
+import org.apache.pulsar.common.util.ObjectMapperFactory;
+import org.apache.pulsar.metadata.api.Notification;
+import org.apache.pulsar.metadata.api.NotificationType;
 import org.apache.pulsar.transaction.coordinator.TransactionCoordinatorID;
 import org.apache.pulsar.transaction.coordinator.TransactionMetadataStore;
 import org.apache.pulsar.transaction.coordinator.TransactionMetadataStoreProvider;
@@ -54,6 +61,7 @@ import org.apache.pulsar.transaction.coordinator.TransactionRecoverTracker;
 import org.apache.pulsar.transaction.coordinator.TransactionSubscription;
 import org.apache.pulsar.transaction.coordinator.TransactionTimeoutTracker;
 import org.apache.pulsar.transaction.coordinator.TransactionTimeoutTrackerFactory;
+import org.apache.pulsar.transaction.coordinator.TxnLogBufferedWriterConfig;
 import org.apache.pulsar.transaction.coordinator.TxnMeta;
 import org.apache.pulsar.transaction.coordinator.exceptions.CoordinatorException.CoordinatorNotFoundException;
 import org.apache.pulsar.transaction.coordinator.exceptions.CoordinatorException.InvalidTxnStatusException;
@@ -68,12 +76,16 @@ public class TransactionMetadataStoreService {
     private static final Logger LOG = LoggerFactory.getLogger(TransactionMetadataStoreService.class);
 
     private final Map<TransactionCoordinatorID, TransactionMetadataStore> stores;
+    // the transaction coordinators whose store is being opened
+    private final Set<TransactionCoordinatorID> pendingStores = ConcurrentHashMap.newKeySet();
     private final TransactionMetadataStoreProvider transactionMetadataStoreProvider;
     private final PulsarService pulsarService;
     private final TransactionBufferClient tbClient;
     private final TransactionTimeoutTrackerFactory timeoutTrackerFactory;
     private static final long endTransactionRetryIntervalTime = 1000;
     private final Timer transactionOpRetryTimer;
+    private static final String TC_ASSIGN_PARTITIONED_TOPIC_PATH =
+            ZkAdminPaths.partitionedTopicPath(TopicName.TRANSACTION_COORDINATOR_ASSIGN);
 
     public TransactionMetadataStoreService(TransactionMetadataStoreProvider transactionMetadataStoreProvider,
                                            PulsarService pulsarService, TransactionBufferClient tbClient,
@@ -132,21 +144,82 @@ public class TransactionMetadataStoreService {
                 return namespaceBundle.getNamespaceObject().equals(NamespaceName.SYSTEM_NAMESPACE);
             }
         });
+        pulsarService.getConfigurationMetadataStore().registerListener(this::handleMetadataStoreNotification);
+    }
+
+    private void handleMetadataStoreNotification(Notification notification) {
+        if (notification.getType() == NotificationType.Modified
+                && TC_ASSIGN_PARTITIONED_TOPIC_PATH.equals(notification.getPath())) {
+            addOwnedTransactionMetadataStores();
+        }
+    }
+
+    /**
+     * Open the stores of the transaction coordinators added by an expansion of the partitions of the
+     * transaction coordinator assign topic, whose partition is in a bundle already owned by this broker.
+     *
+     * <p>The new partitions in bundles not owned yet are handled by the bundle ownership listener, when a client
+     * lookup of the partition loads their bundle.
+     */
+    private void addOwnedTransactionMetadataStores() {
+        pulsarService.getConfigurationMetadataStore().get(TC_ASSIGN_PARTITIONED_TOPIC_PATH)
+                .thenAccept(result -> {
+                    if (!result.isPresent()) {
+                        return;
+                    }
+                    PartitionedTopicMetadata metadata;
+                    try {
+                        metadata = ObjectMapperFactory.getThreadLocal()
+                                .readValue(result.get().getValue(), PartitionedTopicMetadata.class);
+                    } catch (IOException e) {
+                        LOG.error("Failed to parse the partitions of the transaction coordinator assign topic", e);
+                        return;
+                    }
+                    LOG.info("Transaction coordinator assign topic updated to {} partitions", metadata.partitions);
+                    for (int i = 0; i < metadata.partitions; i++) {
+                        TransactionCoordinatorID tcId = TransactionCoordinatorID.get(i);
+                        if (stores.containsKey(tcId)) {
+                            continue;
+                        }
+                        pulsarService.getNamespaceService()
+                                .checkTopicOwnership(TopicName.TRANSACTION_COORDINATOR_ASSIGN.getPartition(i))
+                                .thenAccept(owned -> {
+                                    if (owned) {
+                                        addTransactionMetadataStore(tcId);
+                                    }
+                                });
+                    }
+                }).exceptionally(e -> {
+                    LOG.error("Failed to get the partitions of the transaction coordinator assign topic", e);
+                    return null;
+                });
     }
 
     public void addTransactionMetadataStore(TransactionCoordinatorID tcId) {
+        if (stores.containsKey(tcId) || !pendingStores.add(tcId)) {
+            return;
+        }
         pulsarService.getBrokerService()
                 .getManagedLedgerConfig(TopicName.get(MLTransactionLogImpl.TRANSACTION_LOG_PREFIX + tcId))
                 .whenComplete((v, e) -> {
                     if (e != null) {
+                        pendingStores.remove(tcId);
                         LOG.error("Add transaction metadata store with id {} error", tcId.getId(), e);
                     } else {
                         TransactionTimeoutTracker timeoutTracker = timeoutTrackerFactory.newTracker(tcId);
                         TransactionRecoverTracker recoverTracker =
                                 new TransactionRecoverTrackerImpl(TransactionMetadataStoreService.this,
                                         timeoutTracker, tcId.getId());
+                        TxnLogBufferedWriterConfig bufferedWriterConfig = new TxnLogBufferedWriterConfig();
+                        ServiceConfiguration config = pulsarService.getConfiguration();
+                        bufferedWriterConfig.setBatchEnabled(config.isTransactionLogBatchedWriteEnabled());
+                        bufferedWriterConfig.setBatchedWriteMaxRecords(
+                                config.getTransactionLogBatchedWriteMaxRecords());
+                        bufferedWriterConfig.setBatchedWriteMaxSize(config.getTransactionLogBatchedWriteMaxSize());
+                        bufferedWriterConfig.setBatchedWriteMaxDelayInMillis(
+                                config.getTransactionLogBatchedWriteMaxDelayInMillis());
                         transactionMetadataStoreProvider.openStore(tcId, pulsarService.getManagedLedgerFactory(), v,
-                                timeoutTracker, recoverTracker)
+                                timeoutTracker, recoverTracker, bufferedWriterConfig, pulsarService.getExecutor())
                                 .whenComplete((store, ex) -> {
                                     if (ex != null) {
                                         LOG.error("Add transaction metadata store with id {} error", tcId.getId(), ex);
@@ -154,6 +227,7 @@ public class TransactionMetadataStoreService {
                                         stores.put(tcId, store);
                                         LOG.info("Added new transaction meta store {}", tcId);
                                     }
+                                    pendingStores.remove(tcId);
                                 });
                     }
         });
@@ -0,0 +1,182 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.delayed;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.bookkeeper.client.BKException;
+import org.apache.bookkeeper.client.BookKeeper;
+import org.apache.bookkeeper.client.LedgerEntry;
+import org.apache.bookkeeper.client.LedgerHandle;
+import org.apache.pulsar.broker.ServiceConfiguration;
+import org.apache.pulsar.common.util.FutureUtil;
+
+/**
+ * {@link BucketSnapshotStorage} that stores every bucket snapshot in its own BookKeeper ledger.
+ *
+ * <p>Entry 0 of the ledger holds the metadata record and entry {@code i + 1} holds the segment {@code i}.
+ */
+@Slf4j
+public class BookkeeperBucketSnapshotStorage implements BucketSnapshotStorage {
+
+    private static final String LEDGER_METADATA_APPLICATION = "pulsar";
+    private static final String LEDGER_METADATA_COMPONENT = "delayed-delivery-bucket";
+
+    private final BookKeeper bookKeeper;
+    private final int ensembleSize;
+    private final int writeQuorumSize;
+    private final int ackQuorumSize;
+    private final BookKeeper.DigestType digestType;
+    private final byte[] password;
+
+    public BookkeeperBucketSnapshotStorage(BookKeeper bookKeeper, ServiceConfiguration config) {
+        this.bookKeeper = bookKeeper;
+        this.ensembleSize = config.getManagedLedgerDefaultEnsembleSize();
+        this.writeQuorumSize = config.getManagedLedgerDefaultWriteQuorum();
+        this.ackQuorumSize = config.getManagedLedgerDefaultAckQuorum();
+        this.digestType = BookKeeper.DigestType.fromApiDigestType(config.getManagedLedgerDigestType());
+        this.password = config.getManagedLedgerPassword().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public CompletableFuture<Long> createBucketSnapshot(long[] metadata, List<long[]> segments) {
+        CompletableFuture<Long> future = new CompletableFuture<>();
+        Map<String, byte[]> ledgerMetadata = new HashMap<>();
+        ledgerMetadata.put("application", LEDGER_METADATA_APPLICATION.getBytes(StandardCharsets.UTF_8));
+        ledgerMetadata.put("component", LEDGER_METADATA_COMPONENT.getBytes(StandardCharsets.UTF_8));
+
+        bookKeeper.asyncCreateLedger(ensembleSize, writeQuorumSize, ackQuorumSize, digestType, password,
+                (rc, lh, ctx) -> {
+                    if (rc != BKException.Code.OK) {
+                        future.completeExceptionally(BKException.create(rc));
+                        return;
+                    }
+                    writeEntries(lh, metadata, segments, future);
+                }, null, ledgerMetadata);
+        return future;
+    }
+
+    private void writeEntries(LedgerHandle lh, long[] metadata, List<long[]> segments,
+                              CompletableFuture<Long> future) {
+        // Adds on the same handle are acknowledged in order, so only the last one has to be tracked
+        CompletableFuture<Void> lastAdd = new CompletableFuture<>();
+        int lastEntry = segments.size();
+        for (int i = 0; i <= lastEntry; i++) {
+            byte[] data = serialize(i == 0 ? metadata : segments.get(i - 1));
+            boolean isLast = i == lastEntry;
+            lh.asyncAddEntry(data, (rc, handle, entryId, ctx) -> {
+                if (rc != BKException.Code.OK) {
+                    lastAdd.completeExceptionally(BKException.create(rc));
+                } else if (isLast) {
+                    lastAdd.complete(null);
+                }
+            }, null);
+        }
+
+        lastAdd.whenComplete((ignore, addException) -> lh.asyncClose((rc, handle, ctx) -> {
+            if (addException != null) {
+                future.completeExceptionally(addException);
+                deleteBucketSnapshot(lh.getId());
+            } else if (rc != BKException.Code.OK) {
+                future.completeExceptionally(BKException.create(rc));
+                deleteBucketSnapshot(lh.getId());
+            } else {
+                future.complete(lh.getId());
+            }
+        }, null));
+    }
+
+    @Override
+    public CompletableFuture<long[]> getBucketSnapshotMetadata(long snapshotId) {
+        return readEntry(snapshotId, 0).exceptionally(ex -> {
+            if (FutureUtil.unwrapCompletionException(ex) instanceof BKException.BKNoSuchLedgerExistsException) {
+                // The snapshot was deleted before the cursor properties referencing it were persisted
+                return new long[0];
+            }
+            throw ex instanceof CompletionException ? (CompletionException) ex : new CompletionException(ex);
+        });
+    }
+
+    @Override
+    public CompletableFuture<long[]> getBucketSnapshotSegment(long snapshotId, int segmentIndex) {
+        return readEntry(snapshotId, segmentIndex + 1);
+    }
+
+    private CompletableFuture<long[]> readEntry(long ledgerId, long entryId) {
+        CompletableFuture<long[]> future = new CompletableFuture<>();
+        bookKeeper.asyncOpenLedgerNoRecovery(ledgerId, digestType, password, (rc, lh, ctx) -> {
+            if (rc != BKException.Code.OK) {
+                future.completeExceptionally(BKException.create(rc));
+                return;
+            }
+            lh.asyncReadEntries(entryId, entryId, (readRc, handle, entries, readCtx) -> {
+                if (readRc != BKException.Code.OK) {
+                    future.completeExceptionally(BKException.create(readRc));
+                } else {
+                    LedgerEntry entry = entries.nextElement();
+                    future.complete(deserialize(entry.getEntry()));
+                }
+                lh.asyncClose((closeRc, closedHandle, closeCtx) -> {
+                    if (closeRc != BKException.Code.OK) {
+                        log.warn("Failed to close bucket snapshot ledger {}: {}", ledgerId,
+                                BKException.getMessage(closeRc));
+                    }
+                }, null);
+            }, null);
+        }, null);
+        return future;
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteBucketSnapshot(long snapshotId) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        bookKeeper.asyncDeleteLedger(snapshotId, (rc, ctx) -> {
+            if (rc != BKException.Code.OK && rc != BKException.Code.NoSuchLedgerExistsException) {
+                log.warn("Failed to delete bucket snapshot ledger {}: {}", snapshotId, BKException.getMessage(rc));
+                future.completeExceptionally(BKException.create(rc));
+            } else {
+                future.complete(null);
+            }
+        }, null);
+        return future;
+    }
+
+    private static byte[] serialize(long[] values) {
+        ByteBuffer buffer = ByteBuffer.allocate(values.length * Long.BYTES);
+        buffer.asLongBuffer().put(values);
+        return buffer.array();
+    }
+
+    private static long[] deserialize(byte[] data) {
+        long[] values = new long[data.length / Long.BYTES];
+        ByteBuffer.wrap(data).asLongBuffer().get(values);
+        return values;
+    }
+
+    @Override
+    public void close() {
+        // The BookKeeper client is owned by the broker
+    }
+}
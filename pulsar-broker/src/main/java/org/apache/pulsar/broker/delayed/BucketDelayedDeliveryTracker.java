@@ -0,0 +1,628 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.delayed;
+
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.TimerTask;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.bookkeeper.mledger.ManagedCursor;
+import org.apache.bookkeeper.mledger.impl.PositionImpl;
+import org.apache.pulsar.broker.service.persistent.PersistentDispatcherMultipleConsumers;
+import org.apache.pulsar.common.util.collections.TripleLongPriorityQueue;
+
+/**
+ * Delayed delivery tracker that splits the delay index into buckets and persists the sealed buckets.
+ *
+ * <p>The messages read by the dispatcher are first collected in the last mutable bucket, which covers a contiguous
+ * range of ledgers. Once the bucket holds enough messages and the dispatcher moves to a new ledger, the bucket is
+ * sealed: its messages are sorted by delivery time, split into segments and stored as a snapshot through the
+ * {@link BucketSnapshotStorage}. The snapshot id is persisted in the cursor properties, so that a new tracker for the
+ * same subscription can find it again after a topic reload, and the segments are only dropped from memory once it is.
+ * The ledger ranges of the buckets never overlap, so that every message is attributed to the bucket it belongs to.
+ *
+ * <p>Only the segments that contain messages due within the tick time are loaded in memory. Since the segments of a
+ * bucket are sorted, a message in memory can be dispatched as long as no bucket has a segment not yet loaded that
+ * starts before it. Messages that belong to the range of a sealed bucket are already tracked and are not indexed
+ * again when the dispatcher reads the backlog after a reload.
+ */
+@Slf4j
+public class BucketDelayedDeliveryTracker implements DelayedDeliveryTracker, TimerTask {
+
+    static final String DELAYED_BUCKET_KEY_PREFIX = ManagedCursor.INTERNAL_PROPERTY_PREFIX + "delayed.bucket";
+
+    private static final String DELIMITER = "_";
+
+    private final PersistentDispatcherMultipleConsumers dispatcher;
+
+    private final ManagedCursor cursor;
+
+    private final BucketSnapshotStorage bucketSnapshotStorage;
+
+    // Reference to the shared (per-broker) timer for delayed delivery
+    private final Timer timer;
+
+    // Current timeout or null if not set
+    private Timeout timeout;
+
+    // Timestamp at which the timeout is currently set
+    private long currentTimeoutTarget;
+
+    private long tickTimeMillis;
+
+    private final Clock clock;
+
+    private final long minIndexCountPerBucket;
+
+    private final int maxIndexesPerBucketSnapshotSegment;
+
+    // Messages of the bucket that is still being filled. They are only kept in memory.
+    private final TripleLongPriorityQueue lastMutableBucket = new TripleLongPriorityQueue();
+
+    private long mutableBucketStartLedgerId = -1;
+
+    private long mutableBucketEndLedgerId = -1;
+
+    // Messages of the segments of the sealed buckets that are loaded in memory
+    private final TripleLongPriorityQueue sharedBucketPriorityQueue = new TripleLongPriorityQueue();
+
+    // Sealed buckets, keyed by the first ledger of their range
+    private final NavigableMap<Long, ImmutableBucket> immutableBuckets = new TreeMap<>();
+
+    // Lowest delivery time of the segments that are not loaded yet
+    private long nextSegmentDeliverAt;
+
+    private boolean nextSegmentDeliverAtDirty = true;
+
+    private long numberOfDelayedMessages;
+
+    private volatile boolean closed;
+
+    BucketDelayedDeliveryTracker(PersistentDispatcherMultipleConsumers dispatcher, ManagedCursor cursor,
+                                 BucketSnapshotStorage bucketSnapshotStorage, Timer timer, long tickTimeMillis,
+                                 long minIndexCountPerBucket, int maxIndexesPerBucketSnapshotSegment) {
+        this(dispatcher, cursor, bucketSnapshotStorage, timer, tickTimeMillis, Clock.systemUTC(),
+                minIndexCountPerBucket, maxIndexesPerBucketSnapshotSegment);
+    }
+
+    BucketDelayedDeliveryTracker(PersistentDispatcherMultipleConsumers dispatcher, ManagedCursor cursor,
+                                 BucketSnapshotStorage bucketSnapshotStorage, Timer timer, long tickTimeMillis,
+                                 Clock clock, long minIndexCountPerBucket, int maxIndexesPerBucketSnapshotSegment) {
+        this.dispatcher = dispatcher;
+        this.cursor = cursor;
+        this.bucketSnapshotStorage = bucketSnapshotStorage;
+        this.timer = timer;
+        this.tickTimeMillis = tickTimeMillis;
+        this.clock = clock;
+        this.minIndexCountPerBucket = minIndexCountPerBucket;
+        this.maxIndexesPerBucketSnapshotSegment = maxIndexesPerBucketSnapshotSegment;
+        recoverBuckets();
+    }
+
+    private void recoverBuckets() {
+        Map<String, Long> properties = cursor.getProperties();
+        if (properties == null) {
+            return;
+        }
+        properties.forEach((key, snapshotId) -> {
+            if (!key.startsWith(DELAYED_BUCKET_KEY_PREFIX)) {
+                return;
+            }
+            String[] range = key.substring(DELAYED_BUCKET_KEY_PREFIX.length() + DELIMITER.length())
+                    .split(DELIMITER);
+            ImmutableBucket bucket = new ImmutableBucket(Long.parseLong(range[0]), Long.parseLong(range[1]));
+            bucket.snapshotId = snapshotId;
+            immutableBuckets.put(bucket.startLedgerId, bucket);
+        });
+        if (!immutableBuckets.isEmpty()) {
+            log.info("[{}] Recovered {} delayed delivery buckets", dispatcher.getName(), immutableBuckets.size());
+        }
+    }
+
+    @Override
+    public boolean addMessage(long ledgerId, long entryId, long deliveryAt) {
+        long now = clock.millis();
+        if (log.isDebugEnabled()) {
+            log.debug("[{}] Add message {}:{} -- Delivery in {} ms ", dispatcher.getName(), ledgerId, entryId,
+                    deliveryAt - now);
+        }
+        if (deliveryAt < (now + tickTimeMillis)) {
+            // It's already about time to deliver this message. See InMemoryDelayedDeliveryTracker#addMessage.
+            return false;
+        }
+
+        if (findImmutableBucket(ledgerId) != null) {
+            // The message was already indexed in a sealed bucket before the topic was reloaded
+            return true;
+        }
+
+        if (ledgerId > mutableBucketEndLedgerId && lastMutableBucket.size() >= minIndexCountPerBucket) {
+            sealMutableBucket();
+        }
+
+        if (!lastMutableBucket.isEmpty() && overlapsImmutableBucket(Math.min(mutableBucketStartLedgerId, ledgerId),
+                Math.max(mutableBucketEndLedgerId, ledgerId))) {
+            if (ledgerId < mutableBucketStartLedgerId) {
+                // The message comes before a sealed bucket that the mutable bucket can't be extended over
+                if (log.isDebugEnabled()) {
+                    log.debug("[{}] Out of order message {}:{} before a sealed bucket, delivering it now",
+                            dispatcher.getName(), ledgerId, entryId);
+                }
+                return false;
+            }
+            // The message comes after a sealed bucket, typically one recovered after a reload
+            sealMutableBucket();
+        }
+
+        if (lastMutableBucket.isEmpty()) {
+            mutableBucketStartLedgerId = ledgerId;
+            mutableBucketEndLedgerId = ledgerId;
+        } else {
+            mutableBucketStartLedgerId = Math.min(mutableBucketStartLedgerId, ledgerId);
+            mutableBucketEndLedgerId = Math.max(mutableBucketEndLedgerId, ledgerId);
+        }
+        lastMutableBucket.add(deliveryAt, ledgerId, entryId);
+        numberOfDelayedMessages++;
+        updateTimer();
+        return true;
+    }
+
+    private boolean overlapsImmutableBucket(long startLedgerId, long endLedgerId) {
+        // Neither end is in a sealed bucket, so a sealed bucket overlapping the range starts within it
+        return !immutableBuckets.subMap(startLedgerId, true, endLedgerId, true).isEmpty();
+    }
+
+    private ImmutableBucket findImmutableBucket(long ledgerId) {
+        Map.Entry<Long, ImmutableBucket> entry = immutableBuckets.floorEntry(ledgerId);
+        if (entry == null || entry.getValue().endLedgerId < ledgerId) {
+            return null;
+        }
+        return entry.getValue();
+    }
+
+    private void sealMutableBucket() {
+        int count = lastMutableBucket.size();
+        List<long[]> segments = new ArrayList<>();
+        List<Long> metadata = new ArrayList<>();
+        while (!lastMutableBucket.isEmpty()) {
+            int segmentSize = Math.min(maxIndexesPerBucketSnapshotSegment, lastMutableBucket.size());
+            long[] segment = new long[segmentSize * 3];
+            for (int i = 0; i < segmentSize; i++) {
+                segment[i * 3] = lastMutableBucket.peekN1();
+                segment[i * 3 + 1] = lastMutableBucket.peekN2();
+                segment[i * 3 + 2] = lastMutableBucket.peekN3();
+                lastMutableBucket.pop();
+            }
+            segments.add(segment);
+            metadata.add(segment[0]);
+            metadata.add((long) segmentSize);
+        }
+
+        ImmutableBucket bucket = new ImmutableBucket(mutableBucketStartLedgerId, mutableBucketEndLedgerId);
+        bucket.metadata = metadata.stream().mapToLong(Long::longValue).toArray();
+        bucket.pendingSegments = segments;
+        bucket.remainingMessages = count;
+        immutableBuckets.put(bucket.startLedgerId, bucket);
+        nextSegmentDeliverAtDirty = true;
+        mutableBucketStartLedgerId = -1;
+        mutableBucketEndLedgerId = -1;
+
+        if (log.isDebugEnabled()) {
+            log.debug("[{}] Sealed delayed delivery bucket {} with {} messages in {} segments",
+                    dispatcher.getName(), bucket.propertyKey(), count, segments.size());
+        }
+
+        bucketSnapshotStorage.createBucketSnapshot(bucket.metadata, segments).whenComplete((snapshotId, ex) -> {
+            synchronized (dispatcher) {
+                if (ex != null) {
+                    // Keep the segments in memory, the messages will be indexed again after a reload
+                    log.warn("[{}] Failed to persist delayed delivery bucket {}", dispatcher.getName(),
+                            bucket.propertyKey(), ex);
+                    return;
+                }
+                if (closed || immutableBuckets.get(bucket.startLedgerId) != bucket) {
+                    bucketSnapshotStorage.deleteBucketSnapshot(snapshotId);
+                    return;
+                }
+                cursor.putProperty(bucket.propertyKey(), snapshotId);
+                persistBucketSnapshotId(bucket, snapshotId);
+            }
+        });
+    }
+
+    /**
+     * Persist the cursor property referencing the snapshot of a bucket, then drop the segments of the bucket from
+     * memory. Until then, the segments are served from memory.
+     */
+    private void persistBucketSnapshotId(ImmutableBucket bucket, long snapshotId) {
+        cursor.asyncPersistProperties().whenComplete((ignore, ex) -> {
+            synchronized (dispatcher) {
+                if (closed) {
+                    // The property is written along with the position when the cursor is closed
+                    return;
+                }
+                if (immutableBuckets.get(bucket.startLedgerId) != bucket) {
+                    // The bucket was drained or cleared in the meantime
+                    deleteBucketSnapshots(Collections.singletonMap(bucket.propertyKey(), snapshotId));
+                    return;
+                }
+                if (ex != null) {
+                    log.warn("[{}] Failed to persist the snapshot id of delayed delivery bucket {}, retrying",
+                            dispatcher.getName(), bucket.propertyKey(), ex);
+                    timer.newTimeout(timeout -> persistBucketSnapshotId(bucket, snapshotId), tickTimeMillis,
+                            TimeUnit.MILLISECONDS);
+                    return;
+                }
+                bucket.snapshotId = snapshotId;
+                bucket.pendingSegments = null;
+            }
+        });
+    }
+
+    /**
+     * Remove the cursor properties referencing bucket snapshots, then delete the snapshots.
+     *
+     * @param snapshotIds the snapshot ids, by cursor property key
+     */
+    private void deleteBucketSnapshots(Map<String, Long> snapshotIds) {
+        if (snapshotIds.isEmpty()) {
+            return;
+        }
+        snapshotIds.keySet().forEach(cursor::removeProperty);
+        cursor.asyncPersistProperties().whenComplete((ignore, ex) -> {
+            if (ex != null) {
+                // A property left behind makes the next tracker find an empty snapshot, which it discards
+                log.warn("[{}] Failed to remove the delayed delivery buckets {} from the cursor properties",
+                        dispatcher.getName(), snapshotIds.keySet(), ex);
+            }
+            snapshotIds.values().forEach(bucketSnapshotStorage::deleteBucketSnapshot);
+        });
+    }
+
+    /**
+     * Start loading the segments that contain messages due before the cutoff time.
+     *
+     * @return the lowest delivery time of the segments that are not loaded yet
+     */
+    private long loadSegmentsDueBefore(long cutoffTime) {
+        if (!nextSegmentDeliverAtDirty && nextSegmentDeliverAt > cutoffTime) {
+            return nextSegmentDeliverAt;
+        }
+
+        long deliverAt = Long.MAX_VALUE;
+        for (ImmutableBucket bucket : new ArrayList<>(immutableBuckets.values())) {
+            while (!bucket.loading && bucket.nextSegmentDeliverAt() <= cutoffTime) {
+                loadNextSegment(bucket);
+            }
+            deliverAt = Math.min(deliverAt, bucket.nextSegmentDeliverAt());
+        }
+        nextSegmentDeliverAt = deliverAt;
+        nextSegmentDeliverAtDirty = false;
+        return deliverAt;
+    }
+
+    private void loadNextSegment(ImmutableBucket bucket) {
+        if (bucket.metadata == null) {
+            bucket.loading = true;
+            bucketSnapshotStorage.getBucketSnapshotMetadata(bucket.snapshotId)
+                    .whenComplete((metadata, ex) -> onSegmentLoaded(bucket, metadata, ex, true));
+        } else if (bucket.pendingSegments != null) {
+            applySegment(bucket, bucket.pendingSegments.get(bucket.loadedSegments));
+        } else {
+            bucket.loading = true;
+            bucketSnapshotStorage.getBucketSnapshotSegment(bucket.snapshotId, bucket.loadedSegments)
+                    .whenComplete((segment, ex) -> onSegmentLoaded(bucket, segment, ex, false));
+        }
+    }
+
+    private void onSegmentLoaded(ImmutableBucket bucket, long[] data, Throwable ex, boolean isMetadata) {
+        synchronized (dispatcher) {
+            bucket.loading = false;
+            if (closed || immutableBuckets.get(bucket.startLedgerId) != bucket) {
+                return;
+            }
+            if (ex != null) {
+                log.warn("[{}] Failed to load delayed delivery bucket {}, retrying", dispatcher.getName(),
+                        bucket.propertyKey(), ex);
+                timer.newTimeout(this::retryLoad, tickTimeMillis, TimeUnit.MILLISECONDS);
+                return;
+            }
+
+            if (isMetadata) {
+                bucket.metadata = data;
+                for (int i = 1; i < data.length; i += 2) {
+                    bucket.remainingMessages += data[i];
+                }
+                numberOfDelayedMessages += bucket.remainingMessages;
+                removeBucketIfDrained(bucket);
+            } else {
+                applySegment(bucket, data);
+            }
+            nextSegmentDeliverAtDirty = true;
+            updateTimer();
+            dispatcher.readMoreEntries();
+        }
+    }
+
+    private void retryLoad(Timeout timeout) {
+        synchronized (dispatcher) {
+            if (!closed) {
+                dispatcher.readMoreEntries();
+            }
+        }
+    }
+
+    private void applySegment(ImmutableBucket bucket, long[] segment) {
+        PositionImpl markDeletePosition = (PositionImpl) cursor.getMarkDeletedPosition();
+        for (int i = 0; i < segment.length; i += 3) {
+            long ledgerId = segment[i + 1];
+            long entryId = segment[i + 2];
+            if (markDeletePosition != null
+                    && markDeletePosition.compareTo(PositionImpl.get(ledgerId, entryId)) >= 0) {
+                // Already acknowledged while the segment was not loaded
+                bucket.remainingMessages--;
+                numberOfDelayedMessages--;
+            } else {
+                sharedBucketPriorityQueue.add(segment[i], ledgerId, entryId);
+            }
+        }
+        bucket.loadedSegments++;
+        nextSegmentDeliverAtDirty = true;
+        removeBucketIfDrained(bucket);
+    }
+
+    private void removeBucketIfDrained(ImmutableBucket bucket) {
+        if (bucket.remainingMessages > 0 || bucket.loadedSegments < bucket.numberOfSegments()) {
+            return;
+        }
+        immutableBuckets.remove(bucket.startLedgerId);
+        nextSegmentDeliverAtDirty = true;
+        if (bucket.snapshotId >= 0) {
+            deleteBucketSnapshots(Collections.singletonMap(bucket.propertyKey(), bucket.snapshotId));
+        }
+    }
+
+    private long peekDeliverAt() {
+        long deliverAt = Long.MAX_VALUE;
+        if (!lastMutableBucket.isEmpty()) {
+            deliverAt = lastMutableBucket.peekN1();
+        }
+        if (!sharedBucketPriorityQueue.isEmpty()) {
+            deliverAt = Math.min(deliverAt, sharedBucketPriorityQueue.peekN1());
+        }
+        return deliverAt;
+    }
+
+    /**
+     * Return true if there's at least a message that is scheduled to be delivered already.
+     */
+    @Override
+    public boolean hasMessageAvailable() {
+        // Avoid the TimerTask run before reach the timeout.
+        long cutOffTime = clock.millis() + tickTimeMillis;
+        long nextSegmentDeliverAt = loadSegmentsDueBefore(cutOffTime);
+        long deliverAt = peekDeliverAt();
+        boolean hasMessageAvailable = deliverAt <= cutOffTime && deliverAt <= nextSegmentDeliverAt;
+        if (!hasMessageAvailable) {
+            // prevent the first delay message later than cutoffTime
+            updateTimer();
+        }
+        return hasMessageAvailable;
+    }
+
+    /**
+     * Get a set of position of messages that have already reached.
+     */
+    @Override
+    public Set<PositionImpl> getScheduledMessages(int maxMessages) {
+        int n = maxMessages;
+        Set<PositionImpl> positions = new TreeSet<>();
+        long now = clock.millis();
+        // Pick all the messages that will be ready within the tick time period.
+        // This is to avoid keeping rescheduling the timer for each message at
+        // very short delay
+        long cutoffTime = now + tickTimeMillis;
+        long nextSegmentDeliverAt = loadSegmentsDueBefore(cutoffTime);
+
+        while (n > 0) {
+            long timestamp = peekDeliverAt();
+            if (timestamp > cutoffTime || timestamp > nextSegmentDeliverAt) {
+                // Either nothing is due yet, or a segment that might contain earlier messages is still loading
+                break;
+            }
+
+            if (!lastMutableBucket.isEmpty() && lastMutableBucket.peekN1() == timestamp) {
+                positions.add(new PositionImpl(lastMutableBucket.peekN2(), lastMutableBucket.peekN3()));
+                lastMutableBucket.pop();
+            } else {
+                long ledgerId = sharedBucketPriorityQueue.peekN2();
+                long entryId = sharedBucketPriorityQueue.peekN3();
+                positions.add(new PositionImpl(ledgerId, entryId));
+                sharedBucketPriorityQueue.pop();
+
+                ImmutableBucket bucket = findImmutableBucket(ledgerId);
+                if (bucket != null) {
+                    bucket.remainingMessages--;
+                    removeBucketIfDrained(bucket);
+                }
+            }
+            numberOfDelayedMessages--;
+            --n;
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("[{}] Get scheduled messages - found {}", dispatcher.getName(), positions.size());
+        }
+        updateTimer();
+        return positions;
+    }
+
+    @Override
+    public void resetTickTime(long tickTime) {
+        if (this.tickTimeMillis != tickTime) {
+            this.tickTimeMillis = tickTime;
+        }
+    }
+
+    @Override
+    public void clear() {
+        lastMutableBucket.clear();
+        sharedBucketPriorityQueue.clear();
+        mutableBucketStartLedgerId = -1;
+        mutableBucketEndLedgerId = -1;
+        Map<String, Long> snapshotIds = new HashMap<>();
+        for (ImmutableBucket bucket : immutableBuckets.values()) {
+            if (bucket.snapshotId >= 0) {
+                snapshotIds.put(bucket.propertyKey(), bucket.snapshotId);
+            }
+        }
+        immutableBuckets.clear();
+        deleteBucketSnapshots(snapshotIds);
+        nextSegmentDeliverAtDirty = true;
+        numberOfDelayedMessages = 0;
+    }
+
+    @Override
+    public long getNumberOfDelayedMessages() {
+        return numberOfDelayedMessages;
+    }
+
+    int getNumberOfBuckets() {
+        return immutableBuckets.size();
+    }
+
+    int getNumberOfMessagesInMemory() {
+        return lastMutableBucket.size() + sharedBucketPriorityQueue.size();
+    }
+
+    private void updateTimer() {
+        long timestamp = Math.min(peekDeliverAt(), loadSegmentsDueBefore(clock.millis() + tickTimeMillis));
+        if (timestamp == Long.MAX_VALUE) {
+            if (timeout != null) {
+                currentTimeoutTarget = -1;
+                timeout.cancel();
+                timeout = null;
+            }
+            return;
+        }
+
+        if (timestamp == currentTimeoutTarget) {
+            // The timer is already set to the correct target time
+            return;
+        }
+
+        if (timeout != null) {
+            timeout.cancel();
+        }
+
+        long delayMillis = timestamp - clock.millis();
+        if (log.isDebugEnabled()) {
+            log.debug("[{}] Start timer in {} millis", dispatcher.getName(), delayMillis);
+        }
+
+        if (delayMillis < 0) {
+            // Either the messages are ready but the consumers are not getting them, or a segment is being
+            // loaded and the dispatcher will be triggered once it's available
+            return;
+        }
+
+        currentTimeoutTarget = timestamp;
+        timeout = timer.newTimeout(this, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void run(Timeout timeout) throws Exception {
+        if (log.isDebugEnabled()) {
+            log.debug("[{}] Timer triggered", dispatcher.getName());
+        }
+        if (timeout.isCancelled()) {
+            return;
+        }
+
+        synchronized (dispatcher) {
+            currentTimeoutTarget = -1;
+            this.timeout = null;
+            dispatcher.readMoreEntries();
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        lastMutableBucket.close();
+        sharedBucketPriorityQueue.close();
+        if (timeout != null) {
+            timeout.cancel();
+        }
+    }
+
+    static final class ImmutableBucket {
+        final long startLedgerId;
+        final long endLedgerId;
+
+        // Id of the snapshot in the storage, or -1 while it's being persisted
+        long snapshotId = -1;
+
+        // (minDeliverAt, count) pairs for every segment, or null until it's read from the storage
+        long[] metadata;
+
+        // Segments that are kept in memory until the snapshot is persisted
+        List<long[]> pendingSegments;
+
+        int loadedSegments;
+
+        // Messages of the bucket that were not dispatched yet, either loaded or not
+        long remainingMessages;
+
+        boolean loading;
+
+        ImmutableBucket(long startLedgerId, long endLedgerId) {
+            this.startLedgerId = startLedgerId;
+            this.endLedgerId = endLedgerId;
+        }
+
+        int numberOfSegments() {
+            return metadata == null ? Integer.MAX_VALUE : metadata.length / 2;
+        }
+
+        long nextSegmentDeliverAt() {
+            if (metadata == null) {
+                // The bucket range is known but its content is not, nothing can be dispatched before reading it
+                return Long.MIN_VALUE;
+            }
+            return loadedSegments < numberOfSegments() ? metadata[loadedSegments * 2] : Long.MAX_VALUE;
+        }
+
+        String propertyKey() {
+            return DELAYED_BUCKET_KEY_PREFIX + DELIMITER + startLedgerId + DELIMITER + endLedgerId;
+        }
+    }
+}
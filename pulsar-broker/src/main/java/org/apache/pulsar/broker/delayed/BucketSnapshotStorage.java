@@ -0,0 +1,73 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.delayed;
+
+import com.google.common.annotations.Beta;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Durable storage for the sealed buckets of a {@link BucketDelayedDeliveryTracker}.
+ *
+ * <p>A bucket snapshot is made of a metadata record followed by a list of segments. Every segment is a flat array of
+ * {@code (deliverAt, ledgerId, entryId)} triples sorted by delivery time, and the metadata record holds, for each
+ * segment, the lowest delivery time and the number of messages it contains.
+ *
+ * Note: this interface is still being refined and some breaking changes might be introduced.
+ */
+@Beta
+public interface BucketSnapshotStorage extends AutoCloseable {
+
+    /**
+     * Persist a new bucket snapshot.
+     *
+     * @param metadata
+     *            the {@code (minDeliverAt, count)} pairs of all the segments
+     * @param segments
+     *            the segments of the bucket, in delivery time order
+     * @return a future with the id that identifies the snapshot in the storage
+     */
+    CompletableFuture<Long> createBucketSnapshot(long[] metadata, List<long[]> segments);
+
+    /**
+     * Read the metadata record of a bucket snapshot.
+     *
+     * @return a future with the metadata record, or with an empty record if the snapshot doesn't exist
+     */
+    CompletableFuture<long[]> getBucketSnapshotMetadata(long snapshotId);
+
+    /**
+     * Read a single segment of a bucket snapshot.
+     *
+     * @param segmentIndex
+     *            the 0-based index of the segment
+     */
+    CompletableFuture<long[]> getBucketSnapshotSegment(long snapshotId, int segmentIndex);
+
+    /**
+     * Delete a bucket snapshot and release all its resources.
+     */
+    CompletableFuture<Void> deleteBucketSnapshot(long snapshotId);
+
+    /**
+     * Close the storage and release all the resources.
+     */
+    @Override
+    void close();
+}
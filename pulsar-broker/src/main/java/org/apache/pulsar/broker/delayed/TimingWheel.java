@@ -0,0 +1,249 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.delayed;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Hierarchical timing wheel of {@code (deliverAt, ledgerId, entryId)} triples, stored in primitive arrays.
+ *
+ * <p>The first level has {@code wheelSize} slots that are {@code tickMillis} wide, and every level above has slots as
+ * wide as the whole level below. Levels are added on demand when a message is scheduled beyond the current top level.
+ * Adding a message is O(1). When the clock advances, the slots whose time has started are expired: the messages of
+ * the first level are moved to the ready list, while the ones of the upper levels are cascaded down to the level that
+ * matches their remaining delay.
+ *
+ * <p>This class is not thread-safe.
+ */
+class TimingWheel {
+
+    private static final int INITIAL_SLOT_CAPACITY = 4;
+    private static final int INITIAL_READY_CAPACITY = 16;
+
+    private final long tickMillis;
+    private final int wheelSize;
+    private final List<Level> levels = new ArrayList<>();
+
+    // Last time the wheel was advanced to
+    private long currentTime;
+
+    // Number of messages in the slots of all the levels
+    private long scheduledCount;
+
+    // (ledgerId, entryId) pairs of the expired messages
+    private long[] ready = new long[INITIAL_READY_CAPACITY * 2];
+    private int readyHead;
+    private int readyTail;
+
+    TimingWheel(long tickMillis, int wheelSize, long startTime) {
+        this.tickMillis = Math.max(1, tickMillis);
+        this.wheelSize = wheelSize;
+        this.currentTime = startTime;
+        levels.add(new Level(this.tickMillis, startTime));
+    }
+
+    private final class Level {
+        // Width of a single slot
+        final long interval;
+        // Width of the whole level
+        final long span;
+        // Start time of the slot that contains the current time
+        long currentSlotStart;
+
+        final long[][] slots = new long[wheelSize][];
+        final int[] slotSizes = new int[wheelSize];
+
+        Level(long interval, long now) {
+            this.interval = interval;
+            this.span = interval > Long.MAX_VALUE / wheelSize ? Long.MAX_VALUE : interval * wheelSize;
+            this.currentSlotStart = now - now % interval;
+        }
+
+        long add(long deliverAt, long ledgerId, long entryId) {
+            int index = (int) ((deliverAt / interval) % wheelSize);
+            long[] slot = slots[index];
+            int size = slotSizes[index];
+            if (slot == null) {
+                slot = slots[index] = new long[INITIAL_SLOT_CAPACITY * 3];
+            } else if (size * 3 == slot.length) {
+                slot = slots[index] = Arrays.copyOf(slot, slot.length * 2);
+            }
+            slot[size * 3] = deliverAt;
+            slot[size * 3 + 1] = ledgerId;
+            slot[size * 3 + 2] = entryId;
+            slotSizes[index] = size + 1;
+            return deliverAt - deliverAt % interval;
+        }
+
+        long nextExpiration() {
+            for (int k = 1; k < wheelSize; k++) {
+                if (k > (Long.MAX_VALUE - currentSlotStart) / interval) {
+                    // The top level can be wider than the range of the clock
+                    break;
+                }
+                long slotStart = currentSlotStart + k * interval;
+                if (slotSizes[(int) ((slotStart / interval) % wheelSize)] > 0) {
+                    return slotStart;
+                }
+            }
+            return Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Add a message to the wheel.
+     *
+     * @return the time at which the message will be moved out of its slot, which is not after the current time if
+     *         the message is already in the ready list
+     */
+    long add(long deliverAt, long ledgerId, long entryId) {
+        return insert(deliverAt, ledgerId, entryId);
+    }
+
+    private long insert(long deliverAt, long ledgerId, long entryId) {
+        Level first = levels.get(0);
+        if (deliverAt < first.currentSlotStart + first.interval) {
+            addReady(ledgerId, entryId);
+            return first.currentSlotStart;
+        }
+
+        scheduledCount++;
+        for (int i = 0; ; i++) {
+            Level level = i < levels.size() ? levels.get(i) : addLevel();
+            if (deliverAt - level.currentSlotStart < level.span) {
+                return level.add(deliverAt, ledgerId, entryId);
+            }
+        }
+    }
+
+    private Level addLevel() {
+        Level level = new Level(levels.get(levels.size() - 1).span, currentTime);
+        levels.add(level);
+        return level;
+    }
+
+    /**
+     * Advance the clock of the wheel and expire all the slots that start at or before {@code now}.
+     */
+    void advance(long now) {
+        if (now <= currentTime) {
+            return;
+        }
+        currentTime = now;
+
+        long[] previousSlotStarts = new long[levels.size()];
+        for (int i = 0; i < previousSlotStarts.length; i++) {
+            Level level = levels.get(i);
+            previousSlotStarts[i] = level.currentSlotStart;
+            level.currentSlotStart = now - now % level.interval;
+        }
+
+        // Expire from the top, so that the cascaded messages are expired again if they land in an expired slot
+        for (int i = previousSlotStarts.length - 1; i >= 0; i--) {
+            Level level = levels.get(i);
+            long expiredSlots = (level.currentSlotStart - previousSlotStarts[i]) / level.interval;
+            if (expiredSlots == 0) {
+                continue;
+            }
+
+            long currentSlot = level.currentSlotStart / level.interval;
+            for (long slot = currentSlot - Math.min(expiredSlots, wheelSize) + 1; slot <= currentSlot; slot++) {
+                int index = (int) (slot % wheelSize);
+                int size = level.slotSizes[index];
+                if (size == 0) {
+                    continue;
+                }
+                long[] messages = level.slots[index];
+                level.slots[index] = null;
+                level.slotSizes[index] = 0;
+                scheduledCount -= size;
+                for (int j = 0; j < size * 3; j += 3) {
+                    insert(messages[j], messages[j + 1], messages[j + 2]);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the start time of the first slot that is not expired yet and holds some messages, or
+     *         {@link Long#MAX_VALUE} if the slots are all empty
+     */
+    long nextExpiration() {
+        if (scheduledCount == 0) {
+            return Long.MAX_VALUE;
+        }
+        long expiration = Long.MAX_VALUE;
+        for (Level level : levels) {
+            expiration = Math.min(expiration, level.nextExpiration());
+        }
+        return expiration;
+    }
+
+    private void addReady(long ledgerId, long entryId) {
+        if (readyTail == ready.length) {
+            int readyCount = readyTail - readyHead;
+            if (readyHead > 0 && readyCount <= ready.length / 2) {
+                System.arraycopy(ready, readyHead, ready, 0, readyCount);
+            } else {
+                ready = Arrays.copyOfRange(ready, readyHead, ready.length * 2 + readyHead);
+            }
+            readyHead = 0;
+            readyTail = readyCount;
+        }
+        ready[readyTail++] = ledgerId;
+        ready[readyTail++] = entryId;
+    }
+
+    boolean hasReady() {
+        return readyHead < readyTail;
+    }
+
+    long peekReadyLedgerId() {
+        return ready[readyHead];
+    }
+
+    long peekReadyEntryId() {
+        return ready[readyHead + 1];
+    }
+
+    void popReady() {
+        readyHead += 2;
+        if (readyHead == readyTail) {
+            readyHead = 0;
+            readyTail = 0;
+        }
+    }
+
+    long size() {
+        return scheduledCount + (readyTail - readyHead) / 2;
+    }
+
+    void clear() {
+        levels.subList(1, levels.size()).clear();
+        Level first = levels.get(0);
+        Arrays.fill(first.slots, null);
+        Arrays.fill(first.slotSizes, 0);
+        scheduledCount = 0;
+        ready = new long[INITIAL_READY_CAPACITY * 2];
+        readyHead = 0;
+        readyTail = 0;
+    }
+}
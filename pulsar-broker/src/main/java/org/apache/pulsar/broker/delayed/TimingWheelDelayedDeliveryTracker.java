@@ -0,0 +1,214 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.delayed;
+
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.TimerTask;
+import java.time.Clock;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.bookkeeper.mledger.impl.PositionImpl;
+import org.apache.pulsar.broker.service.persistent.PersistentDispatcherMultipleConsumers;
+
+/**
+ * In memory delayed delivery tracker that indexes the messages in a hierarchical {@link TimingWheel} instead of a
+ * priority queue.
+ *
+ * <p>Adding a message is O(1) and the messages are expired in batches, one wheel slot at a time. The tick time of the
+ * wheel is fixed when the tracker is created: a message is dispatched within the tick in which it's scheduled, as
+ * the {@link InMemoryDelayedDeliveryTracker} does.
+ */
+@Slf4j
+public class TimingWheelDelayedDeliveryTracker implements DelayedDeliveryTracker, TimerTask {
+
+    private final TimingWheel timingWheel;
+
+    private final PersistentDispatcherMultipleConsumers dispatcher;
+
+    // Reference to the shared (per-broker) timer for delayed delivery
+    private final Timer timer;
+
+    // Current timeout or null if not set
+    private Timeout timeout;
+
+    // Timestamp at which the timeout is currently set
+    private long currentTimeoutTarget;
+
+    private long tickTimeMillis;
+
+    private final Clock clock;
+
+    TimingWheelDelayedDeliveryTracker(PersistentDispatcherMultipleConsumers dispatcher, Timer timer,
+                                      long tickTimeMillis, int wheelSize) {
+        this(dispatcher, timer, tickTimeMillis, wheelSize, Clock.systemUTC());
+    }
+
+    TimingWheelDelayedDeliveryTracker(PersistentDispatcherMultipleConsumers dispatcher, Timer timer,
+                                      long tickTimeMillis, int wheelSize, Clock clock) {
+        this.dispatcher = dispatcher;
+        this.timer = timer;
+        this.tickTimeMillis = tickTimeMillis;
+        this.clock = clock;
+        this.timingWheel = new TimingWheel(tickTimeMillis, wheelSize, clock.millis());
+    }
+
+    @Override
+    public boolean addMessage(long ledgerId, long entryId, long deliveryAt) {
+        long now = clock.millis();
+        if (log.isDebugEnabled()) {
+            log.debug("[{}] Add message {}:{} -- Delivery in {} ms ", dispatcher.getName(), ledgerId, entryId,
+                    deliveryAt - now);
+        }
+        if (deliveryAt < (now + tickTimeMillis)) {
+            // It's already about time to deliver this message. See InMemoryDelayedDeliveryTracker#addMessage.
+            return false;
+        }
+
+        long expiration = timingWheel.add(deliveryAt, ledgerId, entryId);
+        if (timeout == null || expiration < currentTimeoutTarget) {
+            // Only an earlier slot can move the timer, which avoids scanning the wheel on every add
+            scheduleTimer(expiration);
+        }
+        return true;
+    }
+
+    /**
+     * Return true if there's at least a message that is scheduled to be delivered already.
+     */
+    @Override
+    public boolean hasMessageAvailable() {
+        timingWheel.advance(clock.millis());
+        boolean hasMessageAvailable = timingWheel.hasReady();
+        if (!hasMessageAvailable) {
+            updateTimer();
+        }
+        return hasMessageAvailable;
+    }
+
+    /**
+     * Get a set of position of messages that have already reached.
+     */
+    @Override
+    public Set<PositionImpl> getScheduledMessages(int maxMessages) {
+        int n = maxMessages;
+        Set<PositionImpl> positions = new TreeSet<>();
+        // Expiring a slot releases all the messages due within its tick
+        timingWheel.advance(clock.millis());
+
+        while (n > 0 && timingWheel.hasReady()) {
+            positions.add(new PositionImpl(timingWheel.peekReadyLedgerId(), timingWheel.peekReadyEntryId()));
+            timingWheel.popReady();
+            --n;
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("[{}] Get scheduled messages - found {}", dispatcher.getName(), positions.size());
+        }
+        updateTimer();
+        return positions;
+    }
+
+    @Override
+    public void resetTickTime(long tickTime) {
+        if (this.tickTimeMillis != tickTime) {
+            this.tickTimeMillis = tickTime;
+        }
+    }
+
+    @Override
+    public void clear() {
+        timingWheel.clear();
+    }
+
+    @Override
+    public long getNumberOfDelayedMessages() {
+        return timingWheel.size();
+    }
+
+    private void updateTimer() {
+        long expiration = timingWheel.nextExpiration();
+        if (expiration == Long.MAX_VALUE) {
+            if (timeout != null) {
+                currentTimeoutTarget = -1;
+                timeout.cancel();
+                timeout = null;
+            }
+            return;
+        }
+        scheduleTimer(expiration);
+    }
+
+    private void scheduleTimer(long timestamp) {
+        if (timeout != null && timestamp == currentTimeoutTarget) {
+            // The timer is already set to the correct target time
+            return;
+        }
+
+        if (timeout != null) {
+            timeout.cancel();
+            timeout = null;
+        }
+
+        long delayMillis = timestamp - clock.millis();
+        if (log.isDebugEnabled()) {
+            log.debug("[{}] Start timer in {} millis", dispatcher.getName(), delayMillis);
+        }
+
+        if (delayMillis < 0) {
+            // There are messages that are already ready to be delivered. If
+            // the dispatcher is not getting them is because the consumer is
+            // either not connected or slow.
+            // We don't need to keep retriggering the timer. When the consumer
+            // catches up, the dispatcher will do the readMoreEntries() and
+            // get these messages
+            currentTimeoutTarget = -1;
+            return;
+        }
+
+        currentTimeoutTarget = timestamp;
+        timeout = timer.newTimeout(this, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void run(Timeout timeout) throws Exception {
+        if (log.isDebugEnabled()) {
+            log.debug("[{}] Timer triggered", dispatcher.getName());
+        }
+        if (timeout.isCancelled()) {
+            return;
+        }
+
+        synchronized (dispatcher) {
+            currentTimeoutTarget = -1;
+            this.timeout = null;
+            dispatcher.readMoreEntries();
+        }
+    }
+
+    @Override
+    public void close() {
+        timingWheel.clear();
+        if (timeout != null) {
+            timeout.cancel();
+        }
+    }
+}
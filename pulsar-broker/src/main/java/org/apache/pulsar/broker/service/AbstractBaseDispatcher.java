@@ -21,12 +21,14 @@ package org.apache.pulsar.broker.service;
 
 import static org.apache.pulsar.broker.cache.ConfigurationCacheService.POLICIES;
 import io.netty.buffer.ByteBuf;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.bookkeeper.mledger.Entry;
 import org.apache.bookkeeper.mledger.ManagedCursor;
+import org.apache.bookkeeper.mledger.Position;
 import org.apache.bookkeeper.mledger.impl.PositionImpl;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.pulsar.broker.ServiceConfiguration;
@@ -112,6 +114,8 @@ public abstract class AbstractBaseDispatcher implements Dispatcher {
         int totalMessages = 0;
         long totalBytes = 0;
         int totalChunkedMessages = 0;
+        SubscriptionMessageFilter messageFilter = subscription != null ? subscription.getMessageFilter() : null;
+        List<Position> filteredPositions = null;
         for (int i = 0, entriesSize = entries.size(); i < entriesSize; i++) {
             Entry entry = entries.get(i);
             if (entry == null) {
@@ -152,6 +156,15 @@ public abstract class AbstractBaseDispatcher implements Dispatcher {
                 subscription.acknowledgeMessage(Collections.singletonList(pos), AckType.Individual,
                         Collections.emptyMap());
                 continue;
+            } else if (messageFilter != null && !messageFilter.matches(msgMetadata)) {
+                // Not selected by the subscription filter, acknowledged together with the others after the loop
+                if (filteredPositions == null) {
+                    filteredPositions = new ArrayList<>();
+                }
+                filteredPositions.add(entry.getPosition());
+                entries.set(i, null);
+                entry.release();
+                continue;
             } else if (msgMetadata.hasDeliverAtTime()
                     && trackDelayedDelivery(entry.getLedgerId(), entry.getEntryId(), msgMetadata)) {
                 // The message is marked for delayed delivery. Ignore for now.
@@ -181,6 +194,9 @@ public abstract class AbstractBaseDispatcher implements Dispatcher {
                 interceptor.beforeSendMessage(subscription, entry, ackSet, msgMetadata);
             }
         }
+        if (filteredPositions != null) {
+            subscription.acknowledgeMessage(filteredPositions, AckType.Individual, Collections.emptyMap());
+        }
         sendMessageInfo.setTotalMessages(totalMessages);
         sendMessageInfo.setTotalBytes(totalBytes);
         sendMessageInfo.setTotalChunkedMessages(totalChunkedMessages);
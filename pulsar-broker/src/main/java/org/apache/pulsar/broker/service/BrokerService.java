@@ -287,7 +287,8 @@ public class BrokerService implements Closeable {
         final DefaultThreadFactory acceptorThreadFactory = new DefaultThreadFactory("pulsar-acceptor");
 
         this.acceptorGroup = EventLoopUtil.newEventLoopGroup(
-                pulsar.getConfiguration().getNumAcceptorThreads(), false, acceptorThreadFactory);
+                pulsar.getConfiguration().getNumAcceptorThreads(), false, pulsar.getConfiguration().getIoTransport(),
+                acceptorThreadFactory);
         this.workerGroup = eventLoopGroup;
         this.statsUpdater = Executors
                 .newSingleThreadScheduledExecutor(new DefaultThreadFactory("pulsar-stats-updater"));
@@ -1368,6 +1369,10 @@ public class BrokerService implements Closeable {
                             .setMaxUnackedRangesToPersist(serviceConfig.getManagedLedgerMaxUnackedRangesToPersist());
                     managedLedgerConfig.setMaxUnackedRangesToPersistInZk(
                             serviceConfig.getManagedLedgerMaxUnackedRangesToPersistInZooKeeper());
+                    managedLedgerConfig.setUnackedRangesDeltaPersistenceEnabled(
+                            serviceConfig.isManagedLedgerUnackedRangesDeltaPersistenceEnabled());
+                    managedLedgerConfig.setUnackedRangesSnapshotInterval(
+                            serviceConfig.getManagedLedgerUnackedRangesSnapshotInterval());
                     managedLedgerConfig.setMaxEntriesPerLedger(serviceConfig.getManagedLedgerMaxEntriesPerLedger());
                     managedLedgerConfig
                             .setMinimumRolloverTime(serviceConfig.getManagedLedgerMinLedgerRolloverTimeMinutes(),
@@ -1386,6 +1391,8 @@ public class BrokerService implements Closeable {
                     managedLedgerConfig.setMetadataEnsembleSize(serviceConfig.getManagedLedgerDefaultEnsembleSize());
                     managedLedgerConfig.setUnackedRangesOpenCacheSetEnabled(
                             serviceConfig.isManagedLedgerUnackedRangesOpenCacheSetEnabled());
+                    managedLedgerConfig.setUnackedRangesCompressedSetEnabled(
+                            serviceConfig.isManagedLedgerUnackedRangesCompressedSetEnabled());
                     managedLedgerConfig.setMetadataWriteQuorumSize(serviceConfig.getManagedLedgerDefaultWriteQuorum());
                     managedLedgerConfig.setMetadataAckQuorumSize(serviceConfig.getManagedLedgerDefaultAckQuorum());
                     managedLedgerConfig
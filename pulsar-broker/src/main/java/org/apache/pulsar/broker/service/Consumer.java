@@ -21,6 +21,7 @@ package org.apache.pulsar.broker.service;
 import static com.google.common.base.Preconditions.checkArgument;
 import com.google.common.base.MoreObjects;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Range;
 import io.netty.util.concurrent.Future;
 import io.netty.util.concurrent.Promise;
 import java.util.ArrayList;
@@ -43,6 +44,7 @@ import org.apache.pulsar.broker.service.persistent.PersistentSubscription;
 import org.apache.pulsar.broker.service.persistent.PersistentTopic;
 import org.apache.pulsar.client.api.MessageId;
 import org.apache.pulsar.client.api.transaction.TxnID;
+import org.apache.pulsar.common.api.proto.AckRange;
 import org.apache.pulsar.common.api.proto.CommandAck;
 import org.apache.pulsar.common.api.proto.CommandAck.AckType;
 import org.apache.pulsar.common.api.proto.CommandSubscribe.InitialPosition;
@@ -196,6 +198,10 @@ public class Consumer {
         return consumerName;
     }
 
+    public Map<String, String> getMetadata() {
+        return metadata;
+    }
+
     void notifyActiveConsumerChange(Consumer activeConsumer) {
         if (log.isDebugEnabled()) {
             log.debug("notify consumer {} - that [{}] for subscription {} has new active consumer : {}",
@@ -380,6 +386,13 @@ public class Consumer {
 
     //this method is for individual ack not carry the transaction
     private CompletableFuture<Void> individualAckNormal(CommandAck ack, Map<String, Long> properties) {
+        List<Range<PositionImpl>> ackRanges;
+        try {
+            ackRanges = getAckRanges(ack);
+        } catch (BrokerServiceException.NotAllowedException e) {
+            log.warn("[{}] [{}] Rejected ack: {}", subscription, consumerId, e.getMessage());
+            return FutureUtil.failedFuture(e);
+        }
         List<Position> positionsAcked = new ArrayList<>();
 
         for (int i = 0; i < ack.getMessageIdsCount(); i++) {
@@ -407,7 +420,13 @@ public class Consumer {
 
             checkAckValidationError(ack, position);
         }
-        subscription.acknowledgeMessage(positionsAcked, AckType.Individual, properties);
+        if (!positionsAcked.isEmpty() || ackRanges.isEmpty()) {
+            subscription.acknowledgeMessage(positionsAcked, AckType.Individual, properties);
+        }
+        if (!ackRanges.isEmpty()) {
+            handleAckRanges(ack, ackRanges);
+            subscription.acknowledgeMessageRanges(ackRanges, properties);
+        }
         CompletableFuture<Void> completableFuture = new CompletableFuture<>();
         completableFuture.complete(null);
         if (isTransactionEnabled() && Subscription.isIndividualAckMode(subType)) {
@@ -436,6 +455,14 @@ public class Consumer {
                     new BrokerServiceException.NotAllowedException("Server don't support transaction ack!"));
         }
 
+        List<Range<PositionImpl>> ackRanges;
+        try {
+            ackRanges = getAckRanges(ack);
+        } catch (BrokerServiceException.NotAllowedException e) {
+            log.warn("[{}] [{}] Rejected ack: {}", subscription, consumerId, e.getMessage());
+            return FutureUtil.failedFuture(e);
+        }
+
         for (int i = 0; i < ack.getMessageIdsCount(); i++) {
             MessageIdData msgId = ack.getMessageIdAt(i);
             PositionImpl position;
@@ -459,6 +486,15 @@ public class Consumer {
 
             checkAckValidationError(ack, position);
         }
+        // The pending ack handle tracks the acks of a transaction entry by entry
+        for (Range<PositionImpl> range : ackRanges) {
+            long ledgerId = range.lowerEndpoint().getLedgerId();
+            for (long entryId = range.lowerEndpoint().getEntryId(); entryId <= range.upperEndpoint().getEntryId();
+                 entryId++) {
+                positionsAcked.add(new MutablePair<>(PositionImpl.get(ledgerId, entryId), 0));
+            }
+        }
+        handleAckRanges(ack, ackRanges);
 
         CompletableFuture<Void> completableFuture = transactionIndividualAcknowledge(ack.getTxnidMostBits(),
                 ack.getTxnidLeastBits(), positionsAcked);
@@ -483,6 +519,54 @@ public class Consumer {
         }
     }
 
+    /**
+     * Converts the ack ranges of an individual ack to closed ranges of positions.
+     *
+     * @throws BrokerServiceException.NotAllowedException if a range is reversed or spans more than
+     *         {@code maxEntriesPerAckRange} entries
+     */
+    private List<Range<PositionImpl>> getAckRanges(CommandAck ack) throws BrokerServiceException.NotAllowedException {
+        if (ack.getAckRangesCount() == 0) {
+            return Collections.emptyList();
+        }
+        int maxEntriesPerAckRange = cnx.getBrokerService().getPulsar().getConfig().getMaxEntriesPerAckRange();
+        List<Range<PositionImpl>> ranges = new ArrayList<>(ack.getAckRangesCount());
+        for (int i = 0; i < ack.getAckRangesCount(); i++) {
+            AckRange range = ack.getAckRangeAt(i);
+            long ledgerId = range.getLedgerId();
+            long startEntryId = range.getStartEntryId();
+            long endEntryId = range.getEndEntryId();
+            if (startEntryId < 0 || endEntryId < startEntryId
+                    || (maxEntriesPerAckRange > 0 && endEntryId - startEntryId >= maxEntriesPerAckRange)) {
+                throw new BrokerServiceException.NotAllowedException(
+                        "Invalid ack range " + ledgerId + ":" + startEntryId + "-" + endEntryId);
+            }
+            ranges.add(Range.closed(PositionImpl.get(ledgerId, startEntryId), PositionImpl.get(ledgerId, endEntryId)));
+        }
+        return ranges;
+    }
+
+    /**
+     * The whole entries of the ack ranges are acked, so they are also removed from the pending acks in individual ack
+     * mode.
+     */
+    private void handleAckRanges(CommandAck ack, List<Range<PositionImpl>> ranges) {
+        boolean individualAckMode = Subscription.isIndividualAckMode(subType);
+        for (Range<PositionImpl> range : ranges) {
+            if (individualAckMode) {
+                long ledgerId = range.lowerEndpoint().getLedgerId();
+                for (long entryId = range.lowerEndpoint().getEntryId(); entryId <= range.upperEndpoint().getEntryId();
+                     entryId++) {
+                    removePendingAcks(PositionImpl.get(ledgerId, entryId));
+                }
+            }
+            if (ack.hasValidationError()) {
+                log.error("[{}] [{}] Received ack for corrupted messages in {} - Reason: {}", subscription,
+                        consumerId, range, ack.getValidationError());
+            }
+        }
+    }
+
     private void checkCanRemovePendingAcksAndHandle(PositionImpl position, MessageIdData msgId) {
         if (Subscription.isIndividualAckMode(subType) && msgId.getAckSetsCount() == 0) {
             removePendingAcks(position);
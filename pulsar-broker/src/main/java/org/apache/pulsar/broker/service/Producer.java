@@ -28,12 +28,17 @@ import com.google.common.base.MoreObjects;
 import io.netty.buffer.ByteBuf;
 import io.netty.util.Recycler;
 import io.netty.util.Recycler.Handle;
+import io.netty.util.internal.PlatformDependent;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Queue;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 import org.apache.pulsar.broker.service.BrokerServiceException.TopicClosedException;
 import org.apache.pulsar.broker.service.BrokerServiceException.TopicTerminatedException;
@@ -91,6 +96,15 @@ public class Producer {
     private final SchemaVersion schemaVersion;
     private final String clientAddress; // IP address only, no port number included
 
+    // When the client supports them, the publish results are answered in completion order by a task of the
+    // connection thread, which covers the receipts of consecutive entries with a single command
+    private final boolean batchedSendReceipts;
+    private final Queue<MessagePublishContext> completedPublishes;
+    private final List<MessagePublishContext> receiptsBatch;
+    private volatile int sendReceiptsScheduled = 0;
+    private static final AtomicIntegerFieldUpdater<Producer> sendReceiptsScheduledUpdater =
+            AtomicIntegerFieldUpdater.newUpdater(Producer.class, "sendReceiptsScheduled");
+
     public Producer(Topic topic, TransportCnx cnx, long producerId, String producerName, String appId,
             boolean isEncrypted, Map<String, String> metadata, SchemaVersion schemaVersion, long epoch,
             boolean userProvidedProducerName,
@@ -134,6 +148,10 @@ public class Producer {
         this.topicEpoch = topicEpoch;
 
         this.clientAddress = cnx.clientSourceAddress();
+
+        this.batchedSendReceipts = cnx.isBatchedSendReceiptCompatibleVersion();
+        this.completedPublishes = batchedSendReceipts ? PlatformDependent.newMpscQueue() : null;
+        this.receiptsBatch = batchedSendReceipts ? new ArrayList<>() : null;
     }
 
     @Override
@@ -317,6 +335,9 @@ public class Producer {
         private long highestSequenceId;
         private long originalHighestSequenceId;
 
+        // set when the publish failed and its result is answered by a batch of receipts
+        private Exception exception;
+
         public String getProducerName() {
             return producer.getProducerName();
         }
@@ -370,20 +391,12 @@ public class Producer {
         @Override
         public void completed(Exception exception, long ledgerId, long entryId) {
             if (exception != null) {
-                final ServerError serverError = getServerError(exception);
-
-                producer.cnx.execute(() -> {
-                    if (!(exception instanceof TopicClosedException)) {
-                        // For TopicClosed exception there's no need to send explicit error, since the client was
-                        // already notified
-                        long callBackSequenceId = Math.max(highestSequenceId, sequenceId);
-                        producer.cnx.getCommandSender().sendSendError(producer.producerId, callBackSequenceId,
-                                serverError, exception.getMessage());
-                    }
-                    producer.cnx.completedSendOperation(producer.isNonPersistentTopic, msgSize);
-                    producer.publishOperationCompleted();
-                    recycle();
-                });
+                if (producer.batchedSendReceipts) {
+                    this.exception = exception;
+                    producer.publishCompleted(this);
+                } else {
+                    producer.cnx.execute(() -> sendError(exception));
+                }
             } else {
                 if (log.isDebugEnabled()) {
                     log.debug("[{}] [{}] [{}] triggered send callback. cnx {}, sequenceId {}", producer.topic,
@@ -392,8 +405,25 @@ public class Producer {
 
                 this.ledgerId = ledgerId;
                 this.entryId = entryId;
-                producer.cnx.execute(this);
+                if (producer.batchedSendReceipts) {
+                    producer.publishCompleted(this);
+                } else {
+                    producer.cnx.execute(this);
+                }
+            }
+        }
+
+        private void sendError(Exception exception) {
+            if (!(exception instanceof TopicClosedException)) {
+                // For TopicClosed exception there's no need to send explicit error, since the client was
+                // already notified
+                long callBackSequenceId = Math.max(highestSequenceId, sequenceId);
+                producer.cnx.getCommandSender().sendSendError(producer.producerId, callBackSequenceId,
+                        getServerError(exception), exception.getMessage());
             }
+            producer.cnx.completedSendOperation(producer.isNonPersistentTopic, msgSize);
+            producer.publishOperationCompleted();
+            recycle();
         }
 
         private ServerError getServerError(Exception exception) {
@@ -418,11 +448,18 @@ public class Producer {
                         producer.producerName, producer.producerId, producer.cnx, sequenceId);
             }
 
+            producer.cnx.getCommandSender().sendSendReceiptResponse(producer.producerId, sequenceId, highestSequenceId,
+                    ledgerId, entryId);
+            receiptSent();
+        }
+
+        /**
+         * Records the completion of the operation once its receipt was sent, and recycles the context.
+         */
+        private void receiptSent() {
             // stats
             rateIn.recordMultipleEvents(batchSize, msgSize);
             producer.topic.recordAddLatency(System.nanoTime() - startTimeNs, TimeUnit.NANOSECONDS);
-            producer.cnx.getCommandSender().sendSendReceiptResponse(producer.producerId, sequenceId, highestSequenceId,
-                    ledgerId, entryId);
             producer.cnx.completedSendOperation(producer.isNonPersistentTopic, msgSize);
             if (this.chunked) {
                 producer.chunkedMessageRate.recordEvent();
@@ -492,10 +529,68 @@ public class Producer {
             batchSize = 0L;
             startTimeNs = -1L;
             chunked = false;
+            exception = null;
             recyclerHandle.recycle(this);
         }
     }
 
+    private void publishCompleted(MessagePublishContext publishContext) {
+        completedPublishes.add(publishContext);
+        if (sendReceiptsScheduledUpdater.compareAndSet(this, 0, 1)) {
+            cnx.execute(this::sendCompletedPublishReceipts);
+        }
+    }
+
+    /**
+     * Answers the completed publishes in completion order. The receipts of the consecutive entries of a ledger
+     * are sent as a single command covering them all.
+     */
+    private void sendCompletedPublishReceipts() {
+        sendReceiptsScheduledUpdater.set(this, 0);
+        MessagePublishContext publishContext;
+        while ((publishContext = completedPublishes.poll()) != null) {
+            if (publishContext.exception != null || publishContext.chunked) {
+                sendReceiptsBatch();
+                if (publishContext.exception != null) {
+                    publishContext.sendError(publishContext.exception);
+                } else {
+                    publishContext.run();
+                }
+                continue;
+            }
+            if (!receiptsBatch.isEmpty()) {
+                MessagePublishContext last = receiptsBatch.get(receiptsBatch.size() - 1);
+                if (publishContext.ledgerId != last.ledgerId || publishContext.entryId != last.entryId + 1) {
+                    sendReceiptsBatch();
+                }
+            }
+            receiptsBatch.add(publishContext);
+        }
+        sendReceiptsBatch();
+    }
+
+    private void sendReceiptsBatch() {
+        int size = receiptsBatch.size();
+        if (size == 0) {
+            return;
+        } else if (size == 1) {
+            receiptsBatch.get(0).run();
+        } else {
+            MessagePublishContext first = receiptsBatch.get(0);
+            MessagePublishContext last = receiptsBatch.get(size - 1);
+            if (log.isDebugEnabled()) {
+                log.debug("[{}] [{}] [{}] Persisted {} messages. cnx {}, sequenceIds {}-{}", topic, producerName,
+                        producerId, size, cnx, first.sequenceId, last.sequenceId);
+            }
+            cnx.getCommandSender().sendSendReceiptResponse(producerId, first.sequenceId, first.entryId,
+                    last.sequenceId, last.highestSequenceId, last.ledgerId, last.entryId);
+            for (int i = 0; i < size; i++) {
+                receiptsBatch.get(i).receiptSent();
+            }
+        }
+        receiptsBatch.clear();
+    }
+
     public Topic getTopic() {
         return topic;
     }
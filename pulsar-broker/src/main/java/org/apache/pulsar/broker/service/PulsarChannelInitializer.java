@@ -26,8 +26,12 @@ import io.netty.channel.ChannelInitializer;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
 import io.netty.handler.flow.FlowControlHandler;
+import io.netty.handler.flush.FlushConsolidationHandler;
 import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslHandler;
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.Gauge;
+import io.prometheus.client.Gauge.Child;
 import java.net.SocketAddress;
 import java.util.concurrent.TimeUnit;
 import lombok.extern.slf4j.Slf4j;
@@ -35,6 +39,7 @@ import org.apache.pulsar.broker.PulsarService;
 import org.apache.pulsar.broker.ServiceConfiguration;
 import org.apache.pulsar.common.protocol.ByteBufPair;
 import org.apache.pulsar.common.protocol.Commands;
+import org.apache.pulsar.common.protocol.FlushStatsHandler;
 import org.apache.pulsar.common.protocol.OptionalProxyProtocolDecoder;
 import org.apache.pulsar.common.util.NettyServerSslContextBuilder;
 import org.apache.pulsar.common.util.SslContextAutoRefreshBuilder;
@@ -44,6 +49,26 @@ import org.apache.pulsar.common.util.keystoretls.NettySSLContextAutoRefreshBuild
 public class PulsarChannelInitializer extends ChannelInitializer<SocketChannel> {
 
     public static final String TLS_HANDLER = "tls";
+    public static final String FLUSH_CONSOLIDATION_HANDLER = "flushConsolidation";
+
+    // counts the writes and flushes of all the connections of the broker
+    private static final FlushStatsHandler FLUSH_STATS = new FlushStatsHandler();
+
+    static {
+        Gauge.build("pulsar_broker_connection_writes", "-").create().setChild(new Child() {
+            @Override
+            public double get() {
+                return FLUSH_STATS.getWrites();
+            }
+        }).register(CollectorRegistry.defaultRegistry);
+
+        Gauge.build("pulsar_broker_connection_flushes", "-").create().setChild(new Child() {
+            @Override
+            public double get() {
+                return FLUSH_STATS.getFlushes();
+            }
+        }).register(CollectorRegistry.defaultRegistry);
+    }
 
     private final PulsarService pulsar;
     private final boolean enableTls;
@@ -114,6 +139,16 @@ public class PulsarChannelInitializer extends ChannelInitializer<SocketChannel>
             } else {
                 ch.pipeline().addLast(TLS_HANDLER, sslCtxRefresher.get().newHandler(ch.alloc()));
             }
+        }
+
+        ch.pipeline().addLast(FlushStatsHandler.NAME, FLUSH_STATS);
+        if (brokerConf.isConnectionFlushConsolidationEnabled()) {
+            // the flushes are consolidated before the TLS handler, which then encrypts larger writes
+            ch.pipeline().addLast(FLUSH_CONSOLIDATION_HANDLER,
+                    new FlushConsolidationHandler(brokerConf.getConnectionFlushConsolidationMaxFlushes(), true));
+        }
+
+        if (this.enableTls) {
             ch.pipeline().addLast("ByteBufPairEncoder", ByteBufPair.COPYING_ENCODER);
         } else {
             ch.pipeline().addLast("ByteBufPairEncoder", ByteBufPair.ENCODER);
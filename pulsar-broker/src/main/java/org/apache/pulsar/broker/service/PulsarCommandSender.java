@@ -47,6 +47,13 @@ public interface PulsarCommandSender {
     void sendSendReceiptResponse(long producerId, long sequenceId, long highestId, long ledgerId,
                                  long entryId);
 
+    /**
+     * Send a receipt for the consecutive entries of a ledger, from {@code firstEntryId} persisted for the send
+     * operation of {@code firstSequenceId}, to {@code entryId} persisted for the one of {@code sequenceId}.
+     */
+    void sendSendReceiptResponse(long producerId, long firstSequenceId, long firstEntryId, long sequenceId,
+                                 long highestId, long ledgerId, long entryId);
+
     void sendSendError(long producerId, long sequenceId, ServerError error, String errorMsg);
 
     void sendGetTopicsOfNamespaceResponse(List<String> topics, long requestId);
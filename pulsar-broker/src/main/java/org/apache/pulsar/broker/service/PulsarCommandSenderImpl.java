@@ -19,6 +19,7 @@
 package org.apache.pulsar.broker.service;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelPromise;
@@ -39,6 +40,9 @@ import org.apache.pulsar.common.schema.SchemaInfo;
 @Slf4j
 public class PulsarCommandSenderImpl implements PulsarCommandSender {
 
+    // Initial room for a CommandMessage header, without ack set, in the zero-copy dispatch buffer
+    private static final int ESTIMATED_MESSAGE_HEADER_SIZE = 64;
+
     private final BrokerInterceptor interceptor;
     private final ServerCnx cnx;
 
@@ -108,6 +112,16 @@ public class PulsarCommandSenderImpl implements PulsarCommandSender {
         cnx.ctx().writeAndFlush(outBuf);
     }
 
+    @Override
+    public void sendSendReceiptResponse(long producerId, long firstSequenceId, long firstEntryId, long sequenceId,
+                                        long highestId, long ledgerId, long entryId) {
+        BaseCommand command = Commands.newSendReceiptCommand(producerId, firstSequenceId, firstEntryId, sequenceId,
+                highestId, ledgerId, entryId);
+        safeIntercept(command, cnx);
+        ByteBuf outBuf = Commands.serializeWithSize(command);
+        cnx.ctx().writeAndFlush(outBuf);
+    }
+
     @Override
     public void sendSendError(long producerId, long sequenceId, ServerError error, String errorMsg) {
         BaseCommand command = Commands.newSendErrorCommand(producerId, sequenceId, error, errorMsg);
@@ -221,6 +235,19 @@ public class PulsarCommandSenderImpl implements PulsarCommandSender {
         final ChannelHandlerContext ctx = cnx.ctx();
         final ChannelPromise writePromise = ctx.newPromise();
         ctx.channel().eventLoop().execute(() -> {
+            // In zero-copy mode, the headers of all the messages are serialized in a single buffer and written
+            // together with the entry buffers, instead of writing a ByteBufPair per message
+            final boolean zeroCopy = cnx.isZeroCopyDispatch();
+            ByteBuf headers = null;
+            int[] headerOffsets = null;
+            ByteBuf[] payloads = null;
+            int messages = 0;
+            if (zeroCopy) {
+                headers = ctx.alloc().directBuffer(entries.size() * ESTIMATED_MESSAGE_HEADER_SIZE);
+                headerOffsets = new int[entries.size() + 1];
+                payloads = new ByteBuf[entries.size()];
+            }
+
             for (int i = 0; i < entries.size(); i++) {
                 Entry entry = entries.get(i);
                 if (entry == null) {
@@ -261,16 +288,41 @@ public class PulsarCommandSenderImpl implements PulsarCommandSender {
                     redeliveryCount = redeliveryTracker.incrementAndGetRedeliveryCount(position);
                 }
 
-                ctx.write(
-                        cnx.newMessageAndIntercept(consumerId, entry.getLedgerId(), entry.getEntryId(), partitionIdx,
-                                redeliveryCount, metadataAndPayload,
-                                batchIndexesAcks == null ? null : batchIndexesAcks.getAckSet(i), topicName),
-                        ctx.voidPromise());
+                long[] ackSet = batchIndexesAcks == null ? null : batchIndexesAcks.getAckSet(i);
+                if (zeroCopy) {
+                    headerOffsets[messages] = headers.writerIndex();
+                    Commands.writeCommandMessageHeaders(headers,
+                            Commands.newMessageCommand(consumerId, entry.getLedgerId(), entry.getEntryId(),
+                                    partitionIdx, redeliveryCount, ackSet),
+                            metadataAndPayload.readableBytes());
+                    payloads[messages++] = metadataAndPayload;
+                } else {
+                    ctx.write(
+                            cnx.newMessageAndIntercept(consumerId, entry.getLedgerId(), entry.getEntryId(),
+                                    partitionIdx, redeliveryCount, metadataAndPayload, ackSet, topicName),
+                            ctx.voidPromise());
+                }
                 entry.release();
             }
 
-            // Use an empty write here so that we can just tie the flush with the write promise for last entry
-            ctx.writeAndFlush(Unpooled.EMPTY_BUFFER, writePromise);
+            if (zeroCopy && messages > 0) {
+                headerOffsets[messages] = headers.writerIndex();
+                // The slices are only taken once all the headers are written, since writing may reallocate
+                CompositeByteBuf buffer = ctx.alloc().compositeDirectBuffer(messages * 2);
+                for (int i = 0; i < messages; i++) {
+                    buffer.addComponent(true,
+                            headers.retainedSlice(headerOffsets[i], headerOffsets[i + 1] - headerOffsets[i]));
+                    buffer.addComponent(true, payloads[i]);
+                }
+                headers.release();
+                ctx.writeAndFlush(buffer, writePromise);
+            } else {
+                if (headers != null) {
+                    headers.release();
+                }
+                // Use an empty write here so that we can just tie the flush with the write promise for last entry
+                ctx.writeAndFlush(Unpooled.EMPTY_BUFFER, writePromise);
+            }
             batchSizes.recyle();
             if (batchIndexesAcks != null) {
                 batchIndexesAcks.recycle();
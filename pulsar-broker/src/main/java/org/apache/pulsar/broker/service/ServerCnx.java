@@ -179,6 +179,8 @@ public class ServerCnx extends PulsarHandler implements TransportCnx {
     private Set<String> proxyRoles;
     private boolean authenticateOriginalAuthData;
     private final boolean schemaValidationEnforced;
+    private final boolean dispatcherZeroCopyEnabled;
+    private boolean zeroCopyDispatch;
     private String authMethod = "none";
     private final int maxMessageSize;
     private boolean preciseDispatcherFlowControl;
@@ -236,6 +238,7 @@ public class ServerCnx extends PulsarHandler implements TransportCnx {
         this.proxyRoles = conf.getProxyRoles();
         this.authenticateOriginalAuthData = conf.isAuthenticateOriginalAuthData();
         this.schemaValidationEnforced = conf.isSchemaValidationEnforced();
+        this.dispatcherZeroCopyEnabled = conf.isDispatcherZeroCopyEnabled();
         this.maxMessageSize = conf.getMaxMessageSize();
         this.maxPendingSendRequests = conf.getMaxPendingPublishRequestsPerConnection();
         this.resumeReadsThreshold = maxPendingSendRequests / 2;
@@ -264,6 +267,9 @@ public class ServerCnx extends PulsarHandler implements TransportCnx {
         log.info("New connection from {}", remoteAddress);
         this.ctx = ctx;
         this.commandSender = new PulsarCommandSenderImpl(getBrokerService().getInterceptor(), this);
+        // TLS handlers may modify the buffers they are given, and interceptors need to see every message command
+        this.zeroCopyDispatch = dispatcherZeroCopyEnabled && getBrokerService().getInterceptor() == null
+                && ctx.pipeline().get(PulsarChannelInitializer.TLS_HANDLER) == null;
         this.service.getPulsarStats().recordConnectionCreate();
         cnxsPerThread.get().add(this);
     }
@@ -2468,6 +2474,10 @@ public class ServerCnx extends PulsarHandler implements TransportCnx {
         }
     }
 
+    public boolean isZeroCopyDispatch() {
+        return zeroCopyDispatch;
+    }
+
     public ByteBufPair newMessageAndIntercept(long consumerId, long ledgerId, long entryId, int partition,
             int redeliveryCount, ByteBuf metadataAndPayload, long[] ackSet, String topic) {
         BaseCommand command = Commands.newMessageCommand(consumerId, ledgerId, entryId, partition, redeliveryCount,
@@ -2533,6 +2543,11 @@ public class ServerCnx extends PulsarHandler implements TransportCnx {
         return getRemoteEndpointProtocolVersion() >= ProtocolVersion.v4.getValue();
     }
 
+    @Override
+    public boolean isBatchedSendReceiptCompatibleVersion() {
+        return Commands.peerSupportsBatchedSendReceipts(getRemoteEndpointProtocolVersion());
+    }
+
     boolean supportsAuthenticationRefresh() {
         return features != null && features.isSupportsAuthRefresh();
     }
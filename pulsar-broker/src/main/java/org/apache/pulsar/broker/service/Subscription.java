@@ -18,6 +18,8 @@
  */
 package org.apache.pulsar.broker.service;
 
+import com.google.common.collect.Range;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
@@ -49,6 +51,21 @@ public interface Subscription {
 
     void acknowledgeMessage(List<Position> positions, AckType ackType, Map<String, Long> properties);
 
+    /**
+     * Individually acknowledge the entries of the closed ranges of positions, each range spanning the entries of a
+     * single ledger.
+     */
+    default void acknowledgeMessageRanges(List<Range<PositionImpl>> ranges, Map<String, Long> properties) {
+        List<Position> positions = new ArrayList<>();
+        ranges.forEach(range -> {
+            for (long entryId = range.lowerEndpoint().getEntryId(); entryId <= range.upperEndpoint().getEntryId();
+                 entryId++) {
+                positions.add(PositionImpl.get(range.lowerEndpoint().getLedgerId(), entryId));
+            }
+        });
+        acknowledgeMessage(positions, AckType.Individual, properties);
+    }
+
     String getTopicName();
 
     boolean isReplicated();
@@ -61,6 +78,13 @@ public interface Subscription {
         return 0;
     }
 
+    /**
+     * @return the filter applied by the broker to the entries dispatched to this subscription, or null
+     */
+    default SubscriptionMessageFilter getMessageFilter() {
+        return null;
+    }
+
     List<Consumer> getConsumers();
 
     CompletableFuture<Void> close();
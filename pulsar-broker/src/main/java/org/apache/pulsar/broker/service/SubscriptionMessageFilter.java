@@ -0,0 +1,133 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+import org.apache.pulsar.common.api.proto.KeyValue;
+import org.apache.pulsar.common.api.proto.MessageMetadata;
+import org.apache.pulsar.common.util.ObjectMapperFactory;
+
+/**
+ * Filter evaluated by the broker on the metadata of the entries dispatched to a subscription.
+ *
+ * <p>The filter is a property of the subscription, persisted with the topic. It is set by the first consumer that
+ * declares it while no other consumer is connected, and every other consumer of the subscription must then declare
+ * the same filter. Filters are only accepted when {@code subscriptionMessageFilterEnabled} is set in the broker
+ * configuration. The filter is declared by the consumers through their metadata:
+ * <ul>
+ *     <li>{@code pulsar.filter.property.<name>=<value>}: the message must have the property {@code name} set to
+ *     {@code value}. When several properties are listed, all of them must match.</li>
+ *     <li>{@code pulsar.filter.key-prefix=<prefix>}: the message key must start with {@code prefix}.</li>
+ * </ul>
+ *
+ * <p>Batch entries are always dispatched, since the properties and keys of the individual messages are only
+ * available in the batch payload.
+ */
+@EqualsAndHashCode
+@ToString
+public final class SubscriptionMessageFilter {
+
+    public static final String FILTER_PROPERTY_PREFIX = "pulsar.filter.property.";
+    public static final String FILTER_KEY_PREFIX = "pulsar.filter.key-prefix";
+
+    private final Map<String, String> properties;
+    private final String keyPrefix;
+
+    private SubscriptionMessageFilter(Map<String, String> properties, String keyPrefix) {
+        this.properties = properties;
+        this.keyPrefix = keyPrefix;
+    }
+
+    /**
+     * Build the filter declared in the metadata of a consumer.
+     *
+     * @return the filter, or null if the metadata doesn't declare any
+     */
+    public static SubscriptionMessageFilter fromMetadata(Map<String, String> metadata) {
+        if (metadata == null || metadata.isEmpty()) {
+            return null;
+        }
+        Map<String, String> properties = new TreeMap<>();
+        metadata.forEach((key, value) -> {
+            if (key.startsWith(FILTER_PROPERTY_PREFIX)) {
+                properties.put(key.substring(FILTER_PROPERTY_PREFIX.length()), value);
+            }
+        });
+        String keyPrefix = metadata.get(FILTER_KEY_PREFIX);
+        if (properties.isEmpty() && keyPrefix == null) {
+            return null;
+        }
+        return new SubscriptionMessageFilter(Collections.unmodifiableMap(properties), keyPrefix);
+    }
+
+    /**
+     * @return the filter as declared in the metadata of the consumers
+     */
+    public Map<String, String> toMetadata() {
+        Map<String, String> metadata = new TreeMap<>();
+        properties.forEach((key, value) -> metadata.put(FILTER_PROPERTY_PREFIX + key, value));
+        if (keyPrefix != null) {
+            metadata.put(FILTER_KEY_PREFIX, keyPrefix);
+        }
+        return metadata;
+    }
+
+    public String serialize() throws IOException {
+        return ObjectMapperFactory.getThreadLocal().writeValueAsString(toMetadata());
+    }
+
+    public static SubscriptionMessageFilter deserialize(String serialized) throws IOException {
+        return fromMetadata(ObjectMapperFactory.getThreadLocal().readValue(serialized,
+                new TypeReference<Map<String, String>>() {}));
+    }
+
+    /**
+     * @return true if the entry must be dispatched to the subscription
+     */
+    public boolean matches(MessageMetadata metadata) {
+        if (metadata.hasNumMessagesInBatch()) {
+            return true;
+        }
+        if (keyPrefix != null && (!metadata.hasPartitionKey() || !metadata.getPartitionKey().startsWith(keyPrefix))) {
+            return false;
+        }
+        for (Map.Entry<String, String> expected : properties.entrySet()) {
+            if (!hasProperty(metadata, expected.getKey(), expected.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean hasProperty(MessageMetadata metadata, String key, String value) {
+        for (int i = 0, n = metadata.getPropertiesCount(); i < n; i++) {
+            KeyValue property = metadata.getPropertyAt(i);
+            if (key.equals(property.getKey())) {
+                return value.equals(property.getValue());
+            }
+        }
+        return false;
+    }
+}
@@ -35,6 +35,11 @@ public interface TransportCnx {
 
     boolean isBatchMessageCompatibleVersion();
 
+    /**
+     * @return whether the client accepts send receipts covering the entries of several send operations
+     */
+    boolean isBatchedSendReceiptCompatibleVersion();
+
     /**
      * The security role for this connection.
      *
@@ -21,10 +21,13 @@ package org.apache.pulsar.broker.service.persistent;
 import static org.apache.pulsar.common.events.EventsTopicNames.checkTopicIsEventsNames;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.MoreObjects;
+import com.google.common.collect.Range;
+import java.io.IOException;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.TreeMap;
 import java.util.concurrent.CompletableFuture;
@@ -51,6 +54,7 @@ import org.apache.pulsar.broker.ServiceConfiguration;
 import org.apache.pulsar.broker.intercept.BrokerInterceptor;
 import org.apache.pulsar.broker.service.BrokerServiceException;
 import org.apache.pulsar.broker.service.BrokerServiceException.NotAllowedException;
+import org.apache.pulsar.broker.service.BrokerServiceException.PersistenceException;
 import org.apache.pulsar.broker.service.BrokerServiceException.ServerMetadataException;
 import org.apache.pulsar.broker.service.BrokerServiceException.SubscriptionBusyException;
 import org.apache.pulsar.broker.service.BrokerServiceException.SubscriptionFencedException;
@@ -58,6 +62,7 @@ import org.apache.pulsar.broker.service.BrokerServiceException.SubscriptionInval
 import org.apache.pulsar.broker.service.Consumer;
 import org.apache.pulsar.broker.service.Dispatcher;
 import org.apache.pulsar.broker.service.Subscription;
+import org.apache.pulsar.broker.service.SubscriptionMessageFilter;
 import org.apache.pulsar.broker.service.Topic;
 import org.apache.pulsar.broker.transaction.pendingack.PendingAckHandle;
 import org.apache.pulsar.broker.transaction.pendingack.impl.PendingAckHandleDisabled;
@@ -112,6 +117,8 @@ public class PersistentSubscription implements Subscription {
 
     private volatile ReplicatedSubscriptionSnapshotCache replicatedSubscriptionSnapshotCache;
     private volatile Position lastMarkDeleteForTransactionMarker;
+    // Filter of the subscription, persisted in the properties of the managed ledger of the topic
+    private volatile SubscriptionMessageFilter messageFilter;
     private final PendingAckHandle pendingAckHandle;
 
     private final LongAdder bytesOutFromRemovedConsumers = new LongAdder();
@@ -121,6 +128,8 @@ public class PersistentSubscription implements Subscription {
 
     private final Object waitObject = new Object();
 
+    static final String MESSAGE_FILTER_PROPERTY_PREFIX = "pulsar.subscription.filter.";
+
     static {
         REPLICATED_SUBSCRIPTION_CURSOR_PROPERTIES.put(REPLICATED_SUBSCRIPTION_PROPERTY, 1L);
     }
@@ -154,9 +163,87 @@ public class PersistentSubscription implements Subscription {
         } else {
             this.pendingAckHandle = new PendingAckHandleDisabled();
         }
+        this.messageFilter = recoverMessageFilter();
         IS_FENCED_UPDATER.set(this, FALSE);
     }
 
+    private SubscriptionMessageFilter recoverMessageFilter() {
+        ManagedLedger ledger = topic.getManagedLedger();
+        Map<String, String> properties = ledger != null ? ledger.getProperties() : null;
+        String serialized = properties != null ? properties.get(messageFilterPropertyKey()) : null;
+        if (serialized == null) {
+            return null;
+        }
+        try {
+            SubscriptionMessageFilter filter = SubscriptionMessageFilter.deserialize(serialized);
+            log.info("[{}][{}] Recovered message filter {}", topicName, subName, filter);
+            return filter;
+        } catch (IOException e) {
+            log.error("[{}][{}] Failed to parse message filter {}", topicName, subName, serialized, e);
+            return null;
+        }
+    }
+
+    private String messageFilterPropertyKey() {
+        return MESSAGE_FILTER_PROPERTY_PREFIX + subName;
+    }
+
+    /**
+     * Check that the consumer declares the filter of the subscription. The first consumer declaring a filter while no
+     * other consumer is connected sets the filter of the subscription, once it is persisted.
+     */
+    private CompletableFuture<Void> checkMessageFilter(Consumer consumer) {
+        SubscriptionMessageFilter filter = SubscriptionMessageFilter.fromMetadata(consumer.getMetadata());
+        String serialized;
+        synchronized (this) {
+            if (Objects.equals(filter, messageFilter)) {
+                return CompletableFuture.completedFuture(null);
+            }
+            if (messageFilter != null) {
+                return FutureUtil.failedFuture(new NotAllowedException(
+                        "Subscription " + subName + " has the message filter " + messageFilter.toMetadata()
+                                + ", the consumer must declare the same filter"));
+            }
+            if (!topic.getBrokerService().getPulsar().getConfig().isSubscriptionMessageFilterEnabled()) {
+                return FutureUtil.failedFuture(new NotAllowedException("Subscription message filters are disabled"));
+            }
+            if (dispatcher != null && dispatcher.isConsumerConnected()) {
+                return FutureUtil.failedFuture(new NotAllowedException(
+                        "Subscription " + subName + " has connected consumers without message filter"));
+            }
+            try {
+                serialized = filter.serialize();
+            } catch (IOException e) {
+                return FutureUtil.failedFuture(e);
+            }
+            // Reject the conflicting consumers while the filter is persisted
+            messageFilter = filter;
+        }
+
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        topic.getManagedLedger().asyncSetProperty(messageFilterPropertyKey(), serialized,
+                new AsyncCallbacks.UpdatePropertiesCallback() {
+                    @Override
+                    public void updatePropertiesComplete(Map<String, String> properties, Object ctx) {
+                        log.info("[{}][{}] Using message filter {}", topicName, subName, filter);
+                        future.complete(null);
+                    }
+
+                    @Override
+                    public void updatePropertiesFailed(ManagedLedgerException exception, Object ctx) {
+                        log.warn("[{}][{}] Failed to persist message filter {}", topicName, subName, filter,
+                                exception);
+                        synchronized (PersistentSubscription.this) {
+                            if (messageFilter == filter) {
+                                messageFilter = null;
+                            }
+                        }
+                        future.completeExceptionally(new PersistenceException(exception));
+                    }
+                }, null);
+        return future;
+    }
+
     public void updateLastMarkDeleteAdvancedTimestamp() {
         this.lastMarkDeleteAdvancedTimestamp =
             Math.max(this.lastMarkDeleteAdvancedTimestamp, System.currentTimeMillis());
@@ -205,7 +292,8 @@ public class PersistentSubscription implements Subscription {
 
     @Override
     public CompletableFuture<Void> addConsumer(Consumer consumer) {
-        return pendingAckHandle.pendingAckHandleFuture().thenCompose(future -> {
+        return pendingAckHandle.pendingAckHandleFuture().thenCompose(ignore -> checkMessageFilter(consumer))
+                .thenCompose(future -> {
             synchronized (PersistentSubscription.this) {
                 cursor.updateLastActive();
                 if (IS_FENCED_UPDATER.get(this) == TRUE) {
@@ -398,6 +486,38 @@ public class PersistentSubscription implements Subscription {
             }
         }
 
+        acknowledgeMessageComplete(previousMarkDeletePosition, properties);
+    }
+
+    @Override
+    public void acknowledgeMessageRanges(List<Range<PositionImpl>> ranges, Map<String, Long> properties) {
+        Position previousMarkDeletePosition = cursor.getMarkDeletedPosition();
+        if (log.isDebugEnabled()) {
+            log.debug("[{}][{}] Individual acks on ranges {}", topicName, subName, ranges);
+        }
+        cursor.asyncDeleteRanges(ranges, deleteCallback, previousMarkDeletePosition);
+
+        boolean transactionCoordinatorEnabled =
+                topic.getBrokerService().getPulsar().getConfig().isTransactionCoordinatorEnabled();
+        if (transactionCoordinatorEnabled || dispatcher != null) {
+            ranges.forEach(range -> {
+                for (long entryId = range.lowerEndpoint().getEntryId(); entryId <= range.upperEndpoint().getEntryId();
+                     entryId++) {
+                    PositionImpl position = PositionImpl.get(range.lowerEndpoint().getLedgerId(), entryId);
+                    if (transactionCoordinatorEnabled && ((ManagedCursorImpl) cursor).isMessageDeleted(position)) {
+                        pendingAckHandle.clearIndividualPosition(position);
+                    }
+                    if (dispatcher != null) {
+                        dispatcher.getRedeliveryTracker().remove(position);
+                    }
+                }
+            });
+        }
+
+        acknowledgeMessageComplete(previousMarkDeletePosition, properties);
+    }
+
+    private void acknowledgeMessageComplete(Position previousMarkDeletePosition, Map<String, Long> properties) {
         if (!cursor.getMarkDeletedPosition().equals(previousMarkDeletePosition)) {
             this.updateLastMarkDeleteAdvancedTimestamp();
 
@@ -802,6 +922,26 @@ public class PersistentSubscription implements Subscription {
         return cursor.getNumberOfEntriesInBacklog(getPreciseBacklog);
     }
 
+    @Override
+    public SubscriptionMessageFilter getMessageFilter() {
+        return messageFilter;
+    }
+
+    private void deleteMessageFilter() {
+        topic.getManagedLedger().asyncDeleteProperty(messageFilterPropertyKey(),
+                new AsyncCallbacks.UpdatePropertiesCallback() {
+                    @Override
+                    public void updatePropertiesComplete(Map<String, String> properties, Object ctx) {
+                        log.info("[{}][{}] Deleted message filter", topicName, subName);
+                    }
+
+                    @Override
+                    public void updatePropertiesFailed(ManagedLedgerException exception, Object ctx) {
+                        log.warn("[{}][{}] Failed to delete message filter", topicName, subName, exception);
+                    }
+                }, null);
+    }
+
     @Override
     public synchronized Dispatcher getDispatcher() {
         return this.dispatcher;
@@ -918,6 +1058,9 @@ public class PersistentSubscription implements Subscription {
 
         // cursor close handles pending delete (ack) operations
         closeSubscriptionFuture.thenCompose(v -> topic.unsubscribe(subName)).thenAccept(v -> {
+            if (messageFilter != null) {
+                deleteMessageFilter();
+            }
             synchronized (this) {
                 (dispatcher != null ? dispatcher.close() : CompletableFuture.completedFuture(null)).thenRun(() -> {
                     log.info("[{}][{}] Successfully deleted subscription", topicName, subName);
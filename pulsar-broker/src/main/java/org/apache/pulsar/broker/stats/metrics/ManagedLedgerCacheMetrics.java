@@ -53,6 +53,9 @@ public class ManagedLedgerCacheMetrics extends AbstractMetrics {
         m.put("brk_ml_cache_misses_rate", mlCacheStats.getCacheMissesRate());
         m.put("brk_ml_cache_hits_throughput", mlCacheStats.getCacheHitsThroughput());
         m.put("brk_ml_cache_misses_throughput", mlCacheStats.getCacheMissesThroughput());
+        m.put("brk_ml_cache_spill_used_size", mlCacheStats.getCacheSpillUsedSize());
+        m.put("brk_ml_cache_spill_hits_rate", mlCacheStats.getCacheSpillHitsRate());
+        m.put("brk_ml_cache_spill_hits_throughput", mlCacheStats.getCacheSpillHitsThroughput());
 
         PooledByteBufAllocator allocator = EntryCacheImpl.ALLOCATOR;
         long activeAllocations = 0;
@@ -0,0 +1,71 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.stats.metrics;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import java.util.List;
+import java.util.Map;
+import org.apache.pulsar.broker.PulsarService;
+import org.apache.pulsar.common.stats.Metrics;
+import org.apache.pulsar.metadata.api.MetadataStore;
+import org.apache.pulsar.metadata.impl.BatchingStats;
+import org.apache.pulsar.metadata.impl.ZKMetadataStore;
+
+/**
+ * Write batching metrics of the local and configuration metadata stores.
+ */
+public class MetadataStoreMetrics extends AbstractMetrics {
+
+    private List<Metrics> metrics;
+
+    public MetadataStoreMetrics(PulsarService pulsar) {
+        super(pulsar);
+        this.metrics = Lists.newArrayList();
+    }
+
+    @Override
+    public synchronized List<Metrics> generate() {
+        metrics.clear();
+
+        MetadataStore localMetadataStore = pulsar.getLocalMetadataStore();
+        MetadataStore configurationMetadataStore = pulsar.getConfigurationMetadataStore();
+        addMetrics(localMetadataStore, "local");
+        if (configurationMetadataStore != localMetadataStore) {
+            addMetrics(configurationMetadataStore, "configuration");
+        }
+        return metrics;
+    }
+
+    private void addMetrics(MetadataStore store, String name) {
+        if (!(store instanceof ZKMetadataStore)) {
+            return;
+        }
+
+        BatchingStats stats = ((ZKMetadataStore) store).getBatchingStats();
+        Map<String, String> dimensionMap = Maps.newHashMap();
+        dimensionMap.put("metadata_store", name);
+
+        Metrics m = createMetrics(dimensionMap);
+        m.put("brk_metadata_store_batches", stats.getBatches());
+        m.put("brk_metadata_store_batched_ops", stats.getBatchedOperations());
+        m.put("brk_metadata_store_batch_latency_ms", stats.getBatchLatencyMillis());
+        metrics.add(m);
+    }
+}
@@ -46,6 +46,7 @@ import org.apache.pulsar.broker.PulsarService;
 import org.apache.pulsar.broker.stats.metrics.ManagedCursorMetrics;
 import org.apache.pulsar.broker.stats.metrics.ManagedLedgerCacheMetrics;
 import org.apache.pulsar.broker.stats.metrics.ManagedLedgerMetrics;
+import org.apache.pulsar.broker.stats.metrics.MetadataStoreMetrics;
 import org.apache.pulsar.common.stats.Metrics;
 import org.apache.pulsar.common.util.SimpleTextOutputStream;
 
@@ -143,6 +144,10 @@ public class PrometheusMetricsGenerator {
                 clusterName, Collector.Type.GAUGE, stream);
         }
 
+        // generate metadata store write batching metrics
+        parseMetricsToPrometheusMetrics(new MetadataStoreMetrics(pulsar).generate(),
+                clusterName, Collector.Type.COUNTER, stream);
+
         parseMetricsToPrometheusMetrics(Collections.singletonList(pulsar.getBrokerService()
                 .getPulsarStats().getBrokerOperabilityMetrics().generateConnectionMetrics()),
                 clusterName, Collector.Type.GAUGE, stream);
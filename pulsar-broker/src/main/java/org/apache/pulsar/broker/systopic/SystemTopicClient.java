@@ -28,6 +28,7 @@ import org.apache.pulsar.client.api.MessageId;
 import org.apache.pulsar.client.api.PulsarClientException;
 import org.apache.pulsar.common.events.EventsTopicNames;
 import org.apache.pulsar.common.naming.TopicName;
+import org.apache.pulsar.common.util.FutureUtil;
 
 /**
  * Pulsar system topic.
@@ -105,6 +106,15 @@ public interface SystemTopicClient<T> {
          */
         CompletableFuture<MessageId> writeAsync(T t);
 
+        /**
+         * Async delete the event stored under a key, by writing a tombstone that removes it on compaction.
+         * @param key the key of the event
+         * @return message id future
+         */
+        default CompletableFuture<MessageId> deleteAsync(String key) {
+            return FutureUtil.failedFuture(new UnsupportedOperationException("Delete is not supported by this writer"));
+        }
+
         /**
          * Close the system topic writer.
          */
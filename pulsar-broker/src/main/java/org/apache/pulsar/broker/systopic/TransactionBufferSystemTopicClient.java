@@ -94,16 +94,21 @@ public class TransactionBufferSystemTopicClient extends SystemTopicClientBase<Tr
 
         @Override
         public MessageId write(TransactionBufferSnapshot transactionBufferSnapshot) throws PulsarClientException {
-            return producer.newMessage().key(transactionBufferSnapshot.getTopicName())
+            return producer.newMessage().key(transactionBufferSnapshot.getKey())
                     .value(transactionBufferSnapshot).send();
         }
 
         @Override
         public CompletableFuture<MessageId> writeAsync(TransactionBufferSnapshot transactionBufferSnapshot) {
-            return producer.newMessage().key(transactionBufferSnapshot.getTopicName())
+            return producer.newMessage().key(transactionBufferSnapshot.getKey())
                     .value(transactionBufferSnapshot).sendAsync();
         }
 
+        @Override
+        public CompletableFuture<MessageId> deleteAsync(String key) {
+            return producer.newMessage().key(key).value(null).sendAsync();
+        }
+
         @Override
         public void close() throws IOException {
             this.producer.close();
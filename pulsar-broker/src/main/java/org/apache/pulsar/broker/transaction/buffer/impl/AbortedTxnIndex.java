@@ -0,0 +1,340 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.transaction.buffer.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.LongPredicate;
+import org.apache.bookkeeper.mledger.impl.PositionImpl;
+import org.apache.pulsar.broker.transaction.buffer.matadata.AbortTxnMetadata;
+import org.apache.pulsar.common.util.collections.ConcurrentLongLongPairHashMap;
+
+/**
+ * Index of the aborted transactions of a topic, used to filter out their messages when they are dispatched.
+ *
+ * <p>The transactions are added in the order of the position of their abort marker. The last ones are kept in an
+ * open segment, a primitive map from the txn id to the position of the marker. Once the open segment holds
+ * {@code segmentSize} transactions, it is sealed: its entries are moved to a flat array sorted by txn id, along with
+ * a bloom filter of the txn ids. Sealed segments never change, so they only need to be persisted once instead of
+ * with every snapshot of the transaction buffer.
+ *
+ * <p>The lookups do not prune the segments by the position of the message: a message of a transaction may be
+ * written after its abort marker, and it still has to be filtered out.
+ *
+ * <p>The lookups can run concurrently with the updates, while the updates have to be serialized by the caller.
+ */
+public class AbortedTxnIndex {
+
+    private static final int BLOOM_FILTER_BITS_PER_TXN = 10;
+    private static final int BLOOM_FILTER_HASHES = 3;
+
+    private static final Segment[] EMPTY_SEGMENTS = new Segment[0];
+
+    private final int segmentSize;
+
+    // txn id -> position of the abort marker
+    private final ConcurrentLongLongPairHashMap openSegment;
+    private long openSegmentFirstLedgerId = -1;
+
+    // sorted by segment id, which is also the order of their abort markers
+    private volatile Segment[] segments = EMPTY_SEGMENTS;
+    private long nextSegmentId = 0;
+
+    public AbortedTxnIndex(int segmentSize) {
+        this.segmentSize = Math.max(1, segmentSize);
+        this.openSegment = new ConcurrentLongLongPairHashMap(Math.min(this.segmentSize, 1024) * 2, 1);
+    }
+
+    /**
+     * Adds an aborted transaction.
+     *
+     * @return the segment sealed by this transaction, or null if the open segment is not full yet
+     */
+    public Segment add(long txnIdMostBits, long txnIdLeastBits, PositionImpl position) {
+        if (isAbortedInSegments(txnIdMostBits, txnIdLeastBits)) {
+            return null;
+        }
+        openSegment.put(txnIdMostBits, txnIdLeastBits, position.getLedgerId(), position.getEntryId());
+        if (openSegmentFirstLedgerId == -1) {
+            openSegmentFirstLedgerId = position.getLedgerId();
+        }
+        return openSegment.size() >= segmentSize ? seal() : null;
+    }
+
+    private Segment seal() {
+        List<long[]> txns = new ArrayList<>((int) openSegment.size());
+        openSegment.forEach((txnIdMostBits, txnIdLeastBits, ledgerId, entryId) ->
+                txns.add(new long[] {txnIdMostBits, txnIdLeastBits, ledgerId, entryId}));
+        Segment segment = new Segment(nextSegmentId++, txns);
+        addSegment(segment);
+
+        // the txns are only removed from the open segment once they are visible in the sealed one
+        txns.forEach(txn -> openSegment.remove(txn[0], txn[1]));
+        openSegmentFirstLedgerId = -1;
+        return segment;
+    }
+
+    /**
+     * Adds a segment that was persisted before, when recovering the index.
+     */
+    public void addPersistedSegment(long segmentId, List<AbortTxnMetadata> aborts) {
+        List<long[]> txns = new ArrayList<>(aborts.size());
+        aborts.forEach(abort -> txns.add(new long[] {abort.getTxnIdMostBits(), abort.getTxnIdLeastBits(),
+                abort.getLedgerId(), abort.getEntryId()}));
+        removeSegment(segmentId);
+        Segment segment = new Segment(segmentId, txns);
+        segment.markPersisted();
+        addSegment(segment);
+        nextSegmentId = Math.max(nextSegmentId, segmentId + 1);
+    }
+
+    private void addSegment(Segment segment) {
+        Segment[] current = segments;
+        Segment[] updated = Arrays.copyOf(current, current.length + 1);
+        int i = current.length;
+        while (i > 0 && updated[i - 1].segmentId > segment.segmentId) {
+            updated[i] = updated[i - 1];
+            i--;
+        }
+        updated[i] = segment;
+        segments = updated;
+    }
+
+    /**
+     * Removes the segment with the given id, when recovering the index.
+     */
+    public void removeSegment(long segmentId) {
+        Segment[] current = segments;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i].segmentId == segmentId) {
+                Segment[] updated = new Segment[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, i);
+                System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                segments = updated;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Clears the open segment, to replace it with the aborted transactions of a snapshot.
+     */
+    public void clearOpenSegment() {
+        openSegment.clear();
+        openSegmentFirstLedgerId = -1;
+    }
+
+    public boolean isAborted(long txnIdMostBits, long txnIdLeastBits) {
+        return openSegment.containsKey(txnIdMostBits, txnIdLeastBits)
+                || isAbortedInSegments(txnIdMostBits, txnIdLeastBits);
+    }
+
+    private boolean isAbortedInSegments(long txnIdMostBits, long txnIdLeastBits) {
+        Segment[] current = segments;
+        for (int i = current.length - 1; i >= 0; i--) {
+            if (current[i].contains(txnIdMostBits, txnIdLeastBits)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes the aborted transactions whose marker is in a ledger that was deleted. A sealed segment is only removed
+     * once all its markers are in deleted ledgers.
+     *
+     * @return the removed sealed segments
+     */
+    public List<Segment> trim(LongPredicate ledgerExists) {
+        List<Segment> removed = new ArrayList<>();
+        Segment[] current = segments;
+        int i = 0;
+        while (i < current.length && !ledgerExists.test(current[i].lastPosition.getLedgerId())) {
+            removed.add(current[i]);
+            i++;
+        }
+        if (i > 0) {
+            segments = Arrays.copyOfRange(current, i, current.length);
+        }
+
+        if (openSegmentFirstLedgerId != -1 && !ledgerExists.test(openSegmentFirstLedgerId)) {
+            openSegment.removeIf((txnIdMostBits, txnIdLeastBits, ledgerId, entryId) -> !ledgerExists.test(ledgerId));
+            long[] firstLedgerId = {-1};
+            openSegment.forEach((txnIdMostBits, txnIdLeastBits, ledgerId, entryId) -> {
+                if (firstLedgerId[0] == -1 || ledgerId < firstLedgerId[0]) {
+                    firstLedgerId[0] = ledgerId;
+                }
+            });
+            openSegmentFirstLedgerId = firstLedgerId[0];
+        }
+        return removed;
+    }
+
+    /**
+     * @return the aborted transactions that still have to be part of a snapshot: the ones of the open segment and
+     *         of the sealed segments not persisted yet
+     */
+    public List<AbortTxnMetadata> getUnpersistedAborts() {
+        List<AbortTxnMetadata> aborts = new ArrayList<>();
+        for (Segment segment : segments) {
+            if (!segment.isPersisted()) {
+                aborts.addAll(segment.getAborts());
+            }
+        }
+        openSegment.forEach((txnIdMostBits, txnIdLeastBits, ledgerId, entryId) ->
+                aborts.add(new AbortTxnMetadata(txnIdMostBits, txnIdLeastBits, ledgerId, entryId)));
+        return aborts;
+    }
+
+    public List<Segment> getUnpersistedSegments() {
+        List<Segment> unpersisted = new ArrayList<>();
+        for (Segment segment : segments) {
+            if (!segment.isPersisted()) {
+                unpersisted.add(segment);
+            }
+        }
+        return unpersisted;
+    }
+
+    public long size() {
+        long size = openSegment.size();
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    public int getSegmentCount() {
+        return segments.length;
+    }
+
+    /**
+     * An immutable segment of aborted transactions, sorted by txn id.
+     */
+    public static final class Segment {
+
+        private static final int ENTRY_SIZE = 4;
+
+        private final long segmentId;
+        // (txnIdMostBits, txnIdLeastBits, ledgerId, entryId) tuples
+        private final long[] txns;
+        private final long[] bloomFilter;
+        private final int bloomFilterBits;
+        private final PositionImpl lastPosition;
+        private volatile boolean persisted = false;
+
+        private Segment(long segmentId, List<long[]> txns) {
+            txns.sort(Comparator.<long[]>comparingLong(txn -> txn[0]).thenComparingLong(txn -> txn[1]));
+            this.segmentId = segmentId;
+            this.txns = new long[txns.size() * ENTRY_SIZE];
+            this.bloomFilterBits = Math.max(Long.SIZE, txns.size() * BLOOM_FILTER_BITS_PER_TXN);
+            this.bloomFilter = new long[(bloomFilterBits + Long.SIZE - 1) / Long.SIZE];
+
+            long lastLedgerId = -1;
+            long lastEntryId = -1;
+            for (int i = 0; i < txns.size(); i++) {
+                long[] txn = txns.get(i);
+                System.arraycopy(txn, 0, this.txns, i * ENTRY_SIZE, ENTRY_SIZE);
+                long hash = hash(txn[0], txn[1]);
+                for (int j = 0; j < BLOOM_FILTER_HASHES; j++) {
+                    int bit = bloomFilterBit(hash, j);
+                    bloomFilter[bit / Long.SIZE] |= 1L << (bit % Long.SIZE);
+                }
+                if (txn[2] > lastLedgerId || (txn[2] == lastLedgerId && txn[3] > lastEntryId)) {
+                    lastLedgerId = txn[2];
+                    lastEntryId = txn[3];
+                }
+            }
+            this.lastPosition = PositionImpl.get(lastLedgerId, lastEntryId);
+        }
+
+        private static long hash(long txnIdMostBits, long txnIdLeastBits) {
+            long h = txnIdMostBits * 0x9E3779B97F4A7C15L ^ txnIdLeastBits;
+            h ^= h >>> 33;
+            h *= 0xff51afd7ed558ccdL;
+            h ^= h >>> 33;
+            h *= 0xc4ceb9fe1a85ec53L;
+            h ^= h >>> 33;
+            return h;
+        }
+
+        private int bloomFilterBit(long hash, int i) {
+            long combined = (hash & 0xFFFFFFFFL) + i * (hash >>> 32);
+            return (int) Math.floorMod(combined, (long) bloomFilterBits);
+        }
+
+        boolean contains(long txnIdMostBits, long txnIdLeastBits) {
+            long hash = hash(txnIdMostBits, txnIdLeastBits);
+            for (int j = 0; j < BLOOM_FILTER_HASHES; j++) {
+                int bit = bloomFilterBit(hash, j);
+                if ((bloomFilter[bit / Long.SIZE] & (1L << (bit % Long.SIZE))) == 0) {
+                    return false;
+                }
+            }
+
+            int low = 0;
+            int high = size() - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int cmp = Long.compare(txns[mid * ENTRY_SIZE], txnIdMostBits);
+                if (cmp == 0) {
+                    cmp = Long.compare(txns[mid * ENTRY_SIZE + 1], txnIdLeastBits);
+                }
+                if (cmp < 0) {
+                    low = mid + 1;
+                } else if (cmp > 0) {
+                    high = mid - 1;
+                } else {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        public long getSegmentId() {
+            return segmentId;
+        }
+
+        public PositionImpl getLastPosition() {
+            return lastPosition;
+        }
+
+        public int size() {
+            return txns.length / ENTRY_SIZE;
+        }
+
+        public boolean isPersisted() {
+            return persisted;
+        }
+
+        public void markPersisted() {
+            this.persisted = true;
+        }
+
+        public List<AbortTxnMetadata> getAborts() {
+            List<AbortTxnMetadata> aborts = new ArrayList<>(size());
+            for (int i = 0; i < txns.length; i += ENTRY_SIZE) {
+                aborts.add(new AbortTxnMetadata(txns[i], txns[i + 1], txns[i + 2], txns[i + 3]));
+            }
+            return aborts;
+        }
+    }
+}
@@ -22,7 +22,7 @@ import io.netty.buffer.ByteBuf;
 import io.netty.util.Timeout;
 import io.netty.util.Timer;
 import io.netty.util.TimerTask;
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
@@ -43,7 +43,6 @@ import org.apache.pulsar.broker.systopic.SystemTopicClient;
 import org.apache.pulsar.broker.transaction.buffer.TransactionBuffer;
 import org.apache.pulsar.broker.transaction.buffer.TransactionBufferReader;
 import org.apache.pulsar.broker.transaction.buffer.TransactionMeta;
-import org.apache.pulsar.broker.transaction.buffer.matadata.AbortTxnMetadata;
 import org.apache.pulsar.broker.transaction.buffer.matadata.TransactionBufferSnapshot;
 import org.apache.pulsar.client.api.Message;
 import org.apache.pulsar.client.api.PulsarClientException;
@@ -73,10 +72,9 @@ public class TopicTransactionBuffer extends TopicTransactionBufferState implemen
     private final LinkedMap<TxnID, PositionImpl> ongoingTxns = new LinkedMap<>();
 
     /**
-     * Aborts, map for jude message is aborted, linked for remove abort txn in memory when this
-     * position have been deleted.
+     * Aborts, for judging whether a message is aborted, sealed in segments that are persisted on their own.
      */
-    private final LinkedMap<TxnID, PositionImpl> aborts = new LinkedMap<>();
+    private final AbortedTxnIndex abortedTxnIndex;
 
     private final CompletableFuture<SystemTopicClient.Writer<TransactionBufferSnapshot>> takeSnapshotWriter;
 
@@ -102,6 +100,8 @@ public class TopicTransactionBuffer extends TopicTransactionBufferState implemen
                 .getConfiguration().getTransactionBufferSnapshotMaxTransactionCount();
         this.takeSnapshotIntervalTime = topic.getBrokerService().getPulsar()
                 .getConfiguration().getTransactionBufferSnapshotMinTimeInMillis();
+        this.abortedTxnIndex = new AbortedTxnIndex(topic.getBrokerService().getPulsar()
+                .getConfiguration().getTransactionBufferAbortedTxnSegmentSize());
         this.topic.getBrokerService().getPulsar().getTransactionReplayExecutor()
                 .execute(new TopicTransactionBufferRecover(new TopicTransactionBufferRecoverCallBack() {
                     @Override
@@ -109,6 +109,11 @@ public class TopicTransactionBuffer extends TopicTransactionBufferState implemen
                         if (!changeToReadyState()) {
                             log.error("[{}]Transaction buffer recover fail", topic.getName());
                         } else {
+                            synchronized (TopicTransactionBuffer.this) {
+                                // the segments sealed while replaying the aborts
+                                abortedTxnIndex.getUnpersistedSegments()
+                                        .forEach(TopicTransactionBuffer.this::persistAbortsSegment);
+                            }
                             timer.newTimeout(TopicTransactionBuffer.this,
                                     takeSnapshotIntervalTime, TimeUnit.MILLISECONDS);
                             transactionBufferFuture.complete(null);
@@ -119,15 +124,27 @@ public class TopicTransactionBuffer extends TopicTransactionBufferState implemen
                     public void handleSnapshot(TransactionBufferSnapshot snapshot) {
                         maxReadPosition = PositionImpl.get(snapshot.getMaxReadPositionLedgerId(),
                                 snapshot.getMaxReadPositionEntryId());
+                        abortedTxnIndex.clearOpenSegment();
                         if (snapshot.getAborts() != null) {
                             snapshot.getAborts().forEach(abortTxnMetadata ->
-                                    aborts.put(new TxnID(abortTxnMetadata.getTxnIdMostBits(),
-                                                    abortTxnMetadata.getTxnIdLeastBits()),
+                                    abortedTxnIndex.add(abortTxnMetadata.getTxnIdMostBits(),
+                                            abortTxnMetadata.getTxnIdLeastBits(),
                                             PositionImpl.get(abortTxnMetadata.getLedgerId(),
                                                     abortTxnMetadata.getEntryId())));
                         }
                     }
 
+                    @Override
+                    public void handleAbortsSegment(TransactionBufferSnapshot segment) {
+                        abortedTxnIndex.addPersistedSegment(segment.getSegmentId(), segment.getAborts() != null
+                                ? segment.getAborts() : Collections.emptyList());
+                    }
+
+                    @Override
+                    public void handleAbortsSegmentDeleted(long segmentId) {
+                        abortedTxnIndex.removeSegment(segmentId);
+                    }
+
                     @Override
                     public void handleTxnEntry(Entry entry) {
                         ByteBuf metadataAndPayload = entry.getDataBuffer();
@@ -139,7 +156,7 @@ public class TopicTransactionBuffer extends TopicTransactionBufferState implemen
                             PositionImpl position = PositionImpl.get(entry.getLedgerId(), entry.getEntryId());
                             if (Markers.isTxnMarker(msgMetadata)) {
                                 if (Markers.isTxnAbortMarker(msgMetadata)) {
-                                    aborts.put(txnID, position);
+                                    addAbortedTxn(txnID, position);
                                 }
                                 updateMaxReadPosition(txnID);
                             } else {
@@ -182,7 +199,8 @@ public class TopicTransactionBuffer extends TopicTransactionBufferState implemen
     }
 
     private void handleTransactionMessage(TxnID txnId, Position position) {
-        if (!ongoingTxns.containsKey(txnId) && !aborts.containsKey(txnId)) {
+        if (!ongoingTxns.containsKey(txnId)
+                && !abortedTxnIndex.isAborted(txnId.getMostSigBits(), txnId.getLeastSigBits())) {
             ongoingTxns.put(txnId, (PositionImpl) position);
             PositionImpl firstPosition = ongoingTxns.get(ongoingTxns.firstKey());
             //max read position is less than first ongoing transaction message position, so entryId -1
@@ -244,7 +262,7 @@ public class TopicTransactionBuffer extends TopicTransactionBufferState implemen
                 @Override
                 public void addComplete(Position position, ByteBuf entryData, Object ctx) {
                     synchronized (TopicTransactionBuffer.this) {
-                        aborts.put(txnID, (PositionImpl) position);
+                        addAbortedTxn(txnID, (PositionImpl) position);
                         updateMaxReadPosition(txnID);
                         handleLowWaterMark(txnID, lowWaterMark);
                         changeMaxReadPositionAndAddAbortTimes.getAndIncrement();
@@ -277,7 +295,7 @@ public class TopicTransactionBuffer extends TopicTransactionBufferState implemen
                         @Override
                         public void addComplete(Position position, ByteBuf entryData, Object ctx) {
                             synchronized (TopicTransactionBuffer.this) {
-                                aborts.put(firstTxn, (PositionImpl) position);
+                                addAbortedTxn(firstTxn, (PositionImpl) position);
                                 updateMaxReadPosition(firstTxn);
                             }
                         }
@@ -316,16 +334,8 @@ public class TopicTransactionBuffer extends TopicTransactionBufferState implemen
                 snapshot.setTopicName(topic.getName());
                 snapshot.setMaxReadPositionLedgerId(maxReadPosition.getLedgerId());
                 snapshot.setMaxReadPositionEntryId(maxReadPosition.getEntryId());
-                List<AbortTxnMetadata> list = new ArrayList<>();
-                aborts.forEach((k, v) -> {
-                    AbortTxnMetadata abortTxnMetadata = new AbortTxnMetadata();
-                    abortTxnMetadata.setTxnIdMostBits(k.getMostSigBits());
-                    abortTxnMetadata.setTxnIdLeastBits(k.getLeastSigBits());
-                    abortTxnMetadata.setLedgerId(v.getLedgerId());
-                    abortTxnMetadata.setEntryId(v.getEntryId());
-                    list.add(abortTxnMetadata);
-                });
-                snapshot.setAborts(list);
+                // the sealed segments are persisted on their own
+                snapshot.setAborts(abortedTxnIndex.getUnpersistedAborts());
             }
             writer.writeAsync(snapshot).thenAccept((messageId) -> {
                 this.lastSnapshotTimestamps = System.currentTimeMillis();
@@ -340,15 +350,50 @@ public class TopicTransactionBuffer extends TopicTransactionBufferState implemen
         });
     }
 
+    private void addAbortedTxn(TxnID txnID, PositionImpl position) {
+        AbortedTxnIndex.Segment segment =
+                abortedTxnIndex.add(txnID.getMostSigBits(), txnID.getLeastSigBits(), position);
+        // the segments sealed during the recovery are persisted once it completes
+        if (segment != null && checkIfReady()) {
+            persistAbortsSegment(segment);
+        }
+    }
+
+    private void persistAbortsSegment(AbortedTxnIndex.Segment segment) {
+        TransactionBufferSnapshot snapshot = new TransactionBufferSnapshot();
+        snapshot.setTopicName(topic.getName());
+        snapshot.setSegmentId(segment.getSegmentId());
+        snapshot.setAborts(segment.getAborts());
+        takeSnapshotWriter.thenCompose(writer -> writer.writeAsync(snapshot)).thenAccept(messageId -> {
+            segment.markPersisted();
+            if (log.isDebugEnabled()) {
+                log.debug("[{}]Transaction buffer persisted aborts segment {}, messageId : {}",
+                        topic.getName(), segment.getSegmentId(), messageId);
+            }
+        }).exceptionally(e -> {
+            // the segment stays part of the snapshots until it is persisted
+            log.warn("[{}]Transaction buffer persist aborts segment {} fail! ",
+                    topic.getName(), segment.getSegmentId(), e);
+            return null;
+        });
+    }
+
     private void clearAbortedTransactions() {
-        while (!aborts.isEmpty() && !((ManagedLedgerImpl) topic.getManagedLedger())
-                .ledgerExists(aborts.get(aborts.firstKey()).getLedgerId())) {
+        ManagedLedgerImpl managedLedger = (ManagedLedgerImpl) topic.getManagedLedger();
+        for (AbortedTxnIndex.Segment segment : abortedTxnIndex.trim(managedLedger::ledgerExists)) {
             if (log.isDebugEnabled()) {
-                aborts.firstKey();
-                log.debug("[{}] Topic transaction buffer clear aborted transaction, TxnId : {}, Position : {}",
-                        topic.getName(), aborts.firstKey(), aborts.get(aborts.firstKey()));
+                log.debug("[{}] Topic transaction buffer clear aborts segment {}, last position : {}",
+                        topic.getName(), segment.getSegmentId(), segment.getLastPosition());
+            }
+            if (segment.isPersisted()) {
+                takeSnapshotWriter.thenCompose(writer -> writer.deleteAsync(
+                        TransactionBufferSnapshot.getAbortsSegmentKey(topic.getName(), segment.getSegmentId())))
+                        .exceptionally(e -> {
+                            log.warn("[{}]Transaction buffer delete aborts segment {} fail! ",
+                                    topic.getName(), segment.getSegmentId(), e);
+                            return null;
+                        });
             }
-            aborts.remove(aborts.firstKey());
         }
     }
     void updateMaxReadPosition(TxnID txnID) {
@@ -379,7 +424,7 @@ public class TopicTransactionBuffer extends TopicTransactionBufferState implemen
 
     @Override
     public boolean isTxnAborted(TxnID txnID) {
-        return aborts.containsKey(txnID);
+        return abortedTxnIndex.isAborted(txnID.getMostSigBits(), txnID.getLeastSigBits());
     }
 
     @Override
@@ -464,11 +509,22 @@ public class TopicTransactionBuffer extends TopicTransactionBufferState implemen
                     while (reader.hasMoreEvents()) {
                         Message<TransactionBufferSnapshot> message = reader.readNext();
                         TransactionBufferSnapshot transactionBufferSnapshot = message.getValue();
-                        if (topic.getName().equals(transactionBufferSnapshot.getTopicName())) {
-                            callBack.handleSnapshot(transactionBufferSnapshot);
-                            this.startReadCursorPosition = PositionImpl.get(
-                                    transactionBufferSnapshot.getMaxReadPositionLedgerId(),
-                                    transactionBufferSnapshot.getMaxReadPositionEntryId());
+                        if (transactionBufferSnapshot == null) {
+                            // the tombstone of a deleted segment of aborted transactions
+                            Long segmentId = TransactionBufferSnapshot.getAbortsSegmentId(topic.getName(),
+                                    message.getKey());
+                            if (segmentId != null) {
+                                callBack.handleAbortsSegmentDeleted(segmentId);
+                            }
+                        } else if (topic.getName().equals(transactionBufferSnapshot.getTopicName())) {
+                            if (transactionBufferSnapshot.getSegmentId() != null) {
+                                callBack.handleAbortsSegment(transactionBufferSnapshot);
+                            } else {
+                                callBack.handleSnapshot(transactionBufferSnapshot);
+                                this.startReadCursorPosition = PositionImpl.get(
+                                        transactionBufferSnapshot.getMaxReadPositionLedgerId(),
+                                        transactionBufferSnapshot.getMaxReadPositionEntryId());
+                            }
                         }
                     }
                 } catch (PulsarClientException pulsarClientException) {
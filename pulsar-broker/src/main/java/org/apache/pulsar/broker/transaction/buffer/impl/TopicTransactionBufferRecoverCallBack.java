@@ -35,6 +35,20 @@ public interface TopicTransactionBufferRecoverCallBack {
      */
     void handleSnapshot(TransactionBufferSnapshot snapshot);
 
+    /**
+     * Handle a sealed segment of aborted transactions, stored next to the snapshot.
+     *
+     * @param segment the segment, as a snapshot with a segment id
+     */
+    void handleAbortsSegment(TransactionBufferSnapshot segment);
+
+    /**
+     * Handle the deletion of a sealed segment of aborted transactions.
+     *
+     * @param segmentId the id of the deleted segment
+     */
+    void handleAbortsSegmentDeleted(long segmentId);
+
     /**
      * Handle transaction entry beyond the snapshot.
      *
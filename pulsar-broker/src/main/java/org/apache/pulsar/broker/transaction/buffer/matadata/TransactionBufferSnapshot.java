@@ -32,8 +32,40 @@ import lombok.Setter;
 @Getter
 @Setter
 public class TransactionBufferSnapshot {
+
+    private static final String ABORTS_SEGMENT_KEY_SEPARATOR = "-aborts-segment-";
+
     private String topicName;
     private long maxReadPositionLedgerId;
     private long maxReadPositionEntryId;
     private List<AbortTxnMetadata> aborts;
+    // set when this is a sealed segment of aborted transactions, stored next to the snapshot of the topic
+    private Long segmentId;
+
+    /**
+     * @return the key of this snapshot in the snapshot topic
+     */
+    public String getKey() {
+        return segmentId == null ? topicName : getAbortsSegmentKey(topicName, segmentId);
+    }
+
+    public static String getAbortsSegmentKey(String topicName, long segmentId) {
+        return topicName + ABORTS_SEGMENT_KEY_SEPARATOR + segmentId;
+    }
+
+    /**
+     * @return the id of the segment of aborted transactions of the topic stored under the given key, or null if the
+     *         key is not the one of a segment of this topic
+     */
+    public static Long getAbortsSegmentId(String topicName, String key) {
+        String prefix = topicName + ABORTS_SEGMENT_KEY_SEPARATOR;
+        if (key == null || !key.startsWith(prefix)) {
+            return null;
+        }
+        try {
+            return Long.parseLong(key.substring(prefix.length()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
 }
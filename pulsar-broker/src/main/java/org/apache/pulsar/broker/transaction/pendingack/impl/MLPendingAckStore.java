@@ -33,20 +33,21 @@ import org.apache.bookkeeper.mledger.Entry;
 import org.apache.bookkeeper.mledger.ManagedCursor;
 import org.apache.bookkeeper.mledger.ManagedLedger;
 import org.apache.bookkeeper.mledger.ManagedLedgerException;
-import org.apache.bookkeeper.mledger.Position;
 import org.apache.bookkeeper.mledger.impl.ManagedCursorImpl;
 import org.apache.bookkeeper.mledger.impl.PositionImpl;
 import org.apache.commons.lang3.tuple.MutablePair;
 import org.apache.pulsar.broker.service.BrokerServiceException.PersistenceException;
 import org.apache.pulsar.broker.transaction.pendingack.PendingAckReplyCallBack;
 import org.apache.pulsar.broker.transaction.pendingack.PendingAckStore;
+import org.apache.pulsar.broker.transaction.pendingack.proto.BatchedPendingAckMetadataEntry;
 import org.apache.pulsar.broker.transaction.pendingack.proto.PendingAckMetadata;
 import org.apache.pulsar.broker.transaction.pendingack.proto.PendingAckMetadataEntry;
 import org.apache.pulsar.broker.transaction.pendingack.proto.PendingAckOp;
 import org.apache.pulsar.client.api.transaction.TxnID;
-import org.apache.pulsar.common.allocator.PulsarByteBufAllocator;
 import org.apache.pulsar.common.api.proto.CommandAck.AckType;
 import org.apache.pulsar.common.naming.TopicName;
+import org.apache.pulsar.transaction.coordinator.TxnLogBufferedWriterConfig;
+import org.apache.pulsar.transaction.coordinator.impl.TxnLogBufferedWriter;
 import org.jctools.queues.MessagePassingQueue;
 import org.jctools.queues.SpscArrayQueue;
 import org.slf4j.Logger;
@@ -91,8 +92,16 @@ public class MLPendingAckStore implements PendingAckStore {
 
     private final ManagedCursor subManagedCursor;
 
+    private final TxnLogBufferedWriter<PendingAckMetadataEntry> bufferedWriter;
+
     public MLPendingAckStore(ManagedLedger managedLedger, ManagedCursor cursor,
                              ManagedCursor subManagedCursor) {
+        this(managedLedger, cursor, subManagedCursor, new TxnLogBufferedWriterConfig(), null);
+    }
+
+    public MLPendingAckStore(ManagedLedger managedLedger, ManagedCursor cursor,
+                             ManagedCursor subManagedCursor, TxnLogBufferedWriterConfig bufferedWriterConfig,
+                             ScheduledExecutorService scheduledExecutorService) {
         this.managedLedger = managedLedger;
         this.cursor = cursor;
         this.currentLoadPosition = (PositionImpl) this.cursor.getMarkDeletedPosition();
@@ -100,6 +109,8 @@ public class MLPendingAckStore implements PendingAckStore {
         this.lastConfirmedEntry = (PositionImpl) managedLedger.getLastConfirmedEntry();
         this.metadataPositions = new ConcurrentSkipListMap<>();
         this.subManagedCursor = subManagedCursor;
+        this.bufferedWriter = new TxnLogBufferedWriter<>(managedLedger, scheduledExecutorService,
+                PendingAckMetadataEntrySerializer.INSTANCE, bufferedWriterConfig);
     }
 
     @Override
@@ -117,6 +128,7 @@ public class MLPendingAckStore implements PendingAckStore {
     @Override
     public CompletableFuture<Void> closeAsync() {
         CompletableFuture<Void> completableFuture = new CompletableFuture<>();
+        bufferedWriter.close();
         cursor.asyncClose(new AsyncCallbacks.CloseCallback() {
             @Override
             public void closeComplete(Object ctx) {
@@ -198,87 +210,85 @@ public class MLPendingAckStore implements PendingAckStore {
         CompletableFuture<Void> completableFuture = new CompletableFuture<>();
         pendingAckMetadataEntry.setTxnidLeastBits(txnID.getLeastSigBits());
         pendingAckMetadataEntry.setTxnidMostBits(txnID.getMostSigBits());
-        int transactionMetadataEntrySize = pendingAckMetadataEntry.getSerializedSize();
-        ByteBuf buf = PulsarByteBufAllocator.DEFAULT.buffer(transactionMetadataEntrySize, transactionMetadataEntrySize);
-        pendingAckMetadataEntry.writeTo(buf);
-        managedLedger.asyncAddEntry(buf, new AsyncCallbacks.AddEntryCallback() {
-
-            @Override
-            public void addComplete(Position position, ByteBuf entryData, Object ctx) {
-                if (log.isDebugEnabled()) {
-                    log.debug("[{}][{}] MLPendingAckStore message append success at {} txnId: {}, operation : {}",
-                            managedLedger.getName(), ctx, position, txnID, pendingAckMetadataEntry.getPendingAckOp());
-                }
-                // store the persistent position in to memory
-                if (pendingAckMetadataEntry.getPendingAckOp() != PendingAckOp.ABORT
-                        && pendingAckMetadataEntry.getPendingAckOp() != PendingAckOp.COMMIT) {
-                    Optional<PendingAckMetadata> optional = pendingAckMetadataEntry.getPendingAckMetadatasList()
-                            .stream().max((o1, o2) -> ComparisonChain.start().compare(o1.getLedgerId(),
-                                    o2.getLedgerId()).compare(o1.getEntryId(), o2.getEntryId()).result());
-                    optional.ifPresent(pendingAckMetadata ->
-                            metadataPositions.compute((PositionImpl) position, (thisPosition, otherPosition) -> {
-                                PositionImpl nowPosition = PositionImpl.get(pendingAckMetadata.getLedgerId(),
-                                        pendingAckMetadata.getEntryId());
-                                if (otherPosition == null) {
-                                    return nowPosition;
-                                } else {
-                                    return nowPosition.compareTo(otherPosition) > 0 ? nowPosition : otherPosition;
-                                }
-                    }));
+        bufferedWriter.asyncAddData(pendingAckMetadataEntry).whenComplete((position, exception) -> {
+            if (exception != null) {
+                log.error("[{}] MLPendingAckStore message append fail exception : {}, operation : {}",
+                        managedLedger.getName(), exception, pendingAckMetadataEntry.getPendingAckOp());
+                completableFuture.completeExceptionally(new PersistenceException(exception));
+                return;
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("[{}] MLPendingAckStore message append success at {} txnId: {}, operation : {}",
+                        managedLedger.getName(), position, txnID, pendingAckMetadataEntry.getPendingAckOp());
+            }
+            // store the persistent position in to memory
+            handleMetadataPosition((PositionImpl) position, pendingAckMetadataEntry);
+
+            completableFuture.complete(null);
+
+            if (!metadataPositions.isEmpty()) {
+                PositionImpl firstPosition = metadataPositions.firstEntry().getKey();
+                PositionImpl deletePosition = metadataPositions.firstEntry().getKey();
+                while (!metadataPositions.isEmpty()
+                        && metadataPositions.firstKey() != null
+                        && subManagedCursor.getPersistentMarkDeletedPosition() != null
+                        && metadataPositions.firstEntry().getValue()
+                        .compareTo((PositionImpl) subManagedCursor.getPersistentMarkDeletedPosition()) <= 0) {
+                    deletePosition = metadataPositions.firstKey();
+                    metadataPositions.remove(metadataPositions.firstKey());
                 }
 
-                buf.release();
-                completableFuture.complete(null);
-
-                if (!metadataPositions.isEmpty()) {
-                    PositionImpl firstPosition = metadataPositions.firstEntry().getKey();
-                    PositionImpl deletePosition = metadataPositions.firstEntry().getKey();
-                    while (!metadataPositions.isEmpty()
-                            && metadataPositions.firstKey() != null
-                            && subManagedCursor.getPersistentMarkDeletedPosition() != null
-                            && metadataPositions.firstEntry().getValue()
-                            .compareTo((PositionImpl) subManagedCursor.getPersistentMarkDeletedPosition()) <= 0) {
-                        deletePosition = metadataPositions.firstKey();
-                        metadataPositions.remove(metadataPositions.firstKey());
-                    }
-
-                    if (firstPosition != deletePosition) {
-                        PositionImpl finalDeletePosition = deletePosition;
-                        cursor.asyncMarkDelete(deletePosition,
-                                new AsyncCallbacks.MarkDeleteCallback() {
-                                    @Override
-                                    public void markDeleteComplete(Object ctx) {
-                                        if (log.isDebugEnabled()) {
-                                            log.debug("[{}] Transaction pending ack store mark delete position : "
-                                                            + "[{}] success", managedLedger.getName(),
-                                                    finalDeletePosition);
-                                        }
+                if (firstPosition != deletePosition) {
+                    PositionImpl finalDeletePosition = deletePosition;
+                    cursor.asyncMarkDelete(deletePosition,
+                            new AsyncCallbacks.MarkDeleteCallback() {
+                                @Override
+                                public void markDeleteComplete(Object ctx) {
+                                    if (log.isDebugEnabled()) {
+                                        log.debug("[{}] Transaction pending ack store mark delete position : "
+                                                        + "[{}] success", managedLedger.getName(),
+                                                finalDeletePosition);
                                     }
+                                }
 
-                                    @Override
-                                    public void markDeleteFailed(ManagedLedgerException exception, Object ctx) {
-                                        if (log.isDebugEnabled()) {
-                                            log.error("[{}] Transaction pending ack store mark delete position : "
-                                                            + "[{}] fail!", managedLedger.getName(),
-                                                    finalDeletePosition, exception);
-                                        }
+                                @Override
+                                public void markDeleteFailed(ManagedLedgerException exception, Object ctx) {
+                                    if (log.isDebugEnabled()) {
+                                        log.error("[{}] Transaction pending ack store mark delete position : "
+                                                        + "[{}] fail!", managedLedger.getName(),
+                                                finalDeletePosition, exception);
                                     }
-                                }, null);
-                    }
+                                }
+                            }, null);
                 }
             }
-
-            @Override
-            public void addFailed(ManagedLedgerException exception, Object ctx) {
-                log.error("[{}][{}] MLPendingAckStore message append fail exception : {}, operation : {}",
-                        managedLedger.getName(), ctx, exception, pendingAckMetadataEntry.getPendingAckOp());
-                buf.release();
-                completableFuture.completeExceptionally(new PersistenceException(exception));
-            }
-        } , null);
+        });
         return completableFuture;
     }
 
+    /**
+     * Stores the max position acked by the records of the pending ack log entry at {@code position}. Several records
+     * share the same entry when the writes are batched, the entry is kept until all of their acks are deleted.
+     */
+    private void handleMetadataPosition(PositionImpl position, PendingAckMetadataEntry pendingAckMetadataEntry) {
+        if (pendingAckMetadataEntry.getPendingAckOp() != PendingAckOp.ABORT
+                && pendingAckMetadataEntry.getPendingAckOp() != PendingAckOp.COMMIT) {
+            Optional<PendingAckMetadata> optional = pendingAckMetadataEntry.getPendingAckMetadatasList()
+                    .stream().max((o1, o2) -> ComparisonChain.start().compare(o1.getLedgerId(),
+                            o2.getLedgerId()).compare(o1.getEntryId(), o2.getEntryId()).result());
+            optional.ifPresent(pendingAckMetadata ->
+                    metadataPositions.compute(position, (thisPosition, otherPosition) -> {
+                        PositionImpl nowPosition = PositionImpl.get(pendingAckMetadata.getLedgerId(),
+                                pendingAckMetadata.getEntryId());
+                        if (otherPosition == null) {
+                            return nowPosition;
+                        } else {
+                            return nowPosition.compareTo(otherPosition) > 0 ? nowPosition : otherPosition;
+                        }
+                    }));
+        }
+    }
+
     class PendingAckReplay implements Runnable {
 
         private final FillEntryQueueCallback fillEntryQueueCallback;
@@ -303,31 +313,24 @@ public class MLPendingAckStore implements PendingAckStore {
                     if (entry != null) {
                         ByteBuf buffer = entry.getDataBuffer();
                         currentLoadPosition = PositionImpl.get(entry.getLedgerId(), entry.getEntryId());
-                        PendingAckMetadataEntry pendingAckMetadataEntry = new PendingAckMetadataEntry();
-                        pendingAckMetadataEntry.parseFrom(buffer, buffer.readableBytes());
-                        // store the persistent position in to memory
-                        // store the max position of this entry retain
-                        if (pendingAckMetadataEntry.getPendingAckOp() != PendingAckOp.ABORT
-                                && pendingAckMetadataEntry.getPendingAckOp() != PendingAckOp.COMMIT) {
-                            Optional<PendingAckMetadata> optional = pendingAckMetadataEntry.getPendingAckMetadatasList()
-                                    .stream().max((o1, o2) -> ComparisonChain.start().compare(o1.getLedgerId(),
-                                            o2.getLedgerId()).compare(o1.getEntryId(), o2.getEntryId()).result());
-
-                            optional.ifPresent(pendingAckMetadata ->
-                                    metadataPositions.compute(PositionImpl.get(entry.getLedgerId(), entry.getEntryId()),
-                                            (thisPosition, otherPosition) -> {
-                                                PositionImpl nowPosition = PositionImpl
-                                                        .get(pendingAckMetadata.getLedgerId(),
-                                                                pendingAckMetadata.getEntryId());
-                                                if (otherPosition == null) {
-                                                    return nowPosition;
-                                                } else {
-                                                    return nowPosition.compareTo(otherPosition) > 0 ? nowPosition
-                                                            : otherPosition;
-                                                }
-                                            }));
+                        if (TxnLogBufferedWriter.isBatchedEntry(buffer)) {
+                            BatchedPendingAckMetadataEntry batchedPendingAckMetadataEntry =
+                                    new BatchedPendingAckMetadataEntry();
+                            batchedPendingAckMetadataEntry.parseFrom(buffer, buffer.readableBytes());
+                            for (int i = 0; i < batchedPendingAckMetadataEntry.getPendingAckLogsCount(); i++) {
+                                PendingAckMetadataEntry pendingAckMetadataEntry =
+                                        batchedPendingAckMetadataEntry.getPendingAckLogAt(i);
+                                handleMetadataPosition(currentLoadPosition, pendingAckMetadataEntry);
+                                pendingAckReplyCallBack.handleMetadataEntry(pendingAckMetadataEntry);
+                            }
+                        } else {
+                            PendingAckMetadataEntry pendingAckMetadataEntry = new PendingAckMetadataEntry();
+                            pendingAckMetadataEntry.parseFrom(buffer, buffer.readableBytes());
+                            // store the persistent position in to memory
+                            // store the max position of this entry retain
+                            handleMetadataPosition(currentLoadPosition, pendingAckMetadataEntry);
+                            pendingAckReplyCallBack.handleMetadataEntry(pendingAckMetadataEntry);
                         }
-                        pendingAckReplyCallBack.handleMetadataEntry(pendingAckMetadataEntry);
                         entry.release();
                     } else {
                         try {
@@ -384,6 +387,31 @@ public class MLPendingAckStore implements PendingAckStore {
 
     }
 
+    static class PendingAckMetadataEntrySerializer
+            implements TxnLogBufferedWriter.DataSerializer<PendingAckMetadataEntry> {
+
+        static final PendingAckMetadataEntrySerializer INSTANCE = new PendingAckMetadataEntrySerializer();
+
+        @Override
+        public int getSerializedSize(PendingAckMetadataEntry data) {
+            return data.getSerializedSize();
+        }
+
+        @Override
+        public void serialize(PendingAckMetadataEntry data, ByteBuf buf) {
+            data.writeTo(buf);
+        }
+
+        @Override
+        public void serialize(List<PendingAckMetadataEntry> dataArray, ByteBuf buf) {
+            BatchedPendingAckMetadataEntry batchedPendingAckMetadataEntry = new BatchedPendingAckMetadataEntry();
+            for (PendingAckMetadataEntry data : dataArray) {
+                batchedPendingAckMetadataEntry.addPendingAckLog().copyFrom(data);
+            }
+            batchedPendingAckMetadataEntry.writeTo(buf);
+        }
+    }
+
     public CompletableFuture<ManagedLedger> getManagedLedger() {
         return CompletableFuture.completedFuture(this.managedLedger);
     }
@@ -24,6 +24,8 @@ import org.apache.bookkeeper.mledger.AsyncCallbacks;
 import org.apache.bookkeeper.mledger.ManagedCursor;
 import org.apache.bookkeeper.mledger.ManagedLedger;
 import org.apache.bookkeeper.mledger.ManagedLedgerException;
+import org.apache.pulsar.broker.PulsarService;
+import org.apache.pulsar.broker.ServiceConfiguration;
 import org.apache.pulsar.broker.service.persistent.PersistentSubscription;
 import org.apache.pulsar.broker.service.persistent.PersistentTopic;
 import org.apache.pulsar.broker.transaction.pendingack.PendingAckStore;
@@ -31,6 +33,7 @@ import org.apache.pulsar.broker.transaction.pendingack.TransactionPendingAckStor
 import org.apache.pulsar.broker.transaction.pendingack.exceptions.TransactionPendingAckStoreProviderException;
 import org.apache.pulsar.common.api.proto.CommandSubscribe.InitialPosition;
 import org.apache.pulsar.common.naming.TopicName;
+import org.apache.pulsar.transaction.coordinator.TxnLogBufferedWriterConfig;
 
 
 /**
@@ -49,6 +52,15 @@ public class MLPendingAckStoreProvider implements TransactionPendingAckStoreProv
             return pendingAckStoreFuture;
         }
         PersistentTopic originPersistentTopic = (PersistentTopic) subscription.getTopic();
+        PulsarService pulsar = originPersistentTopic.getBrokerService().getPulsar();
+        ServiceConfiguration serviceConfiguration = pulsar.getConfiguration();
+        TxnLogBufferedWriterConfig bufferedWriterConfig = new TxnLogBufferedWriterConfig();
+        bufferedWriterConfig.setBatchEnabled(serviceConfiguration.isTransactionPendingAckBatchedWriteEnabled());
+        bufferedWriterConfig.setBatchedWriteMaxRecords(
+                serviceConfiguration.getTransactionPendingAckBatchedWriteMaxRecords());
+        bufferedWriterConfig.setBatchedWriteMaxSize(serviceConfiguration.getTransactionPendingAckBatchedWriteMaxSize());
+        bufferedWriterConfig.setBatchedWriteMaxDelayInMillis(
+                serviceConfiguration.getTransactionPendingAckBatchedWriteMaxDelayInMillis());
         String pendingAckTopicName = MLPendingAckStore
                 .getTransactionPendingAckStoreSuffix(originPersistentTopic.getName(), subscription.getName());
         originPersistentTopic.getBrokerService().getManagedLedgerFactory()
@@ -75,7 +87,9 @@ public class MLPendingAckStoreProvider implements TransactionPendingAckStoreProv
                                                     public void openCursorComplete(ManagedCursor cursor, Object ctx) {
                                                         pendingAckStoreFuture
                                                                 .complete(new MLPendingAckStore(ledger, cursor,
-                                                                        subscription.getCursor()));
+                                                                        subscription.getCursor(),
+                                                                        bufferedWriterConfig,
+                                                                        pulsar.getExecutor()));
                                                         if (log.isDebugEnabled()) {
                                                             log.debug("{},{} open MLPendingAckStore cursor success",
                                                                     originPersistentTopic.getName(),
@@ -21,9 +21,9 @@ package org.apache.pulsar.broker.transaction.pendingack.impl;
 import static org.apache.bookkeeper.mledger.util.PositionAckSetUtil.andAckSet;
 import static org.apache.bookkeeper.mledger.util.PositionAckSetUtil.compareToWithAckSet;
 import static org.apache.bookkeeper.mledger.util.PositionAckSetUtil.isAckSetOverlap;
+import com.google.common.collect.Range;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
@@ -50,6 +50,8 @@ import org.apache.pulsar.common.policies.data.TransactionInPendingAckStats;
 import org.apache.pulsar.common.policies.data.TransactionPendingAckStats;
 import org.apache.pulsar.common.util.FutureUtil;
 import org.apache.pulsar.common.util.collections.BitSetRecyclable;
+import org.apache.pulsar.common.util.collections.ConcurrentOpenLongPairRangeSet;
+import org.apache.pulsar.common.util.collections.LongPairRangeSet.LongPair;
 import org.apache.pulsar.transaction.common.exception.TransactionConflictException;
 
 /**
@@ -61,21 +63,27 @@ public class PendingAckHandleImpl extends PendingAckHandleState implements Pendi
     /**
      * The map is for transaction with position witch was individual acked by this transaction.
      * <p>
-     *     If the position is no batch position, it will be added to the map.
+     *     If the position is no batch position, it will be added to the primitive entries of the transaction.
      * <p>
      *     If the position is batch position and it does not exits the map, will be added to the map.
      *     If the position is batch position and it exits the map, will do operation `and` for this
      *     two positions bit set.
      */
-    private LinkedMap<TxnID, HashMap<PositionImpl, PositionImpl>> individualAckOfTransaction;
+    private LinkedMap<TxnID, TxnPendingAckPositions> individualAckOfTransaction;
 
     /**
-     * The map is for individual ack of positions for transaction.
+     * The position sorted set of the no batch positions individual acked by transactions.
      * <p>
-     *     When no batch position was acked by transaction, it will be checked to see if it exists in the map.
-     *     If it exits in the map, prove than it has been acked by another transaction. Broker will throw the
+     *     When no batch position was acked by transaction, it will be checked to see if it exists in the set.
+     *     If it exits in the set, prove than it has been acked by another transaction. Broker will throw the
      *     TransactionConflictException {@link TransactionConflictException}.
-     *     If it does not exits int the map, the position will be added to the map.
+     *     If it does not exits int the set, the position will be added to the set.
+     */
+    private final ConcurrentOpenLongPairRangeSet<PositionImpl> individualAckEntries =
+            new ConcurrentOpenLongPairRangeSet<>(4096, PositionImpl::new);
+
+    /**
+     * The map is for individual ack of batch positions for transaction.
      * <p>
      *     When batch position was acked by transaction, it will be checked to see if it exists in the map.
      *     <p>
@@ -87,7 +95,7 @@ public class PendingAckHandleImpl extends PendingAckHandleState implements Pendi
      *     <p>
      *         If it does not exits the map, the position will be added to the map.
      */
-    private Map<PositionImpl, MutablePair<PositionImpl, Integer>> individualAckPositions;
+    private ConcurrentSkipListMap<PositionImpl, MutablePair<PositionImpl, Integer>> individualAckPositions;
 
     /**
      * The map is for transaction with position witch was cumulative acked by this transaction.
@@ -200,8 +208,7 @@ public class PendingAckHandleImpl extends PendingAckHandleState implements Pendi
                                     return;
                                 }
                             } else {
-                                if (individualAckPositions != null
-                                        && individualAckPositions.containsKey(position)) {
+                                if (isEntryInPendingAck(position)) {
                                     String errorMsg = "[" + topicName + "][" + subName + "] Transaction:"
                                             + txnID + " try to ack message:"
                                             + position + " in pending ack status.";
@@ -341,7 +348,7 @@ public class PendingAckHandleImpl extends PendingAckHandleState implements Pendi
                     pendingAckStore.appendCommitMark(txnID, AckType.Individual).thenAccept(v -> {
                         synchronized (PendingAckHandleImpl.this) {
                             if (individualAckOfTransaction != null && individualAckOfTransaction.containsKey(txnID)) {
-                                HashMap<PositionImpl, PositionImpl> pendingAckMessageForCurrentTxn =
+                                TxnPendingAckPositions pendingAckMessageForCurrentTxn =
                                         individualAckOfTransaction.get(txnID);
                                 if (log.isDebugEnabled()) {
                                     log.debug("[{}] Transaction pending ack store commit txnId : "
@@ -399,7 +406,7 @@ public class PendingAckHandleImpl extends PendingAckHandleState implements Pendi
             pendingAckStoreFuture.thenAccept(pendingAckStore ->
                     pendingAckStore.appendAbortMark(txnId, AckType.Individual).thenAccept(v -> {
                         synchronized (PendingAckHandleImpl.this) {
-                            HashMap<PositionImpl, PositionImpl> pendingAckMessageForCurrentTxn =
+                            TxnPendingAckPositions pendingAckMessageForCurrentTxn =
                                     individualAckOfTransaction.get(txnId);
                             if (pendingAckMessageForCurrentTxn != null) {
                                 if (log.isDebugEnabled()) {
@@ -408,7 +415,7 @@ public class PendingAckHandleImpl extends PendingAckHandleState implements Pendi
                                 }
                                 individualAckAbortCommon(txnId, pendingAckMessageForCurrentTxn);
                                 persistentSubscription.redeliverUnacknowledgedMessages(consumer,
-                                        new ArrayList<>(pendingAckMessageForCurrentTxn.values()));
+                                        pendingAckMessageForCurrentTxn.getPositions());
                                 abortFuture.complete(null);
                                 handleLowWaterMark(txnId, lowWaterMark);
                             } else {
@@ -498,7 +505,7 @@ public class PendingAckHandleImpl extends PendingAckHandleState implements Pendi
             this.cumulativeAckOfTransaction = null;
         } else {
             if (this.individualAckOfTransaction != null) {
-                HashMap<PositionImpl, PositionImpl> pendingAckMessageForCurrentTxn =
+                TxnPendingAckPositions pendingAckMessageForCurrentTxn =
                         individualAckOfTransaction.get(txnID);
                 if (pendingAckMessageForCurrentTxn != null) {
                     individualAckAbortCommon(txnID, pendingAckMessageForCurrentTxn);
@@ -507,24 +514,23 @@ public class PendingAckHandleImpl extends PendingAckHandleState implements Pendi
         }
     }
 
-    private void individualAckAbortCommon(TxnID txnID, HashMap<PositionImpl, PositionImpl> currentTxn) {
-        for (Map.Entry<PositionImpl, PositionImpl> entry :
-                currentTxn.entrySet()) {
-            if (entry.getValue().hasAckSet()
-                    && individualAckPositions.containsKey(entry.getValue())) {
+    private void individualAckAbortCommon(TxnID txnID, TxnPendingAckPositions currentTxn) {
+        removeEntriesFromPendingAck(currentTxn);
+        for (PositionImpl position : currentTxn.getBatchPositions()) {
+            if (individualAckPositions.containsKey(position)) {
                 BitSetRecyclable thisBitSet =
-                        BitSetRecyclable.valueOf(entry.getValue().getAckSet());
-                thisBitSet.flip(0, individualAckPositions.get(entry.getValue()).right);
+                        BitSetRecyclable.valueOf(position.getAckSet());
+                thisBitSet.flip(0, individualAckPositions.get(position).right);
                 BitSetRecyclable otherBitSet =
                         BitSetRecyclable.valueOf(individualAckPositions
-                                .get(entry.getValue()).left.getAckSet());
+                                .get(position).left.getAckSet());
                 otherBitSet.or(thisBitSet);
-                individualAckPositions.get(entry.getKey())
+                individualAckPositions.get(position)
                         .left.setAckSet(otherBitSet.toLongArray());
                 otherBitSet.recycle();
                 thisBitSet.recycle();
             } else {
-                individualAckPositions.remove(entry.getValue());
+                individualAckPositions.remove(position);
             }
         }
         individualAckOfTransaction.remove(txnID);
@@ -540,7 +546,7 @@ public class PendingAckHandleImpl extends PendingAckHandleState implements Pendi
             this.cumulativeAckOfTransaction = null;
         } else {
             if (this.individualAckOfTransaction != null) {
-                HashMap<PositionImpl, PositionImpl> pendingAckMessageForCurrentTxn =
+                TxnPendingAckPositions pendingAckMessageForCurrentTxn =
                         individualAckOfTransaction.get(txnID);
                 if (pendingAckMessageForCurrentTxn != null) {
                     individualAckCommitCommon(txnID, pendingAckMessageForCurrentTxn, null);
@@ -550,15 +556,28 @@ public class PendingAckHandleImpl extends PendingAckHandleState implements Pendi
     }
 
     private void individualAckCommitCommon(TxnID txnID,
-                                           HashMap<PositionImpl, PositionImpl> currentTxn,
+                                           TxnPendingAckPositions currentTxn,
                                            Map<String, Long> properties) {
         if (currentTxn != null) {
-            persistentSubscription.acknowledgeMessage(new ArrayList<>(currentTxn.values()),
+            persistentSubscription.acknowledgeMessage(new ArrayList<>(currentTxn.getPositions()),
                     AckType.Individual, properties);
+            removeEntriesFromPendingAck(currentTxn);
             individualAckOfTransaction.remove(txnID);
         }
     }
 
+    private boolean isEntryInPendingAck(PositionImpl position) {
+        return individualAckEntries.contains(position.getLedgerId(), position.getEntryId())
+                || (individualAckPositions != null && individualAckPositions.containsKey(position));
+    }
+
+    // removes the whole entries of a transaction from the pending ack state, one range of entries at a time
+    private void removeEntriesFromPendingAck(TxnPendingAckPositions currentTxn) {
+        currentTxn.forEachEntryRange((ledgerId, firstEntryId, lastEntryId) ->
+                individualAckEntries.remove(Range.closed(new LongPair(ledgerId, firstEntryId),
+                        new LongPair(ledgerId, lastEntryId))));
+    }
+
     private void handleIndividualAck(TxnID txnID, List<MutablePair<PositionImpl, Integer>> positions) {
         for (int i = 0; i < positions.size(); i++) {
             if (log.isDebugEnabled()) {
@@ -575,17 +594,11 @@ public class PendingAckHandleImpl extends PendingAckHandleState implements Pendi
 
             PositionImpl position = positions.get(i).left;
 
-            if (position.hasAckSet()) {
-
-                HashMap<PositionImpl, PositionImpl> pendingAckMessageForCurrentTxn =
-                        individualAckOfTransaction.computeIfAbsent(txnID, txn -> new HashMap<>());
-
-                if (pendingAckMessageForCurrentTxn.containsKey(position)) {
-                    andAckSet(pendingAckMessageForCurrentTxn.get(position), position);
-                } else {
-                    pendingAckMessageForCurrentTxn.put(position, position);
-                }
+            TxnPendingAckPositions pendingAckMessageForCurrentTxn =
+                    individualAckOfTransaction.computeIfAbsent(txnID, txn -> new TxnPendingAckPositions());
+            pendingAckMessageForCurrentTxn.add(position);
 
+            if (position.hasAckSet()) {
                 if (!individualAckPositions.containsKey(position)) {
                     this.individualAckPositions.put(position, positions.get(i));
                 } else {
@@ -594,12 +607,9 @@ public class PendingAckHandleImpl extends PendingAckHandleState implements Pendi
                     positionPair.setRight(positions.get(i).right);
                     andAckSet(positionPair.getLeft(), position);
                 }
-
             } else {
-                HashMap<PositionImpl, PositionImpl> pendingAckMessageForCurrentTxn =
-                        individualAckOfTransaction.computeIfAbsent(txnID, txn -> new HashMap<>());
-                pendingAckMessageForCurrentTxn.put(position, position);
-                this.individualAckPositions.putIfAbsent(position, positions.get(i));
+                individualAckEntries.addOpenClosed(position.getLedgerId(), position.getEntryId() - 1,
+                        position.getLedgerId(), position.getEntryId());
             }
         }
     }
@@ -658,8 +668,7 @@ public class PendingAckHandleImpl extends PendingAckHandleState implements Pendi
                     return;
                 }
             } else {
-                if (individualAckPositions != null
-                        && individualAckPositions.containsKey(position)) {
+                if (isEntryInPendingAck(position)) {
                     return;
                 }
             }
@@ -677,20 +686,21 @@ public class PendingAckHandleImpl extends PendingAckHandleState implements Pendi
 
     @Override
     public synchronized void clearIndividualPosition(Position position) {
-        if (individualAckPositions == null) {
-            return;
-        }
-
         if (position instanceof PositionImpl) {
-            individualAckPositions.remove(position);
+            PositionImpl positionImpl = (PositionImpl) position;
+            individualAckEntries.remove(Range.closed(new LongPair(positionImpl.getLedgerId(),
+                    positionImpl.getEntryId()), new LongPair(positionImpl.getLedgerId(), positionImpl.getEntryId())));
+            if (individualAckPositions != null) {
+                individualAckPositions.remove(position);
+            }
         }
 
-        individualAckPositions.forEach((persistentPosition, positionIntegerMutablePair) -> {
-            if (persistentPosition.compareTo((PositionImpl) persistentSubscription
-                    .getCursor().getMarkDeletedPosition()) < 0) {
-                individualAckPositions.remove(persistentPosition);
-            }
-        });
+        // the positions before the mark delete position are all acked
+        PositionImpl markDeletePosition = (PositionImpl) persistentSubscription.getCursor().getMarkDeletedPosition();
+        individualAckEntries.removeAtMost(markDeletePosition.getLedgerId(), markDeletePosition.getEntryId() - 1);
+        if (individualAckPositions != null) {
+            individualAckPositions.headMap(markDeletePosition).clear();
+        }
     }
 
     @Override
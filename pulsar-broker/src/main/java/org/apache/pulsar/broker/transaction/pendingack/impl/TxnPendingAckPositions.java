@@ -0,0 +1,187 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.transaction.pendingack.impl;
+
+import static org.apache.bookkeeper.mledger.util.PositionAckSetUtil.andAckSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import org.apache.bookkeeper.mledger.impl.PositionImpl;
+
+/**
+ * The positions individually acked by a transaction on a subscription.
+ *
+ * <p>The whole entries acked are stored as primitive (ledgerId, entryId) pairs, which are sorted once the transaction
+ * ends, so that its commit or abort handles them as ranges of consecutive entries. The batch positions are stored
+ * with the ack set of the batch indexes acked by the transaction.
+ *
+ * <p>This class is not thread safe, it is only accessed while holding the {@link PendingAckHandleImpl} lock.
+ */
+public class TxnPendingAckPositions {
+
+    /**
+     * Consumes a range of consecutive entries of a ledger.
+     */
+    public interface EntryRangeConsumer {
+        void accept(long ledgerId, long firstEntryId, long lastEntryId);
+    }
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    // the ledger id and the entry id of each whole entry, interleaved
+    private long[] entries = new long[INITIAL_CAPACITY];
+    private int numEntries = 0;
+    private boolean sorted = true;
+
+    private HashMap<PositionImpl, PositionImpl> batchPositions;
+
+    public void add(PositionImpl position) {
+        if (position.hasAckSet()) {
+            if (batchPositions == null) {
+                batchPositions = new HashMap<>();
+            }
+            PositionImpl currentPosition = batchPositions.get(position);
+            if (currentPosition != null) {
+                andAckSet(currentPosition, position);
+            } else {
+                batchPositions.put(position, position);
+            }
+            return;
+        }
+
+        long ledgerId = position.getLedgerId();
+        long entryId = position.getEntryId();
+        if (numEntries * 2 == entries.length) {
+            entries = Arrays.copyOf(entries, entries.length * 2);
+        }
+        if (sorted && numEntries > 0 && compare(numEntries - 1, ledgerId, entryId) >= 0) {
+            sorted = false;
+        }
+        entries[numEntries * 2] = ledgerId;
+        entries[numEntries * 2 + 1] = entryId;
+        numEntries++;
+    }
+
+    /**
+     * @return the positions acked, the whole entries first and in position order
+     */
+    public List<PositionImpl> getPositions() {
+        sort();
+        int numBatchPositions = batchPositions == null ? 0 : batchPositions.size();
+        List<PositionImpl> positions = new ArrayList<>(numEntries + numBatchPositions);
+        for (int i = 0; i < numEntries; i++) {
+            positions.add(PositionImpl.get(entries[i * 2], entries[i * 2 + 1]));
+        }
+        if (numBatchPositions > 0) {
+            positions.addAll(batchPositions.values());
+        }
+        return positions;
+    }
+
+    /**
+     * Iterates over the whole entries acked, grouped in ranges of consecutive entries in position order.
+     */
+    public void forEachEntryRange(EntryRangeConsumer consumer) {
+        sort();
+        int i = 0;
+        while (i < numEntries) {
+            long ledgerId = entries[i * 2];
+            long firstEntryId = entries[i * 2 + 1];
+            long lastEntryId = firstEntryId;
+            i++;
+            while (i < numEntries && entries[i * 2] == ledgerId && entries[i * 2 + 1] == lastEntryId + 1) {
+                lastEntryId++;
+                i++;
+            }
+            consumer.accept(ledgerId, firstEntryId, lastEntryId);
+        }
+    }
+
+    public Collection<PositionImpl> getBatchPositions() {
+        return batchPositions == null ? Collections.emptyList() : batchPositions.values();
+    }
+
+    public int size() {
+        return numEntries + (batchPositions == null ? 0 : batchPositions.size());
+    }
+
+    // sorts the whole entries and removes the duplicates
+    private void sort() {
+        if (sorted) {
+            return;
+        }
+        quickSort(0, numEntries - 1);
+        int size = 0;
+        for (int i = 0; i < numEntries; i++) {
+            if (size == 0 || compare(size - 1, entries[i * 2], entries[i * 2 + 1]) != 0) {
+                entries[size * 2] = entries[i * 2];
+                entries[size * 2 + 1] = entries[i * 2 + 1];
+                size++;
+            }
+        }
+        numEntries = size;
+        sorted = true;
+    }
+
+    private void quickSort(int low, int high) {
+        while (low < high) {
+            int pivot = partition(low, high);
+            // recurse into the smaller side to bound the stack depth
+            if (pivot - low < high - pivot) {
+                quickSort(low, pivot - 1);
+                low = pivot + 1;
+            } else {
+                quickSort(pivot + 1, high);
+                high = pivot - 1;
+            }
+        }
+    }
+
+    private int partition(int low, int high) {
+        swap((low + high) >>> 1, high);
+        long pivotLedgerId = entries[high * 2];
+        long pivotEntryId = entries[high * 2 + 1];
+        int i = low;
+        for (int j = low; j < high; j++) {
+            if (compare(j, pivotLedgerId, pivotEntryId) < 0) {
+                swap(i, j);
+                i++;
+            }
+        }
+        swap(i, high);
+        return i;
+    }
+
+    private int compare(int index, long ledgerId, long entryId) {
+        int result = Long.compare(entries[index * 2], ledgerId);
+        return result != 0 ? result : Long.compare(entries[index * 2 + 1], entryId);
+    }
+
+    private void swap(int i, int j) {
+        long ledgerId = entries[i * 2];
+        long entryId = entries[i * 2 + 1];
+        entries[i * 2] = entries[j * 2];
+        entries[i * 2 + 1] = entries[j * 2 + 1];
+        entries[j * 2] = ledgerId;
+        entries[j * 2 + 1] = entryId;
+    }
+}
@@ -22,28 +22,42 @@ import io.netty.util.Timeout;
 import io.netty.util.Timer;
 import io.netty.util.TimerTask;
 import java.time.Clock;
+import java.util.Arrays;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.pulsar.broker.TransactionMetadataStoreService;
 import org.apache.pulsar.client.api.transaction.TxnID;
-import org.apache.pulsar.common.util.collections.TripleLongPriorityQueue;
 import org.apache.pulsar.transaction.coordinator.TransactionTimeoutTracker;
 
 /**
  * An timer-task implementation of {@link TransactionTimeoutTracker}.
+ *
+ * <p>The transactions are tracked in a timing wheel: a transaction goes to the bucket of the tick its timeout falls
+ * in, and every tick the timer task ends the transactions of the bucket that have timed out. The buckets store the
+ * timeout and the sequence id of their transactions as primitive longs, so tracking a transaction is O(1) and does
+ * not allocate, whatever the number of transactions. A transaction whose timeout is more than one revolution of the
+ * wheel away stays in its bucket until the revolution of its timeout.
  */
 @Slf4j
 public class TransactionTimeoutTrackerImpl implements TransactionTimeoutTracker, TimerTask {
 
+    private static final int WHEEL_SIZE = 512;
+    private static final int INITIAL_BUCKET_CAPACITY = 16;
+
     private final Timer timer;
-    private final TripleLongPriorityQueue priorityQueue = new TripleLongPriorityQueue();
     private final long tickTimeMillis;
     private final Clock clock;
     private Timeout currentTimeout;
-    private static final long INITIAL_TIMEOUT = 1L;
 
-    private volatile long nowTaskTimeoutTime = INITIAL_TIMEOUT;
+    // the timeout and the sequence id of the transactions of each bucket, interleaved
+    private final long[][] buckets = new long[WHEEL_SIZE][];
+    private final int[] bucketSizes = new int[WHEEL_SIZE];
+    private long numTransactions = 0;
+    // the first tick whose bucket has not been expired yet
+    private long currentTick;
+    private boolean closed = false;
+
     private final long tcId;
     private final TransactionMetadataStoreService transactionMetadataStoreService;
 
@@ -54,6 +68,7 @@ public class TransactionTimeoutTrackerImpl implements TransactionTimeoutTracker,
         this.timer = timer;
         this.tickTimeMillis  = tickTimeMillis;
         this.clock = Clock.systemUTC();
+        this.currentTick = clock.millis() / tickTimeMillis;
     }
 
     @Override
@@ -62,45 +77,31 @@ public class TransactionTimeoutTrackerImpl implements TransactionTimeoutTracker,
             this.transactionMetadataStoreService.endTransactionForTimeout(new TxnID(tcId, sequenceId));
             return CompletableFuture.completedFuture(false);
         }
-        synchronized (this){
-            long nowTime = clock.millis();
-            long transactionTimeoutTime = nowTime + timeout;
-            priorityQueue.add(transactionTimeoutTime, tcId, sequenceId);
-            if (this.currentTimeout == null) {
-                currentTimeout = timer.newTimeout(this, timeout, TimeUnit.MILLISECONDS);
-                nowTaskTimeoutTime = transactionTimeoutTime;
-            } else if (nowTaskTimeoutTime > transactionTimeoutTime) {
-                if (currentTimeout.cancel() || currentTimeout.isExpired()) {
-                    currentTimeout = timer.newTimeout(this, timeout, TimeUnit.MILLISECONDS);
-                    nowTaskTimeoutTime = transactionTimeoutTime;
-                }
-            } else if (currentTimeout.isExpired()) {
-                currentTimeout = timer.newTimeout(this, timeout, TimeUnit.MILLISECONDS);
-                nowTaskTimeoutTime = transactionTimeoutTime;
-            }
+        synchronized (this) {
+            add(clock.millis() + timeout, sequenceId);
+            scheduleNextTick();
         }
         return CompletableFuture.completedFuture(false);
     }
 
     @Override
-    public void replayAddTransaction(long sequenceId, long timeout) {
-        priorityQueue.add(timeout, tcId, sequenceId);
+    public synchronized void replayAddTransaction(long sequenceId, long timeout) {
+        add(timeout, sequenceId);
     }
 
     @Override
-    public void start() {
-        synchronized (this) {
-            if (currentTimeout == null && !priorityQueue.isEmpty()) {
-                this.currentTimeout = this.timer.newTimeout(this,
-                        priorityQueue.peekN1() - this.clock.millis(), TimeUnit.MILLISECONDS);
-                this.nowTaskTimeoutTime = priorityQueue.peekN1();
-            }
+    public synchronized void start() {
+        if (numTransactions > 0) {
+            scheduleNextTick();
         }
     }
 
     @Override
-    public void close() {
-        priorityQueue.close();
+    public synchronized void close() {
+        closed = true;
+        Arrays.fill(buckets, null);
+        Arrays.fill(bucketSizes, 0);
+        numTransactions = 0;
         if (this.currentTimeout != null) {
             this.currentTimeout.cancel();
         }
@@ -108,21 +109,71 @@ public class TransactionTimeoutTrackerImpl implements TransactionTimeoutTracker,
 
     @Override
     public void run(Timeout timeout) {
-        synchronized (this){
-            while (!priorityQueue.isEmpty()){
-                long timeoutTime = priorityQueue.peekN1();
-                long nowTime = clock.millis();
-                if (timeoutTime < nowTime){
-                    transactionMetadataStoreService.endTransactionForTimeout(new TxnID(priorityQueue.peekN2(),
-                            priorityQueue.peekN3()));
-                    priorityQueue.pop();
-                } else {
-                    currentTimeout = timer
-                            .newTimeout(this, timeoutTime - clock.millis(), TimeUnit.MILLISECONDS);
-                    nowTaskTimeoutTime = timeoutTime;
-                    break;
-                }
+        synchronized (this) {
+            currentTimeout = null;
+            if (closed) {
+                return;
+            }
+            long nowTime = clock.millis();
+            long nowTick = nowTime / tickTimeMillis;
+            // a bucket is only expired once its tick has elapsed, a lag of a whole revolution visits every bucket
+            for (long tick = Math.max(currentTick, nowTick - WHEEL_SIZE); tick < nowTick; tick++) {
+                expireBucket((int) (tick % WHEEL_SIZE), nowTime);
+            }
+            currentTick = Math.max(currentTick, nowTick);
+            if (numTransactions > 0) {
+                scheduleNextTick();
             }
         }
     }
+
+    private void add(long timeoutTime, long sequenceId) {
+        if (closed) {
+            return;
+        }
+        // the transactions whose tick has already been expired go to the next bucket to expire
+        long tick = Math.max(timeoutTime / tickTimeMillis, currentTick);
+        int bucket = (int) (tick % WHEEL_SIZE);
+        long[] entries = buckets[bucket];
+        int size = bucketSizes[bucket];
+        if (entries == null) {
+            entries = new long[INITIAL_BUCKET_CAPACITY * 2];
+            buckets[bucket] = entries;
+        } else if (size == entries.length) {
+            entries = Arrays.copyOf(entries, entries.length * 2);
+            buckets[bucket] = entries;
+        }
+        entries[size] = timeoutTime;
+        entries[size + 1] = sequenceId;
+        bucketSizes[bucket] = size + 2;
+        numTransactions++;
+    }
+
+    private void expireBucket(int bucket, long nowTime) {
+        long[] entries = buckets[bucket];
+        int size = bucketSizes[bucket];
+        int remaining = 0;
+        for (int i = 0; i < size; i += 2) {
+            if (entries[i] <= nowTime) {
+                transactionMetadataStoreService.endTransactionForTimeout(new TxnID(tcId, entries[i + 1]));
+                numTransactions--;
+            } else {
+                // the timeout is in a later revolution of the wheel
+                entries[remaining] = entries[i];
+                entries[remaining + 1] = entries[i + 1];
+                remaining += 2;
+            }
+        }
+        bucketSizes[bucket] = remaining;
+        if (remaining == 0 && entries != null && entries.length > INITIAL_BUCKET_CAPACITY * 2) {
+            // release the memory of the buckets that grew during a burst
+            buckets[bucket] = null;
+        }
+    }
+
+    private void scheduleNextTick() {
+        if (currentTimeout == null && !closed) {
+            currentTimeout = timer.newTimeout(this, tickTimeMillis, TimeUnit.MILLISECONDS);
+        }
+    }
 }
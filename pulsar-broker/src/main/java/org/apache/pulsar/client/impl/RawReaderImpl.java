@@ -172,18 +172,24 @@ public class RawReaderImpl implements RawReader {
                 while (!pendingRawReceives.isEmpty()) {
                     toError.add(pendingRawReceives.remove());
                 }
-                RawMessageAndCnx m = incomingRawMessages.poll();
-                while (m != null) {
-                    m.msg.close();
-                    m = incomingRawMessages.poll();
-                }
-                incomingRawMessages.clear();
+                clearIncomingRawMessages();
             }
             toError.forEach((f) -> f.cancel(false));
         }
 
+        private synchronized void clearIncomingRawMessages() {
+            RawMessageAndCnx m = incomingRawMessages.poll();
+            while (m != null) {
+                m.msg.close();
+                m = incomingRawMessages.poll();
+            }
+            incomingRawMessages.clear();
+        }
+
         @Override
         public CompletableFuture<Void> seekAsync(long timestamp) {
+            // drop the messages dispatched from the old position before issuing the seek, the messages received
+            // once it completes are already read from the new position
             reset();
             return super.seekAsync(timestamp);
         }
@@ -127,7 +127,8 @@ public class CompactorTool {
                     brokerConfig.getBrokerServicePort().get()));
         }
 
-        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(
+                Math.max(1, brokerConfig.getBrokerServiceCompactionPhaseOneParallelism()),
                 new ThreadFactoryBuilder().setNameFormat("compaction-%d").setDaemon(true).build());
 
         OrderedScheduler executor = OrderedScheduler.newSchedulerBuilder().build();
@@ -0,0 +1,208 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.compaction;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import org.apache.pulsar.client.api.MessageId;
+import org.apache.pulsar.client.impl.BatchMessageIdImpl;
+import org.apache.pulsar.client.impl.MessageIdImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Set of message ids kept on local disk as sorted runs.
+ *
+ * <p>Each phase one pass of {@link TwoPhaseCompactor} over a partition of the keys spills the ids of the
+ * latest message of its keys as one run. Phase two reads the topic in message id order, so it can probe
+ * the whole set with a single merge over the runs and never has to hold the ids in memory.
+ */
+class SpilledMessageIdIndex implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(SpilledMessageIdIndex.class);
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final Comparator<MessageId> ID_ORDER = Comparator
+            .comparingLong((MessageId id) -> ((MessageIdImpl) id).getLedgerId())
+            .thenComparingLong(id -> ((MessageIdImpl) id).getEntryId())
+            .thenComparingInt(SpilledMessageIdIndex::batchIndex);
+
+    private final List<Path> runs = new ArrayList<>();
+    private long size = 0;
+
+    /**
+     * Sort the given ids and write them to a new run.
+     */
+    void addRun(Collection<MessageId> ids) throws IOException {
+        List<MessageId> sorted = new ArrayList<>(ids);
+        sorted.sort(ID_ORDER);
+        Path run = Files.createTempFile("pulsar-compaction-", ".idx");
+        runs.add(run);
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(run), BUFFER_SIZE))) {
+            for (MessageId id : sorted) {
+                MessageIdImpl impl = (MessageIdImpl) id;
+                out.writeLong(impl.getLedgerId());
+                out.writeLong(impl.getEntryId());
+                out.writeInt(batchIndex(id));
+            }
+        }
+        size += sorted.size();
+    }
+
+    long size() {
+        return size;
+    }
+
+    int numberOfRuns() {
+        return runs.size();
+    }
+
+    /**
+     * Open a cursor merging all the runs. The ids passed to {@link Cursor#contains(MessageId)} must be
+     * increasing.
+     */
+    Cursor newCursor() throws IOException {
+        Cursor cursor = new Cursor();
+        try {
+            for (Path run : runs) {
+                RunReader reader = new RunReader(run);
+                if (reader.advance()) {
+                    cursor.heads.add(reader);
+                } else {
+                    reader.close();
+                }
+            }
+        } catch (IOException e) {
+            cursor.close();
+            throw e;
+        }
+        return cursor;
+    }
+
+    @Override
+    public void close() {
+        for (Path run : runs) {
+            try {
+                Files.deleteIfExists(run);
+            } catch (IOException e) {
+                log.warn("Failed to delete compaction index run {}", run, e);
+            }
+        }
+        runs.clear();
+    }
+
+    private static int batchIndex(MessageId id) {
+        return id instanceof BatchMessageIdImpl ? ((BatchMessageIdImpl) id).getBatchIndex() : -1;
+    }
+
+    private static int compare(RunReader run, long ledgerId, long entryId, int batchIndex) {
+        int c = Long.compare(run.ledgerId, ledgerId);
+        if (c == 0) {
+            c = Long.compare(run.entryId, entryId);
+        }
+        if (c == 0) {
+            c = Integer.compare(run.batchIndex, batchIndex);
+        }
+        return c;
+    }
+
+    class Cursor implements Closeable {
+        private final PriorityQueue<RunReader> heads = new PriorityQueue<>(Math.max(1, runs.size()),
+                (a, b) -> compare(a, b.ledgerId, b.entryId, b.batchIndex));
+
+        boolean contains(MessageId id) {
+            MessageIdImpl impl = (MessageIdImpl) id;
+            long ledgerId = impl.getLedgerId();
+            long entryId = impl.getEntryId();
+            int batchIndex = batchIndex(id);
+            try {
+                RunReader head;
+                while ((head = heads.peek()) != null) {
+                    int c = compare(head, ledgerId, entryId, batchIndex);
+                    if (c >= 0) {
+                        return c == 0;
+                    }
+                    heads.poll();
+                    if (head.advance()) {
+                        heads.add(head);
+                    } else {
+                        head.close();
+                    }
+                }
+                return false;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void close() {
+            RunReader head;
+            while ((head = heads.poll()) != null) {
+                head.close();
+            }
+        }
+    }
+
+    private static class RunReader implements Closeable {
+        private final Path path;
+        private final DataInputStream in;
+        long ledgerId;
+        long entryId;
+        int batchIndex;
+
+        RunReader(Path path) throws IOException {
+            this.path = path;
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), BUFFER_SIZE));
+        }
+
+        boolean advance() throws IOException {
+            try {
+                ledgerId = in.readLong();
+            } catch (EOFException e) {
+                return false;
+            }
+            entryId = in.readLong();
+            batchIndex = in.readInt();
+            return true;
+        }
+
+        @Override
+        public void close() {
+            try {
+                in.close();
+            } catch (IOException e) {
+                log.warn("Failed to close compaction index run {}", path, e);
+            }
+        }
+    }
+}
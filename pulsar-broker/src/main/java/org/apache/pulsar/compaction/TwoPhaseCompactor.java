@@ -19,15 +19,23 @@
 package org.apache.pulsar.compaction;
 
 import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.Hashing;
 import io.netty.buffer.ByteBuf;
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.Semaphore;
+import java.util.function.BiPredicate;
 import org.apache.bookkeeper.client.BKException;
 import org.apache.bookkeeper.client.BookKeeper;
 import org.apache.bookkeeper.client.LedgerHandle;
@@ -55,12 +63,18 @@ import org.slf4j.LoggerFactory;
  * <p>The two passes are required to avoid holding the payloads of each of
  * the latest values in memory, as the payload can be many orders of
  * magnitude larger than a message id.
+ *
+ * <p>When the topic holds more keys than {@code brokerServiceCompactionPhaseOneMaxKeysInMemory}, the first
+ * pass is repeated for hash partitions of the keys and the ids it selects are spilled to local disk, see
+ * {@link SpilledMessageIdIndex}.
 */
 public class TwoPhaseCompactor extends Compactor {
     private static final Logger log = LoggerFactory.getLogger(TwoPhaseCompactor.class);
     private static final int MAX_OUTSTANDING = 500;
     private static final String COMPACTED_TOPIC_LEDGER_PROPERTY = "CompactedTopicLedger";
     private final Duration phaseOneLoopReadTimeout;
+    private final long maxKeysInMemory;
+    private final int phaseOneParallelism;
 
     public TwoPhaseCompactor(ServiceConfiguration conf,
                              PulsarClient pulsar,
@@ -68,6 +82,8 @@ public class TwoPhaseCompactor extends Compactor {
                              ScheduledExecutorService scheduler) {
         super(conf, pulsar, bk, scheduler);
         phaseOneLoopReadTimeout = Duration.ofSeconds(conf.getBrokerServiceCompactionPhaseOneLoopTimeInSeconds());
+        maxKeysInMemory = conf.getBrokerServiceCompactionPhaseOneMaxKeysInMemory();
+        phaseOneParallelism = Math.max(1, conf.getBrokerServiceCompactionPhaseOneParallelism());
     }
 
     @Override
@@ -76,7 +92,7 @@ public class TwoPhaseCompactor extends Compactor {
                 .thenCompose(available -> {
                     if (available) {
                         return phaseOne(reader).thenCompose(
-                                (r) -> phaseTwo(reader, r.from, r.to, r.lastReadId, r.latestForKey, bk));
+                                (r) -> phaseTwo(reader, r, bk).whenComplete((ledgerId, ex) -> r.close()));
                     } else {
                         log.info("Skip compaction of the empty topic {}", reader.getTopic());
                         return CompletableFuture.completedFuture(-1L);
@@ -85,8 +101,7 @@ public class TwoPhaseCompactor extends Compactor {
     }
 
     private CompletableFuture<PhaseOneResult> phaseOne(RawReader reader) {
-        Map<String, MessageId> latestForKey = new HashMap<>();
-        CompletableFuture<PhaseOneResult> loopPromise = new CompletableFuture<>();
+        CompletableFuture<PhaseOneResult> promise = new CompletableFuture<>();
 
         reader.getLastMessageIdAsync()
                 .thenAccept(lastMessageId -> {
@@ -96,103 +111,279 @@ public class TwoPhaseCompactor extends Compactor {
                     MessageIdImpl lastImpl = (MessageIdImpl) lastMessageId;
                     MessageIdImpl lastEntryMessageId = new MessageIdImpl(lastImpl.getLedgerId(), lastImpl.getEntryId(),
                             lastImpl.getPartitionIndex());
-                    phaseOneLoop(reader, Optional.empty(), Optional.empty(), lastEntryMessageId, latestForKey,
-                            loopPromise);
+                    Deque<KeyPartition> partitions = new ArrayDeque<>();
+                    partitions.add(KeyPartition.ALL);
+                    phaseOnePasses(reader, lastEntryMessageId, partitions, null, null, null, promise);
                 }).exceptionally(ex -> {
-                    loopPromise.completeExceptionally(ex);
+                    promise.completeExceptionally(ex);
                     return null;
                 });
 
-        return loopPromise;
+        return promise;
     }
 
-    private void phaseOneLoop(RawReader reader,
-                              Optional<MessageId> firstMessageId,
-                              Optional<MessageId> toMessageId,
-                              MessageId lastMessageId,
-                              Map<String, MessageId> latestForKey,
-                              CompletableFuture<PhaseOneResult> loopPromise) {
-        if (loopPromise.isDone()) {
-            return;
+    /**
+     * Run one phase one pass for each partition of the keys. As long as the keys fit in memory there is
+     * a single pass over all of them. A pass whose partition holds more than
+     * {@code brokerServiceCompactionPhaseOneMaxKeysInMemory} keys is abandoned and its partition is split
+     * in two, each half being read by its own pass. The ids retained by each completed pass are spilled
+     * to local disk, so only the keys of one partition are ever held in memory.
+     */
+    private void phaseOnePasses(RawReader reader,
+                                MessageId lastMessageId,
+                                Deque<KeyPartition> partitions,
+                                MessageId startMessageId,
+                                PhaseOnePass firstCompletedPass,
+                                SpilledMessageIdIndex spilled,
+                                CompletableFuture<PhaseOneResult> promise) {
+        KeyPartition partition = partitions.poll();
+        CompletableFuture<Void> seekFuture = startMessageId == null
+                ? CompletableFuture.completedFuture(null) : reader.seekAsync(startMessageId);
+        seekFuture.thenCompose(v -> new PhaseOnePass(reader, lastMessageId, partition).run())
+                .thenAcceptAsync(pass -> {
+                    MessageId start = startMessageId == null ? pass.firstReadId : startMessageId;
+                    PhaseOnePass firstCompleted = firstCompletedPass;
+                    SpilledMessageIdIndex index = spilled;
+                    if (pass.overflowed) {
+                        if (partition.bits >= KeyPartition.MAX_BITS) {
+                            throw new IllegalStateException("Compaction phase one could not fit the keys of "
+                                    + partition + " in memory");
+                        }
+                        log.info("Compaction phase one of {} found more than {} keys in {}, splitting it",
+                                reader.getTopic(), maxKeysInMemory, partition);
+                        partition.split(partitions);
+                    } else {
+                        if (firstCompleted == null) {
+                            firstCompleted = pass;
+                        }
+                        if (partitions.isEmpty() && index == null) {
+                            promise.complete(new PhaseOneResult(pass.from, pass.to, lastMessageId,
+                                    pass.latestForKey.size(), latestForKeyFilter(pass.latestForKey), null));
+                            return;
+                        }
+                        if (index == null) {
+                            index = new SpilledMessageIdIndex();
+                        }
+                        try {
+                            index.addRun(pass.latestForKey.values());
+                        } catch (IOException e) {
+                            index.close();
+                            throw new UncheckedIOException(e);
+                        }
+                        if (partitions.isEmpty()) {
+                            log.info("Compaction phase one of {} spilled {} keys in {} runs",
+                                    reader.getTopic(), index.size(), index.numberOfRuns());
+                            promise.complete(new PhaseOneResult(firstCompleted.from, firstCompleted.to,
+                                    lastMessageId, index.size(), null, index));
+                            return;
+                        }
+                    }
+                    phaseOnePasses(reader, lastMessageId, partitions, start, firstCompleted, index, promise);
+                }, scheduler).exceptionally(ex -> {
+                    if (spilled != null) {
+                        spilled.close();
+                    }
+                    promise.completeExceptionally(ex);
+                    return null;
+                });
+    }
+
+    private static BiPredicate<String, MessageId> latestForKeyFilter(Map<String, MessageId> latestForKey) {
+        return (key, id) -> id.equals(latestForKey.get(key));
+    }
+
+    /**
+     * A single read of the topic, from the compaction cursor to the last message, which records the latest
+     * message id of the keys of one partition.
+     *
+     * <p>Up to {@code brokerServiceCompactionPhaseOneParallelism} entries are read ahead and decoded
+     * concurrently on the compaction executor, while their keys are applied to the index one entry at a
+     * time, in the order of the topic.
+     */
+    private class PhaseOnePass {
+        private final RawReader reader;
+        private final MessageId lastMessageId;
+        private final KeyPartition partition;
+        private final Map<String, MessageId> latestForKey = new HashMap<>();
+        private final CompletableFuture<PhaseOnePass> promise = new CompletableFuture<>();
+        private CompletableFuture<Void> applied = CompletableFuture.completedFuture(null);
+        private int outstandingReads = 0;
+
+        private MessageId firstReadId;
+        private MessageId from;
+        private MessageId to; // last undeleted messageId
+        private boolean overflowed = false;
+
+        PhaseOnePass(RawReader reader, MessageId lastMessageId, KeyPartition partition) {
+            this.reader = reader;
+            this.lastMessageId = lastMessageId;
+            this.partition = partition;
+        }
+
+        CompletableFuture<PhaseOnePass> run() {
+            readMore();
+            return promise;
         }
-        CompletableFuture<RawMessage> future = reader.readNextAsync();
-        FutureUtil.addTimeoutHandling(future,
-                phaseOneLoopReadTimeout, scheduler,
-                () -> FutureUtil.createTimeoutException("Timeout", getClass(), "phaseOneLoop(...)"));
 
-        future.thenAcceptAsync(m -> {
+        private synchronized void readMore() {
+            while (!promise.isDone() && outstandingReads < phaseOneParallelism) {
+                outstandingReads++;
+                CompletableFuture<RawMessage> future = reader.readNextAsync();
+                FutureUtil.addTimeoutHandling(future,
+                        phaseOneLoopReadTimeout, scheduler,
+                        () -> FutureUtil.createTimeoutException("Timeout", TwoPhaseCompactor.class,
+                                "phaseOneLoop(...)"));
+                CompletableFuture<KeysOfEntry> decoded = future.thenApplyAsync(this::decode, scheduler);
+                applied = applied.thenCombine(decoded, (v, keys) -> {
+                    apply(keys);
+                    return null;
+                });
+                applied.exceptionally(ex -> {
+                    promise.completeExceptionally(ex);
+                    return null;
+                });
+            }
+        }
+
+        private KeysOfEntry decode(RawMessage m) {
             try {
                 MessageId id = m.getMessageId();
-                boolean deletedMessage = false;
+                if (promise.isDone()) {
+                    return new KeysOfEntry(id, Collections.emptyList());
+                }
                 if (RawBatchConverter.isReadableBatch(m)) {
                     try {
-                        for (ImmutableTriple<MessageId, String, Integer> e : RawBatchConverter
-                                .extractIdsAndKeysAndSize(m)) {
-                            if (e != null) {
-                                if (e.getRight() > 0) {
-                                    latestForKey.put(e.getMiddle(), e.getLeft());
-                                } else {
-                                    deletedMessage = true;
-                                    latestForKey.remove(e.getMiddle());
-                                }
-                            }
-                        }
+                        return new KeysOfEntry(id, RawBatchConverter.extractIdsAndKeysAndSize(m));
                     } catch (IOException ioe) {
                         log.info("Error decoding batch for message {}. Whole batch will be included in output",
                                 id, ioe);
-                    }
-                } else {
-                    Pair<String, Integer> keyAndSize = extractKeyAndSize(m);
-                    if (keyAndSize != null) {
-                        if (keyAndSize.getRight() > 0) {
-                            latestForKey.put(keyAndSize.getLeft(), id);
-                        } else {
-                            deletedMessage = true;
-                            latestForKey.remove(keyAndSize.getLeft());
-                        }
+                        return new KeysOfEntry(id, Collections.emptyList());
                     }
                 }
-
-                MessageId first = firstMessageId.orElse(deletedMessage ? null : id);
-                MessageId to = deletedMessage ? toMessageId.orElse(null) : id;
-                if (id.compareTo(lastMessageId) == 0) {
-                    loopPromise.complete(new PhaseOneResult(first == null ? id : first, to == null ? id : to,
-                            lastMessageId, latestForKey));
-                } else {
-                    phaseOneLoop(reader,
-                            Optional.ofNullable(first),
-                            Optional.ofNullable(to),
-                            lastMessageId,
-                            latestForKey, loopPromise);
+                Pair<String, Integer> keyAndSize = extractKeyAndSize(m);
+                if (keyAndSize == null) {
+                    return new KeysOfEntry(id, Collections.emptyList());
                 }
+                return new KeysOfEntry(id, Collections.singletonList(
+                        ImmutableTriple.of(id, keyAndSize.getLeft(), keyAndSize.getRight())));
             } finally {
                 m.close();
             }
-        }, scheduler).exceptionally(ex -> {
-            loopPromise.completeExceptionally(ex);
-            return null;
-        });
+        }
+
+        private void apply(KeysOfEntry keys) {
+            if (promise.isDone()) {
+                return;
+            }
+            MessageId id = keys.id;
+            if (firstReadId == null) {
+                firstReadId = id;
+            }
+            boolean deletedMessage = false;
+            for (ImmutableTriple<MessageId, String, Integer> e : keys.keys) {
+                if (e.getRight() > 0) {
+                    if (partition.contains(e.getMiddle())) {
+                        latestForKey.put(e.getMiddle(), e.getLeft());
+                    }
+                } else {
+                    deletedMessage = true;
+                    latestForKey.remove(e.getMiddle());
+                }
+            }
+            if (maxKeysInMemory > 0 && latestForKey.size() > maxKeysInMemory) {
+                overflowed = true;
+                promise.complete(this);
+                return;
+            }
+
+            if (from == null && !deletedMessage) {
+                from = id;
+            }
+            if (!deletedMessage) {
+                to = id;
+            }
+            if (id.compareTo(lastMessageId) == 0) {
+                from = from == null ? id : from;
+                to = to == null ? id : to;
+                promise.complete(this);
+            } else {
+                synchronized (this) {
+                    outstandingReads--;
+                }
+                readMore();
+            }
+        }
+    }
+
+    private static class KeysOfEntry {
+        final MessageId id;
+        final List<ImmutableTriple<MessageId, String, Integer>> keys;
+
+        KeysOfEntry(MessageId id, List<ImmutableTriple<MessageId, String, Integer>> keys) {
+            this.id = id;
+            this.keys = keys;
+        }
     }
 
-    private CompletableFuture<Long> phaseTwo(RawReader reader, MessageId from, MessageId to, MessageId lastReadId,
-            Map<String, MessageId> latestForKey, BookKeeper bk) {
+    /**
+     * The keys whose murmur3 hash ends with the {@code bits} low bits of {@code residue}.
+     */
+    private static class KeyPartition {
+        static final KeyPartition ALL = new KeyPartition(0, 0);
+        static final int MAX_BITS = 30;
+
+        final int bits;
+        final int residue;
+
+        KeyPartition(int bits, int residue) {
+            this.bits = bits;
+            this.residue = residue;
+        }
+
+        boolean contains(String key) {
+            if (bits == 0) {
+                return true;
+            }
+            // Keyless sub-messages of a batch are always kept by phase two, no need to track them.
+            return key != null
+                    && (Hashing.murmur3_32().hashUnencodedChars(key).asInt() & ((1 << bits) - 1)) == residue;
+        }
+
+        void split(Deque<KeyPartition> partitions) {
+            partitions.addFirst(new KeyPartition(bits + 1, residue | (1 << bits)));
+            partitions.addFirst(new KeyPartition(bits + 1, residue));
+        }
+
+        @Override
+        public String toString() {
+            return "KeyPartition(bits=" + bits + ", residue=" + residue + ")";
+        }
+    }
+
+    private CompletableFuture<Long> phaseTwo(RawReader reader, PhaseOneResult r, BookKeeper bk) {
+        BiPredicate<String, MessageId> isLatestForKey;
+        try {
+            isLatestForKey = r.isLatestForKey();
+        } catch (IOException e) {
+            return FutureUtil.failedFuture(e);
+        }
         Map<String, byte[]> metadata =
-                LedgerMetadataUtils.buildMetadataForCompactedLedger(reader.getTopic(), to.toByteArray());
+                LedgerMetadataUtils.buildMetadataForCompactedLedger(reader.getTopic(), r.to.toByteArray());
         return createLedger(bk, metadata).thenCompose((ledger) -> {
             log.info("Commencing phase two of compaction for {}, from {} to {}, compacting {} keys to ledger {}",
-                    reader.getTopic(), from, to, latestForKey.size(), ledger.getId());
-            return phaseTwoSeekThenLoop(reader, from, to, lastReadId, latestForKey, bk, ledger);
+                    reader.getTopic(), r.from, r.to, r.numberOfKeys, ledger.getId());
+            return phaseTwoSeekThenLoop(reader, r.from, r.to, r.lastReadId, isLatestForKey, bk, ledger);
         });
     }
 
     private CompletableFuture<Long> phaseTwoSeekThenLoop(RawReader reader, MessageId from, MessageId to,
-            MessageId lastReadId, Map<String, MessageId> latestForKey, BookKeeper bk, LedgerHandle ledger) {
+            MessageId lastReadId, BiPredicate<String, MessageId> isLatestForKey, BookKeeper bk, LedgerHandle ledger) {
         CompletableFuture<Long> promise = new CompletableFuture<>();
 
         reader.seekAsync(from).thenCompose((v) -> {
             Semaphore outstanding = new Semaphore(MAX_OUTSTANDING);
             CompletableFuture<Void> loopPromise = new CompletableFuture<Void>();
-            phaseTwoLoop(reader, to, latestForKey, ledger, outstanding, loopPromise);
+            phaseTwoLoop(reader, to, isLatestForKey, ledger, outstanding, loopPromise);
             return loopPromise;
         }).thenCompose((v) -> closeLedger(ledger))
                 .thenCompose((v) -> reader.acknowledgeCumulativeAsync(lastReadId,
@@ -213,7 +404,7 @@ public class TwoPhaseCompactor extends Compactor {
         return promise;
     }
 
-    private void phaseTwoLoop(RawReader reader, MessageId to, Map<String, MessageId> latestForKey,
+    private void phaseTwoLoop(RawReader reader, MessageId to, BiPredicate<String, MessageId> isLatestForKey,
                               LedgerHandle lh, Semaphore outstanding, CompletableFuture<Void> promise) {
         if (promise.isDone()) {
             return;
@@ -228,8 +419,7 @@ public class TwoPhaseCompactor extends Compactor {
                 Optional<RawMessage> messageToAdd = Optional.empty();
                 if (RawBatchConverter.isReadableBatch(m)) {
                     try {
-                        messageToAdd = RawBatchConverter.rebatchMessage(
-                                m, (key, subid) -> subid.equals(latestForKey.get(key)));
+                        messageToAdd = RawBatchConverter.rebatchMessage(m, isLatestForKey);
                     } catch (IOException ioe) {
                         log.info("Error decoding batch for message {}. Whole batch will be included in output",
                                 id, ioe);
@@ -237,11 +427,10 @@ public class TwoPhaseCompactor extends Compactor {
                     }
                 } else {
                     Pair<String, Integer> keyAndSize = extractKeyAndSize(m);
-                    MessageId msg;
                     if (keyAndSize == null) { // pass through messages without a key
                         messageToAdd = Optional.of(m);
-                    } else if ((msg = latestForKey.get(keyAndSize.getLeft())) != null
-                            && msg.equals(id)) { // consider message only if present into latestForKey map
+                    } else if (isLatestForKey.test(keyAndSize.getLeft(), id)) {
+                        // consider message only if it is the latest one of its key
                         if (keyAndSize.getRight() <= 0) {
                             promise.completeExceptionally(new IllegalArgumentException(
                                     "Compaction phase found empty record from sorted key-map"));
@@ -289,7 +478,7 @@ public class TwoPhaseCompactor extends Compactor {
                     }
                     return;
                 }
-                phaseTwoLoop(reader, to, latestForKey, lh, outstanding, promise);
+                phaseTwoLoop(reader, to, isLatestForKey, lh, outstanding, promise);
             } finally {
                 m.close();
             }
@@ -387,17 +576,43 @@ public class TwoPhaseCompactor extends Compactor {
         }
     }
 
-    private static class PhaseOneResult {
+    private static class PhaseOneResult implements Closeable {
         final MessageId from;
         final MessageId to; // last undeleted messageId
         final MessageId lastReadId; // last read messageId
-        final Map<String, MessageId> latestForKey;
+        final long numberOfKeys;
+        final BiPredicate<String, MessageId> latestForKey; // null when the ids were spilled
+        final SpilledMessageIdIndex spilled;
+        SpilledMessageIdIndex.Cursor cursor;
 
-        PhaseOneResult(MessageId from, MessageId to, MessageId lastReadId, Map<String, MessageId> latestForKey) {
+        PhaseOneResult(MessageId from, MessageId to, MessageId lastReadId, long numberOfKeys,
+                       BiPredicate<String, MessageId> latestForKey, SpilledMessageIdIndex spilled) {
             this.from = from;
             this.to = to;
             this.lastReadId = lastReadId;
+            this.numberOfKeys = numberOfKeys;
             this.latestForKey = latestForKey;
+            this.spilled = spilled;
+        }
+
+        BiPredicate<String, MessageId> isLatestForKey() throws IOException {
+            if (spilled == null) {
+                return latestForKey;
+            }
+            // phase two reads the topic in order, so a single merge of the spilled runs answers every lookup
+            SpilledMessageIdIndex.Cursor c = spilled.newCursor();
+            cursor = c;
+            return (key, id) -> c.contains(id);
+        }
+
+        @Override
+        public void close() {
+            if (cursor != null) {
+                cursor.close();
+            }
+            if (spilled != null) {
+                spilled.close();
+            }
         }
     }
 
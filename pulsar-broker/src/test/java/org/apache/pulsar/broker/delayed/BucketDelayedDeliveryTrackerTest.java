@@ -0,0 +1,420 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.delayed;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import com.google.common.collect.Sets;
+import io.netty.util.Timer;
+import io.netty.util.TimerTask;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.Cleanup;
+import org.apache.bookkeeper.client.PulsarMockBookKeeper;
+import org.apache.bookkeeper.common.util.OrderedExecutor;
+import org.apache.bookkeeper.mledger.ManagedCursor;
+import org.apache.bookkeeper.mledger.ManagedCursor.IndividualDeletedEntries;
+import org.apache.bookkeeper.mledger.ManagedLedger;
+import org.apache.bookkeeper.mledger.ManagedLedgerConfig;
+import org.apache.bookkeeper.mledger.ManagedLedgerException;
+import org.apache.bookkeeper.mledger.impl.ManagedLedgerFactoryImpl;
+import org.apache.bookkeeper.mledger.impl.PositionImpl;
+import org.apache.pulsar.broker.ServiceConfiguration;
+import org.apache.pulsar.broker.service.persistent.PersistentDispatcherMultipleConsumers;
+import org.apache.pulsar.metadata.api.MetadataStore;
+import org.apache.pulsar.metadata.api.MetadataStoreConfig;
+import org.apache.pulsar.metadata.api.MetadataStoreFactory;
+import org.mockito.ArgumentCaptor;
+import org.testng.annotations.Test;
+
+@Test(groups = "broker")
+public class BucketDelayedDeliveryTrackerTest {
+
+    private static class MockBucketSnapshotStorage implements BucketSnapshotStorage {
+        private final Map<Long, List<long[]>> snapshots = new ConcurrentHashMap<>();
+        private final AtomicLong idGenerator = new AtomicLong();
+        private final AtomicInteger segmentReads = new AtomicInteger();
+
+        @Override
+        public CompletableFuture<Long> createBucketSnapshot(long[] metadata, List<long[]> segments) {
+            long id = idGenerator.getAndIncrement();
+            List<long[]> entries = new ArrayList<>();
+            entries.add(metadata);
+            entries.addAll(segments);
+            snapshots.put(id, entries);
+            return CompletableFuture.completedFuture(id);
+        }
+
+        @Override
+        public CompletableFuture<long[]> getBucketSnapshotMetadata(long snapshotId) {
+            List<long[]> entries = snapshots.get(snapshotId);
+            return CompletableFuture.completedFuture(entries == null ? new long[0] : entries.get(0));
+        }
+
+        @Override
+        public CompletableFuture<long[]> getBucketSnapshotSegment(long snapshotId, int segmentIndex) {
+            segmentReads.incrementAndGet();
+            return CompletableFuture.completedFuture(snapshots.get(snapshotId).get(segmentIndex + 1));
+        }
+
+        @Override
+        public CompletableFuture<Void> deleteBucketSnapshot(long snapshotId) {
+            snapshots.remove(snapshotId);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static ManagedCursor mockCursor(Map<String, Long> properties) {
+        ManagedCursor cursor = mock(ManagedCursor.class);
+        when(cursor.getProperties()).thenReturn(properties);
+        when(cursor.putProperty(anyString(), anyLong())).then(invocation -> {
+            properties.put(invocation.getArgument(0), invocation.getArgument(1));
+            return true;
+        });
+        when(cursor.removeProperty(anyString())).then(invocation -> {
+            properties.remove(invocation.<String>getArgument(0));
+            return true;
+        });
+        when(cursor.asyncPersistProperties()).thenReturn(CompletableFuture.completedFuture(null));
+        when(cursor.getMarkDeletedPosition()).thenReturn(PositionImpl.get(1, -1));
+        return cursor;
+    }
+
+    @Test
+    public void testSealAndDeliverInOrder() throws Exception {
+        PersistentDispatcherMultipleConsumers dispatcher = mock(PersistentDispatcherMultipleConsumers.class);
+        Timer timer = mock(Timer.class);
+        Map<String, Long> properties = new ConcurrentHashMap<>();
+        ManagedCursor cursor = mockCursor(properties);
+        MockBucketSnapshotStorage storage = new MockBucketSnapshotStorage();
+
+        AtomicLong clockTime = new AtomicLong();
+        Clock clock = mock(Clock.class);
+        when(clock.millis()).then(x -> clockTime.get());
+
+        @Cleanup
+        BucketDelayedDeliveryTracker tracker =
+                new BucketDelayedDeliveryTracker(dispatcher, cursor, storage, timer, 1, clock, 4, 2);
+
+        // Ledger 1 and 2 end up in the same bucket, which is sealed when moving to ledger 3
+        assertTrue(tracker.addMessage(1, 1, 50));
+        assertTrue(tracker.addMessage(1, 2, 10));
+        assertTrue(tracker.addMessage(2, 1, 40));
+        assertTrue(tracker.addMessage(2, 2, 20));
+        assertTrue(tracker.addMessage(2, 3, 30));
+        assertEquals(tracker.getNumberOfBuckets(), 0);
+        assertTrue(tracker.addMessage(3, 1, 15));
+        assertEquals(tracker.getNumberOfBuckets(), 1);
+        assertEquals(storage.snapshots.size(), 1);
+        assertEquals(properties.size(), 1);
+        assertTrue(properties.containsKey(BucketDelayedDeliveryTracker.DELAYED_BUCKET_KEY_PREFIX + "_1_2"));
+
+        // Only the mutable bucket is in memory, the sealed one is loaded when it's due
+        assertEquals(tracker.getNumberOfMessagesInMemory(), 1);
+        assertEquals(tracker.getNumberOfDelayedMessages(), 6);
+        assertFalse(tracker.hasMessageAvailable());
+
+        clockTime.set(25);
+        assertTrue(tracker.hasMessageAvailable());
+        assertEquals(tracker.getScheduledMessages(1), Sets.newHashSet(PositionImpl.get(1, 2)));
+        assertEquals(tracker.getScheduledMessages(10), Sets.newHashSet(PositionImpl.get(3, 1), PositionImpl.get(2, 2)));
+        // The first segment holds the messages at 10 and 20, the second one is not loaded yet
+        assertEquals(tracker.getNumberOfMessagesInMemory(), 0);
+        assertEquals(tracker.getNumberOfDelayedMessages(), 3);
+
+        clockTime.set(100);
+        assertTrue(tracker.hasMessageAvailable());
+        assertEquals(tracker.getScheduledMessages(10),
+                Sets.newHashSet(PositionImpl.get(2, 3), PositionImpl.get(2, 1), PositionImpl.get(1, 1)));
+        assertEquals(tracker.getNumberOfDelayedMessages(), 0);
+
+        // The drained bucket is removed from the storage and from the cursor properties
+        assertEquals(tracker.getNumberOfBuckets(), 0);
+        assertTrue(storage.snapshots.isEmpty());
+        assertTrue(properties.isEmpty());
+    }
+
+    @Test
+    public void testRecoverFromCursorProperties() throws Exception {
+        PersistentDispatcherMultipleConsumers dispatcher = mock(PersistentDispatcherMultipleConsumers.class);
+        Timer timer = mock(Timer.class);
+        Map<String, Long> properties = new ConcurrentHashMap<>();
+        ManagedCursor cursor = mockCursor(properties);
+        MockBucketSnapshotStorage storage = new MockBucketSnapshotStorage();
+
+        AtomicLong clockTime = new AtomicLong();
+        Clock clock = mock(Clock.class);
+        when(clock.millis()).then(x -> clockTime.get());
+
+        BucketDelayedDeliveryTracker tracker =
+                new BucketDelayedDeliveryTracker(dispatcher, cursor, storage, timer, 1, clock, 2, 10);
+        assertTrue(tracker.addMessage(1, 1, 100));
+        assertTrue(tracker.addMessage(1, 2, 200));
+        assertTrue(tracker.addMessage(2, 1, 300));
+        assertTrue(tracker.addMessage(2, 2, 400));
+        assertTrue(tracker.addMessage(3, 1, 500));
+        assertEquals(tracker.getNumberOfBuckets(), 2);
+        tracker.close();
+
+        // The new tracker finds the sealed buckets and only re-indexes the messages of the mutable bucket
+        @Cleanup
+        BucketDelayedDeliveryTracker recovered =
+                new BucketDelayedDeliveryTracker(dispatcher, cursor, storage, timer, 1, clock, 2, 10);
+        assertEquals(recovered.getNumberOfBuckets(), 2);
+        assertTrue(recovered.addMessage(1, 1, 100));
+        assertTrue(recovered.addMessage(1, 2, 200));
+        assertTrue(recovered.addMessage(2, 1, 300));
+        assertTrue(recovered.addMessage(2, 2, 400));
+        assertTrue(recovered.addMessage(3, 1, 500));
+        assertEquals(recovered.getNumberOfMessagesInMemory(), 1);
+
+        // Nothing is dispatched before the metadata of every bucket is known
+        assertFalse(recovered.hasMessageAvailable());
+        assertEquals(recovered.getNumberOfDelayedMessages(), 5);
+
+        clockTime.set(250);
+        assertEquals(recovered.getScheduledMessages(10), Sets.newHashSet(PositionImpl.get(1, 1), PositionImpl.get(1, 2)));
+        assertEquals(recovered.getNumberOfBuckets(), 1);
+
+        clockTime.set(1000);
+        assertEquals(recovered.getScheduledMessages(10),
+                Sets.newHashSet(PositionImpl.get(2, 1), PositionImpl.get(2, 2), PositionImpl.get(3, 1)));
+        assertEquals(recovered.getNumberOfDelayedMessages(), 0);
+        assertTrue(storage.snapshots.isEmpty());
+        assertTrue(properties.isEmpty());
+    }
+
+    @Test
+    public void testRecoverAfterCursorMoves() throws Exception {
+        @Cleanup("shutdown")
+        OrderedExecutor executor = OrderedExecutor.newBuilder().numThreads(1).build();
+        @Cleanup("shutdown")
+        PulsarMockBookKeeper bookKeeper = new PulsarMockBookKeeper(executor);
+        @Cleanup
+        MetadataStore metadataStore = MetadataStoreFactory.create("memory://local",
+                MetadataStoreConfig.builder().build());
+        ManagedLedgerConfig config = new ManagedLedgerConfig().setMaxEntriesPerLedger(2);
+
+        ManagedLedgerFactoryImpl factory = new ManagedLedgerFactoryImpl(metadataStore, bookKeeper);
+        ManagedLedger ledger = factory.open("bucket-recover", config);
+        ManagedCursor cursor = ledger.openCursor("sub");
+        List<PositionImpl> positions = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            positions.add((PositionImpl) ledger.addEntry(new byte[1]));
+        }
+
+        PersistentDispatcherMultipleConsumers dispatcher = mock(PersistentDispatcherMultipleConsumers.class);
+        Timer timer = mock(Timer.class);
+        MockBucketSnapshotStorage storage = new MockBucketSnapshotStorage();
+        Clock clock = mock(Clock.class);
+
+        BucketDelayedDeliveryTracker tracker =
+                new BucketDelayedDeliveryTracker(dispatcher, cursor, storage, timer, 1, clock, 2, 10);
+        for (int i = 0; i < positions.size(); i++) {
+            assertTrue(tracker.addMessage(positions.get(i).getLedgerId(), positions.get(i).getEntryId(),
+                    100 * (i + 1)));
+        }
+        assertEquals(tracker.getNumberOfBuckets(), 2);
+
+        // The mark-deletes of an expiry, a skip and a reset don't carry the cursor properties
+        cursor.markDelete(positions.get(0));
+        cursor.skipEntries(1, IndividualDeletedEntries.Exclude);
+        cursor.resetCursor(positions.get(1));
+        tracker.close();
+        factory.shutdown();
+
+        factory = new ManagedLedgerFactoryImpl(metadataStore, bookKeeper);
+        ledger = factory.open("bucket-recover", config);
+        cursor = ledger.openCursor("sub");
+        @Cleanup
+        BucketDelayedDeliveryTracker recovered =
+                new BucketDelayedDeliveryTracker(dispatcher, cursor, storage, timer, 1, clock, 2, 10);
+        assertEquals(recovered.getNumberOfBuckets(), 2);
+        assertEquals(storage.snapshots.size(), 2);
+        factory.shutdown();
+    }
+
+    @Test
+    public void testSkipAcknowledgedMessagesWhenLoading() throws Exception {
+        PersistentDispatcherMultipleConsumers dispatcher = mock(PersistentDispatcherMultipleConsumers.class);
+        Timer timer = mock(Timer.class);
+        Map<String, Long> properties = new ConcurrentHashMap<>();
+        ManagedCursor cursor = mockCursor(properties);
+        MockBucketSnapshotStorage storage = new MockBucketSnapshotStorage();
+
+        AtomicLong clockTime = new AtomicLong();
+        Clock clock = mock(Clock.class);
+        when(clock.millis()).then(x -> clockTime.get());
+
+        @Cleanup
+        BucketDelayedDeliveryTracker tracker =
+                new BucketDelayedDeliveryTracker(dispatcher, cursor, storage, timer, 1, clock, 2, 10);
+        assertTrue(tracker.addMessage(1, 1, 100));
+        assertTrue(tracker.addMessage(1, 2, 200));
+        assertTrue(tracker.addMessage(2, 1, 300));
+        assertEquals(tracker.getNumberOfBuckets(), 1);
+
+        when(cursor.getMarkDeletedPosition()).thenReturn(PositionImpl.get(1, 1));
+        clockTime.set(1000);
+        assertEquals(tracker.getScheduledMessages(10), Sets.newHashSet(PositionImpl.get(1, 2), PositionImpl.get(2, 1)));
+        assertEquals(tracker.getNumberOfDelayedMessages(), 0);
+        assertEquals(tracker.getNumberOfBuckets(), 0);
+    }
+
+    @Test
+    public void testSealOnlyOncePersisted() throws Exception {
+        PersistentDispatcherMultipleConsumers dispatcher = mock(PersistentDispatcherMultipleConsumers.class);
+        Timer timer = mock(Timer.class);
+        Map<String, Long> properties = new ConcurrentHashMap<>();
+        ManagedCursor cursor = mockCursor(properties);
+        List<CompletableFuture<Void>> persists = new ArrayList<>();
+        when(cursor.asyncPersistProperties()).then(invocation -> {
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            persists.add(future);
+            return future;
+        });
+        MockBucketSnapshotStorage storage = new MockBucketSnapshotStorage();
+
+        AtomicLong clockTime = new AtomicLong();
+        Clock clock = mock(Clock.class);
+        when(clock.millis()).then(x -> clockTime.get());
+
+        @Cleanup
+        BucketDelayedDeliveryTracker tracker =
+                new BucketDelayedDeliveryTracker(dispatcher, cursor, storage, timer, 1, clock, 2, 1);
+        assertTrue(tracker.addMessage(1, 1, 100));
+        assertTrue(tracker.addMessage(1, 2, 200));
+        assertTrue(tracker.addMessage(2, 1, 300));
+        assertEquals(tracker.getNumberOfBuckets(), 1);
+        assertEquals(persists.size(), 1);
+
+        // A failed write of the cursor properties is retried
+        persists.get(0).completeExceptionally(new ManagedLedgerException("failed"));
+        ArgumentCaptor<TimerTask> taskCaptor = ArgumentCaptor.forClass(TimerTask.class);
+        verify(timer, atLeastOnce()).newTimeout(taskCaptor.capture(), anyLong(), any(TimeUnit.class));
+        TimerTask retry = taskCaptor.getAllValues().stream().filter(task -> task != tracker).findFirst().get();
+        retry.run(null);
+        assertEquals(persists.size(), 2);
+
+        // Until the snapshot id is persisted, the segments are served from memory
+        clockTime.set(150);
+        assertEquals(tracker.getScheduledMessages(10), Sets.newHashSet(PositionImpl.get(1, 1)));
+        assertEquals(storage.segmentReads.get(), 0);
+
+        persists.get(1).complete(null);
+        clockTime.set(250);
+        assertEquals(tracker.getScheduledMessages(10), Sets.newHashSet(PositionImpl.get(1, 2)));
+        assertEquals(storage.segmentReads.get(), 1);
+
+        // The snapshot is only deleted once the cursor properties don't reference it anymore
+        assertEquals(tracker.getNumberOfBuckets(), 0);
+        assertEquals(persists.size(), 3);
+        assertEquals(storage.snapshots.size(), 1);
+        persists.get(2).complete(null);
+        assertTrue(storage.snapshots.isEmpty());
+        assertTrue(properties.isEmpty());
+    }
+
+    @Test
+    public void testBucketRangesDontOverlap() throws Exception {
+        PersistentDispatcherMultipleConsumers dispatcher = mock(PersistentDispatcherMultipleConsumers.class);
+        Timer timer = mock(Timer.class);
+        Map<String, Long> properties = new ConcurrentHashMap<>();
+        ManagedCursor cursor = mockCursor(properties);
+        MockBucketSnapshotStorage storage = new MockBucketSnapshotStorage();
+        long snapshotId = storage.createBucketSnapshot(new long[] {500, 1},
+                Collections.singletonList(new long[] {500, 4, 1})).get();
+        properties.put(BucketDelayedDeliveryTracker.DELAYED_BUCKET_KEY_PREFIX + "_3_5", snapshotId);
+
+        AtomicLong clockTime = new AtomicLong();
+        Clock clock = mock(Clock.class);
+        when(clock.millis()).then(x -> clockTime.get());
+
+        @Cleanup
+        BucketDelayedDeliveryTracker tracker =
+                new BucketDelayedDeliveryTracker(dispatcher, cursor, storage, timer, 1, clock, 2, 10);
+        assertEquals(tracker.getNumberOfBuckets(), 1);
+
+        // The mutable bucket is sealed rather than extended over the recovered bucket
+        assertTrue(tracker.addMessage(1, 1, 100));
+        assertTrue(tracker.addMessage(4, 1, 500));
+        assertTrue(tracker.addMessage(6, 1, 600));
+        assertEquals(tracker.getNumberOfBuckets(), 2);
+        assertTrue(properties.containsKey(BucketDelayedDeliveryTracker.DELAYED_BUCKET_KEY_PREFIX + "_1_1"));
+
+        // An out of order message can't extend the mutable bucket over a sealed one either
+        assertTrue(tracker.addMessage(7, 1, 700));
+        assertFalse(tracker.addMessage(2, 1, 200));
+
+        clockTime.set(1000);
+        assertEquals(tracker.getScheduledMessages(10), Sets.newHashSet(PositionImpl.get(1, 1),
+                PositionImpl.get(4, 1), PositionImpl.get(6, 1), PositionImpl.get(7, 1)));
+        assertEquals(tracker.getNumberOfDelayedMessages(), 0);
+        assertEquals(tracker.getNumberOfBuckets(), 0);
+        assertTrue(storage.snapshots.isEmpty());
+        assertTrue(properties.isEmpty());
+    }
+
+    @Test
+    public void testBookkeeperBucketSnapshotStorage() throws Exception {
+        @Cleanup("shutdown")
+        OrderedExecutor executor = OrderedExecutor.newBuilder().numThreads(1).build();
+        @Cleanup("shutdown")
+        PulsarMockBookKeeper bookKeeper = new PulsarMockBookKeeper(executor);
+        @Cleanup
+        BookkeeperBucketSnapshotStorage storage =
+                new BookkeeperBucketSnapshotStorage(bookKeeper, new ServiceConfiguration());
+
+        long[] metadata = new long[] {10, 2, 30, 1};
+        long[] segment0 = new long[] {10, 1, 1, 20, 1, 2};
+        long[] segment1 = new long[] {30, 2, 1};
+        long snapshotId = storage.createBucketSnapshot(metadata, Arrays.asList(segment0, segment1)).get();
+
+        assertEquals(storage.getBucketSnapshotMetadata(snapshotId).get(), metadata);
+        assertEquals(storage.getBucketSnapshotSegment(snapshotId, 0).get(), segment0);
+        assertEquals(storage.getBucketSnapshotSegment(snapshotId, 1).get(), segment1);
+
+        storage.deleteBucketSnapshot(snapshotId).get();
+        assertEquals(storage.getBucketSnapshotMetadata(snapshotId).get(), new long[0]);
+        assertNull(bookKeeper.getLedgerMap().get(snapshotId));
+    }
+}
@@ -0,0 +1,148 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.service;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.testng.Assert.assertEquals;
+import io.netty.buffer.Unpooled;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import org.apache.pulsar.broker.PulsarService;
+import org.apache.pulsar.broker.ServiceConfiguration;
+import org.apache.pulsar.broker.service.persistent.PersistentTopic;
+import org.apache.pulsar.common.api.proto.ProducerAccessMode;
+import org.apache.pulsar.common.protocol.schema.SchemaVersion;
+import org.mockito.InOrder;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@Test(groups = "broker")
+public class ProducerSendReceiptTest {
+
+    private static final long PRODUCER_ID = 1;
+
+    private TransportCnx cnx;
+    private PulsarCommandSender commandSender;
+    private List<Runnable> cnxTasks;
+    private List<Topic.PublishContext> publishContexts;
+    private Producer producer;
+
+    @BeforeMethod
+    public void setup() {
+        ServiceConfiguration config = new ServiceConfiguration();
+        PulsarService pulsar = mock(PulsarService.class);
+        doReturn(config).when(pulsar).getConfiguration();
+        BrokerService brokerService = mock(BrokerService.class);
+        doReturn(pulsar).when(brokerService).pulsar();
+
+        commandSender = mock(PulsarCommandSender.class);
+        cnxTasks = new ArrayList<>();
+        cnx = mock(TransportCnx.class);
+        doReturn(brokerService).when(cnx).getBrokerService();
+        doReturn(commandSender).when(cnx).getCommandSender();
+        doReturn(true).when(cnx).isBatchedSendReceiptCompatibleVersion();
+        doReturn(new InetSocketAddress("localhost", 1234)).when(cnx).clientAddress();
+        doAnswer(invocation -> cnxTasks.add(invocation.getArgument(0))).when(cnx).execute(any());
+
+        publishContexts = new ArrayList<>();
+        Topic topic = mock(PersistentTopic.class);
+        doAnswer(invocation -> publishContexts.add(invocation.getArgument(1)))
+                .when(topic).publishMessage(any(), any());
+
+        producer = new Producer(topic, cnx, PRODUCER_ID, "producer", "role", false, null, SchemaVersion.Latest, 0,
+                false, ProducerAccessMode.Shared, Optional.empty());
+    }
+
+    private void publish(int numMessages) {
+        for (int i = 0; i < numMessages; i++) {
+            producer.publishMessage(PRODUCER_ID, publishContexts.size(), Unpooled.wrappedBuffer(new byte[10]), 1,
+                    false);
+        }
+    }
+
+    private void runCnxTasks() {
+        List<Runnable> tasks = new ArrayList<>(cnxTasks);
+        cnxTasks.clear();
+        tasks.forEach(Runnable::run);
+    }
+
+    @Test
+    public void testConsecutiveEntriesShareReceipt() {
+        publish(4);
+        publishContexts.get(0).completed(null, 3, 10);
+        publishContexts.get(1).completed(null, 3, 11);
+        publishContexts.get(2).completed(null, 3, 12);
+        // not consecutive with the previous entry
+        publishContexts.get(3).completed(null, 3, 20);
+
+        // the completions are answered by a single task of the connection thread
+        assertEquals(cnxTasks.size(), 1);
+        runCnxTasks();
+
+        InOrder inOrder = inOrder(commandSender);
+        inOrder.verify(commandSender).sendSendReceiptResponse(eq(PRODUCER_ID), eq(0L), eq(10L), eq(2L), anyLong(),
+                eq(3L), eq(12L));
+        inOrder.verify(commandSender).sendSendReceiptResponse(eq(PRODUCER_ID), eq(3L), anyLong(), eq(3L), eq(20L));
+        verify(cnx, times(4)).completedSendOperation(false, 10);
+    }
+
+    @Test
+    public void testErrorSplitsReceipts() {
+        publish(4);
+        publishContexts.get(0).completed(null, 3, 10);
+        publishContexts.get(1).completed(null, 3, 11);
+        publishContexts.get(2).completed(new BrokerServiceException.PersistenceException(new Exception()), -1, -1);
+        publishContexts.get(3).completed(null, 3, 12);
+        runCnxTasks();
+
+        // the receipts keep the publish order
+        InOrder inOrder = inOrder(commandSender);
+        inOrder.verify(commandSender).sendSendReceiptResponse(eq(PRODUCER_ID), eq(0L), eq(10L), eq(1L), anyLong(),
+                eq(3L), eq(11L));
+        inOrder.verify(commandSender).sendSendError(eq(PRODUCER_ID), eq(2L), any(), any());
+        inOrder.verify(commandSender).sendSendReceiptResponse(eq(PRODUCER_ID), eq(3L), anyLong(), eq(3L), eq(12L));
+    }
+
+    @Test
+    public void testCompletionsAfterDrainAreAnsweredByNextTask() {
+        publish(3);
+        publishContexts.get(0).completed(null, 3, 10);
+        runCnxTasks();
+        verify(commandSender).sendSendReceiptResponse(eq(PRODUCER_ID), eq(0L), anyLong(), eq(3L), eq(10L));
+
+        publishContexts.get(1).completed(null, 3, 11);
+        publishContexts.get(2).completed(null, 3, 12);
+        assertEquals(cnxTasks.size(), 1);
+        runCnxTasks();
+        verify(commandSender).sendSendReceiptResponse(eq(PRODUCER_ID), eq(1L), eq(11L), eq(2L), anyLong(), eq(3L),
+                eq(12L));
+        verify(commandSender, never()).sendSendError(anyLong(), anyLong(), any(), any());
+    }
+}
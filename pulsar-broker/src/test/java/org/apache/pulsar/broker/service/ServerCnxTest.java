@@ -46,6 +46,7 @@ import java.lang.reflect.Field;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
@@ -64,6 +65,7 @@ import org.apache.bookkeeper.mledger.ManagedLedgerConfig;
 import org.apache.bookkeeper.mledger.ManagedLedgerException;
 import org.apache.bookkeeper.mledger.ManagedLedgerFactory;
 import org.apache.bookkeeper.mledger.impl.PositionImpl;
+import org.apache.commons.lang3.tuple.Triple;
 import org.apache.pulsar.broker.PulsarService;
 import org.apache.pulsar.broker.ServiceConfiguration;
 import org.apache.pulsar.broker.admin.AdminResource;
@@ -89,6 +91,7 @@ import org.apache.pulsar.common.api.proto.AuthMethod;
 import org.apache.pulsar.common.api.proto.BaseCommand;
 import org.apache.pulsar.common.api.proto.BaseCommand.Type;
 import org.apache.pulsar.common.api.proto.CommandAck.AckType;
+import org.apache.pulsar.common.api.proto.CommandAckResponse;
 import org.apache.pulsar.common.api.proto.CommandConnected;
 import org.apache.pulsar.common.api.proto.CommandError;
 import org.apache.pulsar.common.api.proto.CommandLookupTopicResponse;
@@ -109,6 +112,7 @@ import org.apache.pulsar.common.protocol.Commands;
 import org.apache.pulsar.common.protocol.Commands.ChecksumType;
 import org.apache.pulsar.common.protocol.PulsarHandler;
 import org.apache.pulsar.common.util.FutureUtil;
+import org.apache.pulsar.common.util.collections.ConcurrentBitSetRecyclable;
 import org.apache.pulsar.metadata.api.extended.MetadataStoreExtended;
 import org.apache.pulsar.metadata.impl.ZKMetadataStore;
 import org.apache.pulsar.zookeeper.ZooKeeperCache;
@@ -1285,6 +1289,38 @@ public class ServerCnxTest {
         channel.finish();
     }
 
+    @Test(timeOut = 30000)
+    public void testAckRangeCommand() throws Exception {
+        svcConfig.setMaxEntriesPerAckRange(2);
+        doReturn(PositionImpl.earliest).when(cursorMock).getMarkDeletedPosition();
+        resetChannel();
+        setChannelConnected();
+
+        ByteBuf clientCommand = Commands.newSubscribe(successTopicName, successSubName, 1 /* consumer id */,
+                1 /* request id */, SubType.Shared, 0, "test" /* consumer name */, 0 /* avoid reseting cursor */);
+        channel.writeInbound(clientCommand);
+        assertTrue(getResponse() instanceof CommandSuccess);
+
+        List<Triple<Long, Long, ConcurrentBitSetRecyclable>> entries = new ArrayList<>();
+        entries.add(Triple.of(0L, 0L, null));
+        entries.add(Triple.of(0L, 1L, null));
+        clientCommand = Commands.newMultiMessageAck(1 /* consumer id */, entries, 2 /* request id */, true);
+        channel.writeInbound(clientCommand);
+        CommandAckResponse response = (CommandAckResponse) getResponse();
+        assertEquals(response.getRequestId(), 2);
+        assertFalse(response.hasError());
+
+        // The range spans more entries than allowed
+        entries.add(Triple.of(0L, 2L, null));
+        clientCommand = Commands.newMultiMessageAck(1 /* consumer id */, entries, 3 /* request id */, true);
+        channel.writeInbound(clientCommand);
+        response = (CommandAckResponse) getResponse();
+        assertEquals(response.getRequestId(), 3);
+        assertEquals(response.getError(), ServerError.NotAllowedError);
+
+        channel.finish();
+    }
+
     @Test(timeOut = 30000)
     public void testFlowCommand() throws Exception {
         resetChannel();
@@ -0,0 +1,88 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.service;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import com.google.common.collect.ImmutableMap;
+import java.util.Collections;
+import org.apache.pulsar.common.api.proto.MessageMetadata;
+import org.testng.annotations.Test;
+
+@Test(groups = "broker")
+public class SubscriptionMessageFilterTest {
+
+    private static MessageMetadata metadata(String key, String... properties) {
+        MessageMetadata metadata = new MessageMetadata()
+                .setProducerName("producer")
+                .setSequenceId(0)
+                .setPublishTime(0);
+        if (key != null) {
+            metadata.setPartitionKey(key);
+        }
+        for (int i = 0; i < properties.length; i += 2) {
+            metadata.addProperty().setKey(properties[i]).setValue(properties[i + 1]);
+        }
+        return metadata;
+    }
+
+    @Test
+    public void testFromMetadata() {
+        assertNull(SubscriptionMessageFilter.fromMetadata(null));
+        assertNull(SubscriptionMessageFilter.fromMetadata(Collections.emptyMap()));
+        assertNull(SubscriptionMessageFilter.fromMetadata(ImmutableMap.of("app", "test")));
+
+        assertEquals(SubscriptionMessageFilter.fromMetadata(ImmutableMap.of("pulsar.filter.property.a", "1")),
+                SubscriptionMessageFilter.fromMetadata(ImmutableMap.of("pulsar.filter.property.a", "1",
+                        "app", "test")));
+    }
+
+    @Test
+    public void testPropertyFilter() {
+        SubscriptionMessageFilter filter = SubscriptionMessageFilter.fromMetadata(ImmutableMap.of(
+                "pulsar.filter.property.region", "eu",
+                "pulsar.filter.property.type", "order"));
+
+        assertTrue(filter.matches(metadata(null, "region", "eu", "type", "order")));
+        assertTrue(filter.matches(metadata(null, "type", "order", "other", "x", "region", "eu")));
+        assertFalse(filter.matches(metadata(null, "region", "eu")));
+        assertFalse(filter.matches(metadata(null, "region", "us", "type", "order")));
+        assertFalse(filter.matches(metadata(null)));
+    }
+
+    @Test
+    public void testKeyPrefixFilter() {
+        SubscriptionMessageFilter filter = SubscriptionMessageFilter.fromMetadata(
+                ImmutableMap.of("pulsar.filter.key-prefix", "user-"));
+
+        assertTrue(filter.matches(metadata("user-1")));
+        assertFalse(filter.matches(metadata("order-1")));
+        assertFalse(filter.matches(metadata(null)));
+    }
+
+    @Test
+    public void testBatchesAreNotFiltered() {
+        SubscriptionMessageFilter filter = SubscriptionMessageFilter.fromMetadata(
+                ImmutableMap.of("pulsar.filter.property.region", "eu"));
+
+        assertTrue(filter.matches(metadata(null).setNumMessagesInBatch(10)));
+    }
+}
@@ -25,11 +25,8 @@ import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
-import org.apache.bookkeeper.mledger.Position;
-import org.apache.commons.lang3.tuple.Pair;
 import org.apache.pulsar.broker.ServiceConfiguration;
 import org.apache.pulsar.broker.TransactionMetadataStoreService;
 import org.apache.pulsar.client.api.transaction.TxnID;
@@ -40,6 +37,7 @@ import org.apache.pulsar.transaction.coordinator.TransactionSubscription;
 import org.apache.pulsar.transaction.coordinator.TxnMeta;
 import org.apache.pulsar.transaction.coordinator.exceptions.CoordinatorException;
 import org.apache.pulsar.transaction.coordinator.impl.MLTransactionMetadataStore;
+import org.apache.pulsar.transaction.coordinator.impl.TxnMetaMap;
 import org.apache.pulsar.transaction.coordinator.proto.TxnStatus;
 import org.awaitility.Awaitility;
 import org.testng.Assert;
@@ -164,8 +162,7 @@ public class TransactionMetadataStoreServiceTest extends BrokerTestBase {
         checkTransactionMetadataStoreReady(transactionMetadataStore);
         Field field = MLTransactionMetadataStore.class.getDeclaredField("txnMetaMap");
         field.setAccessible(true);
-        ConcurrentSkipListMap<Long, Pair<TxnMeta, List<Position>>> txnMap =
-                (ConcurrentSkipListMap<Long, Pair<TxnMeta, List<Position>>>) field.get(transactionMetadataStore);
+        TxnMetaMap txnMap = (TxnMetaMap) field.get(transactionMetadataStore);
         int i = -1;
         while (++i < 1000) {
             try {
@@ -192,8 +189,7 @@ public class TransactionMetadataStoreServiceTest extends BrokerTestBase {
         checkTransactionMetadataStoreReady(transactionMetadataStore);
         Field field = MLTransactionMetadataStore.class.getDeclaredField("txnMetaMap");
         field.setAccessible(true);
-        ConcurrentSkipListMap<Long, Pair<TxnMeta, List<Position>>> txnMap =
-                (ConcurrentSkipListMap<Long, Pair<TxnMeta, List<Position>>>) field.get(transactionMetadataStore);
+        TxnMetaMap txnMap = (TxnMetaMap) field.get(transactionMetadataStore);
 
         transactionMetadataStore.newTransaction(2000).get();
 
@@ -224,8 +220,7 @@ public class TransactionMetadataStoreServiceTest extends BrokerTestBase {
         checkTransactionMetadataStoreReady(transactionMetadataStore);
         Field field = MLTransactionMetadataStore.class.getDeclaredField("txnMetaMap");
         field.setAccessible(true);
-        ConcurrentSkipListMap<Long, Pair<TxnMeta, List<Position>>> txnMap =
-                (ConcurrentSkipListMap<Long, Pair<TxnMeta, List<Position>>>) field.get(transactionMetadataStore);
+        TxnMetaMap txnMap = (TxnMetaMap) field.get(transactionMetadataStore);
         new Thread(() -> {
             int i = -1;
             while (++i < 100) {
@@ -276,7 +271,7 @@ public class TransactionMetadataStoreServiceTest extends BrokerTestBase {
         checkoutTimeout(txnMap, 0);
     }
 
-    private void checkoutTimeout(ConcurrentSkipListMap<Long, Pair<TxnMeta, List<Position>>> txnMap, int time) {
+    private void checkoutTimeout(TxnMetaMap txnMap, int time) {
         Awaitility.await().atLeast(1000, TimeUnit.MICROSECONDS)
                 .until(() -> txnMap.size() == time);
     }
@@ -310,8 +305,7 @@ public class TransactionMetadataStoreServiceTest extends BrokerTestBase {
 
         Field field = MLTransactionMetadataStore.class.getDeclaredField("txnMetaMap");
         field.setAccessible(true);
-        ConcurrentSkipListMap<Long, Pair<TxnMeta, List<Position>>> txnMap =
-                (ConcurrentSkipListMap<Long, Pair<TxnMeta, List<Position>>>) field.get(transactionMetadataStore);
+        TxnMetaMap txnMap = (TxnMetaMap) field.get(transactionMetadataStore);
         Awaitility.await().until(() -> txnMap.size() == 0);
 
     }
@@ -22,6 +22,7 @@ import com.google.common.collect.Sets;
 
 import java.io.IOException;
 import java.lang.reflect.Field;
+import java.util.List;
 import java.util.NavigableMap;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
@@ -30,13 +31,13 @@ import java.util.concurrent.TimeUnit;
 import lombok.Cleanup;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.bookkeeper.mledger.impl.ManagedLedgerImpl;
-import org.apache.bookkeeper.mledger.impl.PositionImpl;
 import org.apache.bookkeeper.mledger.proto.MLDataFormats;
-import org.apache.commons.collections4.map.LinkedMap;
 import org.apache.pulsar.broker.service.BrokerService;
 import org.apache.pulsar.broker.service.Topic;
 import org.apache.pulsar.broker.service.persistent.PersistentTopic;
+import org.apache.pulsar.broker.transaction.buffer.impl.AbortedTxnIndex;
 import org.apache.pulsar.broker.transaction.buffer.impl.TopicTransactionBuffer;
+import org.apache.pulsar.broker.transaction.buffer.matadata.AbortTxnMetadata;
 import org.apache.pulsar.broker.transaction.buffer.matadata.TransactionBufferSnapshot;
 import org.apache.pulsar.client.api.Consumer;
 import org.apache.pulsar.client.api.Message;
@@ -360,6 +361,8 @@ public class TopicTransactionBufferRecoverTest extends TransactionTestBase {
 
         MessageId messageId2 = producer.newMessage(tnx).value(value).send();
         tnx.abort().get();
+        TxnID abortedTxnId = new TxnID(((TransactionImpl) tnx).getTxnIdMostBits(),
+                ((TransactionImpl) tnx).getTxnIdLeastBits());
 
         assertTrue(((MessageIdImpl) messageId2).getLedgerId() != ((MessageIdImpl) messageId1).getLedgerId());
         boolean exist = false;
@@ -390,13 +393,19 @@ public class TopicTransactionBufferRecoverTest extends TransactionTestBase {
                     field.setAccessible(true);
                     TopicTransactionBuffer topicTransactionBuffer =
                             (TopicTransactionBuffer) field.get(persistentTopic);
-                    field = TopicTransactionBuffer.class.getDeclaredField("aborts");
+                    field = TopicTransactionBuffer.class.getDeclaredField("abortedTxnIndex");
                     field.setAccessible(true);
-                    LinkedMap<TxnID, PositionImpl> linkedMap =
-                            (LinkedMap<TxnID, PositionImpl>) field.get(topicTransactionBuffer);
-                    assertEquals(linkedMap.size(), 1);
-                    assertEquals(linkedMap.get(linkedMap.firstKey()).getLedgerId(),
-                            ((MessageIdImpl) message.getMessageId()).getLedgerId());
+                    AbortedTxnIndex abortedTxnIndex = (AbortedTxnIndex) field.get(topicTransactionBuffer);
+                    assertEquals(abortedTxnIndex.size(), 1);
+                    assertTrue(abortedTxnIndex.isAborted(abortedTxnId.getMostSigBits(),
+                            abortedTxnId.getLeastSigBits()));
+                    List<AbortTxnMetadata> aborts = abortedTxnIndex.getUnpersistedAborts();
+                    assertEquals(aborts.size(), 1);
+                    assertEquals(aborts.get(0).getTxnIdMostBits(), abortedTxnId.getMostSigBits());
+                    assertEquals(aborts.get(0).getTxnIdLeastBits(), abortedTxnId.getLeastSigBits());
+                    // the abort marker is written right after the aborted message
+                    assertEquals(aborts.get(0).getLedgerId(), ((MessageIdImpl) messageId2).getLedgerId());
+                    assertTrue(aborts.get(0).getEntryId() > ((MessageIdImpl) messageId2).getEntryId());
                     exist = true;
                 }
             }
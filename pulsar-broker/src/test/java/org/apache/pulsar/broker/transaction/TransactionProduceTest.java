@@ -29,6 +29,7 @@ import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import lombok.Cleanup;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.bookkeeper.mledger.Entry;
@@ -55,6 +56,7 @@ import org.apache.pulsar.common.naming.TopicName;
 import org.apache.pulsar.common.policies.data.ClusterData;
 import org.apache.pulsar.common.policies.data.TenantInfoImpl;
 import org.apache.pulsar.common.protocol.Commands;
+import org.apache.pulsar.common.util.collections.ConcurrentOpenLongPairRangeSet;
 import org.awaitility.Awaitility;
 import org.testng.Assert;
 import org.testng.annotations.AfterMethod;
@@ -396,6 +398,19 @@ public class TransactionProduceTest extends TransactionTestBase {
                     if (map != null) {
                         pendingAckCount += map.size();
                     }
+
+                    field = PendingAckHandleImpl.class.getDeclaredField("individualAckEntries");
+                    field.setAccessible(true);
+                    ConcurrentOpenLongPairRangeSet<PositionImpl> entries =
+                            (ConcurrentOpenLongPairRangeSet<PositionImpl>) field.get(pendingAckHandle);
+                    AtomicInteger entryCount = new AtomicInteger();
+                    // the ranges are open on the lower endpoint
+                    entries.forEach(range -> {
+                        entryCount.addAndGet((int) (range.upperEndpoint().getEntryId()
+                                - range.lowerEndpoint().getEntryId()));
+                        return true;
+                    });
+                    pendingAckCount += entryCount.get();
                 }
             }
         }
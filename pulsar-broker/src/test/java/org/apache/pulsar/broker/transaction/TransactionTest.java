@@ -21,7 +21,10 @@ package org.apache.pulsar.broker.transaction;
 import static org.apache.pulsar.transaction.coordinator.impl.MLTransactionLogImpl.TRANSACTION_LOG_PREFIX;
 import com.google.common.collect.Sets;
 import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.HashSet;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
@@ -44,6 +47,9 @@ import org.apache.pulsar.client.api.PulsarClientException;
 import org.apache.pulsar.client.api.SubscriptionType;
 import org.apache.pulsar.client.api.transaction.Transaction;
 import org.apache.pulsar.client.api.transaction.TxnID;
+import org.apache.pulsar.client.impl.PulsarClientImpl;
+import org.apache.pulsar.client.impl.TransactionMetaStoreHandler;
+import org.apache.pulsar.client.impl.transaction.TransactionCoordinatorClientImpl;
 import org.apache.pulsar.common.naming.NamespaceName;
 import org.apache.pulsar.common.naming.TopicDomain;
 import org.apache.pulsar.common.naming.TopicName;
@@ -174,6 +180,35 @@ public class TransactionTest extends TransactionTestBase {
         Assert.assertEquals(txnID.getMostSigBits(), 0);
     }
 
+    @Test
+    public void testExpandTransactionCoordinators() throws Exception {
+        int numPartitions = NUM_PARTITIONS + 2;
+        admin.topics().updatePartitionedTopic(TopicName.TRANSACTION_COORDINATOR_ASSIGN.toString(), numPartitions);
+
+        Field field = PulsarClientImpl.class.getDeclaredField("tcClient");
+        field.setAccessible(true);
+        TransactionCoordinatorClientImpl tcClient = (TransactionCoordinatorClientImpl) field.get(pulsarClient);
+        Method updatePartitions = TransactionCoordinatorClientImpl.class.getDeclaredMethod("updatePartitions");
+        updatePartitions.setAccessible(true);
+        Field handlersField = TransactionCoordinatorClientImpl.class.getDeclaredField("handlers");
+        handlersField.setAccessible(true);
+        // the client connects to the new coordinators without being restarted
+        Awaitility.await().until(() -> {
+            ((CompletableFuture<Void>) updatePartitions.invoke(tcClient)).get();
+            return ((TransactionMetaStoreHandler[]) handlersField.get(tcClient)).length == numPartitions;
+        });
+        waitForCoordinatorToBeAvailable(numPartitions);
+
+        Set<Long> coordinatorIds = new HashSet<>();
+        for (int i = 0; i < numPartitions; i++) {
+            Transaction transaction = pulsarClient.newTransaction()
+                    .withTransactionTimeout(30, TimeUnit.SECONDS).build().get();
+            coordinatorIds.add(transaction.getTxnID().getMostSigBits());
+            transaction.abort().get();
+        }
+        Assert.assertEquals(coordinatorIds.size(), numPartitions);
+    }
+
     @Test
     public void testSubscriptionRecreateTopic()
             throws PulsarAdminException, NoSuchFieldException, IllegalAccessException, PulsarClientException {
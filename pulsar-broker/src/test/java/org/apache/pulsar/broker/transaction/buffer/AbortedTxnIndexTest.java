@@ -0,0 +1,132 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.transaction.buffer;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+import org.apache.bookkeeper.mledger.impl.PositionImpl;
+import org.apache.pulsar.broker.transaction.buffer.impl.AbortedTxnIndex;
+import org.apache.pulsar.broker.transaction.buffer.matadata.AbortTxnMetadata;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test {@link AbortedTxnIndex}.
+ */
+@Test(groups = "broker")
+public class AbortedTxnIndexTest {
+
+    @Test
+    public void testSealSegments() {
+        AbortedTxnIndex index = new AbortedTxnIndex(10);
+        // the aborts of ledger i are at entries [10 * i, 10 * i + 9]
+        for (int i = 0; i < 25; i++) {
+            AbortedTxnIndex.Segment segment = index.add(1, 100 - i, PositionImpl.get(i / 10, i));
+            if (i % 10 == 9) {
+                assertNotNull(segment);
+                assertEquals(segment.size(), 10);
+                assertEquals(segment.getLastPosition(), PositionImpl.get(i / 10, i));
+            } else {
+                assertNull(segment);
+            }
+        }
+        assertEquals(index.getSegmentCount(), 2);
+        assertEquals(index.size(), 25);
+
+        for (int i = 0; i < 25; i++) {
+            assertTrue(index.isAborted(1, 100 - i));
+        }
+        assertFalse(index.isAborted(1, 0));
+        assertFalse(index.isAborted(2, 100));
+
+        // only the sealed segments not persisted yet are part of the snapshot
+        assertEquals(index.getUnpersistedAborts().size(), 25);
+        assertEquals(index.getUnpersistedSegments().size(), 2);
+        index.getUnpersistedSegments().get(0).markPersisted();
+        assertEquals(index.getUnpersistedAborts().size(), 15);
+        assertEquals(index.getUnpersistedSegments().size(), 1);
+    }
+
+    @Test
+    public void testRecoverSegments() {
+        AbortedTxnIndex index = new AbortedTxnIndex(10);
+        AbortedTxnIndex.Segment segment = null;
+        for (int i = 0; i < 10; i++) {
+            segment = index.add(1, i, PositionImpl.get(1, i));
+        }
+        assertNotNull(segment);
+        List<AbortTxnMetadata> aborts = segment.getAborts();
+
+        AbortedTxnIndex recovered = new AbortedTxnIndex(10);
+        recovered.addPersistedSegment(segment.getSegmentId(), aborts);
+        assertEquals(recovered.size(), 10);
+        assertTrue(recovered.getUnpersistedSegments().isEmpty());
+        for (int i = 0; i < 10; i++) {
+            assertTrue(recovered.isAborted(1, i));
+        }
+
+        // the aborts replayed after the segment are not added twice, and new segments get new ids
+        recovered.add(1, 5, PositionImpl.get(1, 5));
+        assertEquals(recovered.size(), 10);
+        for (int i = 10; i < 20; i++) {
+            segment = recovered.add(1, i, PositionImpl.get(2, i));
+        }
+        assertEquals(segment.getSegmentId(), 1);
+
+        recovered.removeSegment(0);
+        assertEquals(recovered.getSegmentCount(), 1);
+        assertFalse(recovered.isAborted(1, 0));
+        assertTrue(recovered.isAborted(1, 10));
+    }
+
+    @Test
+    public void testTrim() {
+        AbortedTxnIndex index = new AbortedTxnIndex(4);
+        for (int i = 0; i < 10; i++) {
+            index.add(1, i, PositionImpl.get(i / 3, i));
+        }
+        // sealed [0, 3], [4, 7], open [8, 9]
+        assertEquals(index.getSegmentCount(), 2);
+
+        // ledger 0 is deleted: the first segment still has a marker in ledger 1
+        assertTrue(index.trim(ledgerId -> ledgerId >= 1).isEmpty());
+        assertEquals(index.size(), 10);
+
+        // ledgers 0 and 1 are deleted
+        List<AbortedTxnIndex.Segment> removed = index.trim(ledgerId -> ledgerId >= 2);
+        assertEquals(removed.size(), 1);
+        assertEquals(removed.get(0).getSegmentId(), 0);
+        assertEquals(index.size(), 6);
+        assertFalse(index.isAborted(1, 3));
+        assertTrue(index.isAborted(1, 4));
+
+        // ledger 2 is deleted, which also removes the aborts of the open segment in ledger 2
+        removed = index.trim(ledgerId -> ledgerId >= 3);
+        assertEquals(removed.size(), 1);
+        assertEquals(removed.get(0).getSegmentId(), 1);
+        assertEquals(index.size(), 1);
+        assertFalse(index.isAborted(1, 4));
+        assertFalse(index.isAborted(1, 8));
+        assertTrue(index.isAborted(1, 9));
+    }
+}
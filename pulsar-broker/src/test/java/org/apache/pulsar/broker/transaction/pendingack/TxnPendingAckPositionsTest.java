@@ -0,0 +1,76 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.transaction.pendingack;
+
+import static org.testng.Assert.assertEquals;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.bookkeeper.mledger.impl.PositionImpl;
+import org.apache.pulsar.broker.transaction.pendingack.impl.TxnPendingAckPositions;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test {@link TxnPendingAckPositions}.
+ */
+@Test(groups = "broker")
+public class TxnPendingAckPositionsTest {
+
+    @Test
+    public void testEntryRanges() {
+        TxnPendingAckPositions positions = new TxnPendingAckPositions();
+        long[][] acks = {{2, 1}, {1, 5}, {1, 3}, {1, 4}, {2, 0}, {1, 4}, {1, 7}, {3, 0}};
+        for (long[] ack : acks) {
+            positions.add(PositionImpl.get(ack[0], ack[1]));
+        }
+        // the duplicated entry is only counted once
+        assertEquals(positions.size(), 7);
+        assertEquals(positions.getPositions(), Arrays.asList(PositionImpl.get(1, 3), PositionImpl.get(1, 4),
+                PositionImpl.get(1, 5), PositionImpl.get(1, 7), PositionImpl.get(2, 0), PositionImpl.get(2, 1),
+                PositionImpl.get(3, 0)));
+
+        List<String> ranges = new ArrayList<>();
+        positions.forEachEntryRange((ledgerId, firstEntryId, lastEntryId) ->
+                ranges.add(ledgerId + ":" + firstEntryId + "-" + lastEntryId));
+        assertEquals(ranges, Arrays.asList("1:3-5", "1:7-7", "2:0-1", "3:0-0"));
+    }
+
+    @Test
+    public void testBatchPositions() {
+        TxnPendingAckPositions positions = new TxnPendingAckPositions();
+        PositionImpl first = PositionImpl.get(1, 1);
+        first.setAckSet(new long[]{0b1100});
+        PositionImpl second = PositionImpl.get(1, 1);
+        second.setAckSet(new long[]{0b0110});
+        positions.add(first);
+        positions.add(second);
+        positions.add(PositionImpl.get(1, 2));
+
+        assertEquals(positions.size(), 2);
+        assertEquals(positions.getBatchPositions().size(), 1);
+        // the batch indexes acked by the transaction are merged into the first position
+        PositionImpl batchPosition = positions.getBatchPositions().iterator().next();
+        assertEquals(batchPosition.getAckSet(), new long[]{0b0100});
+
+        List<String> ranges = new ArrayList<>();
+        positions.forEachEntryRange((ledgerId, firstEntryId, lastEntryId) ->
+                ranges.add(ledgerId + ":" + firstEntryId + "-" + lastEntryId));
+        assertEquals(ranges, Arrays.asList("1:2-2"));
+    }
+}
@@ -22,7 +22,6 @@ import io.netty.util.HashedWheelTimer;
 import org.apache.pulsar.broker.TransactionMetadataStoreService;
 import org.apache.pulsar.broker.transaction.timeout.TransactionTimeoutTrackerFactoryImpl;
 import org.apache.pulsar.broker.transaction.timeout.TransactionTimeoutTrackerImpl;
-import org.apache.pulsar.common.util.collections.TripleLongPriorityQueue;
 import org.apache.pulsar.transaction.coordinator.TransactionCoordinatorID;
 import org.apache.pulsar.transaction.coordinator.TransactionTimeoutTracker;
 import org.apache.pulsar.transaction.coordinator.proto.TxnStatus;
@@ -58,13 +57,12 @@ public class TransactionRecoverTrackerTest {
         assertEquals(map.get(1L).longValue(), 200L);
         assertEquals(map.get(2L).longValue(), 300L);
 
-        field = TransactionTimeoutTrackerImpl.class.getDeclaredField("priorityQueue");
+        field = TransactionTimeoutTrackerImpl.class.getDeclaredField("numTransactions");
         field.setAccessible(true);
-        TripleLongPriorityQueue priorityQueue = (TripleLongPriorityQueue) field.get(timeoutTracker);
-        assertEquals(priorityQueue.size(), 0);
+        assertEquals(field.getLong(timeoutTracker), 0);
 
         recoverTracker.appendOpenTransactionToTimeoutTracker();
-        assertEquals(priorityQueue.size(), 2);
+        assertEquals(field.getLong(timeoutTracker), 2);
     }
 
     @Test
@@ -0,0 +1,119 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.client.api;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.expectThrows;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.Cleanup;
+import org.apache.pulsar.client.impl.MessageIdImpl;
+import org.apache.pulsar.common.protocol.Commands;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the handling by the producer of the send receipts covering several entries.
+ */
+@Test(groups = "broker-api")
+public class CoalescedSendReceiptTest {
+
+    private static final long LEDGER_ID = 5;
+
+    MockBrokerService mockBrokerService;
+
+    @BeforeClass(alwaysRun = true)
+    public void setup() {
+        mockBrokerService = new MockBrokerService();
+        mockBrokerService.start();
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void teardown() {
+        if (mockBrokerService != null) {
+            mockBrokerService.stop();
+        }
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void resetHandlers() {
+        mockBrokerService.resetHandleSend();
+    }
+
+    @Test(timeOut = 30000)
+    public void testReceiptCoversSeveralEntries() throws Exception {
+        AtomicInteger numSends = new AtomicInteger();
+        mockBrokerService.setHandleSend((ctx, send, headersAndPayload) -> {
+            // the sequence ids 0 to 2 are persisted in the entries 10 to 12
+            if (numSends.incrementAndGet() == 3) {
+                ctx.writeAndFlush(Commands.serializeWithSize(Commands.newSendReceiptCommand(0, 0, 10, 2, 2,
+                        LEDGER_ID, 12)));
+            }
+        });
+
+        @Cleanup
+        PulsarClient client = PulsarClient.builder().serviceUrl(mockBrokerService.getBrokerAddress()).build();
+        @Cleanup
+        Producer<byte[]> producer = client.newProducer().topic("persistent://prop/use/ns/receipts")
+                .enableBatching(false).create();
+
+        CompletableFuture<MessageId> first = producer.sendAsync("msg-0".getBytes());
+        CompletableFuture<MessageId> second = producer.sendAsync("msg-1".getBytes());
+        CompletableFuture<MessageId> third = producer.sendAsync("msg-2".getBytes());
+
+        assertEquals(first.get(), new MessageIdImpl(LEDGER_ID, 10, -1));
+        assertEquals(second.get(), new MessageIdImpl(LEDGER_ID, 11, -1));
+        assertEquals(third.get(), new MessageIdImpl(LEDGER_ID, 12, -1));
+    }
+
+    @Test(timeOut = 30000)
+    public void testReceiptCoversTimedOutEntries() throws Exception {
+        AtomicInteger numSends = new AtomicInteger();
+        mockBrokerService.setHandleSend((ctx, send, headersAndPayload) -> {
+            // the first message times out before its receipt is sent with the ones of the next messages
+            if (numSends.incrementAndGet() == 3) {
+                ctx.writeAndFlush(Commands.serializeWithSize(Commands.newSendReceiptCommand(0, 0, 10, 2, 2,
+                        LEDGER_ID, 12)));
+            }
+        });
+
+        @Cleanup
+        PulsarClient client = PulsarClient.builder().serviceUrl(mockBrokerService.getBrokerAddress()).build();
+        @Cleanup
+        Producer<byte[]> producer = client.newProducer().topic("persistent://prop/use/ns/receipts-timeout")
+                .enableBatching(false).sendTimeout(1, TimeUnit.SECONDS).create();
+
+        CompletableFuture<MessageId> timedOut = producer.sendAsync("msg-0".getBytes());
+        ExecutionException e = expectThrows(ExecutionException.class, timedOut::get);
+        assertTrue(e.getCause() instanceof PulsarClientException.TimeoutException);
+
+        CompletableFuture<MessageId> second = producer.sendAsync("msg-1".getBytes());
+        CompletableFuture<MessageId> third = producer.sendAsync("msg-2".getBytes());
+
+        // the entry of the timed out message is skipped, and the connection is kept
+        assertEquals(second.get(), new MessageIdImpl(LEDGER_ID, 11, -1));
+        assertEquals(third.get(), new MessageIdImpl(LEDGER_ID, 12, -1));
+        assertTrue(producer.isConnected());
+    }
+}
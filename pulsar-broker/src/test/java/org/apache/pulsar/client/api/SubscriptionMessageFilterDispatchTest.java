@@ -0,0 +1,217 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.client.api;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.expectThrows;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import lombok.Cleanup;
+import org.apache.pulsar.broker.service.SubscriptionMessageFilter;
+import org.apache.pulsar.common.policies.data.TopicStats;
+import org.awaitility.Awaitility;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+@Test(groups = "broker-api")
+public class SubscriptionMessageFilterDispatchTest extends ProducerConsumerBase {
+
+    @BeforeClass
+    @Override
+    protected void setup() throws Exception {
+        conf.setSubscriptionMessageFilterEnabled(true);
+        super.internalSetup();
+        super.producerBaseSetup();
+    }
+
+    @AfterClass(alwaysRun = true)
+    @Override
+    protected void cleanup() throws Exception {
+        super.internalCleanup();
+    }
+
+    @Test(timeOut = 30000)
+    public void testFilterByProperty() throws Exception {
+        final String topic = "persistent://my-property/my-ns/filter-" + UUID.randomUUID();
+
+        @Cleanup
+        Consumer<String> consumer = pulsarClient.newConsumer(Schema.STRING)
+                .topic(topic)
+                .subscriptionName("eu-orders")
+                .subscriptionType(SubscriptionType.Shared)
+                .property(SubscriptionMessageFilter.FILTER_PROPERTY_PREFIX + "region", "eu")
+                .subscribe();
+
+        @Cleanup
+        Producer<String> producer = pulsarClient.newProducer(Schema.STRING)
+                .topic(topic)
+                .enableBatching(false)
+                .create();
+        for (int i = 0; i < 100; i++) {
+            producer.newMessage()
+                    .property("region", i % 4 == 0 ? "eu" : "us")
+                    .value("msg-" + i)
+                    .send();
+        }
+
+        for (int i = 0; i < 100; i += 4) {
+            Message<String> msg = consumer.receive(5, TimeUnit.SECONDS);
+            assertEquals(msg.getValue(), "msg-" + i);
+            assertEquals(msg.getProperty("region"), "eu");
+            consumer.acknowledge(msg);
+        }
+        assertNull(consumer.receive(100, TimeUnit.MILLISECONDS));
+
+        // The filtered entries were acknowledged by the broker
+        Awaitility.await().untilAsserted(() -> {
+            TopicStats stats = admin.topics().getStats(topic);
+            assertEquals(stats.getSubscriptions().get("eu-orders").getMsgBacklog(), 0);
+        });
+    }
+
+    @Test(timeOut = 30000)
+    public void testFilterByKeyPrefix() throws Exception {
+        final String topic = "persistent://my-property/my-ns/filter-" + UUID.randomUUID();
+
+        @Cleanup
+        Consumer<String> consumer = pulsarClient.newConsumer(Schema.STRING)
+                .topic(topic)
+                .subscriptionName("users")
+                .property(SubscriptionMessageFilter.FILTER_KEY_PREFIX, "user-")
+                .subscribe();
+
+        @Cleanup
+        Producer<String> producer = pulsarClient.newProducer(Schema.STRING)
+                .topic(topic)
+                .enableBatching(false)
+                .create();
+        for (int i = 0; i < 10; i++) {
+            producer.newMessage().key((i % 2 == 0 ? "user-" : "order-") + i).value("msg-" + i).send();
+        }
+
+        for (int i = 0; i < 10; i += 2) {
+            Message<String> msg = consumer.receive(5, TimeUnit.SECONDS);
+            assertEquals(msg.getKey(), "user-" + i);
+            consumer.acknowledge(msg);
+        }
+        assertNull(consumer.receive(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test(timeOut = 30000)
+    public void testRejectConflictingFilter() throws Exception {
+        final String topic = "persistent://my-property/my-ns/filter-" + UUID.randomUUID();
+
+        @Cleanup
+        Consumer<String> consumer = pulsarClient.newConsumer(Schema.STRING)
+                .topic(topic)
+                .subscriptionName("eu-orders")
+                .subscriptionType(SubscriptionType.Shared)
+                .property(SubscriptionMessageFilter.FILTER_PROPERTY_PREFIX + "region", "eu")
+                .subscribe();
+
+        // Consumers must declare the filter of the subscription
+        expectThrows(PulsarClientException.class, () -> pulsarClient.newConsumer(Schema.STRING)
+                .topic(topic)
+                .subscriptionName("eu-orders")
+                .subscriptionType(SubscriptionType.Shared)
+                .property(SubscriptionMessageFilter.FILTER_PROPERTY_PREFIX + "region", "us")
+                .subscribe());
+        expectThrows(PulsarClientException.class, () -> pulsarClient.newConsumer(Schema.STRING)
+                .topic(topic)
+                .subscriptionName("eu-orders")
+                .subscriptionType(SubscriptionType.Shared)
+                .subscribe());
+
+        @Cleanup
+        Consumer<String> other = pulsarClient.newConsumer(Schema.STRING)
+                .topic(topic)
+                .subscriptionName("eu-orders")
+                .subscriptionType(SubscriptionType.Shared)
+                .property(SubscriptionMessageFilter.FILTER_PROPERTY_PREFIX + "region", "eu")
+                .subscribe();
+    }
+
+    @Test(timeOut = 30000)
+    public void testRejectFilterOnSubscriptionWithConsumers() throws Exception {
+        final String topic = "persistent://my-property/my-ns/filter-" + UUID.randomUUID();
+
+        @Cleanup
+        Consumer<String> consumer = pulsarClient.newConsumer(Schema.STRING)
+                .topic(topic)
+                .subscriptionName("orders")
+                .subscriptionType(SubscriptionType.Shared)
+                .subscribe();
+
+        // The filter would acknowledge messages on behalf of the connected consumer
+        expectThrows(PulsarClientException.class, () -> pulsarClient.newConsumer(Schema.STRING)
+                .topic(topic)
+                .subscriptionName("orders")
+                .subscriptionType(SubscriptionType.Shared)
+                .property(SubscriptionMessageFilter.FILTER_PROPERTY_PREFIX + "region", "eu")
+                .subscribe());
+    }
+
+    @Test(timeOut = 30000)
+    public void testFilterSurvivesUnload() throws Exception {
+        final String topic = "persistent://my-property/my-ns/filter-" + UUID.randomUUID();
+
+        Consumer<String> consumer = pulsarClient.newConsumer(Schema.STRING)
+                .topic(topic)
+                .subscriptionName("eu-orders")
+                .property(SubscriptionMessageFilter.FILTER_PROPERTY_PREFIX + "region", "eu")
+                .subscribe();
+        consumer.close();
+
+        admin.topics().unload(topic);
+
+        // The filter was recovered with the topic
+        expectThrows(PulsarClientException.class, () -> pulsarClient.newConsumer(Schema.STRING)
+                .topic(topic)
+                .subscriptionName("eu-orders")
+                .subscribe());
+
+        @Cleanup
+        Producer<String> producer = pulsarClient.newProducer(Schema.STRING)
+                .topic(topic)
+                .enableBatching(false)
+                .create();
+        for (int i = 0; i < 10; i++) {
+            producer.newMessage()
+                    .property("region", i % 2 == 0 ? "eu" : "us")
+                    .value("msg-" + i)
+                    .send();
+        }
+
+        // Messages published while no consumer is connected are filtered as well
+        @Cleanup
+        Consumer<String> reconnected = pulsarClient.newConsumer(Schema.STRING)
+                .topic(topic)
+                .subscriptionName("eu-orders")
+                .property(SubscriptionMessageFilter.FILTER_PROPERTY_PREFIX + "region", "eu")
+                .subscribe();
+        for (int i = 0; i < 10; i += 2) {
+            Message<String> msg = reconnected.receive(5, TimeUnit.SECONDS);
+            assertEquals(msg.getValue(), "msg-" + i);
+            reconnected.acknowledge(msg);
+        }
+        assertNull(reconnected.receive(100, TimeUnit.MILLISECONDS));
+    }
+}
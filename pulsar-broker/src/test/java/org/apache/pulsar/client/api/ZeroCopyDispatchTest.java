@@ -0,0 +1,94 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.client.api;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import lombok.Cleanup;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+@Test(groups = "broker-api")
+public class ZeroCopyDispatchTest extends ProducerConsumerBase {
+
+    @BeforeClass
+    @Override
+    protected void setup() throws Exception {
+        conf.setDispatcherZeroCopyEnabled(true);
+        super.internalSetup();
+        super.producerBaseSetup();
+    }
+
+    @AfterClass(alwaysRun = true)
+    @Override
+    protected void cleanup() throws Exception {
+        super.internalCleanup();
+    }
+
+    @DataProvider(name = "dispatch")
+    public Object[][] dispatch() {
+        return new Object[][] {
+                { SubscriptionType.Exclusive, false },
+                { SubscriptionType.Exclusive, true },
+                { SubscriptionType.Shared, false },
+                { SubscriptionType.Shared, true },
+        };
+    }
+
+    @Test(timeOut = 30000, dataProvider = "dispatch")
+    public void testConsumeWithZeroCopyDispatch(SubscriptionType subscriptionType, boolean batching)
+            throws Exception {
+        final String topic = "persistent://my-property/my-ns/zero-copy-" + UUID.randomUUID();
+        final int messages = 500;
+
+        @Cleanup
+        Consumer<String> consumer = pulsarClient.newConsumer(Schema.STRING)
+                .topic(topic)
+                .subscriptionName("sub")
+                .subscriptionType(subscriptionType)
+                .receiverQueueSize(50)
+                .subscribe();
+
+        @Cleanup
+        Producer<String> producer = pulsarClient.newProducer(Schema.STRING)
+                .topic(topic)
+                .enableBatching(batching)
+                .batchingMaxMessages(10)
+                .create();
+        for (int i = 0; i < messages; i++) {
+            producer.sendAsync("msg-" + i);
+        }
+        producer.flush();
+
+        Set<String> received = new HashSet<>();
+        for (int i = 0; i < messages; i++) {
+            Message<String> msg = consumer.receive(10, TimeUnit.SECONDS);
+            received.add(msg.getValue());
+            consumer.acknowledge(msg);
+        }
+        assertEquals(received.size(), messages);
+        assertNull(consumer.receive(100, TimeUnit.MILLISECONDS));
+    }
+}
@@ -211,6 +211,75 @@ public class CompactorTest extends MockedPulsarServiceBaseTest {
         Assert.assertEquals(keyOrder, Lists.newArrayList("c", "b", "a"));
     }
 
+    @Test
+    public void testCompactionWithBoundedKeyIndex() throws Exception {
+        conf.setBrokerServiceCompactionPhaseOneMaxKeysInMemory(8);
+        conf.setBrokerServiceCompactionPhaseOneParallelism(4);
+        String topic = "persistent://my-property/use/my-ns/my-topic1";
+        final int numMessages = 1000;
+        final int maxKeys = 50;
+
+        Producer<byte[]> producer = pulsarClient.newProducer().topic(topic)
+            .enableBatching(false)
+            .messageRoutingMode(MessageRoutingMode.SinglePartition)
+            .create();
+
+        Map<String, byte[]> expected = new HashMap<>();
+        Random r = new Random(0);
+
+        for (int j = 0; j < numMessages; j++) {
+            int keyIndex = r.nextInt(maxKeys);
+            String key = "key" + keyIndex;
+            byte[] data = ("my-message-" + key + "-" + j).getBytes();
+            producer.newMessage()
+                    .key(key)
+                    .value(data)
+                    .send();
+            expected.put(key, data);
+        }
+        // tombstones are honoured across the passes
+        for (int j = 0; j < 5; j++) {
+            producer.newMessage().key("key" + j).value(new byte[0]).send();
+            expected.remove("key" + j);
+        }
+        producer.newMessage().key("last").value("last".getBytes()).send();
+        expected.put("last", "last".getBytes());
+
+        compactAndVerify(topic, expected);
+    }
+
+    @Test
+    public void testCompactedInOrderWithBoundedKeyIndex() throws Exception {
+        conf.setBrokerServiceCompactionPhaseOneMaxKeysInMemory(1);
+        String topic = "persistent://my-property/use/my-ns/my-topic1";
+
+        Producer<byte[]> producer = pulsarClient.newProducer().topic(topic)
+            .enableBatching(false)
+            .messageRoutingMode(MessageRoutingMode.SinglePartition)
+            .create();
+
+        producer.newMessage()
+                .key("c")
+                .value("C_1".getBytes()).send();
+        producer.newMessage()
+                .key("a")
+                .value("A_1".getBytes()).send();
+        producer.newMessage()
+                .key("b")
+                .value("B_1".getBytes()).send();
+        producer.newMessage()
+                .key("a")
+                .value("A_2".getBytes()).send();
+        Map<String, byte[]> expected = new HashMap<>();
+        expected.put("a", "A_2".getBytes());
+        expected.put("b", "B_1".getBytes());
+        expected.put("c", "C_1".getBytes());
+
+        List<String> keyOrder = compactAndVerify(topic, expected);
+
+        Assert.assertEquals(keyOrder, Lists.newArrayList("c", "b", "a"));
+    }
+
     @Test
     public void testCompactEmptyTopic() throws Exception {
         String topic = "persistent://my-property/use/my-ns/my-topic1";
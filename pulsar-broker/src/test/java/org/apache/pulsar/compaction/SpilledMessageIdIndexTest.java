@@ -0,0 +1,57 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.compaction;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import java.util.Arrays;
+import org.apache.pulsar.client.impl.BatchMessageIdImpl;
+import org.apache.pulsar.client.impl.MessageIdImpl;
+import org.testng.annotations.Test;
+
+@Test(groups = "broker-compaction")
+public class SpilledMessageIdIndexTest {
+
+    @Test
+    public void testMergeOfRuns() throws Exception {
+        try (SpilledMessageIdIndex index = new SpilledMessageIdIndex()) {
+            index.addRun(Arrays.asList(new MessageIdImpl(3, 1, -1),
+                    new BatchMessageIdImpl(1, 5, -1, 2),
+                    new MessageIdImpl(1, 2, -1)));
+            index.addRun(Arrays.asList(new BatchMessageIdImpl(1, 5, -1, 0),
+                    new BatchMessageIdImpl(2, 0, -1, -1)));
+            index.addRun(Arrays.asList());
+            assertEquals(index.size(), 5);
+            assertEquals(index.numberOfRuns(), 3);
+
+            try (SpilledMessageIdIndex.Cursor cursor = index.newCursor()) {
+                assertFalse(cursor.contains(new MessageIdImpl(1, 1, -1)));
+                assertTrue(cursor.contains(new BatchMessageIdImpl(1, 2, -1, -1)));
+                assertTrue(cursor.contains(new BatchMessageIdImpl(1, 5, -1, 0)));
+                assertFalse(cursor.contains(new BatchMessageIdImpl(1, 5, -1, 1)));
+                assertTrue(cursor.contains(new BatchMessageIdImpl(1, 5, -1, 2)));
+                assertTrue(cursor.contains(new MessageIdImpl(2, 0, -1)));
+                assertFalse(cursor.contains(new MessageIdImpl(2, 1, -1)));
+                assertTrue(cursor.contains(new MessageIdImpl(3, 1, -1)));
+                assertFalse(cursor.contains(new MessageIdImpl(4, 0, -1)));
+            }
+        }
+    }
+}
@@ -282,6 +282,21 @@ public interface ClientBuilder extends Cloneable {
      */
     ClientBuilder enableTcpNoDelay(boolean enableTcpNoDelay);
 
+    /**
+     * Configure whether to consolidate the flushes of the connections to the brokers.
+     *
+     * <p>When enabled, the flushes requested while reading from a connection are deferred to the end of the read, and
+     * the other flushes are grouped in a single task of the IO thread. Each flush then carries many small commands,
+     * which reduces the number of system calls when publishing small messages at high rates, at the price of a
+     * slightly higher latency.
+     *
+     * <p>Default value is false.
+     *
+     * @param enableFlushConsolidation whether to consolidate the flushes of the connections
+     * @return the client builder instance
+     */
+    ClientBuilder enableFlushConsolidation(boolean enableFlushConsolidation);
+
     /**
      * Configure whether to use TLS encryption on the connection
      * <i>(default: true if serviceUrl starts with "pulsar+ssl://", false otherwise)</i>.
@@ -503,6 +518,20 @@ public interface ClientBuilder extends Cloneable {
      */
     ClientBuilder enableBusyWait(boolean enableBusyWait);
 
+    /**
+     * Configure the network transport used by the IO threads of the client.
+     *
+     * <p>{@link IoTransport#AUTO} uses epoll when it is available on the platform and NIO otherwise.
+     * {@link IoTransport#IO_URING} requires the netty io_uring incubator library in the classpath, and falls back to
+     * {@link IoTransport#AUTO} when the library or the kernel support is missing.
+     *
+     * <p>Default value is {@link IoTransport#AUTO}.
+     *
+     * @param ioTransport the network transport of the IO threads
+     * @return the client builder instance
+     */
+    ClientBuilder ioTransport(IoTransport ioTransport);
+
     /**
      * The clock used by the pulsar client.
      *
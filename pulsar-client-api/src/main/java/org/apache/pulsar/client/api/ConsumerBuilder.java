@@ -224,6 +224,27 @@ public interface ConsumerBuilder<T> extends Cloneable {
      */
     ConsumerBuilder<T> negativeAckRedeliveryDelay(long redeliveryDelay, TimeUnit timeUnit);
 
+    /**
+     * Grow the redelivery delay of negatively acknowledged messages exponentially with their redelivery count.
+     *
+     * <p>A message that was already redelivered {@code n} times is redelivered after
+     * {@code negativeAckRedeliveryDelay * multiplier^n}, capped to {@code maxRedeliveryDelay}. The default
+     * multiplier is 1, which keeps the fixed {@link #negativeAckRedeliveryDelay(long, TimeUnit)}.
+     *
+     * <p>The redelivery count is only known when the message is nacked with
+     * {@link Consumer#negativeAcknowledge(Message)}.
+     *
+     * @param multiplier
+     *            factor applied to the redelivery delay for each previous redelivery, must be &gt;= 1
+     * @param maxRedeliveryDelay
+     *            upper bound of the redelivery delay
+     * @param timeUnit
+     *            unit in which the max redelivery delay is provided.
+     * @return the consumer builder instance
+     * @see Consumer#negativeAcknowledge(Message)
+     */
+    ConsumerBuilder<T> negativeAckRedeliveryBackoff(double multiplier, long maxRedeliveryDelay, TimeUnit timeUnit);
+
     /**
      * Select the subscription type to be used when subscribing to the topic.
      *
@@ -741,4 +762,19 @@ public interface ConsumerBuilder<T> extends Cloneable {
      * corruption, deserialization error, etc.).
      */
     ConsumerBuilder<T> poolMessages(boolean poolMessages);
+
+    /**
+     * Track the unacknowledged messages of the ack timeout with primitive (ledgerId, entryId) keys in per-tick
+     * buckets, rather than with {@link MessageId} objects guarded by a lock.
+     *
+     * <p>This lowers the per-message cost of the ack timeout for consumers with large receiver queues. It only
+     * applies to consumers of a single topic partition, and only when an ack timeout is configured.
+     *
+     * @default false
+     *
+     * @param primitiveUnAckedMessageTrackerEnabled
+     *            whether to enable the primitive tracker of unacknowledged messages
+     * @return the consumer builder instance
+     */
+    ConsumerBuilder<T> primitiveUnAckedMessageTracker(boolean primitiveUnAckedMessageTrackerEnabled);
 }
@@ -0,0 +1,52 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.client.api;
+
+import org.apache.pulsar.common.classification.InterfaceAudience;
+import org.apache.pulsar.common.classification.InterfaceStability;
+
+/**
+ * The network transport used by the IO threads of the connections.
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Evolving
+public enum IoTransport {
+    /**
+     * Use epoll when it is available on the platform, and fall back to NIO otherwise.
+     */
+    AUTO,
+
+    /**
+     * Use the JDK NIO selector based transport.
+     */
+    NIO,
+
+    /**
+     * Use the native epoll transport, only available on Linux.
+     */
+    EPOLL,
+
+    /**
+     * Use the native io_uring transport, only available on Linux kernels 5.9 and later.
+     *
+     * <p>It requires the {@code io.netty.incubator:netty-incubator-transport-native-io_uring} library to be in the
+     * classpath. When it is not, or when the kernel does not support io_uring, {@link #AUTO} is used instead.
+     */
+    IO_URING
+}
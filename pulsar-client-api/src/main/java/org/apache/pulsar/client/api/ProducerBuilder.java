@@ -423,6 +423,38 @@ public interface ProducerBuilder<T> extends Cloneable {
      */
     ProducerBuilder<T> batchingMaxPublishDelay(long batchDelay, TimeUnit timeUnit);
 
+    /**
+     * Control whether the batches are sized adaptively, from the observed send rate, the number of pending
+     * messages and the latency of the broker acks. <i>default: disabled</i>
+     *
+     * <p>When adaptive batching is enabled, the fixed {@link #batchingMaxPublishDelay(long, TimeUnit)} is replaced
+     * by a flush deadline derived from the {@link #adaptiveBatchingTargetLatency(long, TimeUnit)}: batches are
+     * made as large as possible while the time a message waits in a batch plus the broker ack latency stays within
+     * the target. {@link #batchingMaxMessages(int)} and {@link #batchingMaxBytes(int)} still bound the batches.
+     *
+     * <p>The current flush delay and target batch size are reported by {@link Producer#getStats()}.
+     *
+     * <p>This setting has no effect when batching is disabled.
+     *
+     * @param adaptiveBatchingEnabled whether adaptive batching is enabled
+     * @return the producer builder instance
+     * @see #adaptiveBatchingTargetLatency(long, TimeUnit)
+     */
+    ProducerBuilder<T> enableAdaptiveBatching(boolean adaptiveBatchingEnabled);
+
+    /**
+     * Set the latency target of adaptive batching <i>default: 10 ms</i>, that is the time between a message being
+     * added to a batch and its ack by the broker that the producer aims not to exceed.
+     *
+     * @param targetLatency
+     *            the target latency, at least 1 ms
+     * @param timeUnit
+     *            the time unit of the {@code targetLatency}
+     * @return the producer builder instance
+     * @see #enableAdaptiveBatching(boolean)
+     */
+    ProducerBuilder<T> adaptiveBatchingTargetLatency(long targetLatency, TimeUnit timeUnit);
+
     /**
      * Set the partition switch frequency while batching of messages is enabled and
      * using round-robin routing mode for non-keyed message <i>default: 10</i>.
@@ -111,4 +111,27 @@ public interface ProducerStats extends Serializable {
      */
     long getTotalAcksReceived();
 
+    /**
+     * @return the current delay in microseconds after which a pending batch is flushed, or 0 if batching is disabled
+     */
+    default long getBatchFlushDelayMicros() {
+        return 0;
+    }
+
+    /**
+     * @return the current number of messages that makes a batch flushed before its delay expires, or 0 if batching
+     *         is disabled
+     */
+    default int getBatchTargetNumMessages() {
+        return 0;
+    }
+
+    /**
+     * @return the average broker ack latency in microseconds measured by adaptive batching, or 0 if adaptive
+     *         batching is disabled
+     */
+    default long getBatchAckLatencyMicros() {
+        return 0;
+    }
+
 }
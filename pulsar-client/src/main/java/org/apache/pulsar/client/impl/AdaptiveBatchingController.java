@@ -0,0 +1,152 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.client.impl;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sizes the batches of a producer from the observed send rate, pending queue depth and broker ack latency.
+ *
+ * <p>A batched message waits at most the flush delay before being sent, and then the time it takes the broker to
+ * ack it. The flush delay is therefore set to what is left of the target latency once the measured ack latency is
+ * subtracted, so that batches are as large as the latency target allows.
+ *
+ * <p>A batch is also flushed before its deadline once it holds as many messages as the current send rate is
+ * expected to add over a whole flush delay, so that bursts do not wait for the timer without making the batches any
+ * smaller. When batches are already queued for the broker, flushing early brings no latency gain, and the target
+ * number of messages grows with the number of pending batches instead.
+ *
+ * <p>Until the first messages are sent, the send rate is unknown and the batches are only flushed by the timer or
+ * when they reach the maximum number of messages. The moving averages are weighted by the time elapsed since the last
+ * update, so that the send rate observed before the producer went idle does not linger, and the ack latency decays
+ * while no send operation is waiting for an ack.
+ *
+ * <p>This class is not thread safe, it is only accessed while holding the producer lock.
+ */
+class AdaptiveBatchingController {
+
+    static final long MIN_FLUSH_DELAY_MICROS = 100;
+
+    // weight of the last sample in the moving averages
+    private static final double EWMA_WEIGHT = 0.2;
+
+    private final long targetLatencyMicros;
+    private final int maxNumMessagesInBatch;
+
+    private double sendRatePerMicros = 0;
+    private boolean hasSendRate = false;
+    private double ackLatencyMicros = 0;
+    private long numMessagesSinceUpdate = 0;
+    private long numAcksSinceUpdate = 0;
+    private long lastUpdateNanos;
+
+    private long flushDelayMicros;
+    private int targetNumMessagesInBatch;
+
+    AdaptiveBatchingController(long targetLatencyMicros, long initialFlushDelayMicros, int maxNumMessagesInBatch,
+                               long nowNanos) {
+        this.targetLatencyMicros = targetLatencyMicros;
+        this.maxNumMessagesInBatch = maxNumMessagesInBatch > 0 ? maxNumMessagesInBatch : Integer.MAX_VALUE;
+        this.flushDelayMicros = Math.max(MIN_FLUSH_DELAY_MICROS,
+                Math.min(initialFlushDelayMicros, targetLatencyMicros));
+        this.targetNumMessagesInBatch = this.maxNumMessagesInBatch;
+        this.lastUpdateNanos = nowNanos;
+    }
+
+    /**
+     * Records the messages of a batch handed to the connection.
+     */
+    void recordBatchSent(int numMessages) {
+        numMessagesSinceUpdate += numMessages;
+    }
+
+    /**
+     * Records the time elapsed between the creation of a send operation and its ack by the broker.
+     */
+    void recordAck(long latencyNanos) {
+        if (latencyNanos < 0) {
+            return;
+        }
+        numAcksSinceUpdate++;
+        double latencyMicros = TimeUnit.NANOSECONDS.toMicros(latencyNanos);
+        ackLatencyMicros = ackLatencyMicros == 0 ? latencyMicros
+                : ackLatencyMicros + EWMA_WEIGHT * (latencyMicros - ackLatencyMicros);
+    }
+
+    /**
+     * Updates the send rate and recomputes the flush delay and the target batch size.
+     *
+     * @param nowNanos the current {@link System#nanoTime()}
+     * @param numPendingBatches the number of send operations waiting for a broker ack
+     */
+    void update(long nowNanos, int numPendingBatches) {
+        long elapsedMicros = TimeUnit.NANOSECONDS.toMicros(nowNanos - lastUpdateNanos);
+        if (elapsedMicros > 0) {
+            // the samples are expected every flush delay, a longer period weighs as several samples
+            double numPeriods = Math.max(1, (double) elapsedMicros / flushDelayMicros);
+            double rate = (double) numMessagesSinceUpdate / elapsedMicros;
+            if (hasSendRate) {
+                sendRatePerMicros += (1 - Math.pow(1 - EWMA_WEIGHT, numPeriods)) * (rate - sendRatePerMicros);
+            } else if (numMessagesSinceUpdate > 0) {
+                sendRatePerMicros = rate;
+                hasSendRate = true;
+            }
+            if (numAcksSinceUpdate == 0 && numPendingBatches == 0) {
+                // idle, the last measured latency gets stale
+                ackLatencyMicros *= Math.pow(1 - EWMA_WEIGHT, numPeriods);
+            }
+            numMessagesSinceUpdate = 0;
+            numAcksSinceUpdate = 0;
+            lastUpdateNanos = nowNanos;
+        }
+
+        flushDelayMicros = Math.max(MIN_FLUSH_DELAY_MICROS,
+                targetLatencyMicros - (long) ackLatencyMicros);
+
+        if (!hasSendRate) {
+            targetNumMessagesInBatch = maxNumMessagesInBatch;
+            return;
+        }
+        double expectedNumMessages = sendRatePerMicros * flushDelayMicros * (1 + Math.max(0, numPendingBatches));
+        targetNumMessagesInBatch = (int) Math.max(1, Math.min(maxNumMessagesInBatch, Math.ceil(expectedNumMessages)));
+    }
+
+    /**
+     * @return whether a batch holding {@code numMessagesInBatch} messages should be flushed before its deadline
+     */
+    boolean isBatchFull(int numMessagesInBatch) {
+        return numMessagesInBatch >= targetNumMessagesInBatch;
+    }
+
+    long getFlushDelayMicros() {
+        return flushDelayMicros;
+    }
+
+    int getTargetNumMessagesInBatch() {
+        return targetNumMessagesInBatch;
+    }
+
+    long getAckLatencyMicros() {
+        return (long) ackLatencyMicros;
+    }
+
+    double getSendRate() {
+        return sendRatePerMicros * TimeUnit.SECONDS.toMicros(1);
+    }
+}
@@ -28,6 +28,7 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.pulsar.client.api.Authentication;
 import org.apache.pulsar.client.api.AuthenticationFactory;
 import org.apache.pulsar.client.api.ClientBuilder;
+import org.apache.pulsar.client.api.IoTransport;
 import org.apache.pulsar.client.api.ProxyProtocol;
 import org.apache.pulsar.client.api.PulsarClient;
 import org.apache.pulsar.client.api.PulsarClientException;
@@ -174,6 +175,12 @@ public class ClientBuilderImpl implements ClientBuilder {
         return this;
     }
 
+    @Override
+    public ClientBuilder enableFlushConsolidation(boolean flushConsolidationEnabled) {
+        conf.setFlushConsolidationEnabled(flushConsolidationEnabled);
+        return this;
+    }
+
     @Override
     public ClientBuilder enableTls(boolean useTls) {
         conf.setUseTls(useTls);
@@ -300,6 +307,15 @@ public class ClientBuilderImpl implements ClientBuilder {
         return this;
     }
 
+    @Override
+    public ClientBuilder ioTransport(IoTransport ioTransport) {
+        if (ioTransport == null) {
+            throw new IllegalArgumentException("Param ioTransport must not be null.");
+        }
+        conf.setIoTransport(ioTransport);
+        return this;
+    }
+
     public ClientConfigurationData getClientConfigurationData() {
         return conf;
     }
@@ -405,7 +405,12 @@ public class ClientCnx extends PulsarHandler {
 
         ProducerImpl<?> producer = producers.get(producerId);
         if (producer != null) {
-            producer.ackReceived(this, sequenceId, highestSequenceId, ledgerId, entryId);
+            if (sendReceipt.hasFirstSequenceId() && sendReceipt.hasFirstEntryId()) {
+                producer.ackReceived(this, sendReceipt.getFirstSequenceId(), sendReceipt.getFirstEntryId(),
+                        sequenceId, highestSequenceId, ledgerId, entryId);
+            } else {
+                producer.ackReceived(this, sequenceId, highestSequenceId, ledgerId, entryId);
+            }
         } else {
             if (log.isDebugEnabled()) {
                 log.debug("Producer is {} already closed, ignore published message [{}-{}]", producerId, ledgerId,
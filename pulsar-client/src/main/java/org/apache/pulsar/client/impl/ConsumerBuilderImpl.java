@@ -231,6 +231,16 @@ public class ConsumerBuilderImpl<T> implements ConsumerBuilder<T> {
         return this;
     }
 
+    @Override
+    public ConsumerBuilder<T> negativeAckRedeliveryBackoff(double multiplier, long maxRedeliveryDelay,
+                                                           TimeUnit timeUnit) {
+        checkArgument(multiplier >= 1.0, "multiplier needs to be >= 1");
+        checkArgument(maxRedeliveryDelay >= 0, "maxRedeliveryDelay needs to be >= 0");
+        conf.setNegativeAckRedeliveryBackoffMultiplier(multiplier);
+        conf.setNegativeAckMaxRedeliveryDelayMicros(timeUnit.toMicros(maxRedeliveryDelay));
+        return this;
+    }
+
     @Override
     public ConsumerBuilder<T> subscriptionType(@NonNull SubscriptionType subscriptionType) {
         conf.setSubscriptionType(subscriptionType);
@@ -479,4 +489,10 @@ public class ConsumerBuilderImpl<T> implements ConsumerBuilder<T> {
         conf.setPoolMessages(poolMessages);
         return this;
     }
+
+    @Override
+    public ConsumerBuilder<T> primitiveUnAckedMessageTracker(boolean primitiveUnAckedMessageTrackerEnabled) {
+        conf.setPrimitiveUnAckedMessageTrackerEnabled(primitiveUnAckedMessageTrackerEnabled);
+        return this;
+    }
 }
@@ -278,7 +278,15 @@ public class ConsumerImpl<T> extends ConsumerBase<T> implements ConnectionHandle
 
         duringSeek = new AtomicBoolean(false);
 
-        if (conf.getAckTimeoutMillis() != 0) {
+        if (conf.getAckTimeoutMillis() != 0 && conf.isPrimitiveUnAckedMessageTrackerEnabled()) {
+            if (conf.getTickDurationMillis() > 0) {
+                this.unAckedMessageTracker = new PrimitiveUnAckedMessageTracker(client, this,
+                        conf.getAckTimeoutMillis(), Math.min(conf.getTickDurationMillis(), conf.getAckTimeoutMillis()));
+            } else {
+                this.unAckedMessageTracker = new PrimitiveUnAckedMessageTracker(client, this,
+                        conf.getAckTimeoutMillis());
+            }
+        } else if (conf.getAckTimeoutMillis() != 0) {
             if (conf.getTickDurationMillis() > 0) {
                 this.unAckedMessageTracker = new UnAckedMessageTracker(client, this, conf.getAckTimeoutMillis(),
                         Math.min(conf.getTickDurationMillis(), conf.getAckTimeoutMillis()));
@@ -696,6 +704,15 @@ public class ConsumerImpl<T> extends ConsumerBase<T> implements ConnectionHandle
         unAckedMessageTracker.remove(messageId);
     }
 
+    @Override
+    public void negativeAcknowledge(Message<?> message) {
+        // the redelivery count drives the backoff of the redelivery delay
+        negativeAcksTracker.add(message.getMessageId(), message.getRedeliveryCount());
+
+        // Ensure the message is not redelivered for ack-timeout, since we did receive an "ack"
+        unAckedMessageTracker.remove(message.getMessageId());
+    }
+
     @Override
     public void connectionOpened(final ClientCnx cnx) {
         previousExceptions.clear();
@@ -977,6 +994,7 @@ public class ConsumerImpl<T> extends ConsumerBase<T> implements ConnectionHandle
 
     private void closeConsumerTasks() {
         unAckedMessageTracker.close();
+        negativeAcksTracker.close();
         if (possibleSendToDeadLetterTopicMessages != null) {
             possibleSendToDeadLetterTopicMessages.clear();
         }
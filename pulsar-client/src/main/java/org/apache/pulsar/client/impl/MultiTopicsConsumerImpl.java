@@ -508,6 +508,17 @@ public class MultiTopicsConsumerImpl<T> extends ConsumerBase<T> {
         consumer.negativeAcknowledge(topicMessageId.getInnerMessageId());
     }
 
+    @Override
+    public void negativeAcknowledge(Message<?> message) {
+        MessageId messageId = message.getMessageId();
+        checkArgument(messageId instanceof TopicMessageIdImpl);
+        TopicMessageIdImpl topicMessageId = (TopicMessageIdImpl) messageId;
+
+        ConsumerImpl<T> consumer = consumers.get(topicMessageId.getTopicPartitionName());
+        consumer.negativeAcknowledge(message instanceof TopicMessageImpl
+                ? ((TopicMessageImpl<?>) message).getMessage() : message);
+    }
+
     @Override
     public CompletableFuture<Void> unsubscribeAsync() {
         if (getState() == State.Closing || getState() == State.Closed) {
@@ -21,25 +21,46 @@ package org.apache.pulsar.client.impl;
 import io.netty.util.Timeout;
 import io.netty.util.Timer;
 
-import java.util.HashMap;
+import java.io.Closeable;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.pulsar.client.api.MessageId;
 import org.apache.pulsar.client.impl.conf.ConsumerConfigurationData;
+import org.apache.pulsar.common.util.collections.ConcurrentLongLongPairHashMap;
+import org.apache.pulsar.common.util.collections.ConcurrentLongPairSet.LongPair;
+import org.apache.pulsar.common.util.collections.TripleLongPriorityQueue;
 import static org.apache.pulsar.client.impl.UnAckedMessageTracker.addChunkedMessageIdsAndRemoveFromSequnceMap;
 
-class NegativeAcksTracker {
+/**
+ * Tracks the negatively acknowledged messages of a consumer until they are due for redelivery.
+ *
+ * <p>The redelivery time of each message is rounded up to a tick of {@code timerIntervalNanos}, and the messages
+ * of a tick form a bucket: the nacked ids are kept in a priority queue of (tick, ledgerId, entryId), so each timer
+ * run only pops the buckets that expired and groups them into a single redelivery request. A map from
+ * (ledgerId, entryId) to (tick, partitionIndex + 1) holds the latest nack of each message, the queue items of the
+ * previous nacks of a message are skipped when they are popped.
+ *
+ * <p>The redelivery delay of a message grows with its redelivery count by
+ * {@code negativeAckRedeliveryBackoffMultiplier}, up to {@code negativeAckMaxRedeliveryDelayMicros}.
+ */
+class NegativeAcksTracker implements Closeable {
 
-    private HashMap<MessageId, Long> nackedMessages = null;
+    private ConcurrentLongLongPairHashMap nackedMessages = null;
+    private TripleLongPriorityQueue nackedBuckets = null;
 
     private final ConsumerBase<?> consumer;
     private final Timer timer;
     private final long nackDelayNanos;
+    private final long maxNackDelayNanos;
+    private final double backoffMultiplier;
     private final long timerIntervalNanos;
+    private final long startNanos;
 
     private Timeout timeout;
+    private long scheduledTick;
+    private boolean closed = false;
 
     // Set a min delay to allow for grouping nacks within a single batch
     private static final long MIN_NACK_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
@@ -49,48 +70,116 @@ class NegativeAcksTracker {
         this.timer = consumer.getClient().timer();
         this.nackDelayNanos = Math.max(TimeUnit.MICROSECONDS.toNanos(conf.getNegativeAckRedeliveryDelayMicros()),
                 MIN_NACK_DELAY_NANOS);
+        this.maxNackDelayNanos = Math.max(
+                TimeUnit.MICROSECONDS.toNanos(conf.getNegativeAckMaxRedeliveryDelayMicros()), nackDelayNanos);
+        this.backoffMultiplier = Math.max(conf.getNegativeAckRedeliveryBackoffMultiplier(), 1.0);
         this.timerIntervalNanos = nackDelayNanos / 3;
+        this.startNanos = System.nanoTime();
+    }
+
+    private long currentTick() {
+        return (System.nanoTime() - startNanos) / timerIntervalNanos;
     }
 
     private synchronized void triggerRedelivery(Timeout t) {
-        if (nackedMessages.isEmpty()) {
-            this.timeout = null;
+        if (t != this.timeout) {
+            // the timer was replaced by a sooner one while this run was waiting for the lock
+            return;
+        }
+        this.timeout = null;
+        if (closed || nackedBuckets == null || nackedBuckets.isEmpty()) {
             return;
         }
 
-        // Group all the nacked messages into one single re-delivery request
+        // Group all the expired nacked messages into one single re-delivery request
         Set<MessageId> messagesToRedeliver = new HashSet<>();
-        long now = System.nanoTime();
-        nackedMessages.forEach((msgId, timestamp) -> {
-            if (timestamp < now) {
+        long now = currentTick();
+        while (!nackedBuckets.isEmpty() && nackedBuckets.peekN1() <= now) {
+            long tick = nackedBuckets.peekN1();
+            long ledgerId = nackedBuckets.peekN2();
+            long entryId = nackedBuckets.peekN3();
+            nackedBuckets.pop();
+
+            LongPair latestNack = nackedMessages.get(ledgerId, entryId);
+            if (latestNack != null && latestNack.first == tick) {
+                nackedMessages.remove(ledgerId, entryId);
+                MessageIdImpl msgId = new MessageIdImpl(ledgerId, entryId, (int) latestNack.second - 1);
                 addChunkedMessageIdsAndRemoveFromSequnceMap(msgId, messagesToRedeliver, this.consumer);
                 messagesToRedeliver.add(msgId);
             }
-        });
+        }
 
-        messagesToRedeliver.forEach(nackedMessages::remove);
-        consumer.onNegativeAcksSend(messagesToRedeliver);
-        consumer.redeliverUnacknowledgedMessages(messagesToRedeliver);
+        if (!messagesToRedeliver.isEmpty()) {
+            consumer.onNegativeAcksSend(messagesToRedeliver);
+            consumer.redeliverUnacknowledgedMessages(messagesToRedeliver);
+        }
 
-        this.timeout = timer.newTimeout(this::triggerRedelivery, timerIntervalNanos, TimeUnit.NANOSECONDS);
+        if (!nackedBuckets.isEmpty()) {
+            schedule(nackedBuckets.peekN1());
+        }
     }
 
-    public synchronized void add(MessageId messageId) {
-        if (messageId instanceof BatchMessageIdImpl) {
-            BatchMessageIdImpl batchMessageId = (BatchMessageIdImpl) messageId;
-            messageId = new MessageIdImpl(batchMessageId.getLedgerId(), batchMessageId.getEntryId(),
-                    batchMessageId.getPartitionIndex());
+    private void schedule(long tick) {
+        if (this.timeout != null) {
+            this.timeout.cancel();
         }
+        this.scheduledTick = tick;
+        long delayNanos = Math.max(tick * timerIntervalNanos - (System.nanoTime() - startNanos), 0);
+        this.timeout = timer.newTimeout(this::triggerRedelivery, delayNanos, TimeUnit.NANOSECONDS);
+    }
 
+    long redeliveryDelayNanos(int redeliveryCount) {
+        if (redeliveryCount <= 0 || backoffMultiplier == 1.0) {
+            return nackDelayNanos;
+        }
+        double delay = nackDelayNanos * Math.pow(backoffMultiplier, redeliveryCount);
+        return delay >= maxNackDelayNanos ? maxNackDelayNanos : (long) delay;
+    }
+
+    public void add(MessageId messageId) {
+        add(messageId, 0);
+    }
+
+    public synchronized void add(MessageId messageId, int redeliveryCount) {
+        if (closed) {
+            return;
+        }
+        if (messageId instanceof TopicMessageIdImpl) {
+            messageId = ((TopicMessageIdImpl) messageId).getInnerMessageId();
+        }
+        MessageIdImpl msgId = (MessageIdImpl) messageId;
         if (nackedMessages == null) {
-            nackedMessages = new HashMap<>();
+            nackedMessages = new ConcurrentLongLongPairHashMap(16, 1);
+            nackedBuckets = new TripleLongPriorityQueue();
         }
-        nackedMessages.put(messageId, System.nanoTime() + nackDelayNanos);
+
+        // Round the redelivery time up to the next tick, so that the nacks of a tick are grouped together
+        long tick = (System.nanoTime() - startNanos + redeliveryDelayNanos(redeliveryCount) + timerIntervalNanos - 1)
+                / timerIntervalNanos;
+        nackedMessages.put(msgId.getLedgerId(), msgId.getEntryId(), tick, msgId.getPartitionIndex() + 1);
+        nackedBuckets.add(tick, msgId.getLedgerId(), msgId.getEntryId());
 
         if (this.timeout == null) {
             // Schedule a task and group all the redeliveries for same period. Leave a small buffer to allow for
             // nack immediately following the current one will be batched into the same redeliver request.
-            this.timeout = timer.newTimeout(this::triggerRedelivery, timerIntervalNanos, TimeUnit.NANOSECONDS);
+            schedule(tick);
+        } else if (tick < scheduledTick) {
+            // a shorter backoff delay, the timer has to fire sooner
+            schedule(tick);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (timeout != null && !timeout.isCancelled()) {
+            timeout.cancel();
+        }
+        timeout = null;
+        if (nackedBuckets != null) {
+            nackedBuckets.close();
+            nackedBuckets = null;
+            nackedMessages = null;
         }
     }
 }
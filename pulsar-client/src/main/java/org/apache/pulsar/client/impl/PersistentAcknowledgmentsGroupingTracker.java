@@ -29,7 +29,6 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
@@ -49,6 +48,8 @@ import org.apache.pulsar.common.protocol.Commands;
 import org.apache.pulsar.common.util.FutureUtil;
 import org.apache.pulsar.common.util.collections.BitSetRecyclable;
 import org.apache.pulsar.common.util.collections.ConcurrentBitSetRecyclable;
+import org.apache.pulsar.common.util.collections.ConcurrentLongPairSet;
+import org.apache.pulsar.common.util.collections.ConcurrentLongPairSet.LongPair;
 
 /**
  * Group the acknowledgements for a certain time and then sends them out in a single protobuf command.
@@ -81,9 +82,10 @@ public class PersistentAcknowledgmentsGroupingTracker implements Acknowledgments
 
     /**
      * This is a set of all the individual acks that the application has issued and that were not already sent to
-     * broker.
+     * broker, as (ledgerId, entryId) pairs. The set is striped in sections and adding an ack does not allocate, the
+     * acks are only sorted when they are flushed.
      */
-    private final ConcurrentSkipListSet<MessageIdImpl> pendingIndividualAcks;
+    private final ConcurrentLongPairSet pendingIndividualAcks;
     private final ConcurrentHashMap<MessageIdImpl, ConcurrentBitSetRecyclable> pendingIndividualBatchIndexAcks;
 
     private final ScheduledFuture<?> scheduledTask;
@@ -93,7 +95,7 @@ public class PersistentAcknowledgmentsGroupingTracker implements Acknowledgments
     public PersistentAcknowledgmentsGroupingTracker(ConsumerImpl<?> consumer, ConsumerConfigurationData<?> conf,
                                                     EventLoopGroup eventLoopGroup) {
         this.consumer = consumer;
-        this.pendingIndividualAcks = new ConcurrentSkipListSet<>();
+        this.pendingIndividualAcks = new ConcurrentLongPairSet(2 * MAX_ACK_GROUP_SIZE);
         this.pendingIndividualBatchIndexAcks = new ConcurrentHashMap<>();
         this.acknowledgementGroupTimeMicros = conf.getAcknowledgementsGroupTimeMicros();
         this.batchIndexAckEnabled = conf.isBatchIndexAckEnabled();
@@ -122,8 +124,11 @@ public class PersistentAcknowledgmentsGroupingTracker implements Acknowledgments
         if (messageId.compareTo(messageIdOfLastAck) <= 0) {
             // Already included in a cumulative ack
             return true;
+        } else if (messageId instanceof MessageIdImpl) {
+            MessageIdImpl msgId = (MessageIdImpl) messageId;
+            return pendingIndividualAcks.contains(msgId.getLedgerId(), msgId.getEntryId());
         } else {
-            return pendingIndividualAcks.contains(messageId);
+            return false;
         }
     }
 
@@ -288,7 +293,7 @@ public class PersistentAcknowledgmentsGroupingTracker implements Acknowledgments
 
 
     private void doIndividualAckAsync(MessageIdImpl messageId) {
-        pendingIndividualAcks.add(messageId);
+        pendingIndividualAcks.add(messageId.getLedgerId(), messageId.getEntryId());
         pendingIndividualBatchIndexAcks.remove(messageId);
     }
 
@@ -487,15 +492,14 @@ public class PersistentAcknowledgmentsGroupingTracker implements Acknowledgments
         }
 
         // Flush all individual acks
-        List<Triple<Long, Long, ConcurrentBitSetRecyclable>> entriesToAck = new ArrayList<>(pendingIndividualAcks.size() + pendingIndividualBatchIndexAcks.size());
+        List<Triple<Long, Long, ConcurrentBitSetRecyclable>> entriesToAck = new ArrayList<>(
+                (int) pendingIndividualAcks.size() + pendingIndividualBatchIndexAcks.size());
         if (!pendingIndividualAcks.isEmpty()) {
+            List<LongPair> individualAcks = drainPendingIndividualAcks();
             if (Commands.peerSupportsMultiMessageAcknowledgment(cnx.getRemoteEndpointProtocolVersion())) {
                 // We can send 1 single protobuf command with all individual acks
-                while (true) {
-                    MessageIdImpl msgId = pendingIndividualAcks.pollFirst();
-                    if (msgId == null) {
-                        break;
-                    }
+                for (LongPair ack : individualAcks) {
+                    MessageIdImpl msgId = new MessageIdImpl(ack.first, ack.second, consumer.getPartitionIndex());
 
                     // if messageId is checked then all the chunked related to that msg also processed so, ack all of
                     // them
@@ -514,12 +518,8 @@ public class PersistentAcknowledgmentsGroupingTracker implements Acknowledgments
                 }
             } else {
                 // When talking to older brokers, send the acknowledgements individually
-                while (true) {
-                    MessageIdImpl msgId = pendingIndividualAcks.pollFirst();
-                    if (msgId == null) {
-                        break;
-                    }
-                    newMessageAckCommandAndWrite(cnx, consumer.consumerId, msgId.getLedgerId(), msgId.getEntryId(), null,
+                for (LongPair ack : individualAcks) {
+                    newMessageAckCommandAndWrite(cnx, consumer.consumerId, ack.first, ack.second, null,
                             AckType.Individual, null, Collections.emptyMap(), false, null, null);
                     shouldFlush = true;
                 }
@@ -553,6 +553,21 @@ public class PersistentAcknowledgmentsGroupingTracker implements Acknowledgments
 
     }
 
+    /**
+     * Remove the pending individual acks from the set and return them sorted by message id.
+     */
+    private List<LongPair> drainPendingIndividualAcks() {
+        List<LongPair> acks = new ArrayList<>((int) pendingIndividualAcks.size());
+        pendingIndividualAcks.forEach((ledgerId, entryId) -> {
+            // an ack drained by a concurrent flush is not sent twice
+            if (pendingIndividualAcks.remove(ledgerId, entryId)) {
+                acks.add(new LongPair(ledgerId, entryId));
+            }
+        });
+        Collections.sort(acks);
+        return acks;
+    }
+
     @Override
     public void flushAndClean() {
         flush();
@@ -613,7 +628,7 @@ public class PersistentAcknowledgmentsGroupingTracker implements Acknowledgments
                 cmd = Commands.newAck(consumerId, ledgerId, entryId, ackSet,
                         ackType, null, properties, requestId);
             } else {
-                cmd = Commands.newMultiMessageAck(consumerId, entriesToAck, requestId);
+                cmd = Commands.newMultiMessageAck(consumerId, entriesToAck, requestId, isAckRangesEnabled(cnx));
             }
             if (timedCompletableFuture == null) {
                 return cnx.newAckForReceipt(cmd, requestId);
@@ -644,7 +659,7 @@ public class PersistentAcknowledgmentsGroupingTracker implements Acknowledgments
                 cmd = Commands.newAck(consumerId, ledgerId, entryId, ackSet,
                         ackType, null, properties, -1);
             } else {
-                cmd = Commands.newMultiMessageAck(consumerId, entriesToAck, -1);
+                cmd = Commands.newMultiMessageAck(consumerId, entriesToAck, -1, isAckRangesEnabled(cnx));
             }
             if (flush) {
                 cnx.ctx().writeAndFlush(cmd, cnx.ctx().voidPromise());
@@ -655,6 +670,10 @@ public class PersistentAcknowledgmentsGroupingTracker implements Acknowledgments
         }
     }
 
+    private static boolean isAckRangesEnabled(ClientCnx cnx) {
+        return Commands.peerSupportsAckRanges(cnx.getRemoteEndpointProtocolVersion());
+    }
+
     private boolean isAckReceiptEnabled(ClientCnx cnx) {
         return ackReceiptEnabled && cnx != null
                 && Commands.peerSupportsAckReceipt(cnx.getRemoteEndpointProtocolVersion());
@@ -0,0 +1,194 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.client.impl;
+
+import com.google.common.base.Preconditions;
+import io.netty.util.Timeout;
+import io.netty.util.TimerTask;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.apache.pulsar.client.api.MessageId;
+import org.apache.pulsar.common.util.collections.ConcurrentLongLongPairHashMap;
+import org.apache.pulsar.common.util.collections.ConcurrentLongPairSet;
+import org.apache.pulsar.common.util.collections.ConcurrentLongPairSet.LongPair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An {@link UnAckedMessageTracker} for the message ids of a single topic partition, which keeps them as primitive
+ * (ledgerId, entryId, partitionIndex) tuples instead of {@link MessageId} objects.
+ *
+ * <p>The tracked ids are kept in a map from (ledgerId, entryId) to (tick, partitionIndex + 1), and in a ring of
+ * per-tick buckets that works as a timing wheel. Tracking a message adds it to the map and to the bucket of the
+ * current tick, while acknowledging it only removes it from the map: the buckets are cleaned up lazily, when their
+ * tick expires. None of the operations takes a tracker wide lock.
+ *
+ * <p>All the ids expired by a tick are handed to the consumer in a single redelivery request.
+ */
+public class PrimitiveUnAckedMessageTracker extends UnAckedMessageTracker {
+    private static final Logger log = LoggerFactory.getLogger(PrimitiveUnAckedMessageTracker.class);
+
+    private final ConcurrentLongLongPairHashMap messageIdTicks;
+    private final ConcurrentLongPairSet[] tickBuckets;
+    private final long tickDurationInMs;
+
+    // incremented by the timer thread only, once the expired bucket was emptied
+    private volatile long currentTick = 0;
+    private volatile Timeout timeout;
+
+    public PrimitiveUnAckedMessageTracker(PulsarClientImpl client, ConsumerBase<?> consumerBase,
+                                          long ackTimeoutMillis) {
+        this(client, consumerBase, ackTimeoutMillis, ackTimeoutMillis);
+    }
+
+    public PrimitiveUnAckedMessageTracker(PulsarClientImpl client, ConsumerBase<?> consumerBase,
+                                          long ackTimeoutMillis, long tickDurationInMs) {
+        super();
+        Preconditions.checkArgument(tickDurationInMs > 0 && ackTimeoutMillis >= tickDurationInMs);
+        this.tickDurationInMs = tickDurationInMs;
+        this.messageIdTicks = new ConcurrentLongLongPairHashMap();
+
+        int blankPartitions = (int) Math.ceil((double) ackTimeoutMillis / tickDurationInMs);
+        this.tickBuckets = new ConcurrentLongPairSet[blankPartitions + 1];
+        for (int i = 0; i < tickBuckets.length; i++) {
+            tickBuckets[i] = new ConcurrentLongPairSet(16, 1);
+        }
+
+        timeout = client.timer().newTimeout(new TimerTask() {
+            @Override
+            public void run(Timeout t) throws Exception {
+                Set<MessageId> messageIds = new HashSet<>();
+                try {
+                    expireOldestBucket(consumerBase, messageIds);
+                } finally {
+                    if (!messageIds.isEmpty()) {
+                        log.warn("[{}] {} messages have timed-out", consumerBase, messageIds.size());
+                        consumerBase.onAckTimeoutSend(messageIds);
+                        consumerBase.redeliverUnacknowledgedMessages(messageIds);
+                    }
+                    timeout = client.timer().newTimeout(this, tickDurationInMs, TimeUnit.MILLISECONDS);
+                }
+            }
+        }, this.tickDurationInMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void expireOldestBucket(ConsumerBase<?> consumerBase, Set<MessageId> messageIds) {
+        long tick = currentTick;
+        long expiredTick = tick + 1 - tickBuckets.length;
+        ConcurrentLongPairSet bucket = tickBuckets[bucketIndex(tick + 1)];
+        bucket.forEach((ledgerId, entryId) -> {
+            LongPair value = messageIdTicks.get(ledgerId, entryId);
+            // skip the ids acknowledged since, or tracked again in a later tick
+            if (value != null && value.first == expiredTick
+                    && messageIdTicks.remove(ledgerId, entryId, value.first, value.second)) {
+                MessageIdImpl messageId = new MessageIdImpl(ledgerId, entryId, (int) value.second - 1);
+                addChunkedMessageIdsAndRemoveFromSequnceMap(messageId, messageIds, consumerBase);
+                messageIds.add(messageId);
+            }
+        });
+        bucket.clear();
+        // the emptied bucket becomes the one of the new tick
+        currentTick = tick + 1;
+    }
+
+    private int bucketIndex(long tick) {
+        return (int) (tick % tickBuckets.length);
+    }
+
+    private static MessageIdImpl unwrap(MessageId messageId) {
+        if (messageId instanceof TopicMessageIdImpl) {
+            messageId = ((TopicMessageIdImpl) messageId).getInnerMessageId();
+        }
+        return messageId instanceof MessageIdImpl ? (MessageIdImpl) messageId : null;
+    }
+
+    private static MessageIdImpl unwrapEntryId(MessageId messageId) {
+        MessageIdImpl id = unwrap(messageId);
+        if (id instanceof BatchMessageIdImpl && ((BatchMessageIdImpl) id).getBatchIndex() >= 0) {
+            // only whole entries are tracked
+            return null;
+        }
+        return id;
+    }
+
+    @Override
+    public void clear() {
+        messageIdTicks.clear();
+        for (ConcurrentLongPairSet bucket : tickBuckets) {
+            bucket.clear();
+        }
+    }
+
+    @Override
+    public boolean add(MessageId messageId) {
+        MessageIdImpl id = unwrapEntryId(messageId);
+        if (id == null) {
+            return false;
+        }
+        long tick = currentTick;
+        if (messageIdTicks.putIfAbsent(id.getLedgerId(), id.getEntryId(), tick, id.getPartitionIndex() + 1)) {
+            tickBuckets[bucketIndex(tick)].add(id.getLedgerId(), id.getEntryId());
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    boolean isEmpty() {
+        return messageIdTicks.isEmpty();
+    }
+
+    @Override
+    public boolean remove(MessageId messageId) {
+        MessageIdImpl id = unwrapEntryId(messageId);
+        if (id == null) {
+            return false;
+        }
+        LongPair value = messageIdTicks.get(id.getLedgerId(), id.getEntryId());
+        return value != null && value.second == id.getPartitionIndex() + 1
+                && messageIdTicks.remove(id.getLedgerId(), id.getEntryId(), value.first, value.second);
+    }
+
+    @Override
+    long size() {
+        return messageIdTicks.size();
+    }
+
+    @Override
+    public int removeMessagesTill(MessageId msgId) {
+        MessageIdImpl id = unwrap(msgId);
+        if (id == null) {
+            return 0;
+        }
+        long ledgerId = id.getLedgerId();
+        long entryId = id.getEntryId();
+        return messageIdTicks.removeIf((storedLedgerId, storedEntryId, tick, partitionIndex) ->
+                storedLedgerId < ledgerId || (storedLedgerId == ledgerId && storedEntryId <= entryId));
+    }
+
+    @Override
+    public void close() {
+        Timeout timeout = this.timeout;
+        if (timeout != null && !timeout.isCancelled()) {
+            timeout.cancel();
+        }
+        clear();
+    }
+}
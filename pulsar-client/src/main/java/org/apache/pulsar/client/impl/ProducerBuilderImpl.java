@@ -240,6 +240,18 @@ public class ProducerBuilderImpl<T> implements ProducerBuilder<T> {
         return this;
     }
 
+    @Override
+    public ProducerBuilder<T> enableAdaptiveBatching(boolean adaptiveBatchingEnabled) {
+        conf.setAdaptiveBatchingEnabled(adaptiveBatchingEnabled);
+        return this;
+    }
+
+    @Override
+    public ProducerBuilder<T> adaptiveBatchingTargetLatency(long targetLatency, @NonNull TimeUnit timeUnit) {
+        conf.setAdaptiveBatchingTargetLatencyMicros(targetLatency, timeUnit);
+        return this;
+    }
+
     @Override
     public ProducerBuilder<T> roundRobinRouterBatchingPartitionSwitchFrequency(int frequency) {
         conf.setBatchingPartitionSwitchFrequencyByPublishDelay(frequency);
@@ -38,11 +38,13 @@ import io.netty.util.Recycler.Handle;
 import io.netty.util.ReferenceCountUtil;
 import io.netty.util.Timeout;
 import io.netty.util.TimerTask;
+import io.netty.util.concurrent.EventExecutor;
 import io.netty.util.concurrent.ScheduledFuture;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -112,6 +114,8 @@ public class ProducerImpl<T> extends ProducerBase<T> implements TimerTask, Conne
     private volatile long producerDeadline = 0; // gets set on first successful connection
 
     private final BatchMessageContainerBase batchMessageContainer;
+    // sizes the batches when adaptive batching is enabled, null otherwise
+    private final AdaptiveBatchingController adaptiveBatching;
     private CompletableFuture<MessageId> lastSendFuture = CompletableFuture.completedFuture(null);
 
     // Globally unique producer name
@@ -146,6 +150,8 @@ public class ProducerImpl<T> extends ProducerBase<T> implements TimerTask, Conne
     private final ConnectionHandler connectionHandler;
 
     private ScheduledFuture<?> batchTimerTask;
+    // runs the adaptive batching timer, which is stopped while no message waits in the batch container
+    private EventExecutor adaptiveBatchingExecutor;
 
     private Optional<Long> topicEpoch = Optional.empty();
     private final List<Throwable> previousExceptions = new CopyOnWriteArrayList<Throwable>();
@@ -237,11 +243,23 @@ public class ProducerImpl<T> extends ProducerBase<T> implements TimerTask, Conne
         } else {
             this.batchMessageContainer = null;
         }
+        if (conf.isBatchingEnabled() && conf.isAdaptiveBatchingEnabled()) {
+            this.adaptiveBatching = new AdaptiveBatchingController(conf.getAdaptiveBatchingTargetLatencyMicros(),
+                    conf.getBatchingMaxPublishDelayMicros(), conf.getBatchingMaxMessages(), System.nanoTime());
+        } else {
+            this.adaptiveBatching = null;
+        }
         if (client.getConfiguration().getStatsIntervalSeconds() > 0) {
             stats = new ProducerStatsRecorderImpl(client, conf, this);
         } else {
             stats = ProducerStatsDisabled.INSTANCE;
         }
+        if (adaptiveBatching != null) {
+            stats.updateBatchingState(adaptiveBatching.getFlushDelayMicros(),
+                    adaptiveBatching.getTargetNumMessagesInBatch(), adaptiveBatching.getAckLatencyMicros());
+        } else if (conf.isBatchingEnabled()) {
+            stats.updateBatchingState(conf.getBatchingMaxPublishDelayMicros(), conf.getBatchingMaxMessages(), 0);
+        }
 
         if (conf.getProperties().isEmpty()) {
             metadata = Collections.emptyMap();
@@ -534,7 +552,9 @@ public class ProducerImpl<T> extends ProducerBase<T> implements TimerTask, Conne
                     } else {
                         // handle boundary cases where message being added would exceed
                         // batch size and/or max message size
-                        boolean isBatchFull = batchMessageContainer.add(msg, callback);
+                        boolean isBatchFull = batchMessageContainer.add(msg, callback)
+                                || (adaptiveBatching != null && adaptiveBatching.isBatchFull(
+                                        batchMessageContainer.getNumMessagesInBatch()));
                         lastSendFuture = callback.getFuture();
                         payload.release();
                         if (isBatchFull) {
@@ -546,6 +566,9 @@ public class ProducerImpl<T> extends ProducerBase<T> implements TimerTask, Conne
             } else {
                 doBatchSendAndAdd(msg, callback, payload);
             }
+            if (adaptiveBatching != null) {
+                resumeAdaptiveBatchFlush();
+            }
         } else {
             // in this case compression has not been applied by the caller
             // but we have to compress the payload if compression is configured
@@ -986,6 +1009,9 @@ public class ProducerImpl<T> extends ProducerBase<T> implements TimerTask, Conne
                     }
                     pendingMessages.remove();
                     releaseSemaphoreForSendOp(op);
+                    if (adaptiveBatching != null) {
+                        adaptiveBatching.recordAck(System.nanoTime() - op.createdAt);
+                    }
                 } else {
                     log.warn("[{}] [{}] Got ack for batch msg error. expecting: {} - {} - got: {} - {} - queue-size: {}", topic, producerName,
                             op.sequenceId, op.highestSequenceId, sequenceId, highestSequenceId, pendingMessages.size());
@@ -996,8 +1022,11 @@ public class ProducerImpl<T> extends ProducerBase<T> implements TimerTask, Conne
             }
         }
 
-        OpSendMsg finalOp = op;
-        LAST_SEQ_ID_PUBLISHED_UPDATER.getAndUpdate(this, last -> Math.max(last, getHighestSequenceId(finalOp)));
+        sendCompleted(op, ledgerId, entryId);
+    }
+
+    private void sendCompleted(OpSendMsg op, long ledgerId, long entryId) {
+        LAST_SEQ_ID_PUBLISHED_UPDATER.getAndUpdate(this, last -> Math.max(last, getHighestSequenceId(op)));
         op.setMessageId(ledgerId, entryId, partitionIndex);
         // if message is chunked then call callback only on last chunk
         if (op.totalChunks <= 1 || (op.chunkId == op.totalChunks - 1)) {
@@ -1007,13 +1036,79 @@ public class ProducerImpl<T> extends ProducerBase<T> implements TimerTask, Conne
                 op.sendComplete(null);
             } catch (Throwable t) {
                 log.warn("[{}] [{}] Got exception while completing the callback for msg {}:", topic,
-                        producerName, sequenceId, t);
+                        producerName, op.sequenceId, t);
             }
         }
         ReferenceCountUtil.safeRelease(op.cmd);
         op.recycle();
     }
 
+    /**
+     * Handles a receipt covering the consecutive entries of a ledger, from {@code firstEntryId} persisted for the
+     * pending operation of {@code firstSequenceId}, to {@code entryId} persisted for the one of {@code sequenceId}.
+     */
+    void ackReceived(ClientCnx cnx, long firstSequenceId, long firstEntryId, long sequenceId,
+                     long highestSequenceId, long ledgerId, long entryId) {
+        List<OpSendMsg> ops = new ArrayList<>();
+        long startEntryId;
+        synchronized (this) {
+            OpSendMsg op = pendingMessages.peek();
+            if (op == null || op.sequenceId > sequenceId) {
+                // Ignoring the ack since it's referring to messages that have already timed out.
+                if (log.isDebugEnabled()) {
+                    log.debug("[{}] [{}] Got ack for timed out msgs. expecting: {} - got: {} - {}", topic,
+                            producerName, op != null ? op.sequenceId : null, firstSequenceId, sequenceId);
+                }
+                return;
+            }
+
+            // The operations that timed out were removed from the head of the queue, the pending ones were persisted
+            // in the last entries of the receipt
+            long numPendingOps = 0;
+            for (OpSendMsg pendingOp : pendingMessages) {
+                if (pendingOp.sequenceId > sequenceId) {
+                    break;
+                }
+                numPendingOps++;
+            }
+            startEntryId = entryId - numPendingOps + 1;
+            if (op.sequenceId < firstSequenceId || startEntryId < firstEntryId) {
+                log.warn("[{}] [{}] Got ack for msgs. expecting: {} - got: {} - {} - queue-size: {}", topic,
+                        producerName, op.sequenceId, firstSequenceId, sequenceId, pendingMessages.size());
+                // Force connection closing so that messages can be re-transmitted in a new connection
+                cnx.channel().close();
+                return;
+            }
+            if (startEntryId > firstEntryId && log.isDebugEnabled()) {
+                log.debug("[{}] [{}] Got ack for {} timed out msgs before {}", topic, producerName,
+                        startEntryId - firstEntryId, op.sequenceId);
+            }
+
+            for (long coveredEntryId = startEntryId; coveredEntryId <= entryId; coveredEntryId++) {
+                op = pendingMessages.peek();
+                if (coveredEntryId == entryId && (op.sequenceId != sequenceId
+                        || (sequenceId < highestSequenceId && highestSequenceId != op.highestSequenceId))) {
+                    log.warn("[{}] [{}] Got ack for batch msg error. expecting: {} - {} - got: {} - {} - queue-size:"
+                            + " {}", topic, producerName, op.sequenceId, op.highestSequenceId, sequenceId,
+                            highestSequenceId, pendingMessages.size());
+                    // Force connection closing so that messages can be re-transmitted in a new connection
+                    cnx.channel().close();
+                    break;
+                }
+                pendingMessages.remove();
+                releaseSemaphoreForSendOp(op);
+                if (adaptiveBatching != null) {
+                    adaptiveBatching.recordAck(System.nanoTime() - op.createdAt);
+                }
+                ops.add(op);
+            }
+        }
+
+        for (int i = 0; i < ops.size(); i++) {
+            sendCompleted(ops.get(i), ledgerId, startEntryId + i);
+        }
+    }
+
     private long getHighestSequenceId(OpSendMsg op) {
         return Math.max(op.highestSequenceId, op.sequenceId);
     }
@@ -1373,7 +1468,10 @@ public class ProducerImpl<T> extends ProducerBase<T> implements TimerTask, Conne
                             this.msgIdGenerator = lastSequenceId + 1;
                         }
 
-                        if (!producerCreatedFuture.isDone() && isBatchMessagingEnabled()) {
+                        if (!producerCreatedFuture.isDone() && adaptiveBatching != null) {
+                            // schedule the first batch message task, which schedules the next ones
+                            scheduleAdaptiveBatchFlush(cnx.ctx().executor());
+                        } else if (!producerCreatedFuture.isDone() && isBatchMessagingEnabled()) {
                             // schedule the first batch message task
                             batchTimerTask = cnx.ctx().executor().scheduleAtFixedRate(() -> {
                                 if (log.isTraceEnabled()) {
@@ -1683,6 +1781,45 @@ public class ProducerImpl<T> extends ProducerBase<T> implements TimerTask, Conne
         semaphore.ifPresent(s -> s.release(numMessagesInBatch));
     }
 
+    private void scheduleAdaptiveBatchFlush(EventExecutor executor) {
+        adaptiveBatchingExecutor = executor;
+        batchTimerTask = executor.schedule(() -> {
+            if (log.isTraceEnabled()) {
+                log.trace("[{}] [{}] Batching the messages from the batch container from timer thread", topic,
+                        producerName);
+            }
+            synchronized (ProducerImpl.this) {
+                // If it's closing/closed we need to ignore the send batch timer and not
+                // schedule next timeout.
+                if (getState() == State.Closing || getState() == State.Closed) {
+                    return;
+                }
+
+                adaptiveBatching.update(System.nanoTime(), pendingMessages.size());
+                stats.updateBatchingState(adaptiveBatching.getFlushDelayMicros(),
+                        adaptiveBatching.getTargetNumMessagesInBatch(), adaptiveBatching.getAckLatencyMicros());
+                batchMessageAndSend();
+                if (batchMessageContainer.isEmpty()) {
+                    // the next message added to a batch restarts the timer
+                    batchTimerTask = null;
+                } else {
+                    scheduleAdaptiveBatchFlush(executor);
+                }
+            }
+        }, adaptiveBatching.getFlushDelayMicros(), TimeUnit.MICROSECONDS);
+    }
+
+    /**
+     * Restarts the adaptive batching timer, stopped while the batch container was empty. Must be called while holding
+     * the producer lock.
+     */
+    private void resumeAdaptiveBatchFlush() {
+        if (batchTimerTask == null && adaptiveBatchingExecutor != null && !batchMessageContainer.isEmpty()
+                && getState() != State.Closing && getState() != State.Closed) {
+            scheduleAdaptiveBatchFlush(adaptiveBatchingExecutor);
+        }
+    }
+
     @Override
     public CompletableFuture<Void> flushAsync() {
         CompletableFuture<MessageId> lastSendFuture;
@@ -1718,6 +1855,9 @@ public class ProducerImpl<T> extends ProducerBase<T> implements TimerTask, Conne
                 } else {
                     opSendMsgs = Collections.singletonList(batchMessageContainer.createOpSendMsg());
                 }
+                if (adaptiveBatching != null) {
+                    adaptiveBatching.recordBatchSent(batchMessageContainer.getNumMessagesInBatch());
+                }
                 batchMessageContainer.clear();
                 for (OpSendMsg opSendMsg : opSendMsgs) {
                     processOpSendMsg(opSendMsg);
@@ -43,6 +43,11 @@ public class ProducerStatsDisabled implements ProducerStatsRecorder {
         // Do nothing
     }
 
+    @Override
+    public void updateBatchingState(long flushDelayMicros, int targetNumMessages, long ackLatencyMicros) {
+        // Do nothing
+    }
+
     @Override
     public void cancelStatsTimeout() {
         // Do nothing
@@ -29,5 +29,7 @@ public interface ProducerStatsRecorder extends ProducerStats {
 
     void incrementNumAcksReceived(long latencyNs);
 
+    void updateBatchingState(long flushDelayMicros, int targetNumMessages, long ackLatencyMicros);
+
     void cancelStatsTimeout();
 }
@@ -60,6 +60,9 @@ public class ProducerStatsRecorderImpl implements ProducerStatsRecorder {
     private volatile double sendMsgsRate;
     private volatile double sendBytesRate;
     private volatile double[] latencyPctValues = new double[PERCENTILES.length];
+    private volatile long batchFlushDelayMicros;
+    private volatile int batchTargetNumMessages;
+    private volatile long batchAckLatencyMicros;
 
     private static final double[] PERCENTILES = { 0.5, 0.75, 0.95, 0.99, 0.999, 1.0 };
 
@@ -195,6 +198,13 @@ public class ProducerStatsRecorderImpl implements ProducerStatsRecorder {
         }
     }
 
+    @Override
+    public void updateBatchingState(long flushDelayMicros, int targetNumMessages, long ackLatencyMicros) {
+        this.batchFlushDelayMicros = flushDelayMicros;
+        this.batchTargetNumMessages = targetNumMessages;
+        this.batchAckLatencyMicros = ackLatencyMicros;
+    }
+
     void reset() {
         numMsgsSent.reset();
         numBytesSent.reset();
@@ -204,6 +214,9 @@ public class ProducerStatsRecorderImpl implements ProducerStatsRecorder {
         totalBytesSent.reset();
         totalSendFailed.reset();
         totalAcksReceived.reset();
+        batchFlushDelayMicros = 0;
+        batchTargetNumMessages = 0;
+        batchAckLatencyMicros = 0;
     }
 
     void updateCumulativeStats(ProducerStats stats) {
@@ -218,6 +231,11 @@ public class ProducerStatsRecorderImpl implements ProducerStatsRecorder {
         totalBytesSent.add(stats.getTotalBytesSent());
         totalSendFailed.add(stats.getTotalSendFailed());
         totalAcksReceived.add(stats.getTotalAcksReceived());
+        // report the batching state of the partition with the longest flush delay
+        if (stats.getBatchFlushDelayMicros() > batchFlushDelayMicros) {
+            updateBatchingState(stats.getBatchFlushDelayMicros(), stats.getBatchTargetNumMessages(),
+                    stats.getBatchAckLatencyMicros());
+        }
     }
 
     @Override
@@ -296,6 +314,21 @@ public class ProducerStatsRecorderImpl implements ProducerStatsRecorder {
         return latencyPctValues[5];
     }
 
+    @Override
+    public long getBatchFlushDelayMicros() {
+        return batchFlushDelayMicros;
+    }
+
+    @Override
+    public int getBatchTargetNumMessages() {
+        return batchTargetNumMessages;
+    }
+
+    @Override
+    public long getBatchAckLatencyMicros() {
+        return batchAckLatencyMicros;
+    }
+
     public void cancelStatsTimeout() {
         if (statTimeout != null) {
             statTimeout.cancel();
@@ -37,6 +37,7 @@ import io.netty.channel.Channel;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import io.netty.handler.flush.FlushConsolidationHandler;
 import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslHandler;
 import lombok.Getter;
@@ -46,11 +47,13 @@ import lombok.extern.slf4j.Slf4j;
 public class PulsarChannelInitializer extends ChannelInitializer<SocketChannel> {
 
     public static final String TLS_HANDLER = "tls";
+    public static final String FLUSH_CONSOLIDATION_HANDLER = "flushConsolidation";
 
     private final Supplier<ClientCnx> clientCnxSupplier;
     @Getter
     private final boolean tlsEnabled;
     private final boolean tlsEnabledWithKeyStore;
+    private final boolean flushConsolidationEnabled;
     private final InetSocketAddress socks5ProxyAddress;
     private final String socks5ProxyUsername;
     private final String socks5ProxyPassword;
@@ -70,6 +73,7 @@ public class PulsarChannelInitializer extends ChannelInitializer<SocketChannel>
         this.socks5ProxyPassword = conf.getSocks5ProxyPassword();
 
         this.tlsEnabledWithKeyStore = conf.isUseKeyStoreTls();
+        this.flushConsolidationEnabled = conf.isFlushConsolidationEnabled();
 
         if (tlsEnabled) {
             if (tlsEnabledWithKeyStore) {
@@ -117,6 +121,11 @@ public class PulsarChannelInitializer extends ChannelInitializer<SocketChannel>
 
         // Setup channel except for the SsHandler for TLS enabled connections
 
+        if (flushConsolidationEnabled) {
+            // the TLS handler is added in front of it, and then encrypts the consolidated writes
+            ch.pipeline().addLast(FLUSH_CONSOLIDATION_HANDLER, new FlushConsolidationHandler(
+                    FlushConsolidationHandler.DEFAULT_EXPLICIT_FLUSH_AFTER_FLUSHES, true));
+        }
         ch.pipeline().addLast("ByteBufPairEncoder", tlsEnabled ? ByteBufPair.COPYING_ENCODER : ByteBufPair.ENCODER);
 
         ch.pipeline().addLast("frameDecoder", new LengthFieldBasedFrameDecoder(
@@ -32,6 +32,7 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.apache.pulsar.client.api.Authentication;
+import org.apache.pulsar.client.api.IoTransport;
 import org.apache.pulsar.client.api.ProxyProtocol;
 import org.apache.pulsar.client.api.ServiceUrlProvider;
 import org.apache.pulsar.client.impl.auth.AuthenticationDisabled;
@@ -131,6 +132,12 @@ public class ClientConfigurationData implements Serializable, Cloneable {
     )
     private boolean useTcpNoDelay = true;
 
+    @ApiModelProperty(
+            name = "flushConsolidationEnabled",
+            value = "Whether to consolidate the flushes of the connections to the brokers."
+    )
+    private boolean flushConsolidationEnabled = false;
+
     @ApiModelProperty(
             name = "useTls",
             value = "Whether to use TLS."
@@ -218,6 +225,12 @@ public class ClientConfigurationData implements Serializable, Cloneable {
     )
     private boolean enableBusyWait = false;
 
+    @ApiModelProperty(
+            name = "ioTransport",
+            value = "Network transport of the IO threads: AUTO, NIO, EPOLL or IO_URING."
+    )
+    private IoTransport ioTransport = IoTransport.AUTO;
+
     @ApiModelProperty(
             name = "listenerName",
             value = "Listener name for lookup. Clients can use listenerName to choose one of the listeners "
@@ -75,6 +75,10 @@ public class ConsumerConfigurationData<T> implements Serializable, Cloneable {
 
     private long negativeAckRedeliveryDelayMicros = TimeUnit.MINUTES.toMicros(1);
 
+    private double negativeAckRedeliveryBackoffMultiplier = 1.0;
+
+    private long negativeAckMaxRedeliveryDelayMicros = TimeUnit.MINUTES.toMicros(10);
+
     private int maxTotalReceiverQueueSizeAcrossPartitions = 50000;
 
     private String consumerName = null;
@@ -83,6 +87,8 @@ public class ConsumerConfigurationData<T> implements Serializable, Cloneable {
 
     private long tickDurationMillis = 1000;
 
+    private boolean primitiveUnAckedMessageTrackerEnabled = false;
+
     private int priorityLevel = 0;
 
     /**
@@ -76,6 +76,8 @@ public class ProducerConfigurationData implements Serializable, Cloneable {
     private int batchingMaxMessages = DEFAULT_BATCHING_MAX_MESSAGES;
     private int batchingMaxBytes = 128 * 1024; // 128KB (keep the maximum consistent as previous versions)
     private boolean batchingEnabled = true; // enabled by default
+    private boolean adaptiveBatchingEnabled = false;
+    private long adaptiveBatchingTargetLatencyMicros = TimeUnit.MILLISECONDS.toMicros(10);
     @JsonIgnore
     private BatcherBuilder batcherBuilder = BatcherBuilder.DEFAULT;
     private boolean chunkingEnabled = false;
@@ -160,6 +162,12 @@ public class ProducerConfigurationData implements Serializable, Cloneable {
         this.batchingMaxPublishDelayMicros = timeUnit.toMicros(batchDelay);
     }
 
+    public void setAdaptiveBatchingTargetLatencyMicros(long targetLatency, TimeUnit timeUnit) {
+        checkArgument(timeUnit.toMillis(targetLatency) >= 1,
+                "configured value for adaptive batching target latency must be at least 1ms");
+        this.adaptiveBatchingTargetLatencyMicros = timeUnit.toMicros(targetLatency);
+    }
+
     public void setBatchingPartitionSwitchFrequencyByPublishDelay(int frequencyByPublishDelay) {
         checkArgument(frequencyByPublishDelay >= 1, "configured value for partition switch frequency must be >= 1");
         this.batchingPartitionSwitchFrequencyByPublishDelay = frequencyByPublishDelay;
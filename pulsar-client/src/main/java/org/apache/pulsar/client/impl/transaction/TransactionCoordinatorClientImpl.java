@@ -18,6 +18,8 @@
  */
 package org.apache.pulsar.client.impl.transaction;
 
+import io.netty.util.Timeout;
+import io.netty.util.TimerTask;
 import org.apache.pulsar.client.api.PulsarClient;
 import org.apache.pulsar.client.api.transaction.TransactionCoordinatorClient;
 import org.apache.pulsar.client.api.transaction.TransactionCoordinatorClientException;
@@ -36,6 +38,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
@@ -50,8 +53,11 @@ public class TransactionCoordinatorClientImpl implements TransactionCoordinatorC
 
     private static final Logger LOG = LoggerFactory.getLogger(TransactionCoordinatorClientImpl.class);
 
+    // the interval to check if the partitions of the transaction coordinator assign topic have been expanded
+    private static final long TC_PARTITIONS_UPDATE_INTERVAL_SECONDS = 60;
+
     private final PulsarClientImpl pulsarClient;
-    private TransactionMetaStoreHandler[] handlers;
+    private volatile TransactionMetaStoreHandler[] handlers;
     private ConcurrentLongHashMap<TransactionMetaStoreHandler> handlerMap = new ConcurrentLongHashMap<>(16, 1);
     private final AtomicLong epoch = new AtomicLong(0);
 
@@ -59,6 +65,9 @@ public class TransactionCoordinatorClientImpl implements TransactionCoordinatorC
             AtomicReferenceFieldUpdater.newUpdater(TransactionCoordinatorClientImpl.class, State.class, "state");
     private volatile State state = State.NONE;
 
+    private volatile Timeout partitionsUpdateTimeout;
+    private CompletableFuture<Void> partitionsUpdateFuture;
+
     public TransactionCoordinatorClientImpl(PulsarClient pulsarClient) {
         this.pulsarClient = (PulsarClientImpl) pulsarClient;
     }
@@ -82,15 +91,16 @@ public class TransactionCoordinatorClientImpl implements TransactionCoordinatorC
                         LOG.debug("Transaction meta store assign partition is {}.", partitionMeta.partitions);
                     }
                     if (partitionMeta.partitions > 0) {
-                        handlers = new TransactionMetaStoreHandler[partitionMeta.partitions];
+                        TransactionMetaStoreHandler[] newHandlers =
+                                new TransactionMetaStoreHandler[partitionMeta.partitions];
                         for (int i = 0; i < partitionMeta.partitions; i++) {
                             CompletableFuture<Void> connectFuture = new CompletableFuture<>();
                             connectFutureList.add(connectFuture);
-                            TransactionMetaStoreHandler handler = new TransactionMetaStoreHandler(
-                                    i, pulsarClient, getTCAssignTopicName(i), connectFuture);
-                            handlers[i] = handler;
-                            handlerMap.put(i, handler);
+                            newHandlers[i] = newHandler(i, connectFuture);
                         }
+                        handlers = newHandlers;
+                        partitionsUpdateTimeout = pulsarClient.timer().newTimeout(partitionsUpdateTimerTask,
+                                TC_PARTITIONS_UPDATE_INTERVAL_SECONDS, TimeUnit.SECONDS);
                     } else {
                         handlers = new TransactionMetaStoreHandler[1];
                         CompletableFuture<Void> connectFuture = new CompletableFuture<>();
@@ -110,6 +120,79 @@ public class TransactionCoordinatorClientImpl implements TransactionCoordinatorC
         }
     }
 
+    private TransactionMetaStoreHandler newHandler(int partition, CompletableFuture<Void> connectFuture) {
+        TransactionMetaStoreHandler handler = new TransactionMetaStoreHandler(
+                partition, pulsarClient, getTCAssignTopicName(partition), connectFuture);
+        handlerMap.put(partition, handler);
+        return handler;
+    }
+
+    /**
+     * Add the handlers of the transaction coordinators added by an expansion of the partitions of the transaction
+     * coordinator assign topic. The new transactions are only spread over the new coordinators once all of them
+     * are connected.
+     */
+    private CompletableFuture<Void> updatePartitions() {
+        return pulsarClient.getLookup().getPartitionedTopicMetadata(TopicName.TRANSACTION_COORDINATOR_ASSIGN)
+                .thenCompose(partitionMeta -> {
+                    TransactionMetaStoreHandler[] currentHandlers = handlers;
+                    if (getState() != State.READY || currentHandlers == null
+                            || partitionMeta.partitions <= currentHandlers.length) {
+                        return CompletableFuture.completedFuture(null);
+                    }
+                    LOG.info("Transaction coordinators extended from {} to {}.", currentHandlers.length,
+                            partitionMeta.partitions);
+                    TransactionMetaStoreHandler[] newHandlers =
+                            Arrays.copyOf(currentHandlers, partitionMeta.partitions);
+                    List<CompletableFuture<Void>> connectFutureList = new ArrayList<>();
+                    for (int i = currentHandlers.length; i < partitionMeta.partitions; i++) {
+                        CompletableFuture<Void> connectFuture = new CompletableFuture<>();
+                        connectFutureList.add(connectFuture);
+                        newHandlers[i] = newHandler(i, connectFuture);
+                    }
+                    return FutureUtil.waitForAll(connectFutureList).whenComplete((v, e) -> {
+                        synchronized (TransactionCoordinatorClientImpl.this) {
+                            // the client may have been closed while connecting to the new coordinators
+                            if (e == null && getState() == State.READY && handlers == currentHandlers) {
+                                handlers = newHandlers;
+                                return;
+                            }
+                        }
+                        if (e != null) {
+                            LOG.warn("Failed to connect to the extended transaction coordinators, retry later.", e);
+                        }
+                        for (int i = currentHandlers.length; i < newHandlers.length; i++) {
+                            handlerMap.remove(i, newHandlers[i]);
+                            try {
+                                newHandlers[i].close();
+                            } catch (IOException ex) {
+                                LOG.warn("Close transaction meta store handler error", ex);
+                            }
+                        }
+                    });
+                });
+    }
+
+    private final TimerTask partitionsUpdateTimerTask = new TimerTask() {
+        @Override
+        public void run(Timeout timeout) throws Exception {
+            if (timeout.isCancelled() || getState() != State.READY || handlers == null) {
+                return;
+            }
+            // if the last update is not completed yet, do nothing
+            if (partitionsUpdateFuture == null || partitionsUpdateFuture.isDone()) {
+                partitionsUpdateFuture = updatePartitions();
+            }
+            synchronized (TransactionCoordinatorClientImpl.this) {
+                // do not reschedule the task once the client is closing
+                if (getState() == State.READY) {
+                    partitionsUpdateTimeout = pulsarClient.timer().newTimeout(partitionsUpdateTimerTask,
+                            TC_PARTITIONS_UPDATE_INTERVAL_SECONDS, TimeUnit.SECONDS);
+                }
+            }
+        }
+    };
+
     private String getTCAssignTopicName(int partition) {
         if (partition >= 0) {
             return TopicName.TRANSACTION_COORDINATOR_ASSIGN.toString() + TopicName.PARTITIONED_TOPIC_SUFFIX + partition;
@@ -134,16 +217,24 @@ public class TransactionCoordinatorClientImpl implements TransactionCoordinatorC
             LOG.warn("The transaction meta store is closing or closed, doing nothing.");
             result.complete(null);
         } else {
-            if (handlers != null) {
-                for (TransactionMetaStoreHandler handler : handlers) {
-                    try {
-                        handler.close();
-                    } catch (IOException e) {
-                        LOG.warn("Close transaction meta store handler error", e);
-                    }
+            synchronized (this) {
+                STATE_UPDATER.set(this, State.CLOSING);
+                if (partitionsUpdateTimeout != null) {
+                    partitionsUpdateTimeout.cancel();
+                    partitionsUpdateTimeout = null;
                 }
+                this.handlers = null;
             }
-            this.handlers = null;
+            // also close the handlers of the coordinators that are still being added
+            for (TransactionMetaStoreHandler handler : handlerMap.values()) {
+                try {
+                    handler.close();
+                } catch (IOException e) {
+                    LOG.warn("Close transaction meta store handler error", e);
+                }
+            }
+            handlerMap.clear();
+            STATE_UPDATER.set(this, State.CLOSED);
             result.complete(null);
         }
         return result;
@@ -174,7 +265,13 @@ public class TransactionCoordinatorClientImpl implements TransactionCoordinatorC
 
     @Override
     public CompletableFuture<TxnID> newTransactionAsync(long timeout, TimeUnit unit) {
-        return nextHandler().newTransactionAsync(timeout, unit);
+        // the handlers are replaced when the coordinators are extended, and cleared when the client is closed
+        TransactionMetaStoreHandler[] currentHandlers = handlers;
+        if (currentHandlers == null || getState() != State.READY) {
+            return FutureUtil.failedFuture(new CoordinatorClientStateException(
+                    "Can not create a new transaction while current state is " + state));
+        }
+        return nextHandler(currentHandlers).newTransactionAsync(timeout, unit);
     }
 
     @Override
@@ -262,8 +359,8 @@ public class TransactionCoordinatorClientImpl implements TransactionCoordinatorC
         return state;
     }
 
-    private TransactionMetaStoreHandler nextHandler() {
-        int index = MathUtils.signSafeMod(epoch.incrementAndGet(), handlers.length);
-        return handlers[index];
+    private TransactionMetaStoreHandler nextHandler(TransactionMetaStoreHandler[] currentHandlers) {
+        int index = MathUtils.signSafeMod(epoch.incrementAndGet(), currentHandlers.length);
+        return currentHandlers[index];
     }
 }
@@ -30,10 +30,17 @@ import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
+import lombok.Cleanup;
+
 import org.apache.pulsar.client.impl.conf.ClientConfigurationData;
 import org.apache.pulsar.client.impl.conf.ConsumerConfigurationData;
 import org.apache.pulsar.client.util.TimedCompletableFuture;
@@ -381,6 +388,50 @@ public class AcknowledgementsGroupingTrackerTest {
         tracker.close();
     }
 
+    @Test
+    public void testConcurrentIndividualAcks() throws Exception {
+        ConsumerConfigurationData<?> conf = new ConsumerConfigurationData<>();
+        conf.setAcknowledgementsGroupTimeMicros(TimeUnit.SECONDS.toMicros(10));
+        PersistentAcknowledgmentsGroupingTracker tracker =
+                new PersistentAcknowledgmentsGroupingTracker(consumer, conf, eventLoopGroup);
+        when(consumer.getClientCnx()).thenReturn(null);
+
+        final int threads = 4;
+        final int acksPerThread = 200;
+        @Cleanup("shutdownNow")
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final long ledgerId = 10 + t;
+            futures.add(executor.submit(() -> {
+                for (int i = acksPerThread - 1; i >= 0; i--) {
+                    tracker.addAcknowledgment(new MessageIdImpl(ledgerId, i, 0), AckType.Individual,
+                            Collections.emptyMap());
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+
+        for (int t = 0; t < threads; t++) {
+            for (int i = 0; i < acksPerThread; i++) {
+                assertTrue(tracker.isDuplicate(new MessageIdImpl(10 + t, i, 0)));
+            }
+        }
+
+        when(consumer.getClientCnx()).thenReturn(cnx);
+        tracker.flush();
+
+        for (int t = 0; t < threads; t++) {
+            for (int i = 0; i < acksPerThread; i++) {
+                assertFalse(tracker.isDuplicate(new MessageIdImpl(10 + t, i, 0)));
+            }
+        }
+
+        tracker.close();
+    }
+
     public class ClientCnxTest extends ClientCnx {
 
         public ClientCnxTest(ClientConfigurationData conf, EventLoopGroup eventLoopGroup) {
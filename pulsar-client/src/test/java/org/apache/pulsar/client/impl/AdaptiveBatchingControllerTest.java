@@ -0,0 +1,118 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.client.impl;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import org.testng.annotations.Test;
+
+public class AdaptiveBatchingControllerTest {
+
+    private static final long TARGET_LATENCY_MICROS = TimeUnit.MILLISECONDS.toMicros(10);
+
+    @Test
+    public void testInitialState() {
+        AdaptiveBatchingController controller =
+                new AdaptiveBatchingController(TARGET_LATENCY_MICROS, 1000, 1000, 0);
+        assertEquals(controller.getFlushDelayMicros(), 1000);
+        assertEquals(controller.getTargetNumMessagesInBatch(), 1000);
+        assertFalse(controller.isBatchFull(999));
+        assertTrue(controller.isBatchFull(1000));
+
+        // the initial delay never exceeds the target latency, and 0 max messages means unbounded batches
+        controller = new AdaptiveBatchingController(TARGET_LATENCY_MICROS, 2 * TARGET_LATENCY_MICROS, 0, 0);
+        assertEquals(controller.getFlushDelayMicros(), TARGET_LATENCY_MICROS);
+        assertEquals(controller.getTargetNumMessagesInBatch(), Integer.MAX_VALUE);
+    }
+
+    @Test
+    public void testFlushDelayFollowsAckLatency() {
+        AdaptiveBatchingController controller =
+                new AdaptiveBatchingController(TARGET_LATENCY_MICROS, 1000, 1000, 0);
+        controller.recordAck(TimeUnit.MILLISECONDS.toNanos(4));
+        controller.update(TimeUnit.MILLISECONDS.toNanos(1), 0);
+        assertEquals(controller.getAckLatencyMicros(), TimeUnit.MILLISECONDS.toMicros(4));
+        assertEquals(controller.getFlushDelayMicros(), TimeUnit.MILLISECONDS.toMicros(6));
+
+        // the broker is slower than the target, batches are flushed as soon as possible
+        for (int i = 0; i < 100; i++) {
+            controller.recordAck(TimeUnit.MILLISECONDS.toNanos(50));
+        }
+        controller.update(TimeUnit.MILLISECONDS.toNanos(2), 0);
+        assertEquals(controller.getFlushDelayMicros(), AdaptiveBatchingController.MIN_FLUSH_DELAY_MICROS);
+    }
+
+    @Test
+    public void testTargetNumMessagesFollowsSendRate() {
+        AdaptiveBatchingController controller =
+                new AdaptiveBatchingController(TARGET_LATENCY_MICROS, 1000, 100_000, 0);
+        long now = 0;
+
+        // no traffic yet: the send rate is unknown and the batches are flushed by the timer
+        now += TimeUnit.MILLISECONDS.toNanos(10);
+        controller.update(now, 0);
+        assertEquals(controller.getTargetNumMessagesInBatch(), 100_000);
+        assertFalse(controller.isBatchFull(1));
+
+        // 1 message per microsecond, with a 10ms delay and no pending batches
+        for (int i = 0; i < 50; i++) {
+            now += TimeUnit.MILLISECONDS.toNanos(10);
+            controller.recordBatchSent(10_000);
+            controller.update(now, 0);
+        }
+        int target = controller.getTargetNumMessagesInBatch();
+        assertTrue(target > 9_000 && target <= 10_000, "target: " + target);
+        assertEquals(controller.getSendRate(), 1_000_000, 1_000);
+
+        // pending batches let the batches grow, up to the configured max
+        controller.recordBatchSent(10_000);
+        controller.update(now + TimeUnit.MILLISECONDS.toNanos(10), 3);
+        assertTrue(controller.getTargetNumMessagesInBatch() > 3 * target);
+
+        controller.recordBatchSent(10_000);
+        controller.update(now + TimeUnit.MILLISECONDS.toNanos(20), 100);
+        assertEquals(controller.getTargetNumMessagesInBatch(), 100_000);
+
+        // after a long idle period, the send rate observed before does not linger
+        controller.update(now + TimeUnit.SECONDS.toNanos(10), 0);
+        assertEquals(controller.getTargetNumMessagesInBatch(), 1);
+        assertTrue(controller.isBatchFull(1));
+    }
+
+    @Test
+    public void testAckLatencyDecaysWhenIdle() {
+        AdaptiveBatchingController controller =
+                new AdaptiveBatchingController(TARGET_LATENCY_MICROS, 1000, 1000, 0);
+        controller.recordAck(TimeUnit.MILLISECONDS.toNanos(8));
+        controller.update(TimeUnit.MILLISECONDS.toNanos(1), 0);
+        assertEquals(controller.getFlushDelayMicros(), TimeUnit.MILLISECONDS.toMicros(2));
+
+        // no ack while batches are pending: the latency is kept
+        controller.update(TimeUnit.MILLISECONDS.toNanos(100), 1);
+        assertEquals(controller.getAckLatencyMicros(), TimeUnit.MILLISECONDS.toMicros(8));
+
+        // nothing pending: the latency decays with the idle time
+        controller.update(TimeUnit.MILLISECONDS.toNanos(200), 0);
+        assertEquals(controller.getAckLatencyMicros(), 0);
+        assertEquals(controller.getFlushDelayMicros(), TARGET_LATENCY_MICROS);
+    }
+}
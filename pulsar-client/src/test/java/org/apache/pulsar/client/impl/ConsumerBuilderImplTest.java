@@ -254,6 +254,11 @@ public class ConsumerBuilderImplTest {
         consumerBuilderImpl.negativeAckRedeliveryDelay(-1, TimeUnit.MILLISECONDS);
     }
 
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testConsumerBuilderImplWhenNegativeAckRedeliveryBackoffMultiplierIsLessThanOne() {
+        consumerBuilderImpl.negativeAckRedeliveryBackoff(0.5, 1, TimeUnit.MINUTES);
+    }
+
     @Test(expectedExceptions = IllegalArgumentException.class)
     public void testConsumerBuilderImplWhenPriorityLevelPropertyIsNegative() {
         consumerBuilderImpl.priorityLevel(-1);
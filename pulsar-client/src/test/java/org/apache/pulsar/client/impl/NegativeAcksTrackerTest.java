@@ -0,0 +1,166 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.client.impl;
+
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.TimerTask;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.pulsar.client.api.MessageId;
+import org.apache.pulsar.client.impl.conf.ConsumerConfigurationData;
+import org.awaitility.Awaitility;
+import org.mockito.ArgumentCaptor;
+import org.testng.annotations.Test;
+
+public class NegativeAcksTrackerTest {
+
+    @Test
+    public void testRedeliveryGroupsExpiredNacks() throws Exception {
+        PulsarClientImpl client = mock(PulsarClientImpl.class);
+        Timer timer = new HashedWheelTimer(new DefaultThreadFactory("pulsar-timer", Thread.currentThread().isDaemon()),
+                1, TimeUnit.MILLISECONDS);
+        when(client.timer()).thenReturn(timer);
+
+        ConsumerBase<byte[]> consumer = mock(ConsumerBase.class);
+        when(consumer.getClient()).thenReturn(client);
+        doNothing().when(consumer).onNegativeAcksSend(any());
+        doNothing().when(consumer).redeliverUnacknowledgedMessages(any());
+
+        ConsumerConfigurationData<byte[]> conf = new ConsumerConfigurationData<>();
+        conf.setNegativeAckRedeliveryDelayMicros(TimeUnit.MILLISECONDS.toMicros(100));
+        NegativeAcksTracker tracker = new NegativeAcksTracker(consumer, conf);
+
+        Set<MessageId> expected = new HashSet<>();
+        for (int i = 0; i < 10; i++) {
+            MessageIdImpl msgId = new MessageIdImpl(1L, i, 0);
+            // a nack of a batch index redelivers the whole entry
+            tracker.add(i % 2 == 0 ? msgId : new BatchMessageIdImpl(1L, i, 0, 1));
+            expected.add(msgId);
+        }
+
+        ArgumentCaptor<Set<MessageId>> redelivered = ArgumentCaptor.forClass(Set.class);
+        Awaitility.await().untilAsserted(() -> {
+            verify(consumer, atLeastOnce()).redeliverUnacknowledgedMessages(redelivered.capture());
+            Set<MessageId> all = new HashSet<>();
+            redelivered.getAllValues().forEach(all::addAll);
+            assertEquals(all, expected);
+        });
+
+        tracker.close();
+        timer.stop();
+    }
+
+    @Test
+    public void testRedeliveryBackoff() throws Exception {
+        PulsarClientImpl client = mock(PulsarClientImpl.class);
+        Timer timer = new HashedWheelTimer(new DefaultThreadFactory("pulsar-timer", Thread.currentThread().isDaemon()),
+                1, TimeUnit.MILLISECONDS);
+        when(client.timer()).thenReturn(timer);
+
+        ConsumerBase<byte[]> consumer = mock(ConsumerBase.class);
+        when(consumer.getClient()).thenReturn(client);
+        doNothing().when(consumer).onNegativeAcksSend(any());
+        doNothing().when(consumer).redeliverUnacknowledgedMessages(any());
+
+        ConsumerConfigurationData<byte[]> conf = new ConsumerConfigurationData<>();
+        conf.setNegativeAckRedeliveryDelayMicros(TimeUnit.MILLISECONDS.toMicros(100));
+        conf.setNegativeAckRedeliveryBackoffMultiplier(2.0);
+        conf.setNegativeAckMaxRedeliveryDelayMicros(TimeUnit.SECONDS.toMicros(1));
+        NegativeAcksTracker tracker = new NegativeAcksTracker(consumer, conf);
+
+        long delay = TimeUnit.MILLISECONDS.toNanos(100);
+        assertEquals(tracker.redeliveryDelayNanos(0), delay);
+        assertEquals(tracker.redeliveryDelayNanos(1), 2 * delay);
+        assertEquals(tracker.redeliveryDelayNanos(3), 8 * delay);
+        assertEquals(tracker.redeliveryDelayNanos(4), TimeUnit.SECONDS.toNanos(1));
+        assertEquals(tracker.redeliveryDelayNanos(1000), TimeUnit.SECONDS.toNanos(1));
+
+        MessageIdImpl backedOff = new MessageIdImpl(1L, 1L, -1);
+        MessageIdImpl first = new MessageIdImpl(1L, 2L, -1);
+        tracker.add(backedOff, 3);
+        // scheduled before the backed-off nack, the timer fires sooner
+        tracker.add(first, 0);
+
+        verify(consumer, timeout(10000)).redeliverUnacknowledgedMessages(Collections.singleton(first));
+        verify(consumer, never()).redeliverUnacknowledgedMessages(Collections.singleton(backedOff));
+        verify(consumer, timeout(10000)).redeliverUnacknowledgedMessages(Collections.singleton(backedOff));
+
+        tracker.close();
+        timer.stop();
+    }
+
+    @Test
+    public void testStaleTimeoutDoesNotReschedule() throws Exception {
+        PulsarClientImpl client = mock(PulsarClientImpl.class);
+        Timer timer = mock(Timer.class);
+        List<TimerTask> tasks = new ArrayList<>();
+        List<Timeout> timeouts = new ArrayList<>();
+        when(timer.newTimeout(any(), anyLong(), any())).thenAnswer(invocation -> {
+            tasks.add(invocation.getArgument(0));
+            Timeout t = mock(Timeout.class);
+            timeouts.add(t);
+            return t;
+        });
+        when(client.timer()).thenReturn(timer);
+
+        ConsumerBase<byte[]> consumer = mock(ConsumerBase.class);
+        when(consumer.getClient()).thenReturn(client);
+
+        ConsumerConfigurationData<byte[]> conf = new ConsumerConfigurationData<>();
+        conf.setNegativeAckRedeliveryDelayMicros(TimeUnit.MILLISECONDS.toMicros(100));
+        conf.setNegativeAckRedeliveryBackoffMultiplier(2.0);
+        conf.setNegativeAckMaxRedeliveryDelayMicros(TimeUnit.SECONDS.toMicros(1));
+        NegativeAcksTracker tracker = new NegativeAcksTracker(consumer, conf);
+
+        tracker.add(new MessageIdImpl(1L, 1L, -1), 3);
+        // a sooner nack replaces the pending timeout
+        tracker.add(new MessageIdImpl(1L, 2L, -1), 0);
+        assertEquals(tasks.size(), 2);
+        verify(timeouts.get(0)).cancel();
+
+        // the replaced timeout already fired and runs after the replacement, it must not start another timer
+        tasks.get(0).run(timeouts.get(0));
+        verify(timer, times(2)).newTimeout(any(), anyLong(), any());
+        verify(consumer, never()).redeliverUnacknowledgedMessages(any());
+
+        tracker.close();
+        verify(timeouts.get(1)).cancel();
+    }
+}
@@ -339,6 +339,11 @@ public class ProducerBuilderImplTest {
         producerBuilderImpl.batchingMaxPublishDelay(-1, TimeUnit.MILLISECONDS);
     }
 
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testProducerBuilderImplWhenAdaptiveBatchingTargetLatencyIsTooShort() {
+        producerBuilderImpl.adaptiveBatchingTargetLatency(500, TimeUnit.MICROSECONDS);
+    }
+
     @Test(expectedExceptions = IllegalArgumentException.class)
     public void testProducerBuilderImplWhenSendTimeoutPropertyIsNegative() {
         producerBuilderImpl.sendTimeout(-1, TimeUnit.SECONDS);
@@ -358,6 +363,8 @@ public class ProducerBuilderImplTest {
     public void testProducerBuilderImplWhenNumericPropertiesAreValid() {
         producerBuilderImpl.batchingMaxPublishDelay(1, TimeUnit.SECONDS);
         producerBuilderImpl.batchingMaxMessages(2);
+        producerBuilderImpl.enableAdaptiveBatching(true);
+        producerBuilderImpl.adaptiveBatchingTargetLatency(5, TimeUnit.MILLISECONDS);
         producerBuilderImpl.sendTimeout(1, TimeUnit.SECONDS);
         producerBuilderImpl.maxPendingMessagesAcrossPartitions(1000);
     }
@@ -24,12 +24,15 @@ import static org.testng.Assert.assertTrue;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import io.netty.util.HashedWheelTimer;
 import io.netty.util.Timer;
 import io.netty.util.concurrent.DefaultThreadFactory;
 
+import java.util.Collections;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.pulsar.client.api.MessageId;
@@ -74,4 +77,70 @@ public class UnAckedMessageTrackerTest  {
         timer.stop();
     }
 
+    @Test
+    public void testPrimitiveTrackerAddAndRemove() {
+        PulsarClientImpl client = mock(PulsarClientImpl.class);
+        Timer timer = new HashedWheelTimer(new DefaultThreadFactory("pulsar-timer", Thread.currentThread().isDaemon()),
+                1, TimeUnit.MILLISECONDS);
+        when(client.timer()).thenReturn(timer);
+
+        ConsumerBase<byte[]> consumer = mock(ConsumerBase.class);
+        doNothing().when(consumer).onAckTimeoutSend(any());
+        doNothing().when(consumer).redeliverUnacknowledgedMessages(any());
+
+        UnAckedMessageTracker tracker = new PrimitiveUnAckedMessageTracker(client, consumer, 1000000, 100000);
+        tracker.close();
+
+        assertTrue(tracker.isEmpty());
+        assertEquals(tracker.size(), 0);
+
+        MessageIdImpl mid = new MessageIdImpl(1L, 1L, -1);
+        assertTrue(tracker.add(mid));
+        assertFalse(tracker.add(mid));
+        assertFalse(tracker.add(new BatchMessageIdImpl(1L, 2L, -1, 0)));
+        assertEquals(tracker.size(), 1);
+
+        assertFalse(tracker.remove(new MessageIdImpl(1L, 1L, 2)));
+        assertTrue(tracker.remove(mid));
+        assertFalse(tracker.remove(mid));
+        assertTrue(tracker.isEmpty());
+        assertEquals(tracker.size(), 0);
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(tracker.add(new MessageIdImpl(1L, i, -1)));
+        }
+        assertTrue(tracker.add(new MessageIdImpl(2L, 0, -1)));
+        assertEquals(tracker.removeMessagesTill(new BatchMessageIdImpl(1L, 4L, -1, 3)), 5);
+        assertEquals(tracker.size(), 6);
+        assertEquals(tracker.removeMessagesTill(new MessageIdImpl(2L, 0, -1)), 6);
+        assertTrue(tracker.isEmpty());
+
+        timer.stop();
+    }
+
+    @Test
+    public void testPrimitiveTrackerRedeliversTimedOutMessages() {
+        PulsarClientImpl client = mock(PulsarClientImpl.class);
+        Timer timer = new HashedWheelTimer(new DefaultThreadFactory("pulsar-timer", Thread.currentThread().isDaemon()),
+                1, TimeUnit.MILLISECONDS);
+        when(client.timer()).thenReturn(timer);
+
+        ConsumerBase<byte[]> consumer = mock(ConsumerBase.class);
+        doNothing().when(consumer).onAckTimeoutSend(any());
+        doNothing().when(consumer).redeliverUnacknowledgedMessages(any());
+
+        UnAckedMessageTracker tracker = new PrimitiveUnAckedMessageTracker(client, consumer, 100, 10);
+        MessageIdImpl acked = new MessageIdImpl(1L, 1L, 0);
+        MessageIdImpl timedOut = new MessageIdImpl(1L, 2L, 0);
+        assertTrue(tracker.add(acked));
+        assertTrue(tracker.add(timedOut));
+        assertTrue(tracker.remove(acked));
+
+        verify(consumer, timeout(10000)).redeliverUnacknowledgedMessages(Collections.singleton(timedOut));
+        assertTrue(tracker.isEmpty());
+
+        tracker.close();
+        timer.stop();
+    }
+
 }
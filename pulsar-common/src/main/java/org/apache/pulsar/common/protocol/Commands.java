@@ -371,6 +371,15 @@ public class Commands {
         return cmd;
     }
 
+    public static BaseCommand newSendReceiptCommand(long producerId, long firstSequenceId, long firstEntryId,
+            long sequenceId, long highestId, long ledgerId, long entryId) {
+        BaseCommand cmd = newSendReceiptCommand(producerId, sequenceId, highestId, ledgerId, entryId);
+        cmd.getSendReceipt()
+                .setFirstSequenceId(firstSequenceId)
+                .setFirstEntryId(firstEntryId);
+        return cmd;
+    }
+
     public static ByteBuf newSendReceipt(long producerId, long sequenceId, long highestId, long ledgerId,
             long entryId) {
         return serializeWithSize(newSendReceiptCommand(producerId, sequenceId, highestId, ledgerId, entryId));
@@ -831,7 +840,7 @@ public class Commands {
 
     public static ByteBuf newMultiTransactionMessageAck(long consumerId, TxnID txnID,
             List<Triple<Long, Long, ConcurrentBitSetRecyclable>> entries) {
-        BaseCommand cmd = newMultiMessageAckCommon(entries);
+        BaseCommand cmd = newMultiMessageAckCommon(entries, false);
         cmd.getAck()
                 .setConsumerId(consumerId)
                 .setAckType(AckType.Individual)
@@ -840,7 +849,8 @@ public class Commands {
         return serializeWithSize(cmd);
     }
 
-    private static BaseCommand newMultiMessageAckCommon(List<Triple<Long, Long, ConcurrentBitSetRecyclable>> entries) {
+    private static BaseCommand newMultiMessageAckCommon(List<Triple<Long, Long, ConcurrentBitSetRecyclable>> entries,
+                                                        boolean useAckRanges) {
         BaseCommand cmd = localCmd(Type.ACK);
         CommandAck ack = cmd.setAck();
         int entriesCount = entries.size();
@@ -848,6 +858,24 @@ public class Commands {
             long ledgerId = entries.get(i).getLeft();
             long entryId = entries.get(i).getMiddle();
             ConcurrentBitSetRecyclable bitSet = entries.get(i).getRight();
+            if (useAckRanges && bitSet == null) {
+                // Encode a run of consecutive whole entries of the same ledger as a single range
+                int last = i;
+                while (last + 1 < entriesCount
+                        && entries.get(last + 1).getRight() == null
+                        && entries.get(last + 1).getLeft() == ledgerId
+                        && entries.get(last + 1).getMiddle() == entries.get(last).getMiddle() + 1) {
+                    last++;
+                }
+                if (last > i) {
+                    ack.addAckRange()
+                            .setLedgerId(ledgerId)
+                            .setStartEntryId(entryId)
+                            .setEndEntryId(entries.get(last).getMiddle());
+                    i = last;
+                    continue;
+                }
+            }
             MessageIdData msgId = ack.addMessageId()
                     .setLedgerId(ledgerId)
                     .setEntryId(entryId);
@@ -866,7 +894,17 @@ public class Commands {
     public static ByteBuf newMultiMessageAck(long consumerId,
                                              List<Triple<Long, Long, ConcurrentBitSetRecyclable>> entries,
                                              long requestId) {
-        BaseCommand cmd = newMultiMessageAckCommon(entries);
+        return newMultiMessageAck(consumerId, entries, requestId, false);
+    }
+
+    /**
+     * Create an individual ack of several messages. When {@code useAckRanges} is set, the runs of consecutive
+     * entries of the sorted {@code entries} without batch index ack set are encoded as ack ranges.
+     */
+    public static ByteBuf newMultiMessageAck(long consumerId,
+                                             List<Triple<Long, Long, ConcurrentBitSetRecyclable>> entries,
+                                             long requestId, boolean useAckRanges) {
+        BaseCommand cmd = newMultiMessageAckCommon(entries, useAckRanges);
         cmd.getAck()
                 .setConsumerId(consumerId)
                 .setAckType(AckType.Individual);
@@ -1645,17 +1683,25 @@ public class Commands {
         //
         // metadataAndPayload contains from magic-number to the payload included
 
-        int cmdSize = cmd.getSerializedSize();
-        int totalSize = 4 + cmdSize + metadataAndPayload.readableBytes();
-        int headersSize = 4 + 4 + cmdSize;
+        int headersSize = 4 + 4 + cmd.getSerializedSize();
 
         ByteBuf headers = PulsarByteBufAllocator.DEFAULT.buffer(headersSize);
+        writeCommandMessageHeaders(headers, cmd, metadataAndPayload.readableBytes());
+        return ByteBufPair.get(headers, metadataAndPayload);
+    }
+
+    /**
+     * Write the frame size and the command of a message into {@code headers}, so that it can be sent followed by
+     * {@code metadataAndPayloadSize} bytes of metadata and payload.
+     */
+    public static void writeCommandMessageHeaders(ByteBuf headers, BaseCommand cmd, int metadataAndPayloadSize) {
+        int cmdSize = cmd.getSerializedSize();
+        int totalSize = 4 + cmdSize + metadataAndPayloadSize;
         headers.writeInt(totalSize); // External frame
 
         // Write cmd
         headers.writeInt(cmdSize);
         cmd.writeTo(headers);
-        return ByteBufPair.get(headers, metadataAndPayload);
     }
 
     public static int getNumberOfMessagesInBatch(ByteBuf metadataAndPayload, String subscription,
@@ -1737,6 +1783,14 @@ public class Commands {
         return peerVersion >= ProtocolVersion.v17.getValue();
     }
 
+    public static boolean peerSupportsAckRanges(int peerVersion) {
+        return peerVersion >= ProtocolVersion.v18.getValue();
+    }
+
+    public static boolean peerSupportsBatchedSendReceipts(int peerVersion) {
+        return peerVersion >= ProtocolVersion.v19.getValue();
+    }
+
     private static org.apache.pulsar.common.api.proto.ProducerAccessMode convertProducerAccessMode(ProducerAccessMode accessMode) {
         switch (accessMode) {
         case Exclusive:
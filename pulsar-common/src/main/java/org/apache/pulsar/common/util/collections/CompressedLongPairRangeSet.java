@@ -0,0 +1,620 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.common.util.collections;
+
+import com.google.common.collect.Range;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A set comprising zero or more ranges of type {@link LongPair}, storing only primitive values.
+ *
+ * <pre>
+ * Usage:
+ * a. This can be used instead of {@link ConcurrentOpenLongPairRangeSet} when the number of unique keys or of
+ * disjoint ranges is large, eg: random acknowledgments on a shared subscription.
+ * b. The ranges of each key are stored either as a sorted array of [start, end] runs, or as a {@link BitSet} once the
+ * runs would take more memory than the bitmap. So the memory used by a key is bounded to the lowest of 16 bytes per
+ * disjoint range and 1 bit per value of the key.
+ * </pre>
+ *
+ * <p/>The set is thread-safe: updates are serialized and the {@link #forEach(RangeProcessor)} actions are invoked while
+ * holding a read lock, so they must not update the set.
+ */
+public class CompressedLongPairRangeSet<T extends Comparable<T>> implements LongPairRangeSet<T> {
+
+    private final NavigableMap<Long, Container> containers = new TreeMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final LongPairConsumer<T> consumer;
+
+    // caching place-holder for cpu-optimization to avoid counting the ranges again
+    private volatile int cachedSize = 0;
+    private volatile boolean updatedAfterCachedForSize = true;
+
+    public CompressedLongPairRangeSet(LongPairConsumer<T> consumer) {
+        this.consumer = consumer;
+    }
+
+    @Override
+    public void addOpenClosed(long lowerKey, long lowerValueOpen, long upperKey, long upperValue) {
+        long lowerValue = lowerValueOpen + 1;
+        lock.writeLock().lock();
+        try {
+            if (lowerKey != upperKey) {
+                // Same semantic as ConcurrentOpenLongPairRangeSet: for the lower key, only fill the values up to the
+                // last one already in the set, since the last value of the key is unknown
+                if (isValid(lowerKey, lowerValue)) {
+                    Container container = containers.get(lowerKey);
+                    if (container != null && container.last() > lowerValueOpen) {
+                        add(lowerKey, container, lowerValue, Math.max(container.last(), lowerValue));
+                    }
+                }
+                if (isValid(upperKey, upperValue)) {
+                    add(upperKey, containers.get(upperKey), 0, upperValue);
+                }
+            } else if (lowerValue <= upperValue) {
+                add(lowerKey, containers.get(lowerKey), lowerValue, upperValue);
+            }
+            updatedAfterCachedForSize = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void add(long key, Container container, long start, long end) {
+        if (container == null) {
+            container = new RunContainer();
+            containers.put(key, container);
+        } else if (container instanceof BitmapContainer && (start < 0 || end > BitmapContainer.MAX_VALUE)) {
+            container = ((BitmapContainer) container).toRuns();
+            containers.put(key, container);
+        }
+        container.add(start, end);
+
+        if (container instanceof RunContainer && ((RunContainer) container).shouldConvertToBitmap()) {
+            containers.put(key, ((RunContainer) container).toBitmap());
+        }
+    }
+
+    private boolean isValid(long key, long value) {
+        return key != LongPair.earliest.getKey() && value != LongPair.earliest.getValue()
+                && key != LongPair.latest.getKey() && value != LongPair.latest.getValue();
+    }
+
+    @Override
+    public boolean contains(long key, long value) {
+        lock.readLock().lock();
+        try {
+            Container container = containers.get(key);
+            return container != null && container.contains(value);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Range<T> rangeContaining(long key, long value) {
+        lock.readLock().lock();
+        try {
+            Container container = containers.get(key);
+            if (container == null || !container.contains(value)) {
+                // if position is not part of any range then return null
+                return null;
+            }
+            return Range.closed(consumer.apply(key, container.rangeStart(value)),
+                    consumer.apply(key, container.rangeEnd(value)));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeAtMost(long key, long value) {
+        lock.writeLock().lock();
+        try {
+            containers.headMap(key, false).clear();
+            Container container = containers.get(key);
+            if (container != null) {
+                container.removeAtMost(value);
+                if (container.isEmpty()) {
+                    containers.remove(key);
+                }
+            }
+            updatedAfterCachedForSize = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        lock.readLock().lock();
+        try {
+            // Empty containers are always removed
+            return containers.isEmpty();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            containers.clear();
+            updatedAfterCachedForSize = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Range<T> span() {
+        lock.readLock().lock();
+        try {
+            if (containers.isEmpty()) {
+                return null;
+            }
+            Map.Entry<Long, Container> first = containers.firstEntry();
+            Map.Entry<Long, Container> last = containers.lastEntry();
+            return Range.openClosed(consumer.apply(first.getKey(), first.getValue().first() - 1),
+                    consumer.apply(last.getKey(), last.getValue().last()));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Range<T>> asRanges() {
+        List<Range<T>> ranges = new ArrayList<>();
+        forEach((range) -> {
+            ranges.add(range);
+            return true;
+        });
+        return ranges;
+    }
+
+    @Override
+    public void forEach(RangeProcessor<T> action) {
+        forEach(action, consumer);
+    }
+
+    @Override
+    public void forEach(RangeProcessor<T> action, LongPairConsumer<? extends T> consumer) {
+        lock.readLock().lock();
+        try {
+            for (Map.Entry<Long, Container> entry : containers.entrySet()) {
+                long key = entry.getKey();
+                boolean completed = !entry.getValue().forEachRange((start, end) ->
+                        action.process(Range.openClosed(consumer.apply(key, start - 1), consumer.apply(key, end))));
+                if (completed) {
+                    break;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        if (updatedAfterCachedForSize) {
+            lock.readLock().lock();
+            try {
+                int size = 0;
+                for (Container container : containers.values()) {
+                    size += container.rangeCount();
+                }
+                cachedSize = size;
+                updatedAfterCachedForSize = false;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+        return cachedSize;
+    }
+
+    /**
+     * Returns the total number of values in the set, eg: the number of individually deleted entries.
+     *
+     * @return the number of values in all the ranges of the set
+     */
+    public long cardinality() {
+        lock.readLock().lock();
+        try {
+            long cardinality = 0;
+            for (Container container : containers.values()) {
+                cardinality += container.cardinality();
+            }
+            return cardinality;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns an estimation of the memory used by the ranges of the set, not including the per-key overhead.
+     *
+     * @return the estimated size in bytes
+     */
+    public long getEstimatedSizeInBytes() {
+        lock.readLock().lock();
+        try {
+            long size = 0;
+            for (Container container : containers.values()) {
+                size += container.sizeInBytes();
+            }
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Range<T> firstRange() {
+        lock.readLock().lock();
+        try {
+            if (containers.isEmpty()) {
+                return null;
+            }
+            Map.Entry<Long, Container> first = containers.firstEntry();
+            long lower = first.getValue().first();
+            long upper = first.getValue().rangeEnd(lower);
+            return Range.openClosed(consumer.apply(first.getKey(), lower - 1), consumer.apply(first.getKey(), upper));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Range<T> lastRange() {
+        lock.readLock().lock();
+        try {
+            if (containers.isEmpty()) {
+                return null;
+            }
+            Map.Entry<Long, Container> last = containers.lastEntry();
+            long upper = last.getValue().last();
+            long lower = last.getValue().rangeStart(upper);
+            return Range.openClosed(consumer.apply(last.getKey(), lower - 1), consumer.apply(last.getKey(), upper));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder toString = new StringBuilder();
+        toString.append("[");
+        forEach((range) -> {
+            if (toString.length() > 1) {
+                toString.append(",");
+            }
+            toString.append(range);
+            return true;
+        });
+        toString.append("]");
+        return toString.toString();
+    }
+
+    private interface RunProcessor {
+        /**
+         * @return false if there is no further processing required
+         */
+        boolean process(long start, long end);
+    }
+
+    /**
+     * The ranges of a single key. A container is never empty while in the set.
+     */
+    private interface Container {
+        void add(long start, long end);
+
+        void removeAtMost(long value);
+
+        boolean contains(long value);
+
+        long rangeStart(long value);
+
+        long rangeEnd(long value);
+
+        long first();
+
+        long last();
+
+        boolean isEmpty();
+
+        boolean forEachRange(RunProcessor processor);
+
+        int rangeCount();
+
+        long cardinality();
+
+        long sizeInBytes();
+    }
+
+    /**
+     * Sorted array of disjoint, non-adjacent [start, end] runs.
+     */
+    static final class RunContainer implements Container {
+        private static final int INITIAL_CAPACITY = 4;
+
+        // Runs are stored as {start0, end0, start1, end1...}
+        private long[] runs = new long[INITIAL_CAPACITY * 2];
+        private int count = 0;
+
+        @Override
+        public void add(long start, long end) {
+            // Runs overlapping or adjacent to [start, end] are merged with it
+            int first = firstRunEndingAtLeast(start - 1);
+            int last = lastRunStartingAtMost(end + 1);
+            if (first > last) {
+                insert(first, start, end);
+                return;
+            }
+
+            runs[2 * first] = Math.min(start, runs[2 * first]);
+            runs[2 * first + 1] = Math.max(end, runs[2 * last + 1]);
+            delete(first + 1, last - first);
+        }
+
+        @Override
+        public void removeAtMost(long value) {
+            int first = firstRunEndingAtLeast(value + 1);
+            delete(0, first);
+            if (count > 0 && runs[0] <= value) {
+                runs[0] = value + 1;
+            }
+        }
+
+        @Override
+        public boolean contains(long value) {
+            int idx = lastRunStartingAtMost(value);
+            return idx >= 0 && runs[2 * idx + 1] >= value;
+        }
+
+        @Override
+        public long rangeStart(long value) {
+            return runs[2 * lastRunStartingAtMost(value)];
+        }
+
+        @Override
+        public long rangeEnd(long value) {
+            return runs[2 * lastRunStartingAtMost(value) + 1];
+        }
+
+        @Override
+        public long first() {
+            return runs[0];
+        }
+
+        @Override
+        public long last() {
+            return runs[2 * count - 1];
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return count == 0;
+        }
+
+        @Override
+        public boolean forEachRange(RunProcessor processor) {
+            for (int i = 0; i < count; i++) {
+                if (!processor.process(runs[2 * i], runs[2 * i + 1])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int rangeCount() {
+            return count;
+        }
+
+        @Override
+        public long cardinality() {
+            long cardinality = 0;
+            for (int i = 0; i < count; i++) {
+                cardinality += runs[2 * i + 1] - runs[2 * i] + 1;
+            }
+            return cardinality;
+        }
+
+        @Override
+        public long sizeInBytes() {
+            return runs.length * Long.BYTES;
+        }
+
+        /**
+         * A bitmap is used once it takes less memory than the runs.
+         */
+        boolean shouldConvertToBitmap() {
+            return count > INITIAL_CAPACITY && last() < BitmapContainer.MAX_VALUE
+                    && (long) count * 2 * Long.BYTES > BitmapContainer.sizeInBytes(last());
+        }
+
+        BitmapContainer toBitmap() {
+            BitmapContainer bitmap = new BitmapContainer(last());
+            forEachRange((start, end) -> {
+                bitmap.add(start, end);
+                return true;
+            });
+            return bitmap;
+        }
+
+        private int firstRunEndingAtLeast(long value) {
+            int low = 0;
+            int high = count;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (runs[2 * mid + 1] < value) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        private int lastRunStartingAtMost(long value) {
+            int low = 0;
+            int high = count;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (runs[2 * mid] <= value) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low - 1;
+        }
+
+        private void insert(int idx, long start, long end) {
+            if (2 * (count + 1) > runs.length) {
+                runs = Arrays.copyOf(runs, runs.length * 2);
+            }
+            System.arraycopy(runs, 2 * idx, runs, 2 * idx + 2, 2 * (count - idx));
+            runs[2 * idx] = start;
+            runs[2 * idx + 1] = end;
+            count++;
+        }
+
+        private void delete(int idx, int n) {
+            if (n <= 0) {
+                return;
+            }
+            System.arraycopy(runs, 2 * (idx + n), runs, 2 * idx, 2 * (count - idx - n));
+            count -= n;
+            if (count > INITIAL_CAPACITY && 4 * count < runs.length / 2) {
+                // Shrink the array when it's mostly empty, to give back the memory after a mark-delete
+                runs = Arrays.copyOf(runs, runs.length / 2);
+            }
+        }
+    }
+
+    /**
+     * One bit per value, for keys with many small ranges.
+     */
+    static final class BitmapContainer implements Container {
+        static final long MAX_VALUE = Integer.MAX_VALUE - 1;
+
+        private final BitSet bits;
+
+        BitmapContainer(long maxValue) {
+            this.bits = new BitSet((int) maxValue + 1);
+        }
+
+        static long sizeInBytes(long maxValue) {
+            return (maxValue / Long.SIZE + 1) * Long.BYTES;
+        }
+
+        @Override
+        public void add(long start, long end) {
+            bits.set((int) start, (int) Math.min(end, MAX_VALUE) + 1);
+        }
+
+        @Override
+        public void removeAtMost(long value) {
+            bits.clear(0, (int) Math.min(value, MAX_VALUE) + 1);
+        }
+
+        @Override
+        public boolean contains(long value) {
+            return value >= 0 && value <= MAX_VALUE && bits.get((int) value);
+        }
+
+        @Override
+        public long rangeStart(long value) {
+            return bits.previousClearBit((int) value) + 1;
+        }
+
+        @Override
+        public long rangeEnd(long value) {
+            return bits.nextClearBit((int) value) - 1;
+        }
+
+        @Override
+        public long first() {
+            return bits.nextSetBit(0);
+        }
+
+        @Override
+        public long last() {
+            return bits.length() - 1;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return bits.isEmpty();
+        }
+
+        @Override
+        public boolean forEachRange(RunProcessor processor) {
+            int start = bits.nextSetBit(0);
+            while (start >= 0) {
+                int end = bits.nextClearBit(start);
+                if (!processor.process(start, end - 1)) {
+                    return false;
+                }
+                start = bits.nextSetBit(end);
+            }
+            return true;
+        }
+
+        @Override
+        public int rangeCount() {
+            int count = 0;
+            int start = bits.nextSetBit(0);
+            while (start >= 0) {
+                count++;
+                start = bits.nextSetBit(bits.nextClearBit(start));
+            }
+            return count;
+        }
+
+        @Override
+        public long cardinality() {
+            return bits.cardinality();
+        }
+
+        @Override
+        public long sizeInBytes() {
+            return bits.size() / Byte.SIZE;
+        }
+
+        RunContainer toRuns() {
+            RunContainer runs = new RunContainer();
+            forEachRange((start, end) -> {
+                runs.add(start, end);
+                return true;
+            });
+            return runs;
+        }
+    }
+}
@@ -39,6 +39,7 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ThreadFactory;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.bookkeeper.common.util.affinity.CpuAffinity;
+import org.apache.pulsar.client.api.IoTransport;
 
 @SuppressWarnings("checkstyle:JavadocType")
 @Slf4j
@@ -48,6 +49,27 @@ public class EventLoopUtil {
      * @return an EventLoopGroup suitable for the current platform
      */
     public static EventLoopGroup newEventLoopGroup(int nThreads, boolean enableBusyWait, ThreadFactory threadFactory) {
+        return newEventLoopGroup(nThreads, enableBusyWait, IoTransport.AUTO, threadFactory);
+    }
+
+    /**
+     * @return an EventLoopGroup of the requested transport, or the one suitable for the current platform when the
+     *         requested transport is not available
+     */
+    public static EventLoopGroup newEventLoopGroup(int nThreads, boolean enableBusyWait, IoTransport transport,
+                                                   ThreadFactory threadFactory) {
+        if (transport == IoTransport.IO_URING) {
+            if (IoUring.isAvailable()) {
+                return IoUring.newEventLoopGroup(nThreads, threadFactory);
+            }
+            log.warn("The io_uring transport is not available, falling back to the default transport",
+                    IoUring.unavailabilityCause());
+        } else if (transport == IoTransport.NIO) {
+            return new NioEventLoopGroup(nThreads, threadFactory);
+        } else if (transport == IoTransport.EPOLL && !Epoll.isAvailable()) {
+            log.warn("The epoll transport is not available, falling back to NIO", Epoll.unavailabilityCause());
+        }
+
         if (Epoll.isAvailable()) {
             if (!enableBusyWait) {
                 // Regular Epoll based event loop
@@ -87,6 +109,8 @@ public class EventLoopUtil {
     public static Class<? extends SocketChannel> getClientSocketChannelClass(EventLoopGroup eventLoopGroup) {
         if (eventLoopGroup instanceof EpollEventLoopGroup) {
             return EpollSocketChannel.class;
+        } else if (IoUring.isEventLoopGroup(eventLoopGroup)) {
+            return IoUring.socketChannelClass();
         } else {
             return NioSocketChannel.class;
         }
@@ -95,6 +119,8 @@ public class EventLoopUtil {
     public static Class<? extends ServerSocketChannel> getServerSocketChannelClass(EventLoopGroup eventLoopGroup) {
         if (eventLoopGroup instanceof EpollEventLoopGroup) {
             return EpollServerSocketChannel.class;
+        } else if (IoUring.isEventLoopGroup(eventLoopGroup)) {
+            return IoUring.serverSocketChannelClass();
         } else {
             return NioServerSocketChannel.class;
         }
@@ -103,17 +129,98 @@ public class EventLoopUtil {
     public static Class<? extends DatagramChannel> getDatagramChannelClass(EventLoopGroup eventLoopGroup) {
         if (eventLoopGroup instanceof EpollEventLoopGroup) {
             return EpollDatagramChannel.class;
+        } else if (IoUring.isEventLoopGroup(eventLoopGroup)) {
+            return IoUring.datagramChannelClass();
         } else {
             return NioDatagramChannel.class;
         }
     }
 
     public static void enableTriggeredMode(ServerBootstrap bootstrap) {
-        if (Epoll.isAvailable()) {
+        EventLoopGroup childGroup = bootstrap.config().childGroup();
+        if (childGroup != null ? childGroup instanceof EpollEventLoopGroup : Epoll.isAvailable()) {
             bootstrap.childOption(EpollChannelOption.EPOLL_MODE, EpollMode.LEVEL_TRIGGERED);
         }
     }
 
+    /**
+     * The io_uring transport of the netty incubator, loaded by reflection so that the library stays an optional
+     * runtime dependency.
+     */
+    private static final class IoUring {
+        private static final String PACKAGE = "io.netty.incubator.channel.uring.";
+
+        private static final Throwable UNAVAILABILITY_CAUSE;
+        private static final Class<? extends EventLoopGroup> EVENT_LOOP_GROUP_CLASS;
+        private static final Class<? extends SocketChannel> SOCKET_CHANNEL_CLASS;
+        private static final Class<? extends ServerSocketChannel> SERVER_SOCKET_CHANNEL_CLASS;
+        private static final Class<? extends DatagramChannel> DATAGRAM_CHANNEL_CLASS;
+
+        static {
+            Throwable cause = null;
+            Class<? extends EventLoopGroup> eventLoopGroupClass = null;
+            Class<? extends SocketChannel> socketChannelClass = null;
+            Class<? extends ServerSocketChannel> serverSocketChannelClass = null;
+            Class<? extends DatagramChannel> datagramChannelClass = null;
+            try {
+                Class<?> ioUring = Class.forName(PACKAGE + "IOUring");
+                if ((Boolean) ioUring.getMethod("isAvailable").invoke(null)) {
+                    eventLoopGroupClass = Class.forName(PACKAGE + "IOUringEventLoopGroup")
+                            .asSubclass(EventLoopGroup.class);
+                    socketChannelClass = Class.forName(PACKAGE + "IOUringSocketChannel")
+                            .asSubclass(SocketChannel.class);
+                    serverSocketChannelClass = Class.forName(PACKAGE + "IOUringServerSocketChannel")
+                            .asSubclass(ServerSocketChannel.class);
+                    datagramChannelClass = Class.forName(PACKAGE + "IOUringDatagramChannel")
+                            .asSubclass(DatagramChannel.class);
+                } else {
+                    cause = (Throwable) ioUring.getMethod("unavailabilityCause").invoke(null);
+                }
+            } catch (Throwable t) {
+                cause = t;
+                eventLoopGroupClass = null;
+            }
+            UNAVAILABILITY_CAUSE = cause;
+            EVENT_LOOP_GROUP_CLASS = eventLoopGroupClass;
+            SOCKET_CHANNEL_CLASS = socketChannelClass;
+            SERVER_SOCKET_CHANNEL_CLASS = serverSocketChannelClass;
+            DATAGRAM_CHANNEL_CLASS = datagramChannelClass;
+        }
+
+        static boolean isAvailable() {
+            return EVENT_LOOP_GROUP_CLASS != null;
+        }
+
+        static Throwable unavailabilityCause() {
+            return UNAVAILABILITY_CAUSE;
+        }
+
+        static boolean isEventLoopGroup(EventLoopGroup eventLoopGroup) {
+            return EVENT_LOOP_GROUP_CLASS != null && EVENT_LOOP_GROUP_CLASS.isInstance(eventLoopGroup);
+        }
+
+        static EventLoopGroup newEventLoopGroup(int nThreads, ThreadFactory threadFactory) {
+            try {
+                return EVENT_LOOP_GROUP_CLASS.getConstructor(int.class, ThreadFactory.class)
+                        .newInstance(nThreads, threadFactory);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Failed to create the io_uring event loop group", e);
+            }
+        }
+
+        static Class<? extends SocketChannel> socketChannelClass() {
+            return SOCKET_CHANNEL_CLASS;
+        }
+
+        static Class<? extends ServerSocketChannel> serverSocketChannelClass() {
+            return SERVER_SOCKET_CHANNEL_CLASS;
+        }
+
+        static Class<? extends DatagramChannel> datagramChannelClass() {
+            return DATAGRAM_CHANNEL_CLASS;
+        }
+    }
+
     /**
      * Shutdowns the EventLoopGroup gracefully. Returns a {@link CompletableFuture}
      * @param eventLoopGroup the event loop to shutdown
@@ -20,23 +20,32 @@ package org.apache.pulsar.common.protocol;
 
 import static org.apache.pulsar.common.protocol.Commands.serializeMetadataAndPayload;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertTrue;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.CompositeByteBuf;
 
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.apache.commons.lang3.tuple.Triple;
 import org.apache.pulsar.common.allocator.PulsarByteBufAllocator;
+import org.apache.pulsar.common.api.proto.BaseCommand;
 import org.apache.pulsar.common.api.proto.BrokerEntryMetadata;
+import org.apache.pulsar.common.api.proto.CommandAck;
 import org.apache.pulsar.common.api.proto.CommandProducer;
+import org.apache.pulsar.common.api.proto.CommandSendReceipt;
 import org.apache.pulsar.common.api.proto.CommandSubscribe;
 import org.apache.pulsar.common.api.proto.MessageMetadata;
+import org.apache.pulsar.common.api.proto.ProtocolVersion;
 import org.apache.pulsar.common.intercept.BrokerEntryMetadataInterceptor;
 import org.apache.pulsar.common.intercept.BrokerEntryMetadataUtils;
+import org.apache.pulsar.common.util.collections.ConcurrentBitSetRecyclable;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
@@ -219,6 +228,73 @@ public class CommandUtilsTests {
         assertEquals(new String(content, StandardCharsets.UTF_8), data);
     }
 
+    @Test
+    public void testMultiMessageAckWithRanges() {
+        ConcurrentBitSetRecyclable bitSet = ConcurrentBitSetRecyclable.create();
+        bitSet.set(0, 3);
+        List<Triple<Long, Long, ConcurrentBitSetRecyclable>> entries = new ArrayList<>();
+        entries.add(Triple.of(1L, 1L, null));
+        entries.add(Triple.of(1L, 2L, null));
+        entries.add(Triple.of(1L, 3L, null));
+        entries.add(Triple.of(1L, 5L, null));
+        entries.add(Triple.of(2L, 6L, null));
+        entries.add(Triple.of(2L, 7L, null));
+        entries.add(Triple.of(2L, 8L, bitSet));
+
+        ByteBuf buf = Commands.newMultiMessageAck(1, entries, -1, true);
+        CommandAck ack = parseCommand(buf).getAck();
+        assertEquals(ack.getAckRangesCount(), 2);
+        assertEquals(ack.getAckRangeAt(0).getLedgerId(), 1);
+        assertEquals(ack.getAckRangeAt(0).getStartEntryId(), 1);
+        assertEquals(ack.getAckRangeAt(0).getEndEntryId(), 3);
+        assertEquals(ack.getAckRangeAt(1).getLedgerId(), 2);
+        assertEquals(ack.getAckRangeAt(1).getStartEntryId(), 6);
+        assertEquals(ack.getAckRangeAt(1).getEndEntryId(), 7);
+        assertEquals(ack.getMessageIdsCount(), 2);
+        assertEquals(ack.getMessageIdAt(0).getEntryId(), 5);
+        assertEquals(ack.getMessageIdAt(0).getAckSetsCount(), 0);
+        assertEquals(ack.getMessageIdAt(1).getEntryId(), 8);
+        assertTrue(ack.getMessageIdAt(1).getAckSetsCount() > 0);
+        buf.release();
+
+        entries.set(6, Triple.of(2L, 8L, null));
+        buf = Commands.newMultiMessageAck(1, entries, -1, false);
+        ack = parseCommand(buf).getAck();
+        assertEquals(ack.getAckRangesCount(), 0);
+        assertEquals(ack.getMessageIdsCount(), entries.size());
+        buf.release();
+    }
+
+    @Test
+    public void testBatchedSendReceipt() {
+        ByteBuf buf = Commands.serializeWithSize(Commands.newSendReceiptCommand(1, 10, 20, 14, 14, 3, 24));
+        CommandSendReceipt receipt = parseCommand(buf).getSendReceipt();
+        assertTrue(receipt.hasFirstSequenceId());
+        assertEquals(receipt.getFirstSequenceId(), 10);
+        assertEquals(receipt.getFirstEntryId(), 20);
+        assertEquals(receipt.getSequenceId(), 14);
+        assertEquals(receipt.getMessageId().getLedgerId(), 3);
+        assertEquals(receipt.getMessageId().getEntryId(), 24);
+        buf.release();
+
+        buf = Commands.newSendReceipt(1, 14, 14, 3, 24);
+        receipt = parseCommand(buf).getSendReceipt();
+        assertFalse(receipt.hasFirstSequenceId());
+        assertFalse(receipt.hasFirstEntryId());
+        buf.release();
+
+        assertFalse(Commands.peerSupportsBatchedSendReceipts(ProtocolVersion.v18.getValue()));
+        assertTrue(Commands.peerSupportsBatchedSendReceipts(ProtocolVersion.v19.getValue()));
+    }
+
+    private static BaseCommand parseCommand(ByteBuf buf) {
+        buf.skipBytes(4);
+        int cmdSize = (int) buf.readUnsignedInt();
+        BaseCommand cmd = new BaseCommand();
+        cmd.parseFrom(buf, cmdSize);
+        return cmd;
+    }
+
     public Set<BrokerEntryMetadataInterceptor> getBrokerEntryMetadataInterceptors() {
         Set<String> interceptorNames = new HashSet<>();
         interceptorNames.add("org.apache.pulsar.common.intercept.AppendBrokerTimestampMetadataInterceptor");
@@ -0,0 +1,58 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.common.protocol;
+
+import static org.testng.Assert.assertEquals;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.flush.FlushConsolidationHandler;
+import org.testng.annotations.Test;
+
+public class FlushStatsHandlerTest {
+
+    @Test
+    public void testCountWritesAndFlushes() {
+        FlushStatsHandler stats = new FlushStatsHandler();
+        EmbeddedChannel channel = new EmbeddedChannel(stats);
+        for (int i = 0; i < 10; i++) {
+            channel.writeAndFlush(Unpooled.wrappedBuffer(new byte[] { (byte) i }));
+        }
+        assertEquals(stats.getWrites(), 10);
+        assertEquals(stats.getFlushes(), 10);
+        assertEquals(channel.outboundMessages().size(), 10);
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    public void testConsolidatedFlushes() {
+        FlushStatsHandler stats = new FlushStatsHandler();
+        EmbeddedChannel channel = new EmbeddedChannel(stats, new FlushConsolidationHandler(4, true));
+        for (int i = 0; i < 10; i++) {
+            channel.writeAndFlush(Unpooled.wrappedBuffer(new byte[] { (byte) i }));
+        }
+        // every 4th flush goes through right away, the remaining ones are grouped in a task of the event loop
+        assertEquals(stats.getFlushes(), 2);
+        channel.runPendingTasks();
+        assertEquals(stats.getWrites(), 10);
+        assertEquals(stats.getFlushes(), 3);
+        assertEquals(channel.outboundMessages().size(), 10);
+        channel.finishAndReleaseAll();
+    }
+}
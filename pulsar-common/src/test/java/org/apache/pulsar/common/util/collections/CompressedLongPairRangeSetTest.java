@@ -0,0 +1,176 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.common.util.collections;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import com.google.common.collect.Range;
+import java.util.List;
+import java.util.Random;
+import org.apache.pulsar.common.util.collections.LongPairRangeSet.LongPair;
+import org.apache.pulsar.common.util.collections.LongPairRangeSet.LongPairConsumer;
+import org.testng.annotations.Test;
+
+public class CompressedLongPairRangeSetTest {
+
+    static final LongPairConsumer<LongPair> consumer = (key, value) -> new LongPair(key, value);
+
+    @Test
+    public void testAddForSameKey() {
+        CompressedLongPairRangeSet<LongPair> set = new CompressedLongPairRangeSet<>(consumer);
+        set.addOpenClosed(0, -1, 0, 5);
+        set.addOpenClosed(0, 7, 0, 8);
+        set.addOpenClosed(0, 9, 0, 10);
+        set.addOpenClosed(0, 8, 0, 9);
+        set.addOpenClosed(0, 97, 0, 99);
+        set.addOpenClosed(0, 101, 0, 106);
+        // overlapping with the last 2 ranges
+        set.addOpenClosed(0, 98, 0, 103);
+
+        List<Range<LongPair>> ranges = set.asRanges();
+        assertEquals(ranges.size(), 3);
+        assertEquals(set.size(), 3);
+        assertEquals(ranges.get(0), Range.openClosed(new LongPair(0, -1), new LongPair(0, 5)));
+        assertEquals(ranges.get(1), Range.openClosed(new LongPair(0, 7), new LongPair(0, 10)));
+        assertEquals(ranges.get(2), Range.openClosed(new LongPair(0, 97), new LongPair(0, 106)));
+        assertEquals(set.cardinality(), 6 + 3 + 9);
+        assertEquals(set.toString(), "[(0:-1..0:5],(0:7..0:10],(0:97..0:106]]");
+    }
+
+    @Test
+    public void testAddForDifferentKey() {
+        CompressedLongPairRangeSet<LongPair> set = new CompressedLongPairRangeSet<>(consumer);
+        set.addOpenClosed(0, 98, 0, 99);
+        set.addOpenClosed(0, 100, 1, 5);
+        set.addOpenClosed(1, 10, 1, 15);
+        set.addOpenClosed(1, 20, 2, 10);
+
+        List<Range<LongPair>> ranges = set.asRanges();
+        int count = 0;
+        assertEquals(ranges.get(count++), Range.openClosed(new LongPair(0, 98), new LongPair(0, 99)));
+        assertEquals(ranges.get(count++), Range.openClosed(new LongPair(1, -1), new LongPair(1, 5)));
+        assertEquals(ranges.get(count++), Range.openClosed(new LongPair(1, 10), new LongPair(1, 15)));
+        assertEquals(ranges.get(count++), Range.openClosed(new LongPair(2, -1), new LongPair(2, 10)));
+        assertEquals(set.span(), Range.openClosed(new LongPair(0, 98), new LongPair(2, 10)));
+        assertEquals(set.firstRange(), Range.openClosed(new LongPair(0, 98), new LongPair(0, 99)));
+        assertEquals(set.lastRange(), Range.openClosed(new LongPair(2, -1), new LongPair(2, 10)));
+    }
+
+    @Test
+    public void testRangeContainingAndRemoveAtMost() {
+        CompressedLongPairRangeSet<LongPair> set = new CompressedLongPairRangeSet<>(consumer);
+        set.addOpenClosed(0, 4, 0, 10);
+        set.addOpenClosed(0, 14, 0, 20);
+        set.addOpenClosed(1, 4, 1, 10);
+
+        assertTrue(set.contains(0, 5));
+        assertFalse(set.contains(0, 4));
+        assertEquals(set.rangeContaining(0, 7), Range.closed(new LongPair(0, 5), new LongPair(0, 10)));
+        assertEquals(set.rangeContaining(1, 10), Range.closed(new LongPair(1, 5), new LongPair(1, 10)));
+        assertNull(set.rangeContaining(0, 12));
+        assertNull(set.rangeContaining(2, 0));
+
+        set.removeAtMost(0, 16);
+        assertEquals(set.asRanges().get(0), Range.openClosed(new LongPair(0, 16), new LongPair(0, 20)));
+        assertEquals(set.size(), 2);
+
+        set.removeAtMost(1, 5);
+        assertEquals(set.asRanges().get(0), Range.openClosed(new LongPair(1, 5), new LongPair(1, 10)));
+        assertEquals(set.size(), 1);
+
+        set.removeAtMost(1, 10);
+        assertTrue(set.isEmpty());
+        assertNull(set.span());
+        assertNull(set.firstRange());
+        assertNull(set.lastRange());
+        assertEquals(set.size(), 0);
+    }
+
+    @Test
+    public void testBoundedMemoryWithSparseAcks() {
+        CompressedLongPairRangeSet<LongPair> set = new CompressedLongPairRangeSet<>(consumer);
+        // ack every other entry, the ranges are stored as a bitmap
+        int entries = 100_000;
+        for (int i = 0; i < entries; i += 2) {
+            set.addOpenClosed(0, i - 1, 0, i);
+        }
+        assertEquals(set.size(), entries / 2);
+        assertEquals(set.cardinality(), entries / 2);
+        // 1 bit per entry, plus the growth of the bitmap
+        assertTrue(set.getEstimatedSizeInBytes() <= entries / 4, "size: " + set.getEstimatedSizeInBytes());
+
+        // fill the holes, the ranges are merged
+        for (int i = 1; i < entries; i += 2) {
+            set.addOpenClosed(0, i - 1, 0, i);
+        }
+        assertEquals(set.size(), 1);
+        assertEquals(set.cardinality(), entries);
+        assertEquals(set.firstRange(), Range.openClosed(new LongPair(0, -1), new LongPair(0, entries - 1)));
+
+        // larger values than the bitmap can hold are still supported
+        set.addOpenClosed(0, Integer.MAX_VALUE, 0, Integer.MAX_VALUE + 10L);
+        assertEquals(set.size(), 2);
+        assertTrue(set.contains(0, Integer.MAX_VALUE + 5L));
+        assertEquals(set.lastRange(),
+                Range.openClosed(new LongPair(0, Integer.MAX_VALUE), new LongPair(0, Integer.MAX_VALUE + 10L)));
+    }
+
+    @Test
+    public void testCompareWithOpenRangeSet() {
+        CompressedLongPairRangeSet<LongPair> set = new CompressedLongPairRangeSet<>(consumer);
+        ConcurrentOpenLongPairRangeSet<LongPair> expected = new ConcurrentOpenLongPairRangeSet<>(consumer);
+        Random random = new Random(0);
+
+        for (int i = 0; i < 20_000; i++) {
+            long key = random.nextInt(4);
+            long value = random.nextInt(2_000);
+            if (random.nextInt(100) == 0) {
+                set.removeAtMost(key, value);
+                expected.removeAtMost(key, value);
+            } else {
+                int length = random.nextInt(3);
+                set.addOpenClosed(key, value - 1, key, value + length);
+                expected.addOpenClosed(key, value - 1, key, value + length);
+            }
+
+            if (i % 1_000 == 0) {
+                assertEquals(set.asRanges(), expected.asRanges());
+                assertEquals(set.size(), expected.size());
+                assertEquals(set.span(), expected.span());
+                assertEquals(set.firstRange(), expected.firstRange());
+                assertEquals(set.lastRange(), expected.lastRange());
+                assertEquals(set.toString(), expected.toString());
+                for (int j = 0; j < 100; j++) {
+                    long k = random.nextInt(4);
+                    long v = random.nextInt(2_000);
+                    assertEquals(set.contains(k, v), expected.contains(k, v));
+                    assertEquals(set.rangeContaining(k, v), expected.rangeContaining(k, v));
+                }
+            }
+        }
+        assertEquals(set.asRanges(), expected.asRanges());
+
+        set.clear();
+        assertTrue(set.isEmpty());
+        assertEquals(set.cardinality(), 0);
+    }
+}
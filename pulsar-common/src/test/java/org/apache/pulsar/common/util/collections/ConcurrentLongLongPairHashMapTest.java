@@ -0,0 +1,188 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.common.util.collections;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import lombok.Cleanup;
+import org.apache.pulsar.common.util.collections.ConcurrentLongPairSet.LongPair;
+import org.testng.annotations.Test;
+
+public class ConcurrentLongLongPairHashMapTest {
+
+    @Test
+    public void testConstructor() {
+        try {
+            new ConcurrentLongLongPairHashMap(0);
+            fail("should have thrown exception");
+        } catch (IllegalArgumentException e) {
+            // ok
+        }
+
+        try {
+            new ConcurrentLongLongPairHashMap(16, 0);
+            fail("should have thrown exception");
+        } catch (IllegalArgumentException e) {
+            // ok
+        }
+
+        try {
+            new ConcurrentLongLongPairHashMap(4, 8);
+            fail("should have thrown exception");
+        } catch (IllegalArgumentException e) {
+            // ok
+        }
+    }
+
+    @Test
+    public void simpleInsertions() {
+        ConcurrentLongLongPairHashMap map = new ConcurrentLongLongPairHashMap(16);
+
+        assertTrue(map.isEmpty());
+        assertTrue(map.putIfAbsent(1, 1, 11, 11));
+        assertFalse(map.isEmpty());
+
+        assertTrue(map.putIfAbsent(2, 2, 22, 22));
+        assertTrue(map.putIfAbsent(3, 3, 33, 33));
+        assertFalse(map.putIfAbsent(3, 3, 44, 44));
+
+        assertEquals(map.size(), 3);
+        assertEquals(map.get(3, 3), new LongPair(33, 33));
+        assertNull(map.get(4, 4));
+
+        map.put(3, 3, 44, 44);
+        assertEquals(map.size(), 3);
+        assertEquals(map.get(3, 3), new LongPair(44, 44));
+
+        assertTrue(map.remove(1, 1));
+        assertFalse(map.remove(1, 1));
+        assertFalse(map.containsKey(1, 1));
+        assertEquals(map.size(), 2);
+
+        assertTrue(map.putIfAbsent(1, 1, 11, 11));
+        assertEquals(map.size(), 3);
+
+        try {
+            map.put(-1, 1, 1, 1);
+            fail("should have thrown exception");
+        } catch (IllegalArgumentException e) {
+            // ok
+        }
+    }
+
+    @Test
+    public void testConditionalRemove() {
+        ConcurrentLongLongPairHashMap map = new ConcurrentLongLongPairHashMap(16);
+        map.put(1, 1, 11, 11);
+
+        assertFalse(map.remove(1, 1, 11, 12));
+        assertFalse(map.remove(2, 1, 11, 11));
+        assertEquals(map.size(), 1);
+
+        assertTrue(map.remove(1, 1, 11, 11));
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void testRehashing() {
+        int n = 16;
+        ConcurrentLongLongPairHashMap map = new ConcurrentLongLongPairHashMap(n / 2, 1);
+        assertEquals(map.capacity(), n);
+        assertEquals(map.size(), 0);
+
+        for (int i = 0; i < n; i++) {
+            map.put(i, i, i + 1, i + 2);
+        }
+
+        assertEquals(map.capacity(), 2 * n);
+        assertEquals(map.size(), n);
+        for (int i = 0; i < n; i++) {
+            assertEquals(map.get(i, i), new LongPair(i + 1, i + 2));
+        }
+    }
+
+    @Test
+    public void testRemoveIfAndForEach() {
+        ConcurrentLongLongPairHashMap map = new ConcurrentLongLongPairHashMap(16);
+        for (int i = 0; i < 10; i++) {
+            map.put(i, i * 10, i, 0);
+        }
+
+        assertEquals(map.removeIf((k1, k2, v1, v2) -> k1 < 5), 5);
+        assertEquals(map.size(), 5);
+
+        List<LongPair> keys = new ArrayList<>();
+        map.forEach((k1, k2, v1, v2) -> {
+            assertEquals(k1, v1);
+            keys.add(new LongPair(k1, k2));
+        });
+        keys.sort(null);
+        assertEquals(keys, map.keys().stream().sorted().collect(Collectors.toList()));
+        assertEquals(keys.get(0), new LongPair(5, 50));
+        assertEquals(keys.size(), 5);
+
+        map.clear();
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void concurrentInsertions() throws Throwable {
+        ConcurrentLongLongPairHashMap map = new ConcurrentLongLongPairHashMap();
+        @Cleanup("shutdownNow")
+        ExecutorService executor = Executors.newCachedThreadPool();
+
+        final int nThreads = 16;
+        final int N = 100_000;
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < nThreads; i++) {
+            final int threadIdx = i;
+
+            futures.add(executor.submit(() -> {
+                Random random = new Random();
+
+                for (int j = 0; j < N; j++) {
+                    long key = Math.abs(random.nextLong());
+                    // Ensure keys are unique
+                    key -= key % (threadIdx + 1);
+
+                    map.put(key, key, threadIdx, j);
+                }
+            }));
+        }
+
+        for (Future<?> future : futures) {
+            future.get();
+        }
+
+        assertEquals(map.size(), N * nThreads);
+    }
+}
@@ -0,0 +1,81 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.common.util.netty;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioDatagramChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.apache.pulsar.client.api.IoTransport;
+import org.testng.annotations.Test;
+
+public class EventLoopUtilTest {
+
+    @Test
+    public void testNioTransport() throws Exception {
+        EventLoopGroup group = EventLoopUtil.newEventLoopGroup(1, false, IoTransport.NIO,
+                new DefaultThreadFactory("test-nio"));
+        try {
+            assertTrue(group instanceof NioEventLoopGroup);
+            assertEquals(EventLoopUtil.getClientSocketChannelClass(group), NioSocketChannel.class);
+            assertEquals(EventLoopUtil.getServerSocketChannelClass(group), NioServerSocketChannel.class);
+            assertEquals(EventLoopUtil.getDatagramChannelClass(group), NioDatagramChannel.class);
+        } finally {
+            EventLoopUtil.shutdownGracefully(group).get();
+        }
+    }
+
+    @Test
+    public void testDefaultTransport() throws Exception {
+        EventLoopGroup group = EventLoopUtil.newEventLoopGroup(1, false, IoTransport.EPOLL,
+                new DefaultThreadFactory("test-epoll"));
+        try {
+            if (Epoll.isAvailable()) {
+                assertTrue(group instanceof EpollEventLoopGroup);
+                assertEquals(EventLoopUtil.getClientSocketChannelClass(group), EpollSocketChannel.class);
+                assertEquals(EventLoopUtil.getServerSocketChannelClass(group), EpollServerSocketChannel.class);
+            } else {
+                assertTrue(group instanceof NioEventLoopGroup);
+            }
+        } finally {
+            EventLoopUtil.shutdownGracefully(group).get();
+        }
+    }
+
+    @Test
+    public void testIoUringFallback() throws Exception {
+        // the io_uring incubator library is not a dependency, the default transport is used instead
+        EventLoopGroup group = EventLoopUtil.newEventLoopGroup(1, false, IoTransport.IO_URING,
+                new DefaultThreadFactory("test-io-uring"));
+        try {
+            assertTrue(group instanceof EpollEventLoopGroup || group instanceof NioEventLoopGroup);
+        } finally {
+            EventLoopUtil.shutdownGracefully(group).get();
+        }
+    }
+}
@@ -19,6 +19,7 @@
 package org.apache.pulsar.metadata.api;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.function.Function;
@@ -53,6 +54,19 @@ public interface MetadataCache<T> {
      */
     CompletableFuture<Optional<CacheGetResult<T>>> getWithStats(String path);
 
+    /**
+     * Tries to fetch several items from the cache, and reads all the missing ones from the store with a single
+     * batched request.
+     * <p>
+     * The returned list has one entry per requested path, in the same order. The entries of the keys that are not
+     * found are empty {@link Optional}s.
+     *
+     * @param paths
+     *            the paths of the objects in the metadata store
+     * @return a future to track the completion of the operation
+     */
+    CompletableFuture<List<Optional<T>>> getAll(List<String> paths);
+
     /**
      * Check if an object is present in cache without triggering a load from the metadata store.
      *
@@ -73,6 +87,19 @@ public interface MetadataCache<T> {
      */
     CompletableFuture<List<String>> getChildren(String path);
 
+    /**
+     * Return the objects stored in all the nodes that are children to the specific path, keyed by the child name and
+     * lexicographically sorted.
+     * <p>
+     * The children are loaded in the cache with a single batched request to the store. If the path itself does not
+     * exist, it will return an empty map.
+     *
+     * @param path
+     *            the path of the parent object in the metadata store
+     * @return a future to track the async request
+     */
+    CompletableFuture<Map<String, T>> getChildrenWithData(String path);
+
     /**
      * Read whether a specific path exists.
      *
@@ -21,11 +21,16 @@ package org.apache.pulsar.metadata.api;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.google.common.annotations.Beta;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
 import java.util.concurrent.CompletableFuture;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
+import org.apache.pulsar.common.util.FutureUtil;
 import org.apache.pulsar.metadata.api.MetadataStoreException.BadVersionException;
 import org.apache.pulsar.metadata.api.MetadataStoreException.NotFoundException;
 
@@ -52,6 +57,25 @@ public interface MetadataStore extends AutoCloseable {
      */
     CompletableFuture<Optional<GetResult>> get(String path);
 
+    /**
+     * Read the values of several keys, identified by their paths.
+     *
+     * The async call will return a future that yields one {@link GetResult} per requested path, in the same order.
+     * The entries of the paths that are not found are empty {@link Optional}s.
+     *
+     * Implementations can read all the keys with a few batched requests to the store, instead of one request per key.
+     *
+     * @param paths
+     *            the paths of the keys to get from the store
+     * @return a future to track the async request
+     */
+    default CompletableFuture<List<Optional<GetResult>>> getAll(List<String> paths) {
+        List<CompletableFuture<Optional<GetResult>>> futures = new ArrayList<>(paths.size());
+        paths.forEach(path -> futures.add(get(path)));
+        return FutureUtil.waitForAll(futures)
+                .thenApply(__ -> futures.stream().map(CompletableFuture::join).collect(Collectors.toList()));
+    }
+
     /**
      * Return all the nodes (lexicographically sorted) that are children to the specific path.
      *
@@ -63,6 +87,32 @@ public interface MetadataStore extends AutoCloseable {
      */
     CompletableFuture<List<String>> getChildren(String path);
 
+    /**
+     * Read the values of all the nodes that are children to the specific path.
+     *
+     * The async call will return a future that yields a map, lexicographically sorted, from the name of each child to
+     * its {@link GetResult}. The children deleted while being read are not included.
+     *
+     * If the path itself does not exist, it will return an empty map.
+     *
+     * @param path
+     *            the path of the parent key
+     * @return a future to track the async request
+     */
+    default CompletableFuture<Map<String, GetResult>> getChildrenWithData(String path) {
+        String prefix = path.endsWith("/") ? path : path + "/";
+        return getChildren(path).thenCompose(children -> getAll(
+                children.stream().map(child -> prefix + child).collect(Collectors.toList()))
+                .thenApply(results -> {
+                    Map<String, GetResult> childrenWithData = new TreeMap<>();
+                    for (int i = 0; i < children.size(); i++) {
+                        String child = children.get(i);
+                        results.get(i).ifPresent(result -> childrenWithData.put(child, result));
+                    }
+                    return childrenWithData;
+                }));
+    }
+
     /**
      * Read whether a specific path exists.
      *
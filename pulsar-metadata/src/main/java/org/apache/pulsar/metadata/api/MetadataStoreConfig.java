@@ -39,4 +39,23 @@ public class MetadataStoreConfig {
      */
     @Builder.Default
     private final boolean allowReadOnlyOperations = false;
+
+    /**
+     * Whether the write operations issued while a previous batch is in flight should be grouped and sent to the store
+     * in a single request, when the implementation supports it.
+     */
+    @Builder.Default
+    private final boolean batchingEnabled = false;
+
+    /**
+     * Maximum number of operations in a single batch.
+     */
+    @Builder.Default
+    private final int batchingMaxOperations = 1000;
+
+    /**
+     * Maximum size of the payload of a single batch, in KB.
+     */
+    @Builder.Default
+    private final int batchingMaxSizeKb = 128;
 }
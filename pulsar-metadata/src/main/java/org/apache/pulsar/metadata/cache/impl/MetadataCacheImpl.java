@@ -26,21 +26,26 @@ import com.github.benmanes.caffeine.cache.Caffeine;
 import com.google.common.annotations.VisibleForTesting;
 import java.io.IOException;
 import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
+import java.util.TreeMap;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.bookkeeper.common.concurrent.FutureUtils;
 import org.apache.pulsar.metadata.api.CacheGetResult;
+import org.apache.pulsar.metadata.api.GetResult;
 import org.apache.pulsar.metadata.api.MetadataCache;
 import org.apache.pulsar.metadata.api.MetadataSerde;
 import org.apache.pulsar.metadata.api.MetadataStore;
@@ -82,6 +87,12 @@ public class MetadataCacheImpl<T> implements MetadataCache<T>, Consumer<Notifica
                         return readValueFromStore(key);
                     }
 
+                    @Override
+                    public CompletableFuture<Map<String, Optional<CacheGetResult<T>>>> asyncLoadAll(
+                            Iterable<? extends String> keys, Executor executor) {
+                        return readValuesFromStore(keys);
+                    }
+
                     @Override
                     public CompletableFuture<Optional<CacheGetResult<T>>> asyncReload(String key,
                             Optional<CacheGetResult<T>> oldValue, Executor executor) {
@@ -107,6 +118,31 @@ public class MetadataCacheImpl<T> implements MetadataCache<T>, Consumer<Notifica
                 });
     }
 
+    private CompletableFuture<Map<String, Optional<CacheGetResult<T>>>> readValuesFromStore(
+            Iterable<? extends String> keys) {
+        List<String> paths = new ArrayList<>();
+        keys.forEach(paths::add);
+        return store.getAll(paths)
+                .thenCompose(results -> {
+                    Map<String, Optional<CacheGetResult<T>>> values = new HashMap<>();
+                    for (int i = 0; i < paths.size(); i++) {
+                        Optional<GetResult> optRes = results.get(i);
+                        if (!optRes.isPresent()) {
+                            values.put(paths.get(i), Optional.empty());
+                            continue;
+                        }
+
+                        try {
+                            T obj = serde.deserialize(optRes.get().getValue());
+                            values.put(paths.get(i), Optional.of(new CacheGetResult<>(obj, optRes.get().getStat())));
+                        } catch (Throwable t) {
+                            return FutureUtils.exception(new ContentDeserializationException(t));
+                        }
+                    }
+                    return FutureUtils.value(values);
+                });
+    }
+
     @Override
     public CompletableFuture<Optional<T>> get(String path) {
         return objCache.get(path)
@@ -118,6 +154,14 @@ public class MetadataCacheImpl<T> implements MetadataCache<T>, Consumer<Notifica
         return objCache.get(path);
     }
 
+    @Override
+    public CompletableFuture<List<Optional<T>>> getAll(List<String> paths) {
+        return objCache.getAll(paths)
+                .thenApply(values -> paths.stream()
+                        .map(path -> values.get(path).map(CacheGetResult::getValue))
+                        .collect(Collectors.toList()));
+    }
+
     @Override
     public Optional<T> getIfCached(String path) {
         CompletableFuture<Optional<CacheGetResult<T>>> future = objCache.getIfPresent(path);
@@ -248,6 +292,21 @@ public class MetadataCacheImpl<T> implements MetadataCache<T>, Consumer<Notifica
         return store.getChildren(path);
     }
 
+    @Override
+    public CompletableFuture<Map<String, T>> getChildrenWithData(String path) {
+        String prefix = path.endsWith("/") ? path : path + "/";
+        return getChildren(path).thenCompose(children -> getAll(
+                children.stream().map(child -> prefix + child).collect(Collectors.toList()))
+                .thenApply(values -> {
+                    Map<String, T> childrenWithData = new TreeMap<>();
+                    for (int i = 0; i < children.size(); i++) {
+                        String child = children.get(i);
+                        values.get(i).ifPresent(value -> childrenWithData.put(child, value));
+                    }
+                    return childrenWithData;
+                }));
+    }
+
     @Override
     public void invalidate(String path) {
         objCache.synchronous().invalidate(path);
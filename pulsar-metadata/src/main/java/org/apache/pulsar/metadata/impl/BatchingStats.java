@@ -0,0 +1,59 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.metadata.impl;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cumulative counters of the write operations sent to the metadata store in batches.
+ */
+public class BatchingStats {
+
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder batchedOperations = new LongAdder();
+    private final LongAdder batchLatencyNanos = new LongAdder();
+
+    void recordBatch(int numOperations, long latencyNanos) {
+        batches.increment();
+        batchedOperations.add(numOperations);
+        batchLatencyNanos.add(latencyNanos);
+    }
+
+    /**
+     * @return the number of batches sent to the store
+     */
+    public long getBatches() {
+        return batches.sum();
+    }
+
+    /**
+     * @return the number of operations sent to the store as part of a batch
+     */
+    public long getBatchedOperations() {
+        return batchedOperations.sum();
+    }
+
+    /**
+     * @return the sum of the latencies of all the batches, from their submission to their response
+     */
+    public double getBatchLatencyMillis() {
+        return (double) batchLatencyNanos.sum() / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
@@ -20,12 +20,19 @@ package org.apache.pulsar.metadata.impl;
 
 import com.google.common.annotations.VisibleForTesting;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Queue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
+import lombok.Getter;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 
@@ -35,6 +42,7 @@ import org.apache.pulsar.common.util.FutureUtil;
 import org.apache.pulsar.metadata.api.GetResult;
 import org.apache.pulsar.metadata.api.MetadataStoreConfig;
 import org.apache.pulsar.metadata.api.MetadataStoreException;
+import org.apache.pulsar.metadata.api.MetadataStoreException.AlreadyClosedException;
 import org.apache.pulsar.metadata.api.MetadataStoreException.AlreadyExistsException;
 import org.apache.pulsar.metadata.api.MetadataStoreException.BadVersionException;
 import org.apache.pulsar.metadata.api.MetadataStoreException.NotFoundException;
@@ -49,6 +57,8 @@ import org.apache.zookeeper.AddWatchMode;
 import org.apache.zookeeper.CreateMode;
 import org.apache.zookeeper.KeeperException;
 import org.apache.zookeeper.KeeperException.Code;
+import org.apache.zookeeper.Op;
+import org.apache.zookeeper.OpResult;
 import org.apache.zookeeper.WatchedEvent;
 import org.apache.zookeeper.Watcher;
 import org.apache.zookeeper.ZooDefs;
@@ -57,13 +67,31 @@ import org.apache.zookeeper.ZooKeeper;
 @Slf4j
 public class ZKMetadataStore extends AbstractMetadataStore implements MetadataStoreExtended, MetadataStoreLifecycle {
 
+    // Max number of reads sent in a single multi request, to keep the responses well under the ZK packet size limit
+    private static final int MAX_READS_PER_MULTI = 100;
+
     private final String metadataURL;
     private final MetadataStoreConfig metadataStoreConfig;
     private final boolean isZkManaged;
     private final ZooKeeper zkc;
     private ZKSessionWatcher sessionWatcher;
+    // Cleared when the ZK servers are too old to support multi-read requests
+    private volatile boolean multiReadSupported = true;
+
+    // The write operations waiting to be sent in a multi request, when batching is enabled. A single batch is in
+    // flight at a time, so that the writes reach ZooKeeper in the order they were issued
+    private final boolean batchingEnabled;
+    private final int batchingMaxOperations;
+    private final int batchingMaxSizeBytes;
+    private final Queue<PendingWrite> pendingWrites = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean batchInFlight = new AtomicBoolean();
+    @Getter
+    private final BatchingStats batchingStats = new BatchingStats();
 
     public ZKMetadataStore(String metadataURL, MetadataStoreConfig metadataStoreConfig) throws MetadataStoreException {
+        this.batchingEnabled = metadataStoreConfig.isBatchingEnabled();
+        this.batchingMaxOperations = Math.max(1, metadataStoreConfig.getBatchingMaxOperations());
+        this.batchingMaxSizeBytes = metadataStoreConfig.getBatchingMaxSizeKb() * 1024;
         try {
             this.metadataURL = metadataURL;
             this.metadataStoreConfig = metadataStoreConfig;
@@ -91,6 +119,9 @@ public class ZKMetadataStore extends AbstractMetadataStore implements MetadataSt
         this.metadataURL = null;
         this.metadataStoreConfig = null;
         this.isZkManaged = false;
+        this.batchingEnabled = false;
+        this.batchingMaxOperations = 0;
+        this.batchingMaxSizeBytes = 0;
         this.zkc = zkc;
         this.sessionWatcher = new ZKSessionWatcher(zkc, this::receivedSessionEvent);
         zkc.addWatch("/", this::handleWatchEvent, AddWatchMode.PERSISTENT_RECURSIVE);
@@ -163,6 +194,84 @@ public class ZKMetadataStore extends AbstractMetadataStore implements MetadataSt
         return future;
     }
 
+    @Override
+    public CompletableFuture<List<Optional<GetResult>>> getAll(List<String> paths) {
+        if (paths.isEmpty()) {
+            return CompletableFuture.completedFuture(Collections.emptyList());
+        }
+
+        List<CompletableFuture<List<Optional<GetResult>>>> batches = new ArrayList<>();
+        for (int i = 0; i < paths.size(); i += MAX_READS_PER_MULTI) {
+            batches.add(multiGet(new ArrayList<>(paths.subList(i, Math.min(paths.size(), i + MAX_READS_PER_MULTI)))));
+        }
+
+        return FutureUtil.waitForAll(batches).thenApply(__ -> {
+            List<Optional<GetResult>> results = new ArrayList<>(paths.size());
+            batches.forEach(batch -> results.addAll(batch.join()));
+            return results;
+        });
+    }
+
+    private CompletableFuture<List<Optional<GetResult>>> multiGet(List<String> paths) {
+        if (!multiReadSupported) {
+            return getEach(paths);
+        }
+
+        CompletableFuture<List<Optional<GetResult>>> future = new CompletableFuture<>();
+
+        try {
+            List<Op> ops = paths.stream().map(Op::getData).collect(Collectors.toList());
+            zkc.multi(ops, (rc, path1, ctx, opResults) -> {
+                execute(() -> {
+                    Code code = Code.get(rc);
+                    if (code == Code.UNIMPLEMENTED) {
+                        log.info("The ZooKeeper servers do not support multi-read requests, reading keys one by one");
+                        multiReadSupported = false;
+                        getEach(paths).thenAccept(future::complete).exceptionally(ex -> {
+                            future.completeExceptionally(ex);
+                            return null;
+                        });
+                        return;
+                    } else if (code != Code.OK || opResults == null || opResults.size() != paths.size()) {
+                        future.completeExceptionally(getException(code != Code.OK ? code : Code.APIERROR,
+                                paths.get(0)));
+                        return;
+                    }
+
+                    List<Optional<GetResult>> results = new ArrayList<>(paths.size());
+                    for (int i = 0; i < paths.size(); i++) {
+                        OpResult opResult = opResults.get(i);
+                        if (opResult instanceof OpResult.GetDataResult) {
+                            OpResult.GetDataResult getDataResult = (OpResult.GetDataResult) opResult;
+                            results.add(Optional.of(new GetResult(getDataResult.getData(),
+                                    getStat(paths.get(i), getDataResult.getStat()))));
+                        } else {
+                            // Each read of a multi-read request fails independently
+                            Code opCode = Code.get(((OpResult.ErrorResult) opResult).getErr());
+                            if (opCode != Code.NONODE) {
+                                future.completeExceptionally(getException(opCode, paths.get(i)));
+                                return;
+                            }
+                            results.add(Optional.empty());
+                        }
+                    }
+                    future.complete(results);
+                }, future);
+            }, null);
+        } catch (Throwable t) {
+            future.completeExceptionally(new MetadataStoreException(t));
+        }
+
+        return future;
+    }
+
+    private CompletableFuture<List<Optional<GetResult>>> getEach(List<String> paths) {
+        List<CompletableFuture<Optional<GetResult>>> futures = paths.stream().map(this::get)
+                .collect(Collectors.toList());
+        return FutureUtil.waitForAll(futures)
+                .thenApply(__ -> futures.stream().map(CompletableFuture::join).collect(Collectors.toList()));
+    }
+
     @Override
     public CompletableFuture<List<String>> getChildrenFromStore(String path) {
         CompletableFuture<List<String>> future = new CompletableFuture<>();
@@ -241,50 +350,47 @@ public class ZKMetadataStore extends AbstractMetadataStore implements MetadataSt
         boolean hasVersion = optExpectedVersion.isPresent();
         int expectedVersion = optExpectedVersion.orElse(-1L).intValue();
 
-        CompletableFuture<Stat> future = new CompletableFuture<>();
-
-        try {
+        if (batchingEnabled) {
+            CompletableFuture<Stat> future = new CompletableFuture<>();
             if (hasVersion && expectedVersion == -1) {
                 CreateMode createMode = getCreateMode(options);
-                ZkUtils.asyncCreateFullPathOptimistic(zkc, path, value, ZooDefs.Ids.OPEN_ACL_UNSAFE,
-                        createMode, (rc, path1, ctx, name) -> {
-                            execute(() -> {
-                                Code code = Code.get(rc);
-                                if (code == Code.OK) {
-                                    future.complete(new Stat(name, 0, 0, 0, createMode.isEphemeral(), true));
-                                } else if (code == Code.NODEEXISTS) {
-                                    // We're emulating a request to create node, so the version is invalid
-                                    future.completeExceptionally(getException(Code.BADVERSION, path));
-                                } else {
-                                    future.completeExceptionally(getException(code, path));
-                                }
-                            }, future);
-                        }, null);
-            } else {
-                zkc.setData(path, value, expectedVersion, (rc, path1, ctx, stat) -> {
-                    execute(() -> {
-                        Code code = Code.get(rc);
-                        if (code == Code.OK) {
-                            future.complete(getStat(path1, stat));
-                        } else if (code == Code.NONODE) {
-                            if (hasVersion) {
-                                // We're emulating here a request to update or create the znode, depending on
-                                // the version
-                                future.completeExceptionally(getException(Code.BADVERSION, path));
+                enqueueWrite(new PendingWrite(Op.create(path, value, ZooDefs.Ids.OPEN_ACL_UNSAFE, createMode),
+                        path.length() + value.length, future, result -> {
+                            Code code = getCode(result);
+                            if (code == Code.NONODE) {
+                                // The parent nodes have to be created first
+                                forward(storeCreate(path, value, createMode), future);
                             } else {
-                                // The z-node does not exist, let's create it first
-                                put(path, value, Optional.of(-1L)).thenAccept(s -> future.complete(s))
-                                        .exceptionally(ex -> {
-                                            future.completeExceptionally(ex.getCause());
-                                            return null;
-                                        });
+                                handleCreateResult(code, path, code == Code.OK
+                                        ? ((OpResult.CreateResult) result).getPath() : null, createMode, future);
                             }
-                        } else {
-                            future.completeExceptionally(getException(code, path));
-                        }
-                    }, future);
-                }, null);
+                        }, () -> forward(storeCreate(path, value, createMode), future)));
+            } else {
+                enqueueWrite(new PendingWrite(Op.setData(path, value, expectedVersion),
+                        path.length() + value.length, future, result -> {
+                            Code code = getCode(result);
+                            handleSetDataResult(code, path, code == Code.OK
+                                    ? ((OpResult.SetDataResult) result).getStat() : null, value, hasVersion, future);
+                        }, () -> forward(storeSetData(path, value, hasVersion, expectedVersion), future)));
             }
+            return future;
+        }
+
+        if (hasVersion && expectedVersion == -1) {
+            return storeCreate(path, value, getCreateMode(options));
+        } else {
+            return storeSetData(path, value, hasVersion, expectedVersion);
+        }
+    }
+
+    private CompletableFuture<Stat> storeCreate(String path, byte[] value, CreateMode createMode) {
+        CompletableFuture<Stat> future = new CompletableFuture<>();
+
+        try {
+            ZkUtils.asyncCreateFullPathOptimistic(zkc, path, value, ZooDefs.Ids.OPEN_ACL_UNSAFE,
+                    createMode, (rc, path1, ctx, name) -> {
+                        execute(() -> handleCreateResult(Code.get(rc), path, name, createMode, future), future);
+                    }, null);
         } catch (Throwable t) {
             future.completeExceptionally(new MetadataStoreException(t));
         }
@@ -292,32 +398,214 @@ public class ZKMetadataStore extends AbstractMetadataStore implements MetadataSt
         return future;
     }
 
+    private void handleCreateResult(Code code, String path, String name, CreateMode createMode,
+                                    CompletableFuture<Stat> future) {
+        if (code == Code.OK) {
+            future.complete(new Stat(name, 0, 0, 0, createMode.isEphemeral(), true));
+        } else if (code == Code.NODEEXISTS) {
+            // We're emulating a request to create node, so the version is invalid
+            future.completeExceptionally(getException(Code.BADVERSION, path));
+        } else {
+            future.completeExceptionally(getException(code, path));
+        }
+    }
+
+    private CompletableFuture<Stat> storeSetData(String path, byte[] value, boolean hasVersion, int expectedVersion) {
+        CompletableFuture<Stat> future = new CompletableFuture<>();
+
+        try {
+            zkc.setData(path, value, expectedVersion, (rc, path1, ctx, stat) -> {
+                execute(() -> handleSetDataResult(Code.get(rc), path1, stat, value, hasVersion, future), future);
+            }, null);
+        } catch (Throwable t) {
+            future.completeExceptionally(new MetadataStoreException(t));
+        }
+
+        return future;
+    }
+
+    private void handleSetDataResult(Code code, String path, org.apache.zookeeper.data.Stat stat, byte[] value,
+                                     boolean hasVersion, CompletableFuture<Stat> future) {
+        if (code == Code.OK) {
+            future.complete(getStat(path, stat));
+        } else if (code == Code.NONODE) {
+            if (hasVersion) {
+                // We're emulating here a request to update or create the znode, depending on
+                // the version
+                future.completeExceptionally(getException(Code.BADVERSION, path));
+            } else {
+                // The z-node does not exist, let's create it first
+                put(path, value, Optional.of(-1L)).thenAccept(s -> future.complete(s))
+                        .exceptionally(ex -> {
+                            future.completeExceptionally(ex.getCause());
+                            return null;
+                        });
+            }
+        } else {
+            future.completeExceptionally(getException(code, path));
+        }
+    }
+
     @Override
     protected CompletableFuture<Void> storeDelete(String path, Optional<Long> optExpectedVersion) {
         int expectedVersion = optExpectedVersion.orElse(-1L).intValue();
 
+        if (batchingEnabled) {
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            enqueueWrite(new PendingWrite(Op.delete(path, expectedVersion), path.length(), future,
+                    result -> handleDeleteResult(getCode(result), path, future),
+                    () -> forward(storeDeleteNow(path, expectedVersion), future)));
+            return future;
+        }
+
+        return storeDeleteNow(path, expectedVersion);
+    }
+
+    private CompletableFuture<Void> storeDeleteNow(String path, int expectedVersion) {
         CompletableFuture<Void> future = new CompletableFuture<>();
 
         try {
             zkc.delete(path, expectedVersion, (rc, path1, ctx) -> {
+                execute(() -> handleDeleteResult(Code.get(rc), path, future), future);
+            }, null);
+        } catch (Throwable t) {
+            future.completeExceptionally(new MetadataStoreException(t));
+        }
+
+        return future;
+    }
+
+    private void handleDeleteResult(Code code, String path, CompletableFuture<Void> future) {
+        if (code == Code.OK) {
+            future.complete(null);
+        } else {
+            future.completeExceptionally(getException(code, path));
+        }
+    }
+
+    /**
+     * A write operation waiting to be sent to ZooKeeper as part of a multi request.
+     */
+    private static final class PendingWrite {
+        final Op op;
+        final int size;
+        final CompletableFuture<?> future;
+        // Completes the future from the result of the op in a successful multi, or from the error of the op that
+        // made the multi fail
+        final Consumer<OpResult> resultHandler;
+        // Sends the op on its own, when it was rolled back because of the failure of another op of its batch
+        final Runnable retry;
+
+        PendingWrite(Op op, int size, CompletableFuture<?> future, Consumer<OpResult> resultHandler,
+                     Runnable retry) {
+            this.op = op;
+            this.size = size;
+            this.future = future;
+            this.resultHandler = resultHandler;
+            this.retry = retry;
+        }
+    }
+
+    private void enqueueWrite(PendingWrite write) {
+        pendingWrites.add(write);
+        sendNextBatch();
+    }
+
+    private void failPendingWrites(MetadataStoreException ex) {
+        PendingWrite write;
+        while ((write = pendingWrites.poll()) != null) {
+            write.future.completeExceptionally(ex);
+        }
+    }
+
+    /**
+     * Sends the writes queued so far, unless a batch is already in flight: they are then sent once it completes.
+     */
+    private void sendNextBatch() {
+        while (!pendingWrites.isEmpty() && batchInFlight.compareAndSet(false, true)) {
+            List<PendingWrite> batch = new ArrayList<>();
+            int batchSize = 0;
+            PendingWrite write;
+            while (batch.size() < batchingMaxOperations && (write = pendingWrites.peek()) != null
+                    && (batch.isEmpty() || batchSize + write.size <= batchingMaxSizeBytes)) {
+                batch.add(pendingWrites.poll());
+                batchSize += write.size;
+            }
+
+            if (!batch.isEmpty()) {
+                sendBatch(batch);
+                return;
+            }
+            batchInFlight.set(false);
+        }
+    }
+
+    private void sendBatch(List<PendingWrite> batch) {
+        long startTime = System.nanoTime();
+        CompletableFuture<Void> batchFuture = new CompletableFuture<>();
+        batchFuture.whenComplete((__, ex) -> {
+            if (ex != null) {
+                batch.forEach(write -> write.future.completeExceptionally(ex));
+            }
+            batchInFlight.set(false);
+            sendNextBatch();
+        });
+
+        try {
+            List<Op> ops = batch.stream().map(write -> write.op).collect(Collectors.toList());
+            zkc.multi(ops, (rc, path, ctx, opResults) -> {
                 execute(() -> {
+                    batchingStats.recordBatch(batch.size(), System.nanoTime() - startTime);
                     Code code = Code.get(rc);
-                    if (code == Code.OK) {
-                        future.complete(null);
+                    if (opResults == null || opResults.size() != batch.size()) {
+                        batch.forEach(write -> write.future.completeExceptionally(
+                                getException(code != Code.OK ? code : Code.APIERROR, write.op.getPath())));
+                    } else if (code == Code.OK) {
+                        for (int i = 0; i < batch.size(); i++) {
+                            batch.get(i).resultHandler.accept(opResults.get(i));
+                        }
                     } else {
-                        future.completeExceptionally(getException(code, path));
+                        // A multi is a transaction: the ops that failed get their own error, while the others were
+                        // rolled back and are sent again on their own. They are all sent, in their order, before
+                        // the next batch
+                        for (int i = 0; i < batch.size(); i++) {
+                            Code opCode = getCode(opResults.get(i));
+                            if (opCode == Code.OK || opCode == Code.RUNTIMEINCONSISTENCY) {
+                                batch.get(i).retry.run();
+                            } else {
+                                batch.get(i).resultHandler.accept(opResults.get(i));
+                            }
+                        }
                     }
-                }, future);
+                    batchFuture.complete(null);
+                }, batchFuture);
             }, null);
         } catch (Throwable t) {
-            future.completeExceptionally(new MetadataStoreException(t));
+            batchFuture.completeExceptionally(new MetadataStoreException(t));
         }
+    }
 
-        return future;
+    private static Code getCode(OpResult result) {
+        return result instanceof OpResult.ErrorResult ? Code.get(((OpResult.ErrorResult) result).getErr()) : Code.OK;
+    }
+
+    private static <T> void forward(CompletableFuture<T> source, CompletableFuture<?> target) {
+        @SuppressWarnings("unchecked")
+        CompletableFuture<T> typedTarget = (CompletableFuture<T>) target;
+        source.whenComplete((result, ex) -> {
+            if (ex != null) {
+                typedTarget.completeExceptionally(ex);
+            } else {
+                typedTarget.complete(result);
+            }
+        });
     }
 
     @Override
     public void close() throws Exception {
+        if (batchingEnabled) {
+            failPendingWrites(new AlreadyClosedException("The metadata store is closed"));
+        }
         if (isZkManaged) {
             zkc.close();
         }
@@ -26,6 +26,7 @@ import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.google.common.collect.Lists;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
@@ -295,6 +296,32 @@ public class MetadataCacheTest extends BaseMetadataStoreTest {
         assertEquals(objCache.getIfCached(key1), Optional.of(value1));
     }
 
+    @Test(dataProvider = "impl")
+    public void getAllAndChildrenWithData(String provider, String url) throws Exception {
+        @Cleanup
+        MetadataStore store = MetadataStoreFactory.create(url, MetadataStoreConfig.builder().build());
+        MetadataCache<MyClass> objCache = store.getMetadataCache(MyClass.class);
+
+        String base = newKey();
+        String key1 = base + "/a";
+        String key2 = base + "/b";
+        String key3 = base + "/c";
+
+        MyClass value1 = new MyClass("a", 1);
+        MyClass value2 = new MyClass("b", 2);
+        objCache.create(key1, value1).join();
+        store.put(key2, ObjectMapperFactory.getThreadLocal().writeValueAsBytes(value2), Optional.of(-1L)).join();
+
+        List<Optional<MyClass>> values = objCache.getAll(Lists.newArrayList(key1, key2, key3)).join();
+        assertEquals(values, Lists.newArrayList(Optional.of(value1), Optional.of(value2), Optional.empty()));
+        assertEquals(objCache.getIfCached(key2), Optional.of(value2));
+
+        Map<String, MyClass> children = objCache.getChildrenWithData(base).join();
+        assertEquals(children.size(), 2);
+        assertEquals(children.get("a"), value1);
+        assertEquals(children.get("b"), value2);
+    }
+
     @Test(dataProvider = "impl")
     public void insertionOutsideCacheWithGenericType(String provider, String url) throws Exception {
         @Cleanup
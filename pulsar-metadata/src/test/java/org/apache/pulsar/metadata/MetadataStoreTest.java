@@ -27,8 +27,10 @@ import static org.testng.Assert.fail;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.TimeUnit;
@@ -45,6 +47,8 @@ import org.apache.pulsar.metadata.api.MetadataStoreFactory;
 import org.apache.pulsar.metadata.api.Notification;
 import org.apache.pulsar.metadata.api.NotificationType;
 import org.apache.pulsar.metadata.api.Stat;
+import org.apache.pulsar.metadata.impl.BatchingStats;
+import org.apache.pulsar.metadata.impl.ZKMetadataStore;
 import org.testng.annotations.Test;
 
 public class MetadataStoreTest extends BaseMetadataStoreTest {
@@ -135,6 +139,113 @@ public class MetadataStoreTest extends BaseMetadataStoreTest {
         assertEquals(optRes.get().getStat().getVersion(), 1);
     }
 
+    @Test(dataProvider = "impl")
+    public void getAllTest(String provider, String url) throws Exception {
+        @Cleanup
+        MetadataStore store = MetadataStoreFactory.create(url, MetadataStoreConfig.builder().build());
+
+        String base = newKey();
+        List<String> paths = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            String path = base + "/c-" + i;
+            paths.add(path);
+            if (i % 2 == 0) {
+                store.put(path, ("value-" + i).getBytes(), Optional.of(-1L)).join();
+            }
+        }
+
+        assertEquals(store.getAll(Collections.emptyList()).join(), Collections.emptyList());
+
+        List<Optional<GetResult>> results = store.getAll(paths).join();
+        assertEquals(results.size(), paths.size());
+        for (int i = 0; i < paths.size(); i++) {
+            if (i % 2 == 0) {
+                assertTrue(results.get(i).isPresent());
+                assertEquals(results.get(i).get().getValue(), ("value-" + i).getBytes());
+                assertEquals(results.get(i).get().getStat().getPath(), paths.get(i));
+            } else {
+                assertFalse(results.get(i).isPresent());
+            }
+        }
+
+        Map<String, GetResult> children = store.getChildrenWithData(base).join();
+        assertEquals(children.size(), 125);
+        assertEquals(children.get("c-0").getValue(), "value-0".getBytes());
+        assertEquals(children.get("c-248").getValue(), "value-248".getBytes());
+        assertTrue(store.getChildrenWithData("/non-existing-key").join().isEmpty());
+    }
+
+    @Test(dataProvider = "impl")
+    public void concurrentWritesTest(String provider, String url) throws Exception {
+        @Cleanup
+        MetadataStore store = MetadataStoreFactory.create(url,
+                MetadataStoreConfig.builder().batchingEnabled(true).build());
+
+        String base = newKey();
+        store.put(base + "/existing", "value".getBytes(), Optional.of(-1L)).join();
+
+        // The writes issued while the first one is in flight are sent together, and one of them fails
+        List<CompletableFuture<Stat>> futures = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            futures.add(store.put(base + "/c-" + i, ("value-" + i).getBytes(), Optional.of(-1L)));
+        }
+        CompletableFuture<Stat> conflict = store.put(base + "/existing", "other".getBytes(), Optional.of(-1L));
+        CompletableFuture<Void> delete = store.delete(base + "/c-0", Optional.empty());
+
+        for (CompletableFuture<Stat> future : futures) {
+            future.join();
+        }
+        delete.join();
+        try {
+            conflict.join();
+            fail("The creation of an existing node should have failed");
+        } catch (CompletionException e) {
+            assertEquals(e.getCause().getClass(), BadVersionException.class);
+        }
+
+        assertFalse(store.exists(base + "/c-0").join());
+        for (int i = 1; i < 50; i++) {
+            assertEquals(store.get(base + "/c-" + i).join().get().getValue(), ("value-" + i).getBytes());
+        }
+        assertEquals(store.get(base + "/existing").join().get().getValue(), "value".getBytes());
+
+        if (store instanceof ZKMetadataStore) {
+            BatchingStats stats = ((ZKMetadataStore) store).getBatchingStats();
+            assertTrue(stats.getBatches() > 0);
+            assertTrue(stats.getBatchedOperations() > stats.getBatches());
+        }
+    }
+
+    @Test(dataProvider = "impl")
+    public void batchedWritesOrderTest(String provider, String url) throws Exception {
+        @Cleanup
+        MetadataStore store = MetadataStoreFactory.create(url,
+                MetadataStoreConfig.builder().batchingEnabled(true).build());
+
+        String base = newKey();
+        store.put(base + "/existing", "value".getBytes(), Optional.of(-1L)).join();
+
+        CompletableFuture<Stat> first = store.put(base + "/first", "value".getBytes(), Optional.of(-1L));
+        // The batch fails because of the conflict, and its other writes are sent again in their order
+        CompletableFuture<Stat> create = store.put(base + "/ordered", "v1".getBytes(), Optional.of(-1L));
+        CompletableFuture<Stat> conflict = store.put(base + "/existing", "other".getBytes(), Optional.of(-1L));
+        CompletableFuture<Stat> update = store.put(base + "/ordered", "v2".getBytes(), Optional.empty());
+        CompletableFuture<Stat> versionedUpdate = store.put(base + "/ordered", "v3".getBytes(), Optional.of(1L));
+
+        first.join();
+        create.join();
+        update.join();
+        versionedUpdate.join();
+        try {
+            conflict.join();
+            fail("The creation of an existing node should have failed");
+        } catch (CompletionException e) {
+            assertEquals(e.getCause().getClass(), BadVersionException.class);
+        }
+
+        assertEquals(store.get(base + "/ordered").join().get().getValue(), "v3".getBytes());
+    }
+
     @Test(dataProvider = "impl")
     public void getChildrenTest(String provider, String url) throws Exception {
         @Cleanup
@@ -33,6 +33,7 @@ import java.util.regex.Pattern;
 import lombok.Getter;
 import lombok.Setter;
 import org.apache.pulsar.broker.authorization.PulsarAuthorizationProvider;
+import org.apache.pulsar.client.api.IoTransport;
 import org.apache.pulsar.common.configuration.Category;
 import org.apache.pulsar.common.configuration.FieldContext;
 import org.apache.pulsar.common.configuration.PropertiesContext;
@@ -153,6 +154,14 @@ public class ProxyConfiguration implements PulsarConfiguration {
             doc = "Enable or disable the proxy protocol.")
     private boolean haProxyProtocolEnabled;
 
+    @FieldContext(
+        category = CATEGORY_SERVER,
+        doc = "The network transport of the IO threads: AUTO, NIO, EPOLL or IO_URING. AUTO uses epoll when it "
+            + "is available and NIO otherwise. IO_URING requires the netty io_uring incubator library in "
+            + "the classpath and a Linux kernel 5.9 or later, and falls back to AUTO when they are missing."
+    )
+    private IoTransport ioTransport = IoTransport.AUTO;
+
     @FieldContext(
         category = CATEGORY_SERVER,
         doc = "The port for serving binary protobuf request"
@@ -42,6 +42,7 @@ import org.HdrHistogram.Recorder;
 import org.apache.pulsar.client.api.ClientBuilder;
 import org.apache.pulsar.client.api.Consumer;
 import org.apache.pulsar.client.api.ConsumerBuilder;
+import org.apache.pulsar.client.api.IoTransport;
 import org.apache.pulsar.client.api.MessageListener;
 import org.apache.pulsar.client.api.PulsarClient;
 import org.apache.pulsar.client.api.Schema;
@@ -181,6 +182,10 @@ public class PerformanceConsumer {
 
         @Parameter(names = {"-bw", "--busy-wait"}, description = "Enable Busy-Wait on the Pulsar client")
         public boolean enableBusyWait = false;
+
+        @Parameter(names = {"-iot", "--io-transport"}, description = "Network transport of the IO threads: "
+                + "AUTO, NIO, EPOLL or IO_URING")
+        public IoTransport ioTransport = IoTransport.AUTO;
     }
 
     public static void main(String[] args) throws Exception {
@@ -321,6 +326,7 @@ public class PerformanceConsumer {
                 .statsInterval(arguments.statsIntervalSeconds, TimeUnit.SECONDS) //
                 .ioThreads(arguments.ioThreads) //
                 .enableBusyWait(arguments.enableBusyWait)
+                .ioTransport(arguments.ioTransport)
                 .tlsTrustCertsFilePath(arguments.tlsTrustCertsFilePath);
         if (isNotBlank(arguments.authPluginClassName)) {
             clientBuilder.authentication(arguments.authPluginClassName, arguments.authParams);
@@ -384,7 +390,7 @@ public class PerformanceConsumer {
         long start = System.nanoTime();
 
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-            printAggregatedThroughput(start);
+            printAggregatedThroughput(start, arguments.ioThreads);
             printAggregatedStats();
         }));
 
@@ -424,15 +430,16 @@ public class PerformanceConsumer {
         pulsarClient.close();
     }
 
-    private static void printAggregatedThroughput(long start) {
+    private static void printAggregatedThroughput(long start, int ioThreads) {
         double elapsed = (System.nanoTime() - start) / 1e9;
         double rate = totalMessagesReceived.sum() / elapsed;
         double throughput = totalBytesReceived.sum() / elapsed * 8 / 1024 / 1024;
         log.info(
-            "Aggregated throughput stats --- {} records received --- {} msg/s --- {} Mbit/s",
+            "Aggregated throughput stats --- {} records received --- {} msg/s --- {} Mbit/s --- {} msg/s per IO thread",
             totalMessagesReceived,
             dec.format(rate),
-            dec.format(throughput));
+            dec.format(throughput),
+            dec.format(rate / ioThreads));
     }
 
     private static void printAggregatedStats() {
@@ -60,6 +60,7 @@ import org.apache.pulsar.client.admin.PulsarAdminBuilder;
 import org.apache.pulsar.client.admin.PulsarAdminException;
 import org.apache.pulsar.client.api.ClientBuilder;
 import org.apache.pulsar.client.api.CompressionType;
+import org.apache.pulsar.client.api.IoTransport;
 import org.apache.pulsar.client.api.MessageRoutingMode;
 import org.apache.pulsar.client.api.Producer;
 import org.apache.pulsar.client.api.ProducerAccessMode;
@@ -241,6 +242,10 @@ public class PerformanceProducer {
         @Parameter(names = {"-bw", "--busy-wait"}, description = "Enable Busy-Wait on the Pulsar client")
         public boolean enableBusyWait = false;
 
+        @Parameter(names = {"-iot", "--io-transport"}, description = "Network transport of the IO threads: "
+                + "AUTO, NIO, EPOLL or IO_URING")
+        public IoTransport ioTransport = IoTransport.AUTO;
+
         @Parameter(names = { "-am", "--access-mode" }, description = "Producer access mode")
         public ProducerAccessMode producerAccessMode = ProducerAccessMode.Shared;
 
@@ -366,7 +371,7 @@ public class PerformanceProducer {
         long start = System.nanoTime();
 
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-            printAggregatedThroughput(start);
+            printAggregatedThroughput(start, arguments.ioThreads);
             printAggregatedStats();
         }));
 
@@ -509,6 +514,7 @@ public class PerformanceProducer {
                     .ioThreads(arguments.ioThreads) //
                     .statsInterval(arguments.statsIntervalSeconds, TimeUnit.SECONDS) //
                     .enableBusyWait(arguments.enableBusyWait)
+                    .ioTransport(arguments.ioTransport)
                     .tlsTrustCertsFilePath(arguments.tlsTrustCertsFilePath);
 
             if (isNotBlank(arguments.authPluginClassName)) {
@@ -687,15 +693,16 @@ public class PerformanceProducer {
         }
     }
 
-    private static void printAggregatedThroughput(long start) {
+    private static void printAggregatedThroughput(long start, int ioThreads) {
         double elapsed = (System.nanoTime() - start) / 1e9;
         double rate = totalMessagesSent.sum() / elapsed;
         double throughput = totalBytesSent.sum() / elapsed / 1024 / 1024 * 8;
         log.info(
-            "Aggregated throughput stats --- {} records sent --- {} msg/s --- {} Mbit/s",
+            "Aggregated throughput stats --- {} records sent --- {} msg/s --- {} Mbit/s --- {} msg/s per IO thread",
             totalMessagesSent,
             totalFormat.format(rate),
-            totalFormat.format(throughput));
+            totalFormat.format(throughput),
+            totalFormat.format(rate / ioThreads));
     }
 
     private static void printAggregatedStats() {
@@ -22,6 +22,7 @@ import static com.google.common.base.Preconditions.checkArgument;
 import com.google.common.annotations.Beta;
 import java.io.IOException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
 import org.apache.bookkeeper.mledger.ManagedLedgerConfig;
 import org.apache.bookkeeper.mledger.ManagedLedgerFactory;
 
@@ -69,4 +70,28 @@ public interface TransactionMetadataStoreProvider {
             TransactionCoordinatorID transactionCoordinatorId, ManagedLedgerFactory managedLedgerFactory,
             ManagedLedgerConfig managedLedgerConfig, TransactionTimeoutTracker timeoutTracker,
             TransactionRecoverTracker recoverTracker);
+
+    /**
+     * Open the transaction metadata store for transaction coordinator
+     * identified by <tt>transactionCoordinatorId</tt>, batching the writes of its transaction log.
+     *
+     * @param transactionCoordinatorId {@link TransactionCoordinatorID} the coordinator id.
+     * @param managedLedgerFactory {@link ManagedLedgerFactory} the managedLedgerFactory to create managedLedger.
+     * @param managedLedgerConfig {@link ManagedLedgerConfig} the managedLedgerConfig to create managedLedger.
+     * @param timeoutTracker {@link TransactionTimeoutTracker} the timeoutTracker to handle transaction time out.
+     * @param recoverTracker {@link TransactionRecoverTracker} the recoverTracker to handle transaction recover.
+     * @param bufferedWriterConfig {@link TxnLogBufferedWriterConfig} the configuration of the batched writes.
+     * @param scheduledExecutorService the executor flushing the batched writes.
+     * @return a future represents the result of the operation.
+     *         an instance of {@link TransactionMetadataStore} is returned
+     *         if the operation succeeds.
+     */
+    default CompletableFuture<TransactionMetadataStore> openStore(
+            TransactionCoordinatorID transactionCoordinatorId, ManagedLedgerFactory managedLedgerFactory,
+            ManagedLedgerConfig managedLedgerConfig, TransactionTimeoutTracker timeoutTracker,
+            TransactionRecoverTracker recoverTracker, TxnLogBufferedWriterConfig bufferedWriterConfig,
+            ScheduledExecutorService scheduledExecutorService) {
+        return openStore(transactionCoordinatorId, managedLedgerFactory, managedLedgerConfig, timeoutTracker,
+                recoverTracker);
+    }
 }
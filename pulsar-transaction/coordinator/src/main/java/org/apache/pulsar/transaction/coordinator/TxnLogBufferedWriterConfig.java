@@ -0,0 +1,50 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.transaction.coordinator;
+
+import com.google.common.annotations.Beta;
+import lombok.Data;
+
+/**
+ * The configuration of the batched writes of a transaction log.
+ */
+@Beta
+@Data
+public class TxnLogBufferedWriterConfig {
+
+    /**
+     * Whether the records appended concurrently are grouped into batched entries.
+     */
+    private boolean batchEnabled = false;
+
+    /**
+     * The max number of records in a batched entry.
+     */
+    private int batchedWriteMaxRecords = 512;
+
+    /**
+     * The max size in bytes of a batched entry.
+     */
+    private int batchedWriteMaxSize = 1024 * 1024 * 4;
+
+    /**
+     * The max time in milliseconds a record waits for its batch to be written.
+     */
+    private int batchedWriteMaxDelayInMillis = 1;
+}
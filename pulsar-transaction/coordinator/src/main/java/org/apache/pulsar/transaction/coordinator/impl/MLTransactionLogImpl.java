@@ -19,8 +19,10 @@
 package org.apache.pulsar.transaction.coordinator.impl;
 
 import io.netty.buffer.ByteBuf;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.atomic.AtomicLong;
 import org.apache.bookkeeper.mledger.AsyncCallbacks;
 import org.apache.bookkeeper.mledger.Entry;
@@ -28,20 +30,20 @@ import org.apache.bookkeeper.mledger.ManagedCursor;
 import org.apache.bookkeeper.mledger.ManagedLedger;
 import org.apache.bookkeeper.mledger.ManagedLedgerConfig;
 import org.apache.bookkeeper.mledger.ManagedLedgerException;
-import org.apache.bookkeeper.mledger.ManagedLedgerException.ManagedLedgerAlreadyClosedException;
 import org.apache.bookkeeper.mledger.ManagedLedgerFactory;
 import org.apache.bookkeeper.mledger.Position;
 import org.apache.bookkeeper.mledger.impl.ManagedLedgerImpl;
-import org.apache.bookkeeper.mledger.impl.ManagedLedgerImpl.State;
 import org.apache.bookkeeper.mledger.impl.PositionImpl;
-import org.apache.pulsar.common.allocator.PulsarByteBufAllocator;
 import org.apache.pulsar.common.api.proto.CommandSubscribe;
 import org.apache.pulsar.common.naming.NamespaceName;
 import org.apache.pulsar.common.naming.TopicDomain;
 import org.apache.pulsar.common.naming.TopicName;
+import org.apache.pulsar.common.util.collections.BitSetRecyclable;
 import org.apache.pulsar.transaction.coordinator.TransactionCoordinatorID;
 import org.apache.pulsar.transaction.coordinator.TransactionLog;
 import org.apache.pulsar.transaction.coordinator.TransactionLogReplayCallback;
+import org.apache.pulsar.transaction.coordinator.TxnLogBufferedWriterConfig;
+import org.apache.pulsar.transaction.coordinator.proto.BatchedTransactionMetadataEntry;
 import org.apache.pulsar.transaction.coordinator.proto.TransactionMetadataEntry;
 import org.jctools.queues.MessagePassingQueue;
 import org.jctools.queues.SpscArrayQueue;
@@ -70,17 +72,35 @@ public class MLTransactionLogImpl implements TransactionLog {
 
     private final MLTransactionLogInterceptor mlTransactionLogInterceptor;
 
+    private final TxnLogBufferedWriterConfig bufferedWriterConfig;
+
+    private final ScheduledExecutorService scheduledExecutorService;
+
+    private TxnLogBufferedWriter<TransactionMetadataEntry> bufferedWriter;
+
     public MLTransactionLogImpl(TransactionCoordinatorID tcID,
                                 ManagedLedgerFactory managedLedgerFactory,
                                 ManagedLedgerConfig managedLedgerConfig) {
+        this(tcID, managedLedgerFactory, managedLedgerConfig, new TxnLogBufferedWriterConfig(), null);
+    }
+
+    public MLTransactionLogImpl(TransactionCoordinatorID tcID,
+                                ManagedLedgerFactory managedLedgerFactory,
+                                ManagedLedgerConfig managedLedgerConfig,
+                                TxnLogBufferedWriterConfig bufferedWriterConfig,
+                                ScheduledExecutorService scheduledExecutorService) {
         this.topicName = TopicName.get(TopicDomain.persistent.value(),
                 NamespaceName.SYSTEM_NAMESPACE, TRANSACTION_LOG_PREFIX + tcID.getId());
         this.tcId = tcID.getId();
         this.mlTransactionLogInterceptor = new MLTransactionLogInterceptor();
         managedLedgerConfig.setManagedLedgerInterceptor(this.mlTransactionLogInterceptor);
+        // the records of a batched entry are deleted one by one, and the deleted ones are skipped by the replay
+        managedLedgerConfig.setDeletionAtBatchIndexLevelEnabled(true);
         this.managedLedgerFactory = managedLedgerFactory;
         this.managedLedgerConfig = managedLedgerConfig;
         this.entryQueue = new SpscArrayQueue<>(2000);
+        this.bufferedWriterConfig = bufferedWriterConfig;
+        this.scheduledExecutorService = scheduledExecutorService;
     }
 
     @Override
@@ -92,6 +112,9 @@ public class MLTransactionLogImpl implements TransactionLog {
                     @Override
                     public void openLedgerComplete(ManagedLedger ledger, Object ctx) {
                         MLTransactionLogImpl.this.managedLedger = ledger;
+                        MLTransactionLogImpl.this.bufferedWriter = new TxnLogBufferedWriter<>(ledger,
+                                scheduledExecutorService, TransactionMetadataEntrySerializer.INSTANCE,
+                                bufferedWriterConfig);
 
                         managedLedger.asyncOpenCursor(TRANSACTION_SUBSCRIPTION_NAME,
                                 CommandSubscribe.InitialPosition.Earliest, new AsyncCallbacks.OpenCursorCallback() {
@@ -130,6 +153,9 @@ public class MLTransactionLogImpl implements TransactionLog {
     public CompletableFuture<Void> closeAsync() {
         CompletableFuture<Void> completableFuture = new CompletableFuture<>();
 
+        if (bufferedWriter != null) {
+            bufferedWriter.close();
+        }
         managedLedger.asyncClose(new AsyncCallbacks.CloseCallback() {
             @Override
             public void closeComplete(Object ctx) {
@@ -149,37 +175,22 @@ public class MLTransactionLogImpl implements TransactionLog {
 
     @Override
     public CompletableFuture<Position> append(TransactionMetadataEntry transactionMetadataEntry) {
-        int transactionMetadataEntrySize = transactionMetadataEntry.getSerializedSize();
-        ByteBuf buf = PulsarByteBufAllocator.DEFAULT.buffer(transactionMetadataEntrySize, transactionMetadataEntrySize);
-        CompletableFuture<Position> completableFuture = new CompletableFuture<>();
-        transactionMetadataEntry.writeTo(buf);
-        managedLedger.asyncAddEntry(buf, new AsyncCallbacks.AddEntryCallback() {
-            @Override
-            public void addComplete(Position position, ByteBuf entryData, Object ctx) {
-                buf.release();
-                mlTransactionLogInterceptor.setMaxLocalTxnId(transactionMetadataEntry.getMaxLocalTxnId());
-                completableFuture.complete(position);
-            }
-
-            @Override
-            public void addFailed(ManagedLedgerException exception, Object ctx) {
-                log.error("Transaction log write transaction operation error", exception);
-                if (exception instanceof ManagedLedgerAlreadyClosedException
-                        && managedLedger instanceof ManagedLedgerImpl
-                        && State.WriteFailed == ((ManagedLedgerImpl) managedLedger).getState()) {
-                    managedLedger.readyToCreateNewLedger();
-                }
-                buf.release();
-                completableFuture.completeExceptionally(exception);
-            }
-        }, null);
-
-        return completableFuture;
+        return bufferedWriter.asyncAddData(transactionMetadataEntry).thenApply(position -> {
+            mlTransactionLogInterceptor.setMaxLocalTxnId(transactionMetadataEntry.getMaxLocalTxnId());
+            return position;
+        });
     }
 
     public CompletableFuture<Void> deletePosition(List<Position> positions) {
+        // the records of a batched entry are deleted with the ack set of their index, so that the deletion is
+        // persisted by the cursor, and the entry is only deleted once all of its records are
+        List<Position> deletedPositions = new ArrayList<>(positions.size());
+        for (Position position : positions) {
+            deletedPositions.add(position instanceof TxnBatchedPositionImpl
+                    ? ((TxnBatchedPositionImpl) position).toPositionWithAckSet() : position);
+        }
         CompletableFuture<Void> completableFuture = new CompletableFuture<>();
-        this.cursor.asyncDelete(positions, new AsyncCallbacks.DeleteCallback() {
+        this.cursor.asyncDelete(deletedPositions, new AsyncCallbacks.DeleteCallback() {
             @Override
             public void deleteComplete(Object position) {
                 if (log.isDebugEnabled()) {
@@ -215,14 +226,37 @@ public class MLTransactionLogImpl implements TransactionLog {
 
         public void start() {
             TransactionMetadataEntry transactionMetadataEntry = new TransactionMetadataEntry();
+            BatchedTransactionMetadataEntry batchedTransactionMetadataEntry = new BatchedTransactionMetadataEntry();
 
             while (fillEntryQueueCallback.fillQueue() || entryQueue.size() > 0) {
                 Entry entry = entryQueue.poll();
                 if (entry != null) {
                     try {
                         ByteBuf buffer = entry.getDataBuffer();
-                        transactionMetadataEntry.parseFrom(buffer, buffer.readableBytes());
-                        transactionLogReplayCallback.handleMetadataEntry(entry.getPosition(), transactionMetadataEntry);
+                        if (TxnLogBufferedWriter.isBatchedEntry(buffer)) {
+                            batchedTransactionMetadataEntry.parseFrom(buffer, buffer.readableBytes());
+                            int batchSize = batchedTransactionMetadataEntry.getTransactionLogsCount();
+                            // the records already deleted from the cursor are not replayed
+                            long[] ackSet = cursor.getDeletedBatchIndexesAsLongArray(
+                                    (PositionImpl) entry.getPosition());
+                            BitSetRecyclable bitSet =
+                                    ackSet == null ? null : BitSetRecyclable.create().resetWords(ackSet);
+                            for (int i = 0; i < batchSize; i++) {
+                                if (bitSet != null && !bitSet.get(i)) {
+                                    continue;
+                                }
+                                transactionLogReplayCallback.handleMetadataEntry(
+                                        new TxnBatchedPositionImpl(entry.getPosition(), batchSize, i),
+                                        batchedTransactionMetadataEntry.getTransactionLogAt(i));
+                            }
+                            if (bitSet != null) {
+                                bitSet.recycle();
+                            }
+                        } else {
+                            transactionMetadataEntry.parseFrom(buffer, buffer.readableBytes());
+                            transactionLogReplayCallback.handleMetadataEntry(entry.getPosition(),
+                                    transactionMetadataEntry);
+                        }
                     } finally {
                         entry.release();
                     }
@@ -248,10 +282,21 @@ public class MLTransactionLogImpl implements TransactionLog {
             ((ManagedLedgerImpl) this.managedLedger).asyncReadEntry(position, new AsyncCallbacks.ReadEntryCallback() {
                 @Override
                 public void readEntryComplete(Entry entry, Object ctx) {
-                    TransactionMetadataEntry lastConfirmEntry = new TransactionMetadataEntry();
                     ByteBuf buffer = entry.getDataBuffer();
-                    lastConfirmEntry.parseFrom(buffer, buffer.readableBytes());
-                    completableFuture.complete(lastConfirmEntry.getMaxLocalTxnId());
+                    if (TxnLogBufferedWriter.isBatchedEntry(buffer)) {
+                        BatchedTransactionMetadataEntry lastConfirmEntry = new BatchedTransactionMetadataEntry();
+                        lastConfirmEntry.parseFrom(buffer, buffer.readableBytes());
+                        long maxLocalTxnId = -1L;
+                        for (int i = 0; i < lastConfirmEntry.getTransactionLogsCount(); i++) {
+                            maxLocalTxnId = Math.max(maxLocalTxnId,
+                                    lastConfirmEntry.getTransactionLogAt(i).getMaxLocalTxnId());
+                        }
+                        completableFuture.complete(maxLocalTxnId);
+                    } else {
+                        TransactionMetadataEntry lastConfirmEntry = new TransactionMetadataEntry();
+                        lastConfirmEntry.parseFrom(buffer, buffer.readableBytes());
+                        completableFuture.complete(lastConfirmEntry.getMaxLocalTxnId());
+                    }
                 }
 
                 @Override
@@ -274,6 +319,31 @@ public class MLTransactionLogImpl implements TransactionLog {
         return completableFuture;
     }
 
+    static class TransactionMetadataEntrySerializer
+            implements TxnLogBufferedWriter.DataSerializer<TransactionMetadataEntry> {
+
+        static final TransactionMetadataEntrySerializer INSTANCE = new TransactionMetadataEntrySerializer();
+
+        @Override
+        public int getSerializedSize(TransactionMetadataEntry data) {
+            return data.getSerializedSize();
+        }
+
+        @Override
+        public void serialize(TransactionMetadataEntry data, ByteBuf buf) {
+            data.writeTo(buf);
+        }
+
+        @Override
+        public void serialize(List<TransactionMetadataEntry> dataArray, ByteBuf buf) {
+            BatchedTransactionMetadataEntry batchedTransactionMetadataEntry = new BatchedTransactionMetadataEntry();
+            for (TransactionMetadataEntry data : dataArray) {
+                batchedTransactionMetadataEntry.addTransactionLog().copyFrom(data);
+            }
+            batchedTransactionMetadataEntry.writeTo(buf);
+        }
+    }
+
     class FillEntryQueueCallback implements AsyncCallbacks.ReadEntriesCallback {
 
         private final AtomicLong outstandingReadsRequests = new AtomicLong(0);
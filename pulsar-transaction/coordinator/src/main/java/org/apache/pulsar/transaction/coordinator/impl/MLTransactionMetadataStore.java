@@ -21,9 +21,7 @@ package org.apache.pulsar.transaction.coordinator.impl;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.NoSuchElementException;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.LongAdder;
 import org.apache.bookkeeper.mledger.ManagedLedger;
@@ -63,7 +61,7 @@ public class MLTransactionMetadataStore
     private final AtomicLong sequenceId = new AtomicLong(TC_ID_NOT_USED);
     private final MLTransactionLogImpl transactionLog;
     private static final long TC_ID_NOT_USED = -1L;
-    private final ConcurrentSkipListMap<Long, Pair<TxnMeta, List<Position>>> txnMetaMap = new ConcurrentSkipListMap<>();
+    private final TxnMetaMap txnMetaMap = new TxnMetaMap();
     private final TransactionTimeoutTracker timeoutTracker;
     private final TransactionMetadataStoreStats transactionMetadataStoreStats;
     private final LongAdder createdTransactionCount;
@@ -217,14 +215,21 @@ public class MLTransactionMetadataStore
                 .setMetadataOp(TransactionMetadataEntry.TransactionMetadataOp.NEW)
                 .setLastModificationTime(currentTimeMillis)
                 .setMaxLocalTxnId(sequenceId.get());
+        TxnMeta txn = new TxnMetaImpl(txnID, currentTimeMillis, timeOut);
+        List<Position> positions = new ArrayList<>();
+        // the transactions are added in the order of their sequence ids, before the log append completes
+        txnMetaMap.put(leastSigBits, MutablePair.of(txn, positions));
         return transactionLog.append(transactionMetadataEntry)
+                .whenComplete((position, e) -> {
+                    if (e != null) {
+                        txnMetaMap.remove(leastSigBits);
+                    }
+                })
                 .thenCompose(position -> {
                     appendLogCount.increment();
-                    TxnMeta txn = new TxnMetaImpl(txnID, currentTimeMillis, timeOut);
-                    List<Position> positions = new ArrayList<>();
-                    positions.add(position);
-                    Pair<TxnMeta, List<Position>> pair = MutablePair.of(txn, positions);
-                    txnMetaMap.put(leastSigBits, pair);
+                    synchronized (txn) {
+                        positions.add(position);
+                    }
                     this.timeoutTracker.addTransaction(leastSigBits, timeOut);
                     createdTransactionCount.increment();
                     return CompletableFuture.completedFuture(txnID);
@@ -363,11 +368,7 @@ public class MLTransactionMetadataStore
 
     @Override
     public long getLowWaterMark() {
-        try {
-            return this.txnMetaMap.firstKey() - 1;
-        } catch (NoSuchElementException e) {
-            return 0L;
-        }
+        return this.txnMetaMap.getLowWaterMark();
     }
 
     @Override
@@ -411,7 +412,7 @@ public class MLTransactionMetadataStore
     @Override
     public TransactionMetadataStoreStats getMetadataStoreStats() {
         this.transactionMetadataStoreStats.setCoordinatorId(tcID.getId());
-        this.transactionMetadataStoreStats.setActives(txnMetaMap.size());
+        this.transactionMetadataStoreStats.setActives((int) txnMetaMap.size());
         this.transactionMetadataStoreStats.setCreatedCount(this.createdTransactionCount.longValue());
         this.transactionMetadataStoreStats.setCommittedCount(this.committedTransactionCount.longValue());
         this.transactionMetadataStoreStats.setAbortedCount(this.abortedTransactionCount.longValue());
@@ -0,0 +1,61 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.transaction.coordinator.impl;
+
+import lombok.Getter;
+import org.apache.bookkeeper.mledger.Position;
+import org.apache.bookkeeper.mledger.impl.PositionImpl;
+import org.apache.pulsar.common.util.collections.BitSetRecyclable;
+
+/**
+ * The position of a record of a transaction log written in a batched entry.
+ *
+ * <p>It is equal to the position of the entry, so the records of an entry still share the same managed ledger
+ * position, but it also carries the index of the record in the batch.
+ */
+@Getter
+public class TxnBatchedPositionImpl extends PositionImpl {
+
+    private final int batchSize;
+
+    private final int batchIndex;
+
+    public TxnBatchedPositionImpl(Position position, int batchSize, int batchIndex) {
+        super(position.getLedgerId(), position.getEntryId());
+        this.batchSize = batchSize;
+        this.batchIndex = batchIndex;
+    }
+
+    /**
+     * @return the position of the entry, with the ack set deleting only this record from the cursor
+     */
+    public PositionImpl toPositionWithAckSet() {
+        BitSetRecyclable bitSet = BitSetRecyclable.create();
+        bitSet.set(0, batchSize);
+        bitSet.clear(batchIndex);
+        long[] ackSet = bitSet.toLongArray();
+        bitSet.recycle();
+        return PositionImpl.get(getLedgerId(), getEntryId(), ackSet);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d:%d:%d", getLedgerId(), getEntryId(), batchIndex);
+    }
+}
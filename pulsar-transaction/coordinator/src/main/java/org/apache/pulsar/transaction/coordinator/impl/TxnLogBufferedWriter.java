@@ -0,0 +1,234 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.transaction.coordinator.impl;
+
+import io.netty.buffer.ByteBuf;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.mledger.AsyncCallbacks;
+import org.apache.bookkeeper.mledger.ManagedLedger;
+import org.apache.bookkeeper.mledger.ManagedLedgerException;
+import org.apache.bookkeeper.mledger.ManagedLedgerException.ManagedLedgerAlreadyClosedException;
+import org.apache.bookkeeper.mledger.Position;
+import org.apache.bookkeeper.mledger.impl.ManagedLedgerImpl;
+import org.apache.bookkeeper.mledger.impl.ManagedLedgerImpl.State;
+import org.apache.pulsar.common.allocator.PulsarByteBufAllocator;
+import org.apache.pulsar.transaction.coordinator.TxnLogBufferedWriterConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Groups the records appended to a transaction log into batched managed ledger entries.
+ *
+ * <p>The records appended within {@code batchedWriteMaxDelayInMillis} of each other are written as a single entry,
+ * unless the batch reaches {@code batchedWriteMaxRecords} records or {@code batchedWriteMaxSize} bytes first, in which
+ * case it is written right away. Every record of a batch completes with a {@link TxnBatchedPositionImpl}, the
+ * position of the batched entry along with the index of the record in the batch. A batch holding a single record is
+ * written as a plain record.
+ *
+ * <p>A batched entry starts with {@link #BATCHED_ENTRY_DATA_PREFIX_MAGIC_NUMBER} and
+ * {@link #BATCHED_ENTRY_DATA_PREFIX_VERSION}, followed by the records serialized by the {@link DataSerializer}. A
+ * protobuf record never starts with these bytes, since 0x0e would be the tag of field 1 with the invalid wire type 6,
+ * so the logs written before batching was enabled are replayed unchanged.
+ *
+ * <p>Several records share a batched entry, so they are deleted from the cursor one by one with the ack set of their
+ * index, see {@link TxnBatchedPositionImpl#toPositionWithAckSet()}. The cursor persists the deleted indexes, and only
+ * deletes the entry once all of its records are deleted.
+ */
+public class TxnLogBufferedWriter<T> {
+
+    private static final Logger log = LoggerFactory.getLogger(TxnLogBufferedWriter.class);
+
+    public static final short BATCHED_ENTRY_DATA_PREFIX_MAGIC_NUMBER = 0x0e01;
+
+    public static final short BATCHED_ENTRY_DATA_PREFIX_VERSION = 1;
+
+    private static final int BATCHED_ENTRY_HEADER_SIZE = 4;
+
+    /**
+     * Serializes the records of a transaction log.
+     */
+    public interface DataSerializer<T> {
+
+        int getSerializedSize(T data);
+
+        void serialize(T data, ByteBuf buf);
+
+        void serialize(List<T> dataArray, ByteBuf buf);
+    }
+
+    private final ManagedLedger managedLedger;
+
+    private final ScheduledExecutorService scheduledExecutorService;
+
+    private final DataSerializer<T> dataSerializer;
+
+    private final boolean batchEnabled;
+
+    private final int batchedWriteMaxRecords;
+
+    private final int batchedWriteMaxSize;
+
+    private final long batchedWriteMaxDelayInMillis;
+
+    // the batch being filled, guarded by this
+    private final ArrayList<T> dataArray = new ArrayList<>();
+    private final ArrayList<CompletableFuture<Position>> futures = new ArrayList<>();
+    private int bytesSize = 0;
+    private ScheduledFuture<?> scheduledFlush;
+    private boolean closed = false;
+
+    public TxnLogBufferedWriter(ManagedLedger managedLedger, ScheduledExecutorService scheduledExecutorService,
+                                DataSerializer<T> dataSerializer, TxnLogBufferedWriterConfig config) {
+        this.managedLedger = managedLedger;
+        this.scheduledExecutorService = scheduledExecutorService;
+        this.dataSerializer = dataSerializer;
+        this.batchEnabled = config.isBatchEnabled() && scheduledExecutorService != null;
+        this.batchedWriteMaxRecords = Math.max(1, config.getBatchedWriteMaxRecords());
+        this.batchedWriteMaxSize = config.getBatchedWriteMaxSize();
+        this.batchedWriteMaxDelayInMillis = config.getBatchedWriteMaxDelayInMillis();
+    }
+
+    /**
+     * Appends a record to the log.
+     *
+     * @param data the record, which must not be modified until the returned future completes
+     * @return a future completed with the position of the entry holding the record
+     */
+    public CompletableFuture<Position> asyncAddData(T data) {
+        if (!batchEnabled) {
+            int size = dataSerializer.getSerializedSize(data);
+            ByteBuf buf = PulsarByteBufAllocator.DEFAULT.buffer(size, size);
+            dataSerializer.serialize(data, buf);
+            CompletableFuture<Position> future = new CompletableFuture<>();
+            addEntry(buf, future);
+            return future;
+        }
+        synchronized (this) {
+            CompletableFuture<Position> future = new CompletableFuture<>();
+            if (closed) {
+                future.completeExceptionally(
+                        new ManagedLedgerAlreadyClosedException("Transaction log buffered writer is closed"));
+                return future;
+            }
+            dataArray.add(data);
+            futures.add(future);
+            bytesSize += dataSerializer.getSerializedSize(data);
+            if (dataArray.size() >= batchedWriteMaxRecords || bytesSize >= batchedWriteMaxSize) {
+                flush();
+            } else if (scheduledFlush == null) {
+                scheduledFlush = scheduledExecutorService.schedule(this::timedFlush,
+                        batchedWriteMaxDelayInMillis, TimeUnit.MILLISECONDS);
+            }
+            return future;
+        }
+    }
+
+    private synchronized void timedFlush() {
+        scheduledFlush = null;
+        flush();
+    }
+
+    private void flush() {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        if (dataArray.isEmpty()) {
+            return;
+        }
+        ByteBuf buf;
+        if (dataArray.size() == 1) {
+            buf = PulsarByteBufAllocator.DEFAULT.buffer(bytesSize, bytesSize);
+            dataSerializer.serialize(dataArray.get(0), buf);
+        } else {
+            buf = PulsarByteBufAllocator.DEFAULT.buffer(BATCHED_ENTRY_HEADER_SIZE + bytesSize);
+            buf.writeShort(BATCHED_ENTRY_DATA_PREFIX_MAGIC_NUMBER);
+            buf.writeShort(BATCHED_ENTRY_DATA_PREFIX_VERSION);
+            dataSerializer.serialize(dataArray, buf);
+        }
+        int batchSize = dataArray.size();
+        CompletableFuture<Position> batchFuture = new CompletableFuture<>();
+        List<CompletableFuture<Position>> recordFutures = new ArrayList<>(futures);
+        dataArray.clear();
+        futures.clear();
+        bytesSize = 0;
+
+        batchFuture.whenComplete((position, ex) -> {
+            for (int i = 0; i < recordFutures.size(); i++) {
+                if (ex != null) {
+                    recordFutures.get(i).completeExceptionally(ex);
+                } else if (batchSize > 1) {
+                    recordFutures.get(i).complete(new TxnBatchedPositionImpl(position, batchSize, i));
+                } else {
+                    recordFutures.get(i).complete(position);
+                }
+            }
+        });
+        addEntry(buf, batchFuture);
+    }
+
+    private void addEntry(ByteBuf buf, CompletableFuture<Position> future) {
+        managedLedger.asyncAddEntry(buf, new AsyncCallbacks.AddEntryCallback() {
+            @Override
+            public void addComplete(Position position, ByteBuf entryData, Object ctx) {
+                buf.release();
+                future.complete(position);
+            }
+
+            @Override
+            public void addFailed(ManagedLedgerException exception, Object ctx) {
+                log.error("[{}] Transaction log write error", managedLedger.getName(), exception);
+                if (exception instanceof ManagedLedgerAlreadyClosedException
+                        && managedLedger instanceof ManagedLedgerImpl
+                        && State.WriteFailed == ((ManagedLedgerImpl) managedLedger).getState()) {
+                    managedLedger.readyToCreateNewLedger();
+                }
+                buf.release();
+                future.completeExceptionally(exception);
+            }
+        }, null);
+    }
+
+    /**
+     * Writes the pending batch and fails the records appended afterwards.
+     */
+    public synchronized void close() {
+        if (!closed) {
+            flush();
+            closed = true;
+        }
+    }
+
+    /**
+     * @return whether the entry data starts with the header of a batched entry, in which case the header is skipped
+     */
+    public static boolean isBatchedEntry(ByteBuf buffer) {
+        if (buffer.readableBytes() < BATCHED_ENTRY_HEADER_SIZE
+                || buffer.getShort(buffer.readerIndex()) != BATCHED_ENTRY_DATA_PREFIX_MAGIC_NUMBER) {
+            return false;
+        }
+        buffer.skipBytes(BATCHED_ENTRY_HEADER_SIZE);
+        return true;
+    }
+}
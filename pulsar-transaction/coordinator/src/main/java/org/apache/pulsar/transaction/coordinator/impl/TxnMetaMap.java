@@ -0,0 +1,116 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.transaction.coordinator.impl;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.bookkeeper.mledger.Position;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.pulsar.common.util.collections.ConcurrentLongHashMap;
+import org.apache.pulsar.common.util.collections.ConcurrentLongHashMap.EntryProcessor;
+import org.apache.pulsar.transaction.coordinator.TxnMeta;
+
+/**
+ * The open transactions of a transaction coordinator, with the log positions of each transaction, by the sequence id
+ * of the transactions.
+ *
+ * <p>The transactions are sharded over the sections of a {@link ConcurrentLongHashMap}, which are open-addressing
+ * hash tables with primitive long keys, each with its own lock. Adding, looking up and removing a transaction does
+ * not allocate any node and only contends with the transactions of the same section.
+ *
+ * <p>The transactions must be added one at a time and in the order of their sequence ids, which is the order the
+ * coordinator allocates and logs them in. Then no transaction is open below the first sequence id that is still in
+ * the map, and the low water mark is tracked by a cursor that only moves forward over the ended transactions.
+ */
+public class TxnMetaMap {
+
+    private static final int DEFAULT_EXPECTED_ITEMS = 256;
+    private static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+
+    private final ConcurrentLongHashMap<Pair<TxnMeta, List<Position>>> transactions;
+
+    // the greatest sequence id added to the map
+    private final AtomicLong maxSequenceId = new AtomicLong(-1L);
+
+    // no transaction with a smaller sequence id is open
+    private final AtomicLong lowWaterMarkCursor = new AtomicLong(0L);
+
+    public TxnMetaMap() {
+        this(DEFAULT_EXPECTED_ITEMS, DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    public TxnMetaMap(int expectedItems, int concurrencyLevel) {
+        this.transactions = new ConcurrentLongHashMap<>(expectedItems, concurrencyLevel);
+    }
+
+    public void put(long sequenceId, Pair<TxnMeta, List<Position>> txnMetaListPair) {
+        if (transactions.isEmpty()) {
+            // all the transactions added before have ended
+            lowWaterMarkCursor.accumulateAndGet(sequenceId, Math::max);
+        }
+        transactions.put(sequenceId, txnMetaListPair);
+        maxSequenceId.accumulateAndGet(sequenceId, Math::max);
+    }
+
+    public Pair<TxnMeta, List<Position>> get(long sequenceId) {
+        return transactions.get(sequenceId);
+    }
+
+    public boolean containsKey(long sequenceId) {
+        return transactions.containsKey(sequenceId);
+    }
+
+    public Pair<TxnMeta, List<Position>> remove(long sequenceId) {
+        return transactions.remove(sequenceId);
+    }
+
+    public long size() {
+        return transactions.size();
+    }
+
+    public boolean isEmpty() {
+        return transactions.isEmpty();
+    }
+
+    public void forEach(EntryProcessor<Pair<TxnMeta, List<Position>>> processor) {
+        transactions.forEach(processor);
+    }
+
+    public void clear() {
+        transactions.clear();
+    }
+
+    /**
+     * Get the low water mark of the transactions.
+     *
+     * @return the sequence id before the one of the first open transaction, or 0 if no transaction is open
+     */
+    public long getLowWaterMark() {
+        if (transactions.isEmpty()) {
+            return 0L;
+        }
+        long maxId = maxSequenceId.get();
+        long cursor = lowWaterMarkCursor.get();
+        while (cursor <= maxId && !transactions.containsKey(cursor)) {
+            cursor++;
+        }
+        lowWaterMarkCursor.accumulateAndGet(cursor, Math::max);
+        return cursor - 1;
+    }
+}
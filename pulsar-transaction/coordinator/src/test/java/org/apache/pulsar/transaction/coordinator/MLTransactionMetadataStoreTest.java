@@ -20,6 +20,7 @@ package org.apache.pulsar.transaction.coordinator;
 
 import lombok.Cleanup;
 import org.apache.bookkeeper.mledger.ManagedCursor;
+import org.apache.bookkeeper.mledger.ManagedLedger;
 import org.apache.bookkeeper.mledger.ManagedLedgerConfig;
 import org.apache.bookkeeper.mledger.ManagedLedgerException;
 import org.apache.bookkeeper.mledger.ManagedLedgerFactory;
@@ -28,6 +29,7 @@ import org.apache.bookkeeper.mledger.Position;
 import org.apache.bookkeeper.mledger.impl.ManagedLedgerFactoryImpl;
 import org.apache.bookkeeper.mledger.impl.ManagedLedgerImpl;
 import org.apache.pulsar.client.api.transaction.TxnID;
+import org.apache.pulsar.common.util.FutureUtil;
 import org.apache.pulsar.transaction.coordinator.exceptions.CoordinatorException;
 import org.apache.pulsar.transaction.coordinator.exceptions.CoordinatorException.TransactionNotFoundException;
 import org.apache.pulsar.transaction.coordinator.impl.MLTransactionLogImpl;
@@ -44,6 +46,8 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 import static org.apache.bookkeeper.mledger.impl.ManagedLedgerImpl.State.WriteFailed;
@@ -379,6 +383,141 @@ public class MLTransactionMetadataStoreTest extends MockedBookKeeperTestCase {
         Awaitility.await().until(transactionMetadataStore::checkIfReady);
     }
 
+    @Test
+    public void testBatchedWrites() throws Exception {
+        ManagedLedgerFactoryConfig factoryConf = new ManagedLedgerFactoryConfig();
+        factoryConf.setMaxCacheSize(0);
+
+        @Cleanup("shutdown")
+        ManagedLedgerFactory factory = new ManagedLedgerFactoryImpl(metadataStore, bkc, factoryConf);
+        @Cleanup("shutdownNow")
+        ScheduledExecutorService scheduledExecutorService = Executors.newSingleThreadScheduledExecutor();
+        TxnLogBufferedWriterConfig bufferedWriterConfig = new TxnLogBufferedWriterConfig();
+        bufferedWriterConfig.setBatchEnabled(true);
+        bufferedWriterConfig.setBatchedWriteMaxRecords(10);
+        bufferedWriterConfig.setBatchedWriteMaxDelayInMillis(1000);
+        TransactionCoordinatorID transactionCoordinatorID = new TransactionCoordinatorID(1);
+        MLTransactionLogImpl mlTransactionLog = new MLTransactionLogImpl(transactionCoordinatorID, factory,
+                new ManagedLedgerConfig(), bufferedWriterConfig, scheduledExecutorService);
+        mlTransactionLog.initialize().join();
+        MLTransactionMetadataStore transactionMetadataStore =
+                new MLTransactionMetadataStore(transactionCoordinatorID, mlTransactionLog,
+                        new TransactionTimeoutTrackerImpl(), new TransactionRecoverTrackerImpl());
+        Awaitility.await().until(transactionMetadataStore::checkIfReady);
+
+        List<CompletableFuture<TxnID>> newTxnFutures = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            newTxnFutures.add(transactionMetadataStore.newTransaction(100000));
+        }
+        List<TxnID> txnIDs = new ArrayList<>();
+        for (CompletableFuture<TxnID> future : newTxnFutures) {
+            txnIDs.add(future.get());
+        }
+        // the 100 records are written as 10 batched entries
+        ManagedLedger managedLedger = mlTransactionLog.getManagedLedger();
+        assertEquals(managedLedger.getNumberOfEntries(), 10);
+
+        // commit the transactions of the first 9 batches
+        List<CompletableFuture<Void>> updateFutures = new ArrayList<>();
+        for (int i = 0; i < 90; i++) {
+            updateFutures.add(transactionMetadataStore
+                    .updateTxnStatus(txnIDs.get(i), TxnStatus.COMMITTING, TxnStatus.OPEN, false));
+        }
+        FutureUtil.waitForAll(updateFutures).get();
+        updateFutures.clear();
+        for (int i = 0; i < 90; i++) {
+            updateFutures.add(transactionMetadataStore
+                    .updateTxnStatus(txnIDs.get(i), TxnStatus.COMMITTED, TxnStatus.COMMITTING, false));
+        }
+        FutureUtil.waitForAll(updateFutures).get();
+        assertEquals(managedLedger.getNumberOfEntries(), 28);
+
+        // only the batched entry holding the open transactions is still in use
+        Field field = MLTransactionLogImpl.class.getDeclaredField("cursor");
+        field.setAccessible(true);
+        ManagedCursor cursor = (ManagedCursor) field.get(mlTransactionLog);
+        Awaitility.await().untilAsserted(() -> assertEquals(cursor.getNumberOfEntriesInBacklog(true), 1));
+
+        transactionMetadataStore.closeAsync().get();
+        mlTransactionLog = new MLTransactionLogImpl(transactionCoordinatorID, factory,
+                new ManagedLedgerConfig(), bufferedWriterConfig, scheduledExecutorService);
+        mlTransactionLog.initialize().join();
+        transactionMetadataStore = new MLTransactionMetadataStore(transactionCoordinatorID, mlTransactionLog,
+                new TransactionTimeoutTrackerImpl(), new TransactionRecoverTrackerImpl());
+        Awaitility.await().until(transactionMetadataStore::checkIfReady);
+
+        for (int i = 0; i < 100; i++) {
+            if (i < 90) {
+                try {
+                    transactionMetadataStore.getTxnMeta(txnIDs.get(i)).get();
+                    fail();
+                } catch (ExecutionException e) {
+                    assertTrue(e.getCause() instanceof TransactionNotFoundException);
+                }
+            } else {
+                assertEquals(transactionMetadataStore.getTxnStatus(txnIDs.get(i)).get(), TxnStatus.OPEN);
+            }
+        }
+        assertEquals(transactionMetadataStore.newTransaction(100000).get().getLeastSigBits(), 100L);
+    }
+
+    @Test
+    public void testEndedTransactionOfBatchedEntryIsNotReplayed() throws Exception {
+        ManagedLedgerFactoryConfig factoryConf = new ManagedLedgerFactoryConfig();
+        factoryConf.setMaxCacheSize(0);
+
+        @Cleanup("shutdown")
+        ManagedLedgerFactory factory = new ManagedLedgerFactoryImpl(metadataStore, bkc, factoryConf);
+        @Cleanup("shutdownNow")
+        ScheduledExecutorService scheduledExecutorService = Executors.newSingleThreadScheduledExecutor();
+        TxnLogBufferedWriterConfig bufferedWriterConfig = new TxnLogBufferedWriterConfig();
+        bufferedWriterConfig.setBatchEnabled(true);
+        bufferedWriterConfig.setBatchedWriteMaxRecords(2);
+        bufferedWriterConfig.setBatchedWriteMaxDelayInMillis(10);
+        TransactionCoordinatorID transactionCoordinatorID = new TransactionCoordinatorID(1);
+        MLTransactionLogImpl mlTransactionLog = new MLTransactionLogImpl(transactionCoordinatorID, factory,
+                new ManagedLedgerConfig(), bufferedWriterConfig, scheduledExecutorService);
+        mlTransactionLog.initialize().join();
+        MLTransactionMetadataStore transactionMetadataStore =
+                new MLTransactionMetadataStore(transactionCoordinatorID, mlTransactionLog,
+                        new TransactionTimeoutTrackerImpl(), new TransactionRecoverTrackerImpl());
+        Awaitility.await().until(transactionMetadataStore::checkIfReady);
+
+        // the new records of both transactions share a batched entry
+        CompletableFuture<TxnID> committedTxnFuture = transactionMetadataStore.newTransaction(100000);
+        CompletableFuture<TxnID> openTxnFuture = transactionMetadataStore.newTransaction(100000);
+        TxnID committedTxnID = committedTxnFuture.get();
+        TxnID openTxnID = openTxnFuture.get();
+        assertEquals(mlTransactionLog.getManagedLedger().getNumberOfEntries(), 1);
+
+        transactionMetadataStore.updateTxnStatus(committedTxnID, TxnStatus.COMMITTING, TxnStatus.OPEN, false).get();
+        transactionMetadataStore.updateTxnStatus(committedTxnID, TxnStatus.COMMITTED, TxnStatus.COMMITTING, false)
+                .get();
+
+        // the batched entry is still in use by the open transaction
+        Field field = MLTransactionLogImpl.class.getDeclaredField("cursor");
+        field.setAccessible(true);
+        ManagedCursor cursor = (ManagedCursor) field.get(mlTransactionLog);
+        Awaitility.await().untilAsserted(() -> assertEquals(cursor.getNumberOfEntriesInBacklog(true), 1));
+
+        transactionMetadataStore.closeAsync().get();
+        mlTransactionLog = new MLTransactionLogImpl(transactionCoordinatorID, factory,
+                new ManagedLedgerConfig(), bufferedWriterConfig, scheduledExecutorService);
+        mlTransactionLog.initialize().join();
+        transactionMetadataStore = new MLTransactionMetadataStore(transactionCoordinatorID, mlTransactionLog,
+                new TransactionTimeoutTrackerImpl(), new TransactionRecoverTrackerImpl());
+        Awaitility.await().until(transactionMetadataStore::checkIfReady);
+
+        // the deleted record of the committed transaction is skipped by the replay
+        try {
+            transactionMetadataStore.getTxnMeta(committedTxnID).get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof TransactionNotFoundException);
+        }
+        assertEquals(transactionMetadataStore.getTxnStatus(openTxnID).get(), TxnStatus.OPEN);
+    }
+
     @Test
     public void testManageLedgerWriteFailState() throws Exception {
         ManagedLedgerFactoryConfig factoryConf = new ManagedLedgerFactoryConfig();
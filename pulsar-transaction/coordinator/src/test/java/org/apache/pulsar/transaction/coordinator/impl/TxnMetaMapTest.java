@@ -0,0 +1,76 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.transaction.coordinator.impl;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.bookkeeper.mledger.Position;
+import org.apache.commons.lang3.tuple.MutablePair;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.pulsar.client.api.transaction.TxnID;
+import org.apache.pulsar.transaction.coordinator.TxnMeta;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test {@link TxnMetaMap}.
+ */
+public class TxnMetaMapTest {
+
+    private static Pair<TxnMeta, List<Position>> newTxn(long sequenceId) {
+        return MutablePair.of(new TxnMetaImpl(new TxnID(0, sequenceId), 0, 0), new ArrayList<>());
+    }
+
+    @Test
+    public void testLowWaterMark() {
+        TxnMetaMap txnMetaMap = new TxnMetaMap(16, 4);
+        assertEquals(txnMetaMap.getLowWaterMark(), 0L);
+
+        for (long i = 0; i < 10; i++) {
+            txnMetaMap.put(i, newTxn(i));
+        }
+        assertEquals(txnMetaMap.size(), 10);
+        assertEquals(txnMetaMap.getLowWaterMark(), -1L);
+
+        // the transactions ending after the first open one do not move the low water mark
+        txnMetaMap.remove(3);
+        txnMetaMap.remove(4);
+        assertEquals(txnMetaMap.getLowWaterMark(), -1L);
+
+        txnMetaMap.remove(0);
+        txnMetaMap.remove(1);
+        assertEquals(txnMetaMap.getLowWaterMark(), 1L);
+        txnMetaMap.remove(2);
+        assertEquals(txnMetaMap.getLowWaterMark(), 4L);
+
+        for (long i = 5; i < 10; i++) {
+            txnMetaMap.remove(i);
+        }
+        assertTrue(txnMetaMap.isEmpty());
+        assertEquals(txnMetaMap.getLowWaterMark(), 0L);
+
+        // the first transaction added to an empty map moves the low water mark past all the ended ones
+        txnMetaMap.put(1_000_000L, newTxn(1_000_000L));
+        assertEquals(txnMetaMap.getLowWaterMark(), 999_999L);
+        assertTrue(txnMetaMap.containsKey(1_000_000L));
+        assertFalse(txnMetaMap.containsKey(9));
+    }
+}
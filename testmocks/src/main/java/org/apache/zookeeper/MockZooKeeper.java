@@ -928,6 +928,15 @@ public class MockZooKeeper extends ZooKeeper {
         List<OpResult> res = new ArrayList<>();
         for (org.apache.zookeeper.Op op : ops) {
             switch (op.getType()) {
+                case ZooDefs.OpCode.getData:
+                    try {
+                        Stat stat = new Stat();
+                        byte[] data = this.getData(op.getPath(), null, stat);
+                        res.add(new OpResult.GetDataResult(data, stat));
+                    } catch (KeeperException e) {
+                        res.add(new OpResult.ErrorResult(e.code().intValue()));
+                    }
+                    break;
                 case ZooDefs.OpCode.create:
                     this.create(op.getPath(), ((org.apache.zookeeper.Op.Create)op).data, null, null);
                     res.add(new OpResult.CreateResult(op.getPath()));